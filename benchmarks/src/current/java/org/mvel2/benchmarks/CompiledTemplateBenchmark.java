@@ -0,0 +1,70 @@
+/**
+ * MVEL 2.0
+ * Copyright (C) 2007 The Codehaus
+ * Mike Brock, Dhanji Prasanna, John Graham, Mark Proctor
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mvel2.benchmarks;
+
+import org.mvel2.integration.impl.MapVariableResolverFactory;
+import org.mvel2.templates.ASMTemplateCompiler;
+import org.mvel2.templates.CompiledTemplate;
+import org.mvel2.templates.TemplateCompiler;
+import org.mvel2.templates.TemplateRuntime;
+import org.mvel2.templates.util.io.ByteBufferStream;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.charset.Charset;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures execution of a template compiled to bytecode by {@link ASMTemplateCompiler}, rendered to a string and to
+ * pooled UTF-8 buffers.  Compare with <tt>TemplateBenchmark.execute</tt>.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class CompiledTemplateBenchmark {
+  private CompiledTemplate bytecode;
+  private Map<String, Object> vars;
+  private Charset utf8 = Charset.forName("UTF-8");
+
+  @Setup(Level.Trial)
+  public void setup() {
+    bytecode = ASMTemplateCompiler.compile(TemplateCompiler.compileTemplate(Fixtures.TEMPLATE));
+    vars = Fixtures.createVariables();
+  }
+
+  @Benchmark
+  public Object executeBytecode() {
+    return TemplateRuntime.execute(bytecode, vars);
+  }
+
+  @Benchmark
+  public int executeBytes() {
+    ByteBufferStream out = new ByteBufferStream(utf8);
+    try {
+      TemplateRuntime.execute(bytecode, null, new MapVariableResolverFactory(vars), null, out);
+      return out.size();
+    }
+    finally {
+      out.release();
+    }
+  }
+}
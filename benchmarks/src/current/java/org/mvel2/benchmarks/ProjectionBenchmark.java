@@ -0,0 +1,83 @@
+/**
+ * MVEL 2.0
+ * Copyright (C) 2007 The Codehaus
+ * Mike Brock, Dhanji Prasanna, John Graham, Mark Proctor
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mvel2.benchmarks;
+
+import org.mvel2.MVEL;
+import org.mvel2.ast.Fold;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures projections of large lists, sequentially and in parallel, and a nested projection (which skips its
+ * intermediate list).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ProjectionBenchmark {
+  @Param({"1000", "100000"})
+  public int size;
+
+  @Param({"0", "1000"})
+  public int parallelThreshold;
+
+  private Serializable projection;
+  private Serializable nested;
+  private Map<String, Object> vars;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    List<Integer> list = new ArrayList<Integer>(size);
+    for (int i = 0; i < size; i++) {
+      list.add(i);
+    }
+    vars = new HashMap<String, Object>();
+    vars.put("list", list);
+
+    projection = MVEL.compileExpression("($ * 2 + 1 in list if $ % 3 != 0)");
+    nested = MVEL.compileExpression("($ * 2 in ($ + 1 in list))");
+
+    Fold.setParallelThreshold(parallelThreshold);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    Fold.setParallelThreshold(0);
+    Fold.shutdown();
+  }
+
+  @Benchmark
+  public Object project() {
+    return MVEL.executeExpression(projection, vars);
+  }
+
+  @Benchmark
+  public Object projectNested() {
+    return MVEL.executeExpression(nested, vars);
+  }
+}
@@ -0,0 +1,103 @@
+/**
+ * MVEL 2.0
+ * Copyright (C) 2007 The Codehaus
+ * Mike Brock, Dhanji Prasanna, John Graham, Mark Proctor
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mvel2.benchmarks;
+
+import org.mvel2.MVEL;
+import org.mvel2.ParserConfiguration;
+import org.mvel2.ParserContext;
+import org.mvel2.compiler.CompiledSnapshot;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares restoring a batch of expressions sharing a parser configuration from a {@link CompiledSnapshot} with
+ * compiling them again, and with reading them back from plain Java serialization.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class SnapshotBenchmark {
+  @Param({"1000"})
+  public int expressions;
+
+  private ParserConfiguration configuration;
+  private List<String> sources;
+  private byte[] snapshot;
+  private byte[] serialized;
+
+  @Setup
+  public void setup() throws Exception {
+    configuration = new ParserConfiguration();
+    configuration.addImport("Subject", Fixtures.Subject.class);
+    configuration.addPackageImport("java.util");
+
+    String[] fixtures = {Fixtures.ARITHMETIC, Fixtures.PROPERTY, Fixtures.METHOD, Fixtures.BOOLEAN, Fixtures.INLINE,
+        Fixtures.SCRIPT};
+    sources = new ArrayList<String>();
+    Map<String, Serializable> compiled = new LinkedHashMap<String, Serializable>();
+    for (int i = 0; i < expressions; i++) {
+      String source = fixtures[i % fixtures.length] + " == " + i;
+      sources.add(source);
+      compiled.put("e" + i, MVEL.compileExpression(source, new ParserContext(configuration)));
+    }
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    CompiledSnapshot.write(bytes, compiled, false);
+    snapshot = bytes.toByteArray();
+
+    bytes = new ByteArrayOutputStream();
+    ObjectOutputStream out = new ObjectOutputStream(bytes);
+    out.writeObject(compiled);
+    out.close();
+    serialized = bytes.toByteArray();
+  }
+
+  @Benchmark
+  public Object restoreSnapshot() throws Exception {
+    return CompiledSnapshot.open(ByteBuffer.wrap(snapshot), getClass().getClassLoader()).getAll();
+  }
+
+  @Benchmark
+  public Object compile() {
+    List<Serializable> compiled = new ArrayList<Serializable>(sources.size());
+    for (String source : sources) {
+      compiled.add(MVEL.compileExpression(source, new ParserContext(configuration)));
+    }
+    return compiled;
+  }
+
+  @Benchmark
+  public Object deserialize() throws Exception {
+    return new ObjectInputStream(new ByteArrayInputStream(serialized)).readObject();
+  }
+}
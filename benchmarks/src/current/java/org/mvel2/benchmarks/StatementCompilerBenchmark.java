@@ -0,0 +1,77 @@
+/**
+ * MVEL 2.0
+ * Copyright (C) 2007 The Codehaus
+ * Mike Brock, Dhanji Prasanna, John Graham, Mark Proctor
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mvel2.benchmarks;
+
+import org.mvel2.MVEL;
+import org.mvel2.ParserContext;
+import org.mvel2.integration.VariableResolverFactory;
+import org.mvel2.integration.impl.MapVariableResolverFactory;
+import org.mvel2.optimizers.impl.asm.ASMStatementCompiler;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares typed arithmetic and comparisons executed by the interpreter against the same statements compiled to
+ * bytecode by {@link ASMStatementCompiler}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class StatementCompilerBenchmark {
+  @Param({"a + b * c", "(a * b) % c == 0 && d > 1.5", "a > b ? a * d : b / c"})
+  public String expression;
+
+  @Param({"false", "true"})
+  public boolean bytecode;
+
+  private Serializable compiled;
+  private VariableResolverFactory factory;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    ParserContext ctx = new ParserContext();
+    ctx.setStrongTyping(true);
+    ctx.addInput("a", int.class);
+    ctx.addInput("b", int.class);
+    ctx.addInput("c", int.class);
+    ctx.addInput("d", double.class);
+
+    compiled = MVEL.compileExpression(expression, ctx);
+    if (bytecode) compiled = ASMStatementCompiler.compile(compiled);
+
+    Map<String, Object> vars = new HashMap<String, Object>();
+    vars.put("a", 10);
+    vars.put("b", 20);
+    vars.put("c", 3);
+    vars.put("d", 2.5d);
+    factory = new MapVariableResolverFactory(vars);
+  }
+
+  @Benchmark
+  public Object executeExpression() {
+    return MVEL.executeExpression(compiled, factory);
+  }
+}
@@ -0,0 +1,71 @@
+/**
+ * MVEL 2.0
+ * Copyright (C) 2007 The Codehaus
+ * Mike Brock, Dhanji Prasanna, John Graham, Mark Proctor
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mvel2.benchmarks;
+
+import org.mvel2.Operator;
+import org.mvel2.math.MathProcessor;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures <tt>MathProcessor.doOperations()</tt> for combinations of int, long and double operands.  Run against an
+ * older release (-Dmvel.version) to see the effect of the primitive fast path.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ArithmeticBenchmark {
+  @Param({"int/int", "long/long", "double/double", "double/int", "long/int"})
+  public String operands;
+
+  private Object left;
+  private Object right;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    String[] types = operands.split("/");
+    left = operand(types[0], 10);
+    right = operand(types[1], 3);
+  }
+
+  private static Object operand(String type, int value) {
+    if ("int".equals(type)) return value;
+    if ("long".equals(type)) return (long) value;
+    return (double) value;
+  }
+
+  @Benchmark
+  public Object add() {
+    return MathProcessor.doOperations(left, Operator.ADD, right);
+  }
+
+  @Benchmark
+  public Object multiply() {
+    return MathProcessor.doOperations(left, Operator.MULT, right);
+  }
+
+  @Benchmark
+  public Object compare() {
+    return MathProcessor.doOperations(left, Operator.GTHAN, right);
+  }
+}
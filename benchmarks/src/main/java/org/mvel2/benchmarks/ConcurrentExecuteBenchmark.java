@@ -0,0 +1,78 @@
+/**
+ * MVEL 2.0
+ * Copyright (C) 2007 The Codehaus
+ * Mike Brock, Dhanji Prasanna, John Graham, Mark Proctor
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mvel2.benchmarks;
+
+import org.mvel2.MVEL;
+import org.mvel2.integration.VariableResolverFactory;
+import org.mvel2.integration.impl.MapVariableResolverFactory;
+import org.mvel2.optimizers.OptimizerFactory;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.Serializable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures throughput when many threads share a single compiled expression, as they would in a rule engine or a
+ * web application.  Each thread has its own variables.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@Threads(Threads.MAX)
+public class ConcurrentExecuteBenchmark {
+
+  @State(Scope.Benchmark)
+  public static class Shared {
+    @Param({"ASM", "reflective", "dynamic"})
+    public String optimizer;
+
+    @Param({Fixtures.PROPERTY, Fixtures.BOOLEAN, Fixtures.SCRIPT})
+    public String expression;
+
+    private Serializable compiled;
+
+    @Setup(Level.Trial)
+    public void setup() {
+      OptimizerFactory.setDefaultOptimizer(optimizer);
+      compiled = MVEL.compileExpression(expression);
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class PerThread {
+    private VariableResolverFactory factory;
+
+    /**
+     * The accessors of the shared expression are generated by whichever thread executes it first, so every
+     * thread selects the same optimizer.
+     */
+    @Setup(Level.Trial)
+    public void setup(Shared shared) {
+      OptimizerFactory.setDefaultOptimizer(shared.optimizer);
+      factory = new MapVariableResolverFactory(Fixtures.createVariables());
+    }
+  }
+
+  @Benchmark
+  public Object executeExpression(Shared shared, PerThread state) {
+    return MVEL.executeExpression(shared.compiled, state.factory);
+  }
+}
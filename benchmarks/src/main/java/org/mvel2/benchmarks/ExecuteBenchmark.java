@@ -0,0 +1,68 @@
+/**
+ * MVEL 2.0
+ * Copyright (C) 2007 The Codehaus
+ * Mike Brock, Dhanji Prasanna, John Graham, Mark Proctor
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mvel2.benchmarks;
+
+import org.mvel2.MVEL;
+import org.mvel2.integration.VariableResolverFactory;
+import org.mvel2.integration.impl.MapVariableResolverFactory;
+import org.mvel2.optimizers.OptimizerFactory;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.Serializable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures execution of compiled expressions under each of the accessor optimizer strategies.
+ * <p/>
+ * The optimizer is selected per thread, and the expression is compiled on the benchmark thread so that its
+ * accessors are generated by the selected optimizer on first execution.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ExecuteBenchmark {
+  @Param({"ASM", "reflective", "dynamic"})
+  public String optimizer;
+
+  @Param({Fixtures.ARITHMETIC, Fixtures.PROPERTY, Fixtures.METHOD, Fixtures.BOOLEAN, Fixtures.INLINE, Fixtures.SCRIPT})
+  public String expression;
+
+  private Serializable compiled;
+  private VariableResolverFactory factory;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    OptimizerFactory.setDefaultOptimizer(optimizer);
+    compiled = MVEL.compileExpression(expression);
+    factory = new MapVariableResolverFactory(Fixtures.createVariables());
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    OptimizerFactory.setDefaultOptimizer(OptimizerFactory.DYNAMIC);
+  }
+
+  @Benchmark
+  public Object executeExpression() {
+    return MVEL.executeExpression(compiled, factory);
+  }
+}
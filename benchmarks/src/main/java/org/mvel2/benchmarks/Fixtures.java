@@ -0,0 +1,86 @@
+/**
+ * MVEL 2.0
+ * Copyright (C) 2007 The Codehaus
+ * Mike Brock, Dhanji Prasanna, John Graham, Mark Proctor
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mvel2.benchmarks;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Expressions, templates and context objects shared by the benchmarks.
+ */
+public class Fixtures {
+  public static final String ARITHMETIC = "(a + b) * c - (a / 2)";
+  public static final String PROPERTY = "subject.address.city";
+  public static final String METHOD = "subject.name.toUpperCase().substring(1, 3)";
+  public static final String BOOLEAN = "subject.age > 18 && subject.name == 'Mike' || subject.address.city != null";
+  public static final String INLINE = "['a' : subject.age, 'b' : [1, 2, 3], 'c' : subject.name]";
+  public static final String SCRIPT = "total = 0; foreach (i : subject.items) { total += i; }; total";
+
+  public static final String TEMPLATE = "Hello @{subject.name}, you are @{subject.age} years old.\n"
+      + "@foreach{i : subject.items}[@{i}]@end{', '}\n"
+      + "@if{subject.age > 18}adult@else{}minor@end{}";
+
+  public static Map<String, Object> createVariables() {
+    Map<String, Object> vars = new HashMap<String, Object>();
+    vars.put("a", 10);
+    vars.put("b", 20);
+    vars.put("c", 30);
+    vars.put("subject", new Subject());
+    return vars;
+  }
+
+  public static class Subject {
+    private String name = "Mike";
+    private int age = 33;
+    private Address address = new Address();
+    private List<Integer> items = new ArrayList<Integer>();
+
+    public Subject() {
+      for (int i = 0; i < 10; i++) {
+        items.add(i);
+      }
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public int getAge() {
+      return age;
+    }
+
+    public Address getAddress() {
+      return address;
+    }
+
+    public List<Integer> getItems() {
+      return items;
+    }
+  }
+
+  public static class Address {
+    private String city = "Toronto";
+
+    public String getCity() {
+      return city;
+    }
+  }
+}
@@ -0,0 +1,102 @@
+/**
+ * MVEL 2.0
+ * Copyright (C) 2007 The Codehaus
+ * Mike Brock, Dhanji Prasanna, John Graham, Mark Proctor
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mvel2.benchmarks;
+
+import org.mvel2.MVEL;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.Serializable;
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures <tt>foreach</tt> over arrays, lists and strings.  <tt>reflectiveArray</tt> is the cost of reading the
+ * same elements with <tt>java.lang.reflect.Array.get()</tt>, as <tt>foreach</tt> did before it was specialized by
+ * type; run against an older release (-Dmvel.version) for the end to end comparison.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ForEachBenchmark {
+  private static final int SIZE = 1000;
+
+  @Param({"int[]", "double[]", "Object[]", "ArrayList", "String"})
+  public String type;
+
+  private Serializable loop;
+  private Map<String, Object> vars;
+  private Object data;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    if ("int[]".equals(type)) {
+      int[] a = new int[SIZE];
+      for (int i = 0; i < SIZE; i++) a[i] = i;
+      data = a;
+    }
+    else if ("double[]".equals(type)) {
+      double[] a = new double[SIZE];
+      for (int i = 0; i < SIZE; i++) a[i] = i;
+      data = a;
+    }
+    else if ("Object[]".equals(type)) {
+      Object[] a = new Object[SIZE];
+      for (int i = 0; i < SIZE; i++) a[i] = i;
+      data = a;
+    }
+    else if ("ArrayList".equals(type)) {
+      List<Object> l = new ArrayList<Object>(SIZE);
+      for (int i = 0; i < SIZE; i++) l.add(i);
+      data = l;
+    }
+    else {
+      StringBuilder sb = new StringBuilder(SIZE);
+      for (int i = 0; i < SIZE; i++) sb.append((char) ('a' + i % 26));
+      data = sb.toString();
+    }
+
+    vars = new HashMap<String, Object>();
+    vars.put("data", data);
+    loop = MVEL.compileExpression("n = 0; foreach (x : data) { n++; } n");
+  }
+
+  @Benchmark
+  public Object execute() {
+    return MVEL.executeExpression(loop, new HashMap<String, Object>(vars));
+  }
+
+  @Benchmark
+  public Object reflectiveArray() {
+    if (!data.getClass().isArray()) return null;
+
+    Object last = null;
+    int len = Array.getLength(data);
+    for (int i = 0; i < len; i++) {
+      last = Array.get(data, i);
+    }
+    return last;
+  }
+}
@@ -0,0 +1,51 @@
+/**
+ * MVEL 2.0
+ * Copyright (C) 2007 The Codehaus
+ * Mike Brock, Dhanji Prasanna, John Graham, Mark Proctor
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mvel2.benchmarks;
+
+import org.mvel2.MVEL;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures <tt>MVEL.eval()</tt>, which parses and interprets the expression on every call.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class InterpretedBenchmark {
+  @Param({Fixtures.ARITHMETIC, Fixtures.PROPERTY, Fixtures.METHOD, Fixtures.BOOLEAN, Fixtures.INLINE, Fixtures.SCRIPT})
+  public String expression;
+
+  private Map<String, Object> vars;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    vars = Fixtures.createVariables();
+  }
+
+  @Benchmark
+  public Object eval() {
+    return MVEL.eval(expression, vars);
+  }
+}
@@ -25,6 +25,7 @@ import org.mvel2.util.FastList;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * The DataConversion factory is where all of MVEL's type converters are registered with the runtime.
@@ -33,8 +34,20 @@ import java.util.*;
  * @see ConversionHandler
  */
 public class DataConversion {
-  private static final Map<Class, ConversionHandler> CONVERTERS
-      = new HashMap<Class, ConversionHandler>(38 * 2, 0.5f);
+  private static final ConcurrentHashMap<Class<?>, ConversionHandler> CONVERTERS
+      = new ConcurrentHashMap<Class<?>, ConversionHandler>(38 * 2, 0.5f);
+
+  /**
+   * The converters of every {@link ConverterProvider}, indexed by target type and then by source type.  The table is
+   * immutable, and is rebuilt whenever a handler is registered.
+   */
+  private static volatile Map<Class<?>, Map<Class<?>, Converter>> PAIRS = Collections.emptyMap();
+
+  private static final Converter IDENTITY = new Converter() {
+    public Object convert(Object o) {
+      return o;
+    }
+  };
 
   private interface ArrayTypeMarker {
   }
@@ -98,12 +111,15 @@ public class DataConversion {
     CONVERTERS.put(HashSet.class, ch);
     CONVERTERS.put(LinkedHashSet.class, ch);
     CONVERTERS.put(TreeSet.class, ch);
+
+    indexConverters();
   }
 
   public static boolean canConvert(Class toType, Class convertFrom) {
     if (toType.isAssignableFrom(convertFrom)) return true;
-    if (CONVERTERS.containsKey(toType)) {
-      return CONVERTERS.get(toType).canConvertFrom(convertFrom);
+    ConversionHandler h = CONVERTERS.get(toType);
+    if (h != null) {
+      return h.canConvertFrom(convertFrom);
     }
     else if (toType.isArray() && canConvert(toType.getComponentType(), convertFrom)) {
       return true;
@@ -111,21 +127,71 @@ public class DataConversion {
     return false;
   }
 
+  @SuppressWarnings({"unchecked"})
   public static <T> T convert(Object in, Class<T> toType) {
     if (in == null) return null;
     if (toType == in.getClass() || toType.isAssignableFrom(in.getClass())) {
       return (T) in;
     }
 
-    ConversionHandler h = CONVERTERS.get(toType);
-    if (h == null && toType.isArray()) {
-      ArrayHandler ah;
-      CONVERTERS.put(toType, ah = new ArrayHandler(toType));
-      return (T) ah.convertFrom(in);
+    Map<Class<?>, Converter> pairs = PAIRS.get(toType);
+    Converter c;
+    if (pairs != null && (c = pairs.get(in.getClass())) != null) {
+      return (T) c.convert(in);
     }
-    else {
-      return (T) h.convertFrom(in);
+
+    return (T) getHandler(toType).convertFrom(in);
+  }
+
+  /**
+   * Returns the converter for a specific pair of types.
+   *
+   * @param fromType - the source type
+   * @param toType   - the target type
+   * @return the converter, or null if no conversion between the types is possible
+   */
+  public static Converter getConverter(Class<?> fromType, Class<?> toType) {
+    if (toType.isAssignableFrom(fromType)) return IDENTITY;
+
+    Map<Class<?>, Converter> pairs = PAIRS.get(toType);
+    Converter c;
+    if (pairs != null && (c = pairs.get(fromType)) != null) {
+      return c;
     }
+
+    final ConversionHandler h = getHandler(toType);
+    if (h == null || !h.canConvertFrom(fromType)) return null;
+
+    return new Converter() {
+      public Object convert(Object o) {
+        return h.convertFrom(o);
+      }
+    };
+  }
+
+  /**
+   * Returns a converter to the specified type, for use at a single call site.  The converter remembers the exact
+   * converter for the type of value it last converted, so a call site which always sees the same type of value
+   * does not look anything up.
+   *
+   * @param toType - the target type
+   * @return the converter
+   */
+  public static Converter getConverter(Class<?> toType) {
+    return new TargetConverter(toType);
+  }
+
+  /**
+   * @param toTypes - the target types
+   * @return a call site converter for each of the specified types
+   * @see #getConverter(Class)
+   */
+  public static Converter[] getConverters(Class<?>[] toTypes) {
+    Converter[] converters = new Converter[toTypes.length];
+    for (int i = 0; i < toTypes.length; i++) {
+      converters[i] = getConverter(toTypes[i]);
+    }
+    return converters;
   }
 
   /**
@@ -136,6 +202,63 @@ public class DataConversion {
    */
   public static void addConversionHandler(Class type, ConversionHandler handler) {
     CONVERTERS.put(type, handler);
+    indexConverters();
+  }
+
+  private static ConversionHandler getHandler(Class<?> toType) {
+    ConversionHandler h = CONVERTERS.get(toType);
+    if (h == null && toType.isArray()) {
+      ConversionHandler existing = CONVERTERS.putIfAbsent(toType, h = new ArrayHandler(toType));
+      if (existing != null) h = existing;
+    }
+    return h;
+  }
+
+  private static synchronized void indexConverters() {
+    Map<Class<?>, Map<Class<?>, Converter>> pairs = new HashMap<Class<?>, Map<Class<?>, Converter>>(
+        CONVERTERS.size() * 2);
+    for (Map.Entry<Class<?>, ConversionHandler> entry : CONVERTERS.entrySet()) {
+      if (entry.getValue() instanceof ConverterProvider) {
+        ConverterProvider provider = (ConverterProvider) entry.getValue();
+        Map<Class<?>, Converter> converters = new HashMap<Class<?>, Converter>();
+        for (Class<?> from : provider.getSourceTypes()) {
+          converters.put(from, provider.getConverter(from));
+        }
+        pairs.put(entry.getKey(), converters);
+      }
+    }
+    PAIRS = pairs;
+  }
+
+  private static final class TargetConverter implements Converter {
+    private final Class<?> toType;
+    private volatile Binding last;
+
+    private TargetConverter(Class<?> toType) {
+      this.toType = toType;
+    }
+
+    public Object convert(Object in) {
+      if (in == null) return null;
+
+      Binding b = last;
+      if (b == null || b.fromType != in.getClass()) {
+        Converter c = DataConversion.getConverter(in.getClass(), toType);
+        if (c == null) return DataConversion.convert(in, toType);
+        last = b = new Binding(in.getClass(), c);
+      }
+      return b.converter.convert(in);
+    }
+  }
+
+  private static final class Binding {
+    private final Class<?> fromType;
+    private final Converter converter;
+
+    private Binding(Class<?> fromType, Converter converter) {
+      this.fromType = fromType;
+      this.converter = converter;
+    }
   }
 
   public static void main(String[] args) {
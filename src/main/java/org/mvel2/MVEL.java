@@ -15,19 +15,23 @@
 package org.mvel2;
 
 import org.mvel2.compiler.CompiledAccExpression;
+import org.mvel2.compiler.BulkCompiler;
 import org.mvel2.compiler.CompiledExpression;
+import org.mvel2.compiler.CompiledExpressionCache;
 import org.mvel2.compiler.ExecutableStatement;
 import org.mvel2.compiler.ExpressionCompiler;
 import org.mvel2.integration.Interceptor;
 import org.mvel2.integration.VariableResolverFactory;
 import org.mvel2.integration.impl.*;
 import org.mvel2.optimizers.impl.refl.nodes.GetterAccessor;
+import org.mvel2.util.BoundedCache;
 
 import java.io.File;
 import java.io.IOException;
 import java.io.Serializable;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -59,10 +63,17 @@ public class MVEL {
   public static boolean COMPILER_OPT_SUPPORT_JAVA_STYLE_CLASS_LITERALS = getBoolean("mvel2.compiler.support_java_style_class_literals");
   static boolean OPTIMIZER = true;
 
+  private static volatile CompiledExpressionCache evalCache;
+
   static {
     if (System.getProperty("mvel2.optimizer") != null) {
       OPTIMIZER = getBoolean("mvel2.optimizer");
     }
+
+    if (System.getProperty("mvel2.eval.cache_size") != null) {
+      evalCache = new CompiledExpressionCache(Integer.getInteger("mvel2.eval.cache_size"),
+          "lfu".equalsIgnoreCase(System.getProperty("mvel2.eval.cache_policy")) ? BoundedCache.LFU : BoundedCache.LRU);
+    }
   }
 
   private MVEL() {
@@ -80,6 +91,25 @@ public class MVEL {
     return DEBUG_FILE;
   }
 
+  /**
+   * Installs a cache of compiled expressions to be used by the <tt>eval()</tt> methods.  When a cache is installed,
+   * the <tt>eval()</tt> methods compile each distinct expression once and execute the compiled form thereafter,
+   * instead of re-parsing the expression through the interpreter on every call.  Passing <tt>null</tt> restores
+   * the default, interpreted behaviour.
+   * <p/>
+   * A cache may also be installed at startup by setting the <tt>mvel2.eval.cache_size</tt> system property (and,
+   * optionally, <tt>mvel2.eval.cache_policy</tt> to either <tt>lru</tt> or <tt>lfu</tt>).
+   *
+   * @param cache the cache to use, or <tt>null</tt> to disable caching.
+   */
+  public static void setEvalCache(CompiledExpressionCache cache) {
+    evalCache = cache;
+  }
+
+  public static CompiledExpressionCache getEvalCache() {
+    return evalCache;
+  }
+
   /**
    * Evaluate an expression and return the value.
    *
@@ -87,6 +117,8 @@ public class MVEL {
    * @return the resultant value
    */
   public static Object eval(String expression) {
+    CompiledExpressionCache cache = evalCache;
+    if (cache != null) return cache.getCompiled(expression).getValue(null, new ImmutableDefaultFactory());
     return new MVELInterpretedRuntime(expression, new ImmutableDefaultFactory()).parse();
   }
 
@@ -104,6 +136,8 @@ public class MVEL {
    * @return The resultant value
    */
   public static Object eval(String expression, Object ctx) {
+    CompiledExpressionCache cache = evalCache;
+    if (cache != null) return cache.getCompiled(expression).getValue(ctx, new ImmutableDefaultFactory());
     return new MVELInterpretedRuntime(expression, ctx, new ImmutableDefaultFactory()).parse();
   }
 
@@ -131,6 +165,8 @@ public class MVEL {
    * @return The resultant value.
    */
   public static Object eval(String expression, VariableResolverFactory resolverFactory) {
+    CompiledExpressionCache cache = evalCache;
+    if (cache != null) return cache.getCompiled(expression).getValue(null, resolverFactory);
     return new MVELInterpretedRuntime(expression, resolverFactory).parse();
   }
 
@@ -145,6 +181,8 @@ public class MVEL {
    * @see #eval(String, org.mvel2.integration.VariableResolverFactory)
    */
   public static Object eval(String expression, Object ctx, VariableResolverFactory resolverFactory) {
+    CompiledExpressionCache cache = evalCache;
+    if (cache != null) return cache.getCompiled(expression).getValue(ctx, resolverFactory);
     return new MVELInterpretedRuntime(expression, ctx, resolverFactory).parse();
   }
 
@@ -160,6 +198,8 @@ public class MVEL {
   public static Object eval(String expression, Map<String, Object> vars) {
     CachingMapVariableResolverFactory factory = new CachingMapVariableResolverFactory(vars);
     try {
+      CompiledExpressionCache cache = evalCache;
+      if (cache != null) return cache.getCompiled(expression).getValue(null, factory);
       return new MVELInterpretedRuntime(expression, null, factory).parse();
     }
     finally {
@@ -180,6 +220,8 @@ public class MVEL {
   public static Object eval(String expression, Object ctx, Map<String, Object> vars) {
     CachingMapVariableResolverFactory factory = new CachingMapVariableResolverFactory(vars);
     try {
+      CompiledExpressionCache cache = evalCache;
+      if (cache != null) return cache.getCompiled(expression).getValue(ctx, factory);
       return new MVELInterpretedRuntime(expression, ctx, factory).parse();
     }
     finally {
@@ -200,6 +242,8 @@ public class MVEL {
    * @return The resultant value.
    */
   public static <T> T eval(String expression, Class<T> toType) {
+    CompiledExpressionCache cache = evalCache;
+    if (cache != null) return convert(cache.getCompiled(expression).getValue(null, new ImmutableDefaultFactory()), toType);
     return convert(new MVELInterpretedRuntime(expression).parse(), toType);
   }
 
@@ -214,6 +258,8 @@ public class MVEL {
    * @see #eval(String, Class)
    */
   public static <T> T eval(String expression, Object ctx, Class<T> toType) {
+    CompiledExpressionCache cache = evalCache;
+    if (cache != null) return convert(cache.getCompiled(expression).getValue(ctx, new ImmutableDefaultFactory()), toType);
     return convert(new MVELInterpretedRuntime(expression, ctx).parse(), toType);
   }
 
@@ -229,6 +275,8 @@ public class MVEL {
    * @see #eval(String, Class)
    */
   public static <T> T eval(String expression, VariableResolverFactory vars, Class<T> toType) {
+    CompiledExpressionCache cache = evalCache;
+    if (cache != null) return convert(cache.getCompiled(expression).getValue(null, vars), toType);
     return convert(new MVELInterpretedRuntime(expression, null, vars).parse(), toType);
   }
 
@@ -245,6 +293,8 @@ public class MVEL {
   public static <T> T eval(String expression, Map<String, Object> vars, Class<T> toType) {
     CachingMapVariableResolverFactory factory = new CachingMapVariableResolverFactory(vars);
     try {
+      CompiledExpressionCache cache = evalCache;
+      if (cache != null) return convert(cache.getCompiled(expression).getValue(null, factory), toType);
       return convert(new MVELInterpretedRuntime(expression, null, factory).parse(), toType);
     }
     finally {
@@ -265,6 +315,8 @@ public class MVEL {
    * @see #eval(String, Class)
    */
   public static <T> T eval(String expression, Object ctx, VariableResolverFactory vars, Class<T> toType) {
+    CompiledExpressionCache cache = evalCache;
+    if (cache != null) return convert(cache.getCompiled(expression).getValue(ctx, vars), toType);
     return convert(new MVELInterpretedRuntime(expression, ctx, vars).parse(), toType);
   }
 
@@ -283,6 +335,8 @@ public class MVEL {
   public static <T> T eval(String expression, Object ctx, Map<String, Object> vars, Class<T> toType) {
     CachingMapVariableResolverFactory factory = new CachingMapVariableResolverFactory(vars);
     try {
+      CompiledExpressionCache cache = evalCache;
+      if (cache != null) return convert(cache.getCompiled(expression).getValue(ctx, factory), toType);
       return convert(new MVELInterpretedRuntime(expression, ctx, factory).parse(), toType);
     }
     finally {
@@ -370,6 +424,8 @@ public class MVEL {
    * @see #eval(String)
    */
   public static Object eval(char[] expression) {
+    CompiledExpressionCache cache = evalCache;
+    if (cache != null) return cache.getCompiled(new String(expression)).getValue(null, new ImmutableDefaultFactory());
     return new MVELInterpretedRuntime(expression, new ImmutableDefaultFactory()).parse();
   }
 
@@ -382,10 +438,14 @@ public class MVEL {
    * @see #eval(String, Object)
    */
   public static Object eval(char[] expression, Object ctx) {
+    CompiledExpressionCache cache = evalCache;
+    if (cache != null) return cache.getCompiled(new String(expression)).getValue(ctx, new ImmutableDefaultFactory());
     return new MVELInterpretedRuntime(expression, ctx).parse();
   }
 
   public static <T> T eval(char[] expression, Class<T> type) {
+    CompiledExpressionCache cache = evalCache;
+    if (cache != null) return convert(cache.getCompiled(new String(expression)).getValue(null, new ImmutableDefaultFactory()), type);
     return convert(new MVELInterpretedRuntime(expression).parse(), type);
   }
 
@@ -399,14 +459,20 @@ public class MVEL {
    * @see #eval(String, Object, VariableResolverFactory)
    */
   public static Object eval(char[] expression, Object ctx, VariableResolverFactory vars) {
+    CompiledExpressionCache cache = evalCache;
+    if (cache != null) return cache.getCompiled(new String(expression)).getValue(ctx, vars);
     return new MVELInterpretedRuntime(expression, ctx, vars).parse();
   }
 
   public static Object eval(char[] expression, int start, int offset, Object ctx, VariableResolverFactory vars) {
+    CompiledExpressionCache cache = evalCache;
+    if (cache != null) return cache.getCompiled(new String(expression, start, offset)).getValue(ctx, vars);
     return new MVELInterpretedRuntime(expression, start, offset, ctx, vars).parse();
   }
 
   public static <T> T eval(char[] expression, int start, int offset, Object ctx, VariableResolverFactory vars, Class<T> toType) {
+    CompiledExpressionCache cache = evalCache;
+    if (cache != null) return convert(cache.getCompiled(new String(expression, start, offset)).getValue(ctx, vars), toType);
     return convert(new MVELInterpretedRuntime(expression, start, offset, ctx, vars).parse(), toType);
   }
 
@@ -420,6 +486,8 @@ public class MVEL {
    * @see #eval(String, Object, Map)
    */
   public static Object eval(char[] expression, Object ctx, Map vars) {
+    CompiledExpressionCache cache = evalCache;
+    if (cache != null) return cache.getCompiled(new String(expression)).getValue(ctx, new MapVariableResolverFactory(vars));
     return new MVELInterpretedRuntime(expression, ctx, vars).parse();
   }
 
@@ -435,6 +503,8 @@ public class MVEL {
    * @see #eval(String, Object, Map, Class)
    */
   public static <T> T eval(char[] expression, Object ctx, Map<String, Object> vars, Class<T> toType) {
+    CompiledExpressionCache cache = evalCache;
+    if (cache != null) return convert(cache.getCompiled(new String(expression)).getValue(ctx, new MapVariableResolverFactory(vars)), toType);
     return convert(new MVELInterpretedRuntime(expression, ctx, vars).parse(), toType);
   }
 
@@ -449,6 +519,8 @@ public class MVEL {
    * @see #eval(String, Object, Class)
    */
   public static <T> T eval(char[] expression, Object ctx, Class<T> toType) {
+    CompiledExpressionCache cache = evalCache;
+    if (cache != null) return convert(cache.getCompiled(new String(expression)).getValue(ctx, new ImmutableDefaultFactory()), toType);
     return convert(new MVELInterpretedRuntime(expression, ctx).parse(), toType);
   }
 
@@ -464,6 +536,8 @@ public class MVEL {
    * @see #eval(String, Object, VariableResolverFactory, Class)
    */
   public static <T> T eval(char[] expression, Object ctx, VariableResolverFactory vars, Class<T> toType) {
+    CompiledExpressionCache cache = evalCache;
+    if (cache != null) return convert(cache.getCompiled(new String(expression)).getValue(ctx, vars), toType);
     return convert(new MVELInterpretedRuntime(expression, ctx, vars).parse(), toType);
   }
 
@@ -478,6 +552,8 @@ public class MVEL {
    * @see #eval(String, VariableResolverFactory, Class)
    */
   public static <T> T eval(char[] expression, VariableResolverFactory vars, Class<T> toType) {
+    CompiledExpressionCache cache = evalCache;
+    if (cache != null) return convert(cache.getCompiled(new String(expression)).getValue(null, vars), toType);
     return convert(new MVELInterpretedRuntime(expression, null, vars).parse(), toType);
   }
 
@@ -492,6 +568,8 @@ public class MVEL {
    * @see #eval(String, Map, Class)
    */
   public static <T> T eval(char[] expression, Map<String, Object> vars, Class<T> toType) {
+    CompiledExpressionCache cache = evalCache;
+    if (cache != null) return convert(cache.getCompiled(new String(expression)).getValue(null, new MapVariableResolverFactory(vars)), toType);
     return convert(new MVELInterpretedRuntime(expression, null, vars).parse(), toType);
   }
 
@@ -808,6 +886,19 @@ public class MVEL {
     return optimizeTree(new ExpressionCompiler(expression).compile(ctx));
   }
 
+  /**
+   * Compiles many expressions at once, using as many threads as there are processors.  Identical expressions are
+   * only compiled once, and expressions which fail to compile are reported in the results rather than thrown.
+   *
+   * @param expressions the expressions to be compiled
+   * @param conf        the parser configuration to compile with, which is not modified
+   * @return the compiled expressions and errors, by expression
+   * @see BulkCompiler
+   */
+  public static BulkCompiler.Results compileAll(Collection<String> expressions, ParserConfiguration conf) {
+    return new BulkCompiler(conf).compile(expressions);
+  }
+
   public static Serializable compileExpression(char[] expression, int start, int offset, ParserContext ctx) {
     ExpressionCompiler c = new ExpressionCompiler(expression, start, offset);
     if (ctx != null) c.setPCtx(ctx);
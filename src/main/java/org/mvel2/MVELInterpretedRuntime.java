@@ -39,9 +39,9 @@ import static org.mvel2.Operator.*;
 @SuppressWarnings({"CaughtExceptionImmediatelyRethrown"})
 public class MVELInterpretedRuntime extends AbstractParser {
   public Object parse() {
+    stk = ExecutionStack.acquire();
+    dStack = ExecutionStack.acquire();
     try {
-      stk = new ExecutionStack();
-      dStack = new ExecutionStack();
       variableFactory.setTiltFlag(false);
       cursor = start;
       return parseAndExecuteInterpreted();
@@ -63,6 +63,8 @@ public class MVELInterpretedRuntime extends AbstractParser {
       throw ErrorUtil.rewriteIfNeeded(e, expr, cursor);
     }
     finally {
+      ExecutionStack.release(dStack);
+      ExecutionStack.release(stk);
       if (parserContext != null) contextControl(REMOVE, null, null);
     }
   }
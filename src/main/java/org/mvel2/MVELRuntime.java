@@ -50,9 +50,31 @@ public class MVELRuntime {
    */
   public static Object execute(boolean debugger, final CompiledExpression expression, final Object ctx,
                                VariableResolverFactory variableFactory) {
+    ExecutionStack stk = ExecutionStack.acquire();
+    try {
+      return execute(debugger, expression, ctx, variableFactory, stk);
+    }
+    finally {
+      ExecutionStack.release(stk);
+    }
+  }
+
+  /**
+   * Main interpreter, using a caller-supplied operand stack.  This allows callers which repeatedly execute
+   * expressions to carry their own stack and avoid the per-thread pool lookup.  The stack is cleared before use.
+   *
+   * @param debugger        Run in debug mode
+   * @param expression      The compiled expression object
+   * @param ctx             The root context object
+   * @param variableFactory The variable factory to be injected
+   * @param stk             The operand stack to use
+   * @return The resultant value
+   */
+  public static Object execute(boolean debugger, final CompiledExpression expression, final Object ctx,
+                               VariableResolverFactory variableFactory, ExecutionStack stk) {
 
     Object v1, v2;
-    ExecutionStack stk = new ExecutionStack();
+    stk.clear();
     variableFactory.setTiltFlag(false);
 
     ASTNode tk = expression.getFirstNode();
@@ -39,6 +39,7 @@ public class ParserConfiguration implements Serializable {
   protected HashSet<String> packageImports;
   protected Map<String, Interceptor> interceptors;
   protected transient ClassLoader classLoader = currentThread().getContextClassLoader();
+  protected int functionCacheSize;
 
   public ParserConfiguration() {
   }
@@ -220,4 +221,19 @@ public class ParserConfiguration implements Serializable {
   public void setImports(HashMap<String, Object> imports) {
     this.imports = imports;
   }
+
+  public int getFunctionCacheSize() {
+    return functionCacheSize;
+  }
+
+  /**
+   * If greater than zero, functions declared with <tt>def</tt> whose results depend only on their arguments are
+   * memoized, caching up to <tt>functionCacheSize</tt> results each.  Functions which may have side effects, or
+   * which read variables other than their parameters, are not memoized, and are reported as warnings in the error
+   * list of the {@link ParserContext}.  Calls are only memoized if all their arguments are immutable values: strings,
+   * boxed primitives, big numbers and enums.
+   */
+  public void setFunctionCacheSize(int functionCacheSize) {
+    this.functionCacheSize = functionCacheSize;
+  }
 }
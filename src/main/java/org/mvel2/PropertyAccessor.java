@@ -24,11 +24,11 @@ import org.mvel2.integration.GlobalListenerFactory;
 import org.mvel2.integration.VariableResolverFactory;
 import org.mvel2.integration.impl.ImmutableDefaultFactory;
 import org.mvel2.util.ErrorUtil;
+import org.mvel2.util.MemberCache;
 import org.mvel2.util.MethodStub;
 import org.mvel2.util.ParseTools;
 import org.mvel2.util.StringAppender;
 
-import java.lang.ref.WeakReference;
 import java.lang.reflect.*;
 import java.util.*;
 
@@ -78,19 +78,6 @@ public class PropertyAccessor {
 
   private static final Object[] EMPTYARG = new Object[0];
 
-  private static final WeakHashMap<Class, WeakHashMap<Integer, WeakReference<Member>>> READ_PROPERTY_RESOLVER_CACHE;
-  private static final WeakHashMap<Class, WeakHashMap<Integer, WeakReference<Member>>> WRITE_PROPERTY_RESOLVER_CACHE;
-  private static final WeakHashMap<Class, WeakHashMap<Integer, WeakReference<Object[]>>> METHOD_RESOLVER_CACHE;
-  private static final WeakHashMap<Member, WeakReference<Class[]>> METHOD_PARMTYPES_CACHE;
-
-  static {
-    READ_PROPERTY_RESOLVER_CACHE = (new WeakHashMap<Class, WeakHashMap<Integer, WeakReference<Member>>>(10));
-    WRITE_PROPERTY_RESOLVER_CACHE = (new WeakHashMap<Class, WeakHashMap<Integer, WeakReference<Member>>>(10));
-    METHOD_RESOLVER_CACHE = (new WeakHashMap<Class, WeakHashMap<Integer, WeakReference<Object[]>>>(10));
-    METHOD_PARMTYPES_CACHE = new WeakHashMap<Member, WeakReference<Class[]>>(10);
-  }
-
-
   public PropertyAccessor(char[] property, Object ctx) {
     this.property = property;
     this.length = end = property.length;
@@ -347,10 +334,11 @@ public class PropertyAccessor {
 
       String tk = capture();
 
-      Member member = checkWriteCache(curr.getClass(), tk == null ? 0 : tk.hashCode());
+      Class valueType = value != null ? value.getClass() : null;
+      Member member = MemberCache.getWriteMember(curr.getClass(), tk, valueType);
       if (member == null) {
-        addWriteCache(curr.getClass(), tk.hashCode(),
-            (member = value != null ? getFieldOrWriteAccessor(curr.getClass(), tk, value.getClass()) : getFieldOrWriteAccessor(curr.getClass(), tk)));
+        MemberCache.putWriteMember(curr.getClass(), tk, valueType,
+            (member = value != null ? getFieldOrWriteAccessor(curr.getClass(), tk, valueType) : getFieldOrWriteAccessor(curr.getClass(), tk)));
       }
 
       if (member instanceof Method) {
@@ -468,93 +456,27 @@ public class PropertyAccessor {
   }
 
   public static void clearPropertyResolverCache() {
-    READ_PROPERTY_RESOLVER_CACHE.clear();
-    WRITE_PROPERTY_RESOLVER_CACHE.clear();
-    METHOD_RESOLVER_CACHE.clear();
+    MemberCache.clear();
   }
 
+  /**
+   * Prints the sizes of the member caches to standard output.
+   * @deprecated use {@link #getCacheSizes()}
+   */
+  @Deprecated
   public static void reportCacheSizes() {
-    System.out.println("read property cache: " + READ_PROPERTY_RESOLVER_CACHE.size());
-    for (Class cls : READ_PROPERTY_RESOLVER_CACHE.keySet()) {
-      System.out.println(" [" + cls.getName() + "]: " + READ_PROPERTY_RESOLVER_CACHE.get(cls).size() + " entries.");
-    }
-    System.out.println("write property cache: " + WRITE_PROPERTY_RESOLVER_CACHE.size());
-    for (Class cls : WRITE_PROPERTY_RESOLVER_CACHE.keySet()) {
-      System.out.println(" [" + cls.getName() + "]: " + WRITE_PROPERTY_RESOLVER_CACHE.get(cls).size() + " entries.");
-    }
-    System.out.println("method cache: " + METHOD_RESOLVER_CACHE.size());
-    for (Class cls : METHOD_RESOLVER_CACHE.keySet()) {
-      System.out.println(" [" + cls.getName() + "]: " + METHOD_RESOLVER_CACHE.get(cls).size() + " entries.");
-    }
+    System.out.println(getCacheSizes());
   }
 
-  private static void addReadCache(Class cls, Integer property, Member member) {
-    synchronized (READ_PROPERTY_RESOLVER_CACHE) {
-      WeakHashMap<Integer, WeakReference<Member>> nestedMap = READ_PROPERTY_RESOLVER_CACHE.get(cls);
-
-      if (nestedMap == null) {
-        READ_PROPERTY_RESOLVER_CACHE.put(cls, nestedMap = new WeakHashMap<Integer, WeakReference<Member>>());
-      }
-
-      nestedMap.put(property, new WeakReference<Member>(member));
-    }
-  }
-
-  private static Member checkReadCache(Class cls, Integer property) {
-    WeakHashMap<Integer, WeakReference<Member>> map = READ_PROPERTY_RESOLVER_CACHE.get(cls);
-    if (map != null) {
-      WeakReference<Member> member = map.get(property);
-      if (member != null) return member.get();
-    }
-    return null;
-  }
-
-  private static void addWriteCache(Class cls, Integer property, Member member) {
-    synchronized (WRITE_PROPERTY_RESOLVER_CACHE) {
-      WeakHashMap<Integer, WeakReference<Member>> map = WRITE_PROPERTY_RESOLVER_CACHE.get(cls);
-      if (map == null) {
-        WRITE_PROPERTY_RESOLVER_CACHE.put(cls, map = new WeakHashMap<Integer, WeakReference<Member>>());
-      }
-      map.put(property, new WeakReference<Member>(member));
-    }
-  }
-
-  private static Member checkWriteCache(Class cls, Integer property) {
-    Map<Integer, WeakReference<Member>> map = WRITE_PROPERTY_RESOLVER_CACHE.get(cls);
-    if (map != null) {
-      WeakReference<Member> member = map.get(property);
-      if (member != null) return member.get();
-    }
-    return null;
+  /**
+   * @return a summary of the sizes of the member caches; see {@link MemberCache#getStatistics()}
+   */
+  public static String getCacheSizes() {
+    return MemberCache.getStatistics();
   }
 
   public static Class[] checkParmTypesCache(Method member) {
-    WeakReference<Class[]> pt = METHOD_PARMTYPES_CACHE.get(member);
-    Class[] ret;
-    if (pt == null || (ret = pt.get()) == null) {
-      METHOD_PARMTYPES_CACHE.put(member, pt = new WeakReference<Class[]>(ret = member.getParameterTypes()));
-    }
-    return ret;
-  }
-
-
-  private static void addMethodCache(Class cls, Integer property, Method member) {
-    synchronized (METHOD_RESOLVER_CACHE) {
-      WeakHashMap<Integer, WeakReference<Object[]>> map = METHOD_RESOLVER_CACHE.get(cls);
-      if (map == null) {
-        METHOD_RESOLVER_CACHE.put(cls, map = new WeakHashMap<Integer, WeakReference<Object[]>>());
-      }
-      map.put(property, new WeakReference<Object[]>(new Object[]{member, member.getParameterTypes()}));
-    }
-  }
-
-  private static Object[] checkMethodCache(Class cls, Integer property) {
-    Map<Integer, WeakReference<Object[]>> map = METHOD_RESOLVER_CACHE.get(cls);
-    if (map != null) {
-      WeakReference<Object[]> ref = map.get(property);
-      if (ref != null) return ref.get();
-    }
-    return null;
+    return MemberCache.getParameterTypes(member);
   }
 
   private Object getBeanPropertyAO(Object ctx, String property)
@@ -599,10 +521,10 @@ public class PropertyAccessor {
       }
 
 
-      Member member = checkReadCache(cls, property.hashCode());
+      Member member = MemberCache.getReadMember(cls, property);
 
       if (member == null) {
-        addReadCache(cls, property.hashCode(), member = getFieldOrAccessor(cls, property));
+        MemberCache.putReadMember(cls, property, member = getFieldOrAccessor(cls, property));
       }
 
       if (member instanceof Method) {
@@ -916,7 +838,12 @@ public class PropertyAccessor {
     /**
      * Check to see if we have already cached this method;
      */
-    Object[] cache = checkMethodCache(cls, createSignature(name, tk));
+    Class[] argTypes = new Class[args.length];
+    for (int i = 0; i < args.length; i++) {
+      if (args[i] != null) argTypes[i] = args[i].getClass();
+    }
+
+    Object[] cache = MemberCache.getMethod(cls, name, argTypes);
 
     Method m;
     Class[] parameterTypes;
@@ -938,7 +865,7 @@ public class PropertyAccessor {
        * Try to find an instance method from the class target.
        */
       if ((m = getBestCandidate(args, name, cls, cls.getMethods(), false)) != null) {
-        addMethodCache(cls, createSignature(name, tk), m);
+        MemberCache.putMethod(cls, name, argTypes, m);
         parameterTypes = m.getParameterTypes();
       }
 
@@ -947,7 +874,7 @@ public class PropertyAccessor {
          * If we didn't find anything, maybe we're looking for the actual java.lang.Class methods.
          */
         if ((m = getBestCandidate(args, name, cls, cls.getClass().getDeclaredMethods(), false)) != null) {
-          addMethodCache(cls, createSignature(name, tk), m);
+          MemberCache.putMethod(cls, name, argTypes, m);
           parameterTypes = m.getParameterTypes();
         }
       }
@@ -984,7 +911,7 @@ public class PropertyAccessor {
       }
       catch (IllegalAccessException e) {
         try {
-          addMethodCache(cls, createSignature(name, tk), (m = getWidenedTarget(m)));
+          MemberCache.putMethod(cls, name, argTypes, (m = getWidenedTarget(m)));
 
           return m.invoke(ctx, args);
         }
@@ -1001,10 +928,6 @@ public class PropertyAccessor {
     }
   }
 
-  private static int createSignature(String name, String args) {
-    return name.hashCode() + args.hashCode();
-  }
-
   public int getCursorPosition() {
     return cursor;
   }
@@ -133,6 +133,10 @@ public class AssignmentNode extends ASTNode implements Assignment {
   }
 
 
+  public ExecutableStatement getStatement() {
+    return statement;
+  }
+
   public String getAssignmentVar() {
     return varName;
   }
@@ -137,7 +137,12 @@ public class BinaryOperation extends BooleanNode {
     n.right = right;
 
     if (n == this) {
-      if ((rType = ParseTools.__resolveType(n.right.getEgressType())) == 0) rType = -1;
+      /**
+       * Resolve the type of the new right operand from its value.  The egress type of a nested operation may be a
+       * primitive type, or only a guess (integer division yields a Double), and so need not match the type code of
+       * the value it actually produces.
+       */
+      rType = -1;
     }
   }
 
@@ -20,23 +20,74 @@ package org.mvel2.ast;
 
 import org.mvel2.CompileException;
 import org.mvel2.ParserContext;
+import org.mvel2.compiler.CompiledExpression;
+import org.mvel2.compiler.ExecutableAccessor;
 import org.mvel2.compiler.ExecutableStatement;
 import org.mvel2.integration.VariableResolverFactory;
-import org.mvel2.integration.impl.DefaultLocalVariableResolverFactory;
+import org.mvel2.integration.impl.FunctionVariableResolverFactory;
 import org.mvel2.integration.impl.ItemResolverFactory;
 
+import java.util.AbstractCollection;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 import static org.mvel2.util.CompilerTools.expectType;
+import static org.mvel2.util.CompilerTools.isSideEffectFree;
 import static org.mvel2.util.ParseTools.*;
 
+/**
+ * A projection (fold) of a collection: <tt>(expr in collection [if constraint])</tt>.
+ * <p/>
+ * Projections whose expressions are free of side effects may be evaluated lazily, as they are iterated (see
+ * {@link #setLazyProjection(boolean)}).  Those which, in addition, read nothing but the item (<tt>$</tt>) may be
+ * evaluated in parallel once the collection reaches the {@link #setParallelThreshold(int) parallel threshold}, since
+ * variable factories are not thread safe.  Both are disabled by default, but a nested projection feeding another
+ * is always iterated lazily if neither has side effects.
+ */
 public class Fold extends ASTNode {
+  private static final int PARALLELISM = Integer.getInteger("mvel2.fold.parallelism",
+      Runtime.getRuntime().availableProcessors());
+  private static final int MIN_TASK_SIZE = 64;
+
+  private static final Object NOT_LAZY = new Object();
+
+  private static final ThreadLocal<Boolean> IN_PARALLEL_TASK = new ThreadLocal<Boolean>() {
+    protected Boolean initialValue() {
+      return Boolean.FALSE;
+    }
+  };
+
+  private static volatile int parallelThreshold = Integer.getInteger("mvel2.fold.parallel_threshold", 0);
+  private static volatile boolean lazyProjection = Boolean.getBoolean("mvel2.fold.lazy");
+  private static ExecutorService parallelExecutor;
+  private static boolean defaultExecutor;
+
   private ExecutableStatement subEx;
   private ExecutableStatement dataEx;
   private ExecutableStatement constraintEx;
 
+  private boolean pure;
+  private boolean parallelizable;
+  private transient volatile Object lazyData;
+
+  private transient volatile ItemResolverFactory idleFrame;
+
+  private static final AtomicReferenceFieldUpdater<Fold, ItemResolverFactory> IDLE_FRAME
+      = AtomicReferenceFieldUpdater.newUpdater(Fold.class, ItemResolverFactory.class, "idleFrame");
+
   public Fold(char[] expr, int start, int offset, int fields, ParserContext pCtx) {
     this.expr = expr;
     this.start = start;
@@ -71,74 +122,333 @@ public class Fold extends ASTNode {
 
     expectType(dataEx = (ExecutableStatement) subCompileExpression(expr, st, cursor - st, pCtx),
         Collection.class, ((fields & COMPILE_IMMEDIATE) != 0));
+
+    pure = isSideEffectFree(subEx) && (constraintEx == null || isSideEffectFree(constraintEx));
+    parallelizable = pure && isSideEffectFree(subEx, itemOnly())
+        && (constraintEx == null || isSideEffectFree(constraintEx, itemOnly()));
   }
 
   public Object getReducedValueAccelerated(Object ctx, Object thisValue, VariableResolverFactory factory) {
-    ItemResolverFactory.ItemResolver itemR = new ItemResolverFactory.ItemResolver("$");
-    ItemResolverFactory itemFactory = new ItemResolverFactory(itemR, new DefaultLocalVariableResolverFactory(factory));
+    return project((Collection) getCollection(ctx, thisValue, factory), ctx, thisValue, factory);
+  }
 
-    List list;
+  public Object getReducedValue(Object ctx, Object thisValue, VariableResolverFactory factory) {
+    Object x = getCollection(ctx, thisValue, factory);
 
-    if (constraintEx != null) {
-      Collection col = ((Collection) dataEx.getValue(ctx, thisValue, factory));
-      list = new ArrayList(col.size());
+    if (!(x instanceof Collection))
+      throw new CompileException("was expecting type: Collection; but found type: "
+          + (x == null ? "null" : x.getClass().getName()), expr, start);
 
-      for (Object o : col) {
-        itemR.value = o;
-        if ((Boolean) constraintEx.getValue(ctx, thisValue, itemFactory)) {
-          list.add(subEx.getValue(o, thisValue, itemFactory));
-        }
-      }
+    return project((Collection) x, ctx, thisValue, factory);
+  }
 
+  /**
+   * A nested projection which is free of side effects, feeding a projection which is also free of side effects, is
+   * iterated lazily rather than built into an intermediate list.
+   */
+  private Object getCollection(Object ctx, Object thisValue, VariableResolverFactory factory) {
+    if (lazyData == null) {
+      Fold nested = nestedFold(dataEx);
+      lazyData = nested != null && pure && nested.pure ? nested : NOT_LAZY;
     }
-    else {
-      Collection col = ((Collection) dataEx.getValue(ctx, thisValue, factory));
-      list = new ArrayList(col.size());
-      for (Object o : col) {
-        list.add(subEx.getValue(itemR.value = o, thisValue, itemFactory));
+
+    if (lazyData == NOT_LAZY) return dataEx.getValue(ctx, thisValue, factory);
+
+    Fold nested = (Fold) lazyData;
+    Object data = nested.dataEx.getValue(ctx, thisValue, factory);
+    return data instanceof Collection ? new LazyProjection(nested, (Collection<?>) data, ctx, thisValue, factory) : data;
+  }
+
+  private Collection<Object> project(Collection<?> col, Object ctx, Object thisValue, VariableResolverFactory factory) {
+    int size = col instanceof LazyProjection ? ((LazyProjection) col).source.size() : col.size();
+    if (pure) {
+      if (lazyProjection) {
+        return new LazyProjection(this, col, ctx, thisValue, factory);
+      }
+      else if (parallelizable && parallelThreshold > 0 && size >= parallelThreshold && size >= 2 * MIN_TASK_SIZE
+          && PARALLELISM > 1 && !IN_PARALLEL_TASK.get()) {
+        return projectParallel(col.toArray(), ctx, thisValue, factory);
+      }
+    }
+
+    ItemResolverFactory itemFactory = acquireFrame(factory);
+    ItemResolverFactory.ItemResolver itemR = itemFactory.getResolver();
+
+    List<Object> list = new ArrayList<Object>(size);
+    try {
+      if (constraintEx != null) {
+        for (Object o : col) {
+          itemR.value = o;
+          if ((Boolean) constraintEx.getValue(ctx, thisValue, itemFactory)) {
+            list.add(subEx.getValue(o, thisValue, itemFactory));
+          }
+        }
       }
+      else {
+        for (Object o : col) {
+          list.add(subEx.getValue(itemR.value = o, thisValue, itemFactory));
+        }
+      }
+    }
+    finally {
+      if (itemFactory.release()) idleFrame = itemFactory;
     }
     return list;
   }
 
-  public Object getReducedValue(Object ctx, Object thisValue, VariableResolverFactory factory) {
-    ItemResolverFactory.ItemResolver itemR = new ItemResolverFactory.ItemResolver("$");
-    ItemResolverFactory itemFactory = new ItemResolverFactory(itemR, new DefaultLocalVariableResolverFactory(factory));
+  /**
+   * Takes the idle frame, if there is one, rather than allocating a new frame for every projection.  Nested and
+   * concurrent projections find no idle frame and allocate their own.
+   */
+  private ItemResolverFactory acquireFrame(VariableResolverFactory factory) {
+    ItemResolverFactory frame = IDLE_FRAME.getAndSet(this, null);
+    return frame == null ? new ItemResolverFactory("$", factory) : frame.reset(factory);
+  }
+
+  /**
+   * Projects a range of the items into the list, with a resolver factory of its own.
+   */
+  private void project(Object[] items, int from, int to, List<Object> list, Object ctx, Object thisValue,
+                       VariableResolverFactory factory) {
+    ItemResolverFactory itemFactory = new ItemResolverFactory("$", factory);
+    ItemResolverFactory.ItemResolver itemR = itemFactory.getResolver();
 
-    List list;
+    for (int i = from; i < to; i++) {
+      itemR.value = items[i];
+      if (constraintEx == null || (Boolean) constraintEx.getValue(ctx, thisValue, itemFactory)) {
+        list.add(subEx.getValue(items[i], thisValue, itemFactory));
+      }
+    }
+  }
 
-    if (constraintEx != null) {
-      Object x = dataEx.getValue(ctx, thisValue, factory);
+  /**
+   * Splits the items into one contiguous range per thread.  The calling thread projects the first range itself,
+   * starting with the first item on its own so that the tasks do not all race to optimize the accessors of the
+   * expression.  The results are joined in order.
+   */
+  private List<Object> projectParallel(final Object[] items, final Object ctx, final Object thisValue,
+                               final VariableResolverFactory factory) {
+    int tasks = Math.max(1, Math.min(PARALLELISM, items.length / MIN_TASK_SIZE));
+    ExecutorService executor = tasks > 1 ? getParallelExecutor() : null;
+    int size = (items.length + tasks - 1) / tasks;
 
-      if (!(x instanceof Collection))
-        throw new CompileException("was expecting type: Collection; but found type: "
-            + (x == null ? "null" : x.getClass().getName()), expr, start);
+    List<Object> list = new ArrayList<Object>(items.length);
+    project(items, 0, Math.min(1, items.length), list, ctx, thisValue, factory);
 
-      list = new ArrayList(((Collection) x).size());
-      for (Object o : (Collection) x) {
-        itemR.value = o;
-        if ((Boolean) constraintEx.getValue(ctx, thisValue, itemFactory)) {
-          list.add(subEx.getValue(o, thisValue, itemFactory));
+    List<Future<List<Object>>> futures = new ArrayList<Future<List<Object>>>(tasks - 1);
+    for (int i = size; i < items.length; i += size) {
+      final int from = i;
+      final int to = Math.min(items.length, i + size);
+      futures.add(executor.submit(new Callable<List<Object>>() {
+        public List<Object> call() {
+          IN_PARALLEL_TASK.set(Boolean.TRUE);
+          try {
+            List<Object> part = new ArrayList<Object>(to - from);
+            project(items, from, to, part, ctx, thisValue, factory);
+            return part;
+          }
+          finally {
+            IN_PARALLEL_TASK.set(Boolean.FALSE);
+          }
         }
+      }));
+    }
+
+    try {
+      project(items, 1, Math.min(size, items.length), list, ctx, thisValue, factory);
+      for (Future<List<Object>> f : futures) {
+        list.addAll(f.get());
+      }
+      return list;
+    }
+    catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+      if (e.getCause() instanceof Error) throw (Error) e.getCause();
+      throw new RuntimeException("projection failed", e.getCause());
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException("interrupted during projection", e);
+    }
+    finally {
+      for (Future<List<Object>> f : futures) {
+        f.cancel(true);
       }
     }
+  }
+
+  public Class getEgressType() {
+    return Collection.class;
+  }
+
+  public ExecutableStatement getDataStatement() {
+    return dataEx;
+  }
+
+  /**
+   * @return true if the projected expression and its constraint have no side effects, so that the items may be
+   *         projected in any order, on any thread.
+   */
+  public boolean isPure() {
+    return pure;
+  }
+
+  /**
+   * @return true if the projection has no side effects and reads no variables other than the item, so that it may
+   *         be evaluated in parallel without sharing the variable factory between threads.
+   */
+  public boolean isParallelizable() {
+    return parallelizable;
+  }
+
+  /**
+   * Sets the minimum size of a collection which will be projected in parallel, if the projection is
+   * {@link #isParallelizable() parallelizable}.  Zero (the default) disables parallel projection.  Note that the
+   * properties of the items are then read concurrently, so their getters must be thread safe.  May also be set with
+   * the <tt>mvel2.fold.parallel_threshold</tt> system property.
+   */
+  public static void setParallelThreshold(int threshold) {
+    parallelThreshold = threshold;
+  }
+
+  public static int getParallelThreshold() {
+    return parallelThreshold;
+  }
+
+  /**
+   * If set, projections which have no side effects return a view of the collection which evaluates each item as it
+   * is iterated.  The view is a <tt>Collection</tt>, but not a <tt>List</tt>.  May also be set with the
+   * <tt>mvel2.fold.lazy</tt> system property.
+   */
+  public static void setLazyProjection(boolean lazy) {
+    lazyProjection = lazy;
+  }
+
+  public static boolean isLazyProjection() {
+    return lazyProjection;
+  }
+
+  /**
+   * Sets the executor used for parallel projection.  By default, a pool of daemon threads, one per processor, is
+   * created when first needed (see the <tt>mvel2.fold.parallelism</tt> system property).
+   */
+  public static synchronized void setParallelExecutor(ExecutorService executor) {
+    shutdown();
+    parallelExecutor = executor;
+  }
+
+  private static synchronized ExecutorService getParallelExecutor() {
+    if (parallelExecutor == null) {
+      parallelExecutor = Executors.newFixedThreadPool(PARALLELISM, new FoldThreadFactory());
+      defaultExecutor = true;
+    }
+    return parallelExecutor;
+  }
+
+  /**
+   * Shuts down the default executor, if it was started.  An executor supplied with
+   * {@link #setParallelExecutor(ExecutorService)} is left to its owner.
+   */
+  public static synchronized void shutdown() {
+    if (defaultExecutor) {
+      parallelExecutor.shutdownNow();
+      defaultExecutor = false;
+    }
+    parallelExecutor = null;
+  }
+
+  private static Set<String> itemOnly() {
+    Set<String> defined = new HashSet<String>();
+    defined.add("$");
+    return defined;
+  }
+
+  private static Fold nestedFold(ExecutableStatement stmt) {
+    ASTNode node;
+    if (stmt instanceof ExecutableAccessor) {
+      node = ((ExecutableAccessor) stmt).getNode();
+    }
+    else if (stmt instanceof CompiledExpression && ((CompiledExpression) stmt).getFirstNode() != null
+        && ((CompiledExpression) stmt).getFirstNode().nextASTNode == null) {
+      node = ((CompiledExpression) stmt).getFirstNode();
+    }
     else {
-      Object x = dataEx.getValue(ctx, thisValue, factory);
+      return null;
+    }
 
-      if (!(x instanceof Collection))
-        throw new CompileException("was expecting type: Collection; but found type: "
-            + (x == null ? "null" : x.getClass().getName()), expr, start);
+    if (node instanceof Substatement) return nestedFold(((Substatement) node).getStatement());
+    return node instanceof Fold ? (Fold) node : null;
+  }
 
-      list = new ArrayList(((Collection) x).size());
-      for (Object o : (Collection) x) {
-        list.add(subEx.getValue(itemR.value = o, thisValue, itemFactory));
-      }
+  /**
+   * A projection which is evaluated as it is iterated.
+   */
+  private static final class LazyProjection extends AbstractCollection<Object> {
+    private final Fold fold;
+    private final Collection<?> source;
+    private final Object ctx;
+    private final Object thisValue;
+    private final VariableResolverFactory factory;
+
+    private LazyProjection(Fold fold, Collection<?> source, Object ctx, Object thisValue,
+                           VariableResolverFactory factory) {
+      this.fold = fold;
+      this.source = source;
+      this.ctx = ctx;
+      this.thisValue = thisValue;
+      this.factory = factory;
+
+      FunctionVariableResolverFactory.retain(factory);
     }
 
-    return list;
+    public Iterator<Object> iterator() {
+      final Iterator<?> iter = source.iterator();
+      final ItemResolverFactory itemFactory = new ItemResolverFactory("$", factory);
+      final ItemResolverFactory.ItemResolver itemR = itemFactory.getResolver();
+
+      return new Iterator<Object>() {
+        private boolean ready;
+        private Object next;
+
+        public boolean hasNext() {
+          while (!ready && iter.hasNext()) {
+            Object o = itemR.value = iter.next();
+            if (fold.constraintEx == null || (Boolean) fold.constraintEx.getValue(ctx, thisValue, itemFactory)) {
+              next = fold.subEx.getValue(o, thisValue, itemFactory);
+              ready = true;
+            }
+          }
+          return ready;
+        }
+
+        public Object next() {
+          if (!hasNext()) throw new NoSuchElementException();
+          ready = false;
+          return next;
+        }
+
+        public void remove() {
+          throw new UnsupportedOperationException();
+        }
+      };
+    }
+
+    public int size() {
+      if (fold.constraintEx == null) return source.size();
+
+      int size = 0;
+      for (Iterator<Object> i = iterator(); i.hasNext(); i.next()) size++;
+      return size;
+    }
   }
 
-  public Class getEgressType() {
-    return Collection.class;
+  private static class FoldThreadFactory implements ThreadFactory {
+    private final AtomicInteger count = new AtomicInteger();
+
+    public Thread newThread(Runnable r) {
+      Thread thread = new Thread(r, "MVEL projection " + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
   }
 }
@@ -23,11 +23,13 @@ import org.mvel2.MVEL;
 import org.mvel2.ParserContext;
 import org.mvel2.compiler.ExecutableStatement;
 import org.mvel2.integration.VariableResolverFactory;
-import org.mvel2.integration.impl.DefaultLocalVariableResolverFactory;
 import org.mvel2.integration.impl.ItemResolverFactory;
 import org.mvel2.util.ParseTools;
 
-import java.lang.reflect.Array;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 import static org.mvel2.util.ParseTools.*;
 
@@ -44,9 +46,23 @@ public class ForEachNode extends BlockNode {
   private static final int ARRAY = 1;
   private static final int CHARSEQUENCE = 2;
   private static final int INTEGER = 3;
+  private static final int LIST = 4;
+  private static final int INT_ARRAY = 5;
+  private static final int LONG_ARRAY = 6;
+  private static final int DOUBLE_ARRAY = 7;
+  private static final int FLOAT_ARRAY = 8;
+  private static final int SHORT_ARRAY = 9;
+  private static final int BYTE_ARRAY = 10;
+  private static final int CHAR_ARRAY = 11;
+  private static final int BOOLEAN_ARRAY = 12;
 
   private int type = -1;
 
+  private transient volatile ItemResolverFactory idleFrame;
+
+  private static final AtomicReferenceFieldUpdater<ForEachNode, ItemResolverFactory> IDLE_FRAME
+      = AtomicReferenceFieldUpdater.newUpdater(ForEachNode.class, ItemResolverFactory.class, "idleFrame");
+
   public ForEachNode(char[] expr, int start, int offset, int blockStart, int blockOffset, int fields, ParserContext pCtx) {
 
 
@@ -72,33 +88,147 @@ public class ForEachNode extends BlockNode {
   }
 
   public Object getReducedValueAccelerated(Object ctx, Object thisValue, VariableResolverFactory factory) {
-    ItemResolverFactory.ItemResolver itemR = new ItemResolverFactory.ItemResolver(item);
-    ItemResolverFactory itemFactory = new ItemResolverFactory(itemR, new DefaultLocalVariableResolverFactory(factory));
-
     Object iterCond = condition.getValue(ctx, thisValue, factory);
 
-    if (type == -1) {
-      determineIterType(iterCond.getClass());
+    /**
+     * The iteration strategy is chosen on the first execution and kept for as long as the value being iterated is
+     * of a compatible type.
+     */
+    int type = this.type;
+    if (!isIterType(type, iterCond)) {
+      this.type = type = determineIterType(iterCond);
+    }
+
+    return iterate(type, iterCond, ctx, thisValue, factory);
+  }
+
+  public Object getReducedValue(Object ctx, Object thisValue, VariableResolverFactory factory) {
+    Object iterCond = MVEL.eval(expr, start, offset, thisValue, factory);
+
+    if (itemType != null && itemType.isArray())
+      enforceTypeSafety(itemType, getBaseComponentType(iterCond.getClass()));
+
+    this.compiledBlock = (ExecutableStatement) subCompileExpression(expr, blockStart, blockOffset);
+
+    return iterate(determineIterType(iterCond), iterCond, ctx, thisValue, factory);
+  }
+
+  private Object iterate(int type, Object iterCond, Object ctx, Object thisValue, VariableResolverFactory factory) {
+    ItemResolverFactory itemFactory = acquireFrame(factory);
+    try {
+      return loop(type, iterCond, ctx, thisValue, itemFactory);
     }
+    finally {
+      if (itemFactory.release()) idleFrame = itemFactory;
+    }
+  }
+
+  /**
+   * Takes the idle loop frame, if there is one, rather than allocating a new frame for every execution of the loop.
+   * Nested and concurrent executions find no idle frame and allocate their own.
+   */
+  private ItemResolverFactory acquireFrame(VariableResolverFactory factory) {
+    ItemResolverFactory frame = IDLE_FRAME.getAndSet(this, null);
+    return frame == null ? new ItemResolverFactory(item, factory) : frame.reset(factory);
+  }
+
+  private Object loop(int type, Object iterCond, Object ctx, Object thisValue, ItemResolverFactory itemFactory) {
+    ItemResolverFactory.ItemResolver itemR = itemFactory.getResolver();
 
     Object v;
     switch (type) {
-      case ARRAY:
-        int len = Array.getLength(iterCond);
-        for (int i = 0; i < len; i++) {
-          itemR.setValue(Array.get(iterCond, i));
+      case ARRAY: {
+        Object[] a = (Object[]) iterCond;
+        for (int i = 0; i < a.length; i++) {
+          itemR.setValue(a[i]);
           v = compiledBlock.getValue(ctx, thisValue, itemFactory);
           if (itemFactory.tiltFlag()) return v;
         }
         break;
-      case CHARSEQUENCE:
-        for (Object o : iterCond.toString().toCharArray()) {
-          itemR.setValue(o);
+      }
+      case INT_ARRAY: {
+        int[] a = (int[]) iterCond;
+        for (int i = 0; i < a.length; i++) {
+          itemR.setValue(a[i]);
           v = compiledBlock.getValue(ctx, thisValue, itemFactory);
           if (itemFactory.tiltFlag()) return v;
         }
         break;
-      case INTEGER:
+      }
+      case LONG_ARRAY: {
+        long[] a = (long[]) iterCond;
+        for (int i = 0; i < a.length; i++) {
+          itemR.setValue(a[i]);
+          v = compiledBlock.getValue(ctx, thisValue, itemFactory);
+          if (itemFactory.tiltFlag()) return v;
+        }
+        break;
+      }
+      case DOUBLE_ARRAY: {
+        double[] a = (double[]) iterCond;
+        for (int i = 0; i < a.length; i++) {
+          itemR.setValue(a[i]);
+          v = compiledBlock.getValue(ctx, thisValue, itemFactory);
+          if (itemFactory.tiltFlag()) return v;
+        }
+        break;
+      }
+      case FLOAT_ARRAY: {
+        float[] a = (float[]) iterCond;
+        for (int i = 0; i < a.length; i++) {
+          itemR.setValue(a[i]);
+          v = compiledBlock.getValue(ctx, thisValue, itemFactory);
+          if (itemFactory.tiltFlag()) return v;
+        }
+        break;
+      }
+      case SHORT_ARRAY: {
+        short[] a = (short[]) iterCond;
+        for (int i = 0; i < a.length; i++) {
+          itemR.setValue(a[i]);
+          v = compiledBlock.getValue(ctx, thisValue, itemFactory);
+          if (itemFactory.tiltFlag()) return v;
+        }
+        break;
+      }
+      case BYTE_ARRAY: {
+        byte[] a = (byte[]) iterCond;
+        for (int i = 0; i < a.length; i++) {
+          itemR.setValue(a[i]);
+          v = compiledBlock.getValue(ctx, thisValue, itemFactory);
+          if (itemFactory.tiltFlag()) return v;
+        }
+        break;
+      }
+      case CHAR_ARRAY: {
+        char[] a = (char[]) iterCond;
+        for (int i = 0; i < a.length; i++) {
+          itemR.setValue(a[i]);
+          v = compiledBlock.getValue(ctx, thisValue, itemFactory);
+          if (itemFactory.tiltFlag()) return v;
+        }
+        break;
+      }
+      case BOOLEAN_ARRAY: {
+        boolean[] a = (boolean[]) iterCond;
+        for (int i = 0; i < a.length; i++) {
+          itemR.setValue(a[i]);
+          v = compiledBlock.getValue(ctx, thisValue, itemFactory);
+          if (itemFactory.tiltFlag()) return v;
+        }
+        break;
+      }
+      case CHARSEQUENCE: {
+        CharSequence cs = (CharSequence) iterCond;
+        int len = cs.length();
+        for (int i = 0; i < len; i++) {
+          itemR.setValue(cs.charAt(i));
+          v = compiledBlock.getValue(ctx, thisValue, itemFactory);
+          if (itemFactory.tiltFlag()) return v;
+        }
+        break;
+      }
+      case INTEGER: {
         int max = (Integer) iterCond + 1;
         for (int i = 1; i != max; i++) {
           itemR.setValue(i);
@@ -106,70 +236,29 @@ public class ForEachNode extends BlockNode {
           if (itemFactory.tiltFlag()) return v;
         }
         break;
-
+      }
+      case LIST: {
+        List list = (List) iterCond;
+        int len = list.size();
+        for (int i = 0; i < len; i++) {
+          itemR.setValue(list.get(i));
+          v = compiledBlock.getValue(ctx, thisValue, itemFactory);
+          if (itemFactory.tiltFlag()) return v;
+        }
+        break;
+      }
       case ITERABLE:
         for (Object o : (Iterable) iterCond) {
           itemR.setValue(o);
           v = compiledBlock.getValue(ctx, thisValue, itemFactory);
           if (itemFactory.tiltFlag()) return v;
         }
-
         break;
     }
 
     return null;
   }
 
-  public Object getReducedValue(Object ctx, Object thisValue, VariableResolverFactory factory) {
-    ItemResolverFactory.ItemResolver itemR = new ItemResolverFactory.ItemResolver(item);
-    ItemResolverFactory itemFactory = new ItemResolverFactory(itemR, new DefaultLocalVariableResolverFactory(factory));
-
-    Object iterCond = MVEL.eval(expr, start, offset, thisValue, factory);
-
-    if (itemType != null && itemType.isArray())
-      enforceTypeSafety(itemType, getBaseComponentType(iterCond.getClass()));
-
-    this.compiledBlock = (ExecutableStatement) subCompileExpression(expr, blockStart, blockOffset);
-
-    Object v;
-    if (iterCond instanceof Iterable) {
-      for (Object o : (Iterable) iterCond) {
-        itemR.setValue(o);
-        v = compiledBlock.getValue(ctx, thisValue, itemFactory);
-        if (itemFactory.tiltFlag()) return v;
-      }
-    }
-    else if (iterCond != null && iterCond.getClass().isArray()) {
-      int len = Array.getLength(iterCond);
-      for (int i = 0; i < len; i++) {
-        itemR.setValue(Array.get(iterCond, i));
-        v = compiledBlock.getValue(ctx, thisValue, itemFactory);
-        if (itemFactory.tiltFlag()) return v;
-      }
-    }
-    else if (iterCond instanceof CharSequence) {
-      for (Object o : iterCond.toString().toCharArray()) {
-        itemR.setValue(o);
-        v = compiledBlock.getValue(ctx, thisValue, itemFactory);
-        if (itemFactory.tiltFlag()) return v;
-      }
-    }
-    else if (iterCond instanceof Integer) {
-      int max = (Integer) iterCond + 1;
-      for (int i = 1; i != max; i++) {
-        itemR.setValue(i);
-        v = compiledBlock.getValue(ctx, thisValue, itemFactory);
-        if (itemFactory.tiltFlag()) return v;
-      }
-    }
-    else {
-      throw new CompileException("non-iterable type: "
-          + (iterCond != null ? iterCond.getClass().getName() : "null"), expr, start);
-    }
-
-    return null;
-  }
-
   private void handleCond(char[] condition, int start, int offset, int fields, ParserContext pCtx) {
     int cursor = start;
     int end = start + offset;
@@ -203,29 +292,90 @@ public class ForEachNode extends BlockNode {
         enforceTypeSafety(itemType, getBaseComponentType(this.condition.getKnownEgressType()));
       }
       else if (pCtx.isStrongTyping()) {
-        determineIterType(egress);
+        type = determineIterType(egress);
       }
     }
   }
 
-  private void determineIterType(Class t) {
-    if (Iterable.class.isAssignableFrom(t)) {
-      type = ITERABLE;
+  private int determineIterType(Object iterCond) {
+    if (iterCond == null) {
+      throw new CompileException("non-iterable type: null", expr, start);
+    }
+    return determineIterType(iterCond.getClass());
+  }
+
+  private int determineIterType(Class t) {
+    if (List.class.isAssignableFrom(t) && RandomAccess.class.isAssignableFrom(t)
+        && !CopyOnWriteArrayList.class.isAssignableFrom(t)) {
+      return LIST;
+    }
+    else if (Iterable.class.isAssignableFrom(t)) {
+      return ITERABLE;
     }
     else if (t.isArray()) {
-      type = ARRAY;
+      Class c = t.getComponentType();
+      if (!c.isPrimitive()) return ARRAY;
+      else if (c == int.class) return INT_ARRAY;
+      else if (c == long.class) return LONG_ARRAY;
+      else if (c == double.class) return DOUBLE_ARRAY;
+      else if (c == float.class) return FLOAT_ARRAY;
+      else if (c == short.class) return SHORT_ARRAY;
+      else if (c == byte.class) return BYTE_ARRAY;
+      else if (c == char.class) return CHAR_ARRAY;
+      else return BOOLEAN_ARRAY;
     }
     else if (CharSequence.class.isAssignableFrom(t)) {
-      type = CHARSEQUENCE;
+      return CHARSEQUENCE;
     }
     else if (Integer.class.isAssignableFrom(t)) {
-      type = INTEGER;
+      return INTEGER;
     }
     else {
       throw new CompileException("non-iterable type: " + t.getName(), expr, start);
     }
   }
 
+  /**
+   * Lists are iterated by index only if they are random access.  A copy-on-write list is iterated with its iterator,
+   * so that it is iterated over a snapshot.
+   */
+  private static boolean isIndexed(Object o) {
+    return o instanceof List && o instanceof RandomAccess && !(o instanceof CopyOnWriteArrayList);
+  }
+
+  private static boolean isIterType(int type, Object o) {
+    switch (type) {
+      case LIST:
+        return isIndexed(o);
+      case ITERABLE:
+        return o instanceof Iterable && !isIndexed(o);
+      case ARRAY:
+        return o instanceof Object[];
+      case INT_ARRAY:
+        return o instanceof int[];
+      case LONG_ARRAY:
+        return o instanceof long[];
+      case DOUBLE_ARRAY:
+        return o instanceof double[];
+      case FLOAT_ARRAY:
+        return o instanceof float[];
+      case SHORT_ARRAY:
+        return o instanceof short[];
+      case BYTE_ARRAY:
+        return o instanceof byte[];
+      case CHAR_ARRAY:
+        return o instanceof char[];
+      case BOOLEAN_ARRAY:
+        return o instanceof boolean[];
+      case CHARSEQUENCE:
+        return o instanceof CharSequence && !(o instanceof Iterable);
+      case INTEGER:
+        return o instanceof Integer;
+      default:
+        return false;
+    }
+  }
+
   private void enforceTypeSafety(Class required, Class actual) {
     if (!required.isAssignableFrom(actual) && !DataConversion.canConvert(actual, required)) {
       throw new CompileException("type mismatch in foreach: expected: "
@@ -19,6 +19,7 @@
 package org.mvel2.ast;
 
 import org.mvel2.CompileException;
+import org.mvel2.ErrorDetail;
 import org.mvel2.ParserContext;
 import org.mvel2.compiler.AbstractParser;
 import org.mvel2.compiler.ExecutableStatement;
@@ -27,9 +28,18 @@ import org.mvel2.integration.VariableResolver;
 import org.mvel2.integration.VariableResolverFactory;
 import org.mvel2.integration.impl.DefaultLocalVariableResolverFactory;
 import org.mvel2.integration.impl.FunctionVariableResolverFactory;
+import org.mvel2.util.BoundedCache;
 
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
+import static org.mvel2.util.CompilerTools.isSideEffectFree;
+import static org.mvel2.util.ParseTools.isPrimitiveWrapper;
 import static org.mvel2.util.ParseTools.parseParameterDefList;
 import static org.mvel2.util.ParseTools.subCompileExpression;
 
@@ -43,6 +53,16 @@ public class Function extends ASTNode implements Safe {
   protected int parmNum;
   protected boolean cMode = false;
 
+  private transient volatile FunctionVariableResolverFactory idleFrame;
+
+  private int cacheSize;
+  private transient volatile BoundedCache<Arguments, Object> resultCache;
+
+  private static final Object NULL_RESULT = new Object();
+
+  private static final AtomicReferenceFieldUpdater<Function, FunctionVariableResolverFactory> IDLE_FRAME
+      = AtomicReferenceFieldUpdater.newUpdater(Function.class, FunctionVariableResolverFactory.class, "idleFrame");
+
   public Function(String name, char[] expr, int start, int offset, int blockStart, int blockOffset,
                   int fields, ParserContext pCtx) {
     if ((this.name = name) == null || name.length() == 0) {
@@ -108,6 +128,21 @@ public class Function extends ASTNode implements Safe {
 
     this.egressType = this.compiledBlock.getKnownEgressType();
 
+    if (pCtx.getParserConfiguration().getFunctionCacheSize() > 0) {
+      Set<String> defined = new HashSet<String>();
+      for (int p = 0; p < parmNum; p++) {
+        defined.add(parameters[p]);
+      }
+
+      if (isSideEffectFree(compiledBlock, defined)) {
+        cacheSize = pCtx.getParserConfiguration().getFunctionCacheSize();
+      }
+      else {
+        pCtx.addError(new ErrorDetail(expr, start, false, "function " + (this.name == null ? "(anonymous)" : this.name)
+            + " may have side effects, or read variables other than its parameters, and will not be memoized"));
+      }
+    }
+
     pCtx.addVariable(name, Function.class);
   }
 
@@ -130,13 +165,40 @@ public class Function extends ASTNode implements Safe {
   }
 
   public Object call(Object ctx, Object thisValue, VariableResolverFactory factory, Object[] parms) {
+    if (cacheSize == 0 || !isImmutable(parms)) return invoke(ctx, thisValue, factory, parms);
+
+    BoundedCache<Arguments, Object> cache = getResultCache();
+    Arguments key = new Arguments(parms);
+    Object result = cache.get(key);
+    if (result == null) {
+      result = invoke(ctx, thisValue, factory, parms);
+      result = cache.putIfAbsent(key, result == null ? NULL_RESULT : result);
+    }
+    return result == NULL_RESULT ? null : result;
+  }
+
+  /**
+   * Only calls whose arguments are all immutable values are memoized, since a function may read the properties of
+   * its arguments, and a mutable argument may have changed since its result was cached.
+   */
+  private static boolean isImmutable(Object[] parms) {
+    if (parms != null) {
+      for (Object o : parms) {
+        if (o != null && !(o instanceof String) && !isPrimitiveWrapper(o.getClass()) && !(o instanceof Enum)
+            && !(o instanceof BigDecimal) && !(o instanceof BigInteger)) return false;
+      }
+    }
+    return true;
+  }
+
+  private Object invoke(Object ctx, Object thisValue, VariableResolverFactory factory, Object[] parms) {
     if (parms != null && parms.length != 0) {
       // detect tail recursion
       if (factory instanceof FunctionVariableResolverFactory
           && ((FunctionVariableResolverFactory) factory).getIndexedVariableResolvers().length == parms.length) {
         FunctionVariableResolverFactory fvrf = (FunctionVariableResolverFactory) factory;
         if (fvrf.getFunction().equals(this)) {
-          VariableResolver[] swapVR = fvrf.getIndexedVariableResolvers();
+          VariableResolver[] swapVR = fvrf.getIndexedVariableResolvers().clone();
           fvrf.updateParameters(parms);
           try {
             return compiledBlock.getValue(ctx, thisValue, fvrf);
@@ -146,7 +208,14 @@ public class Function extends ASTNode implements Safe {
           }
         }
       }
-      return compiledBlock.getValue(thisValue, new FunctionVariableResolverFactory(this, factory, parameters, parms));
+
+      FunctionVariableResolverFactory frame = acquireFrame(factory, parms);
+      try {
+        return compiledBlock.getValue(thisValue, frame);
+      }
+      finally {
+        if (frame.release(parms.length)) idleFrame = frame;
+      }
     }
     else if (cMode) {
       return compiledBlock.getValue(thisValue, new DefaultLocalVariableResolverFactory(factory, parameters).setNoTilt(true));
@@ -157,6 +226,39 @@ public class Function extends ASTNode implements Safe {
     }
   }
 
+  /**
+   * Takes the idle frame, if there is one, rather than allocating a new frame for every call.  Recursive and
+   * concurrent calls find no idle frame and allocate their own.
+   */
+  private FunctionVariableResolverFactory acquireFrame(VariableResolverFactory factory, Object[] parms) {
+    FunctionVariableResolverFactory frame = IDLE_FRAME.getAndSet(this, null);
+    return frame == null ? new FunctionVariableResolverFactory(this, factory, parameters, parms)
+        : frame.reset(factory, parameters, parms);
+  }
+
+  /**
+   * @return true if the results of this function are cached
+   * @see org.mvel2.ParserConfiguration#setFunctionCacheSize(int)
+   */
+  public boolean isMemoized() {
+    return cacheSize != 0;
+  }
+
+  /**
+   * @return the cache of results of this function, or <tt>null</tt> if it is not memoized
+   */
+  public BoundedCache<Arguments, Object> getResultCache() {
+    if (cacheSize == 0) return null;
+
+    BoundedCache<Arguments, Object> cache = resultCache;
+    if (cache == null) {
+      synchronized (this) {
+        if ((cache = resultCache) == null) resultCache = cache = new BoundedCache<Arguments, Object>(cacheSize);
+      }
+    }
+    return cache;
+  }
+
   public String getName() {
     return name;
   }
@@ -191,5 +293,28 @@ public class Function extends ASTNode implements Safe {
   public String toString() {
     return "FunctionDef:" + (name == null ? "Anonymous" : name);
   }
+
+  /**
+   * The arguments of a call, as the key of a memoized result.  Arguments are compared with <tt>equals()</tt>, and
+   * are always immutable values.
+   */
+  public static final class Arguments {
+    private final Object[] values;
+    private final int hash;
+
+    private Arguments(Object[] values) {
+      this.values = values == null ? new Object[0] : values.clone();
+      this.hash = Arrays.hashCode(this.values);
+    }
+
+    public boolean equals(Object o) {
+      return this == o || o instanceof Arguments && hash == ((Arguments) o).hash
+          && Arrays.equals(values, ((Arguments) o).values);
+    }
+
+    public int hashCode() {
+      return hash;
+    }
+  }
 }
 
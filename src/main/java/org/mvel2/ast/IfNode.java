@@ -98,6 +98,10 @@ public class IfNode extends BlockNode implements NestedStatement {
     }
   }
 
+  public ExecutableStatement getCondition() {
+    return condition;
+  }
+
   public ExecutableStatement getNestedStatement() {
     return nestedStatement;
   }
@@ -106,6 +110,10 @@ public class IfNode extends BlockNode implements NestedStatement {
     return this.elseIf = elseIf;
   }
 
+  public IfNode getElseIf() {
+    return elseIf;
+  }
+
   public ExecutableStatement getElseBlock() {
     return elseBlock;
   }
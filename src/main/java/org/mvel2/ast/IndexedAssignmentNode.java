@@ -143,6 +143,10 @@ public class IndexedAssignmentNode extends ASTNode implements Assignment {
     return ctx;
   }
 
+  public ExecutableStatement getStatement() {
+    return statement;
+  }
+
   public String getAssignmentVar() {
     return name;
   }
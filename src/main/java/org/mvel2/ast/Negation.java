@@ -63,4 +63,8 @@ public class Negation extends ASTNode {
     return Boolean.class;
   }
 
+  public ExecutableStatement getStatement() {
+    return stmt;
+  }
+
 }
@@ -0,0 +1,52 @@
+/**
+ * MVEL 2.0
+ * Copyright (C) 2007 The Codehaus
+ * Mike Brock, Dhanji Prasanna, John Graham, Mark Proctor
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mvel2.ast;
+
+import org.mvel2.ParserContext;
+import org.mvel2.integration.VariableResolverFactory;
+
+import static org.mvel2.math.MathProcessor.doOperations;
+import static org.mvel2.math.MathProcessor.doPrimitiveOperation;
+
+/**
+ * A binary operation whose operands are both known, from their egress types, to be <tt>int</tt>, <tt>long</tt> or
+ * <tt>double</tt> values.  The operation is performed directly on primitives, only falling back to the general
+ * math processor if an operand turns out to be of some other type at runtime.
+ */
+public class PrimitiveOperation extends BinaryOperation {
+  private static final long serialVersionUID = 1L;
+
+  public PrimitiveOperation(int operation, ASTNode left, ASTNode right, ParserContext ctx) {
+    super(operation, left, right, ctx);
+  }
+
+  public static boolean isPrimitiveOperand(Class<?> type) {
+    return type == int.class || type == long.class || type == double.class
+        || type == Integer.class || type == Long.class || type == Double.class;
+  }
+
+  @Override
+  public Object getReducedValueAccelerated(Object ctx, Object thisValue, VariableResolverFactory factory) {
+    Object val1 = left.getReducedValueAccelerated(ctx, thisValue, factory);
+    Object val2 = right.getReducedValueAccelerated(ctx, thisValue, factory);
+
+    Object result = doPrimitiveOperation(val1, getOperation(), val2);
+    return result != null ? result : doOperations(val1, getOperation(), val2);
+  }
+}
@@ -22,6 +22,7 @@ import org.mvel2.ParserContext;
 import org.mvel2.compiler.ExecutableLiteral;
 import org.mvel2.compiler.ExecutableStatement;
 import org.mvel2.integration.VariableResolverFactory;
+import org.mvel2.util.PatternCache;
 
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
@@ -64,7 +65,7 @@ public class RegExMatch extends ASTNode {
 
   public Object getReducedValueAccelerated(Object ctx, Object thisValue, VariableResolverFactory factory) {
     if (p == null) {
-      return compile(valueOf(patternStmt.getValue(ctx, thisValue, factory))).matcher(valueOf(stmt.getValue(ctx, thisValue, factory))).matches();
+      return PatternCache.matches(patternStmt.getValue(ctx, thisValue, factory), stmt.getValue(ctx, thisValue, factory));
     }
     else {
       return p.matcher(valueOf(stmt.getValue(ctx, thisValue, factory))).matches();
@@ -73,7 +74,7 @@ public class RegExMatch extends ASTNode {
 
   public Object getReducedValue(Object ctx, Object thisValue, VariableResolverFactory factory) {
     try {
-      return compile(valueOf(eval(expr, patternStart, patternOffset, ctx, factory))).matcher(valueOf(eval(expr, start, offset, ctx, factory))).matches();
+      return PatternCache.matches(eval(expr, patternStart, patternOffset, ctx, factory), eval(expr, start, offset, ctx, factory));
     }
     catch (PatternSyntaxException e) {
       throw new CompileException("bad regular expression", expr, patternStart, e);
@@ -19,9 +19,8 @@
 package org.mvel2.ast;
 
 import org.mvel2.integration.VariableResolverFactory;
+import org.mvel2.util.PatternCache;
 
-import static java.lang.String.valueOf;
-import static java.util.regex.Pattern.compile;
 import static org.mvel2.MVEL.eval;
 
 public class RegExMatchNode extends ASTNode {
@@ -34,12 +33,13 @@ public class RegExMatchNode extends ASTNode {
   }
 
   public Object getReducedValueAccelerated(Object ctx, Object thisValue, VariableResolverFactory factory) {
-    return compile(valueOf(patternNode.getReducedValueAccelerated(ctx, thisValue, factory))).matcher(valueOf(node.getReducedValueAccelerated(ctx, thisValue, factory))).matches();
+    return PatternCache.matches(patternNode.getReducedValueAccelerated(ctx, thisValue, factory),
+        node.getReducedValueAccelerated(ctx, thisValue, factory));
   }
 
   public Object getReducedValue(Object ctx, Object thisValue, VariableResolverFactory factory) {
-    return compile(valueOf(eval(expr, patternNode.start, patternNode.offset, ctx, factory)))
-        .matcher(valueOf(eval(expr, node.start, node.offset, ctx, factory))).matches();
+    return PatternCache.matches(eval(expr, patternNode.start, patternNode.offset, ctx, factory),
+        eval(expr, node.start, node.offset, ctx, factory));
   }
 
   public Class getEgressType() {
@@ -45,6 +45,10 @@ public class Sign extends ASTNode {
     return sign(MVEL.eval(expr, start, offset, thisValue, factory));
   }
 
+  public ExecutableStatement getStatement() {
+    return stmt;
+  }
+
   private Object sign(Object o) {
     if (o == null) return null;
     if (signer == null) {
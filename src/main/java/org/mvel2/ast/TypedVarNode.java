@@ -81,6 +81,10 @@ public class TypedVarNode extends ASTNode implements Assignment {
   }
 
 
+  public ExecutableStatement getStatement() {
+    return statement;
+  }
+
   public String getAssignmentVar() {
     return name;
   }
@@ -35,7 +35,6 @@ import java.util.WeakHashMap;
 import static java.lang.Boolean.FALSE;
 import static java.lang.Boolean.TRUE;
 import static java.lang.Double.parseDouble;
-import static java.lang.Runtime.getRuntime;
 import static java.lang.System.getProperty;
 import static java.lang.Thread.currentThread;
 import static org.mvel2.Operator.*;
@@ -87,7 +86,7 @@ public class AbstractParser implements Parser, Serializable {
   protected ExecutionStack stk;
   protected ExecutionStack splitAccumulator = new ExecutionStack();
 
-  protected static ThreadLocal<ParserContext> parserContext;
+  protected static final ThreadLocal<ParserContext> parserContext = new ThreadLocal<ParserContext>();
   protected ParserContext pCtx;
   protected ExecutionStack dStack;
   protected Object ctx;
@@ -2083,7 +2082,7 @@ public class AbstractParser implements Parser, Serializable {
   }
 
   protected ParserContext getParserContext() {
-    if (parserContext == null || parserContext.get() == null) {
+    if (parserContext.get() == null) {
       newContext();
     }
     return parserContext.get();
@@ -2121,27 +2120,27 @@ public class AbstractParser implements Parser, Serializable {
   }
 
   public static ParserContext contextControl(int operation, ParserContext pCtx, AbstractParser parser) {
-    synchronized (getRuntime()) {
-      if (parserContext == null) parserContext = new ThreadLocal<ParserContext>();
-
-      switch (operation) {
-        case SET:
-          pCtx.setRootParser(parser);
-          parserContext.set(pCtx);
-          return pCtx;
-
-        case REMOVE:
-          parserContext.set(null);
-          return null;
-
-        case GET_OR_CREATE:
-          if (parserContext.get() == null) {
-            parserContext.set(new ParserContext(parser));
-          }
+    /**
+     * The context is only ever visible to the current thread, so no locking is required: expressions can be
+     * compiled on many threads at once.
+     */
+    switch (operation) {
+      case SET:
+        pCtx.setRootParser(parser);
+        parserContext.set(pCtx);
+        return pCtx;
+
+      case REMOVE:
+        parserContext.remove();
+        return null;
 
-        case GET:
-          return parserContext.get();
-      }
+      case GET_OR_CREATE:
+        if (parserContext.get() == null) {
+          parserContext.set(new ParserContext(parser));
+        }
+
+      case GET:
+        return parserContext.get();
     }
 
     return null;
@@ -2466,8 +2465,7 @@ public class AbstractParser implements Parser, Serializable {
           break;
 
         case REGEX:
-          stk.push(java.util.regex.Pattern.compile(java.lang.String.valueOf(stk.pop()))
-                  .matcher(java.lang.String.valueOf(stk.pop())).matches());
+          stk.push(org.mvel2.util.PatternCache.matches(stk.pop(), stk.pop()));
           break;
 
         case INSTANCEOF:
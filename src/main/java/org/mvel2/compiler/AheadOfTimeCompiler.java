@@ -0,0 +1,311 @@
+/**
+ * MVEL 2.0
+ * Copyright (C) 2007 The Codehaus
+ * Mike Brock, Dhanji Prasanna, John Graham, Mark Proctor
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mvel2.compiler;
+
+import org.mvel2.MVEL;
+import org.mvel2.ParserContext;
+import org.mvel2.optimizers.impl.asm.ASMStatementCompiler;
+import org.mvel2.templates.ASMTemplateCompiler;
+import org.mvel2.templates.TemplateCompiler;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.mvel2.util.ParseTools.findClass;
+import static org.mvel2.util.ParseTools.loadFromFile;
+
+/**
+ * Compiles scripts and templates into classes at build time, so that they are loaded from the classpath like any
+ * other class, rather than being compiled, and having bytecode generated for them, when the application runs.
+ * <p/>
+ * Scripts (<tt>.mvel</tt> files) are compiled with {@link ASMStatementCompiler#compileAheadOfTime} into classes
+ * implementing {@link ExecutableStatement}, and templates (<tt>.mv</tt> files) with
+ * {@link ASMTemplateCompiler#compileAheadOfTime} into subclasses of
+ * {@link org.mvel2.templates.CompiledTemplate}.  Each class is named after its file
+ * (<tt>order-total.mvel</tt> becomes <tt>OrderTotal</tt>), in a package named after the directory it was found in,
+ * relative to the source directory and the base package:
+ * <pre><code>
+ * java org.mvel2.compiler.AheadOfTimeCompiler -d target/classes -p com.acme.rules src/main/mvel
+ * <p/>
+ * Object total = MVEL.executeExpression(new com.acme.rules.OrderTotal(), vars);
+ * String text = (String) TemplateRuntime.execute(new com.acme.rules.Invoice(), vars);
+ * </code></pre>
+ * The types of inputs are declared with <tt>-i type name</tt> for every file, or at the top of a file: in line
+ * comments at the start of a script, or in an <tt>@comment{}</tt> block at the start of a template:
+ * <pre><code>
+ * // @input int quantity
+ * // @input double price
+ * quantity * price
+ * </code></pre>
+ * Scripts consisting of a single arithmetic or boolean expression over typed primitive inputs are compiled to
+ * bytecode, as described for {@link ASMStatementCompiler}; any other script is run by the interpreter, which may
+ * still generate accessors at runtime unless the JIT is disabled with <tt>-Dmvel2.disable.jit=true</tt>.
+ * <p/>
+ * The <tt>aot</tt> profile of the MVEL build runs the compiler over <tt>src/main/mvel</tt>; other builds can run
+ * this class in the same way, with the <tt>exec-maven-plugin</tt>.
+ */
+public class AheadOfTimeCompiler {
+  public static final String SCRIPT_EXTENSION = ".mvel";
+  public static final String TEMPLATE_EXTENSION = ".mv";
+
+  private static final Pattern SCRIPT_HEADER = Pattern.compile("\\A(\\s*//[^\\n]*\\n)+");
+  private static final Pattern TEMPLATE_HEADER = Pattern.compile("\\A\\s*@comment\\{[^}]*\\}");
+  private static final Pattern INPUT = Pattern.compile("@input\\s+([\\w.$]+)\\s+(\\w+)");
+
+  private static final Map<String, Class<?>> PRIMITIVES = new HashMap<String, Class<?>>();
+
+  static {
+    for (Class<?> c : new Class<?>[]{boolean.class, byte.class, char.class, short.class, int.class, long.class,
+        float.class, double.class}) {
+      PRIMITIVES.put(c.getName(), c);
+    }
+  }
+
+  private File outputDirectory = new File(".");
+  private String packageName;
+  private String encoding;
+  private final Map<String, Class<?>> inputs = new LinkedHashMap<String, Class<?>>();
+
+  public File getOutputDirectory() {
+    return outputDirectory;
+  }
+
+  public void setOutputDirectory(File outputDirectory) {
+    this.outputDirectory = outputDirectory;
+  }
+
+  public String getPackageName() {
+    return packageName;
+  }
+
+  /**
+   * @param packageName the package of classes compiled from files at the top of a source directory
+   */
+  public void setPackageName(String packageName) {
+    this.packageName = packageName;
+  }
+
+  public void setEncoding(String encoding) {
+    this.encoding = encoding;
+  }
+
+  /**
+   * Declares an input common to every file compiled.
+   */
+  public void addInput(String name, Class<?> type) {
+    inputs.put(name, type);
+  }
+
+  /**
+   * Compiles a file, or every script and template in a directory and its subdirectories, and writes the generated
+   * classes and resources to the output directory.
+   *
+   * @return the names of the classes compiled
+   */
+  public List<String> compile(File source) throws IOException {
+    List<String> compiled = new ArrayList<String>();
+    if (source.isDirectory()) {
+      compileDirectory(source, packageName, compiled);
+    }
+    else {
+      compiled.add(compileFile(source, className(packageName, source)));
+    }
+    return compiled;
+  }
+
+  private void compileDirectory(File dir, String pkg, List<String> compiled) throws IOException {
+    File[] files = dir.listFiles();
+    if (files == null) return;
+
+    Arrays.sort(files);
+    for (File file : files) {
+      if (file.isDirectory()) {
+        compileDirectory(file, qualify(pkg, identifier(file.getName(), false)), compiled);
+      }
+      else if (file.getName().endsWith(SCRIPT_EXTENSION) || file.getName().endsWith(TEMPLATE_EXTENSION)) {
+        compiled.add(compileFile(file, className(pkg, file)));
+      }
+    }
+  }
+
+  private String compileFile(File file, String className) throws IOException {
+    String source = new String(loadFromFile(file, encoding));
+    try {
+      write(file.getName().endsWith(TEMPLATE_EXTENSION) ? compileTemplate(className, source)
+          : compileScript(className, source));
+    }
+    catch (RuntimeException e) {
+      throw new RuntimeException("unable to compile " + file, e);
+    }
+    return className;
+  }
+
+  /**
+   * Compiles a script.
+   *
+   * @return the generated class files and resources, by resource path
+   */
+  public Map<String, byte[]> compileScript(String className, String script) {
+    Map<String, byte[]> output = new LinkedHashMap<String, byte[]>();
+    ASMStatementCompiler.compileAheadOfTime(
+        MVEL.compileExpression(script, createContext(SCRIPT_HEADER.matcher(script))), className, output);
+    return output;
+  }
+
+  /**
+   * Compiles a template.
+   *
+   * @return the generated class files and resources, by resource path
+   */
+  public Map<String, byte[]> compileTemplate(String className, String template) {
+    Map<String, byte[]> output = new LinkedHashMap<String, byte[]>();
+    ASMTemplateCompiler.compileAheadOfTime(
+        TemplateCompiler.compileTemplate(template, createContext(TEMPLATE_HEADER.matcher(template))), className,
+        output);
+    return output;
+  }
+
+  /**
+   * Creates a parser context declaring the common inputs, and any declared in the header found by the matcher.
+   */
+  private ParserContext createContext(Matcher header) {
+    ParserContext ctx = new ParserContext();
+    for (Map.Entry<String, Class<?>> input : inputs.entrySet()) {
+      ctx.addInput(input.getKey(), input.getValue());
+    }
+
+    if (header.find()) {
+      Matcher m = INPUT.matcher(header.group());
+      while (m.find()) {
+        ctx.addInput(m.group(2), resolveType(m.group(1), ctx));
+      }
+    }
+    return ctx;
+  }
+
+  private static Class<?> resolveType(String name, ParserContext ctx) {
+    Class<?> type = PRIMITIVES.get(name);
+    if (type != null) return type;
+
+    try {
+      return findClass(null, name, ctx);
+    }
+    catch (ClassNotFoundException e) {
+      throw new RuntimeException("unknown input type: " + name, e);
+    }
+  }
+
+  private void write(Map<String, byte[]> output) throws IOException {
+    for (Map.Entry<String, byte[]> entry : output.entrySet()) {
+      File file = new File(outputDirectory, entry.getKey());
+      File dir = file.getParentFile();
+      if (!dir.isDirectory() && !dir.mkdirs()) throw new IOException("unable to create directory: " + dir);
+
+      OutputStream out = new FileOutputStream(file);
+      try {
+        out.write(entry.getValue());
+      }
+      finally {
+        out.close();
+      }
+    }
+  }
+
+  private static String className(String pkg, File file) {
+    String name = file.getName();
+    return qualify(pkg, identifier(name.substring(0, name.lastIndexOf('.')), true));
+  }
+
+  private static String qualify(String pkg, String name) {
+    return pkg == null || pkg.length() == 0 ? name : pkg + "." + name;
+  }
+
+  /**
+   * Converts a file name into a Java identifier: <tt>order-total</tt> becomes <tt>OrderTotal</tt> if capitalized,
+   * or <tt>order_total</tt> otherwise.
+   */
+  private static String identifier(String name, boolean capitalize) {
+    StringBuilder sb = new StringBuilder(name.length());
+    boolean upper = capitalize;
+    for (char c : name.toCharArray()) {
+      if (Character.isJavaIdentifierPart(c)) {
+        sb.append(upper ? Character.toUpperCase(c) : c);
+        upper = false;
+      }
+      else if (capitalize) {
+        upper = true;
+      }
+      else {
+        sb.append('_');
+      }
+    }
+    if (sb.length() == 0 || !Character.isJavaIdentifierStart(sb.charAt(0))) sb.insert(0, '_');
+    return sb.toString();
+  }
+
+  public static void main(String[] args) throws IOException {
+    AheadOfTimeCompiler compiler = new AheadOfTimeCompiler();
+    List<File> sources = new ArrayList<File>();
+
+    for (int i = 0; i < args.length; i++) {
+      if ("-d".equals(args[i]) && i + 1 < args.length) {
+        compiler.setOutputDirectory(new File(args[++i]));
+      }
+      else if ("-p".equals(args[i]) && i + 1 < args.length) {
+        compiler.setPackageName(args[++i]);
+      }
+      else if ("-encoding".equals(args[i]) && i + 1 < args.length) {
+        compiler.setEncoding(args[++i]);
+      }
+      else if ("-i".equals(args[i]) && i + 2 < args.length) {
+        String type = args[++i];
+        compiler.addInput(args[++i], resolveType(type, null));
+      }
+      else if (args[i].startsWith("-")) {
+        sources.clear();
+        break;
+      }
+      else {
+        sources.add(new File(args[i]));
+      }
+    }
+
+    if (sources.isEmpty()) {
+      System.err.println("usage: AheadOfTimeCompiler [-d <output directory>] [-p <package>] [-encoding <encoding>]"
+          + " [-i <type> <name>]... <file or directory>...");
+      System.exit(1);
+    }
+
+    int count = 0;
+    for (File source : sources) {
+      count += compiler.compile(source).size();
+    }
+    System.out.println("compiled " + count + " scripts and templates to " + compiler.getOutputDirectory());
+  }
+}
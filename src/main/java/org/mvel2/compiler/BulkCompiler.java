@@ -0,0 +1,306 @@
+/**
+ * MVEL 2.0
+ * Copyright (C) 2007 The Codehaus
+ * Mike Brock, Dhanji Prasanna, John Graham, Mark Proctor
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mvel2.compiler;
+
+import org.mvel2.MVEL;
+import org.mvel2.ParserConfiguration;
+import org.mvel2.ParserContext;
+import org.mvel2.ast.Proto;
+import org.mvel2.util.MethodStub;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Compiles many expressions at once, spread over several threads, such as the rules of a large rule set when an
+ * application starts.
+ * <pre><code>
+ * BulkCompiler.Results results = MVEL.compileAll(expressions, conf);
+ * for (Map.Entry&lt;String, RuntimeException&gt; error : results.getErrors().entrySet()) { ... }
+ * Serializable compiled = results.get(expression);
+ * </code></pre>
+ * Identical expressions are only compiled once, and share the same compiled expression.  Each expression is
+ * compiled with a parser context and configuration of its own.  The configured imports are copied once for each
+ * call to {@link #compile(Collection)} into an unmodifiable map which every expression's configuration shares; an
+ * expression which declares imports of its own, or resolves a class through a package import, copies them first,
+ * so that its imports are never visible to another expression.  The configuration itself is not modified.
+ */
+public class BulkCompiler {
+  private static final AtomicInteger threadCount = new AtomicInteger();
+
+  private final ParserConfiguration configuration;
+  private final int threads;
+  private final ExecutorService executor;
+
+  /**
+   * Compiles with as many threads as there are processors.
+   */
+  public BulkCompiler(ParserConfiguration configuration) {
+    this(configuration, Runtime.getRuntime().availableProcessors());
+  }
+
+  public BulkCompiler(ParserConfiguration configuration, int threads) {
+    this(configuration, threads, null);
+  }
+
+  /**
+   * @param configuration the configuration to compile with
+   * @param threads       the number of threads to compile with, including the calling thread
+   * @param executor      the executor to run compilation threads on, or null to start threads for each compilation
+   */
+  public BulkCompiler(ParserConfiguration configuration, int threads, ExecutorService executor) {
+    this.configuration = configuration == null ? new ParserConfiguration() : configuration;
+    this.threads = Math.max(1, threads);
+    this.executor = executor;
+  }
+
+  /**
+   * Compiles the expressions.  Expressions which fail to compile are reported in the results, and do not stop the
+   * others from being compiled.
+   */
+  public Results compile(Collection<String> expressions) {
+    String[] sources = new LinkedHashSet<String>(expressions).toArray(new String[0]);
+    Object[] compiled = new Object[sources.length];
+
+    Map<String, Object> imports = configuration.getImports() == null ? null
+        : Collections.unmodifiableMap(new LinkedHashMap<String, Object>(configuration.getImports()));
+    HashSet<String> packageImports = configuration.getPackageImports() == null ? null
+        : new HashSet<String>(configuration.getPackageImports());
+    Worker worker = new Worker(sources, compiled, imports, packageImports);
+
+    int workers = Math.min(threads, sources.length) - 1;
+    if (workers > 0) {
+      ExecutorService pool = executor == null ? Executors.newFixedThreadPool(workers, new CompilerThreadFactory())
+          : executor;
+      try {
+        List<Future<Object>> futures = new ArrayList<Future<Object>>(workers);
+        for (int i = 0; i < workers; i++) {
+          futures.add(pool.submit(new PooledWorker(worker)));
+        }
+
+        worker.call();
+
+        for (Future<Object> f : futures) {
+          f.get();
+        }
+      }
+      catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new RuntimeException("interrupted while compiling", e);
+      }
+      catch (ExecutionException e) {
+        throw new RuntimeException("unable to compile expressions", e.getCause());
+      }
+      finally {
+        if (pool != executor) pool.shutdown();
+      }
+    }
+    else {
+      worker.call();
+    }
+
+    return new Results(sources, compiled);
+  }
+
+  /**
+   * Compiles expressions until there are none left.  Every thread takes the next expression as it finishes the last.
+   */
+  private final class Worker implements Callable<Object> {
+    private final String[] sources;
+    private final Object[] compiled;
+    private final Map<String, Object> imports;
+    private final HashSet<String> packageImports;
+    private final AtomicInteger next = new AtomicInteger();
+
+    private Worker(String[] sources, Object[] compiled, Map<String, Object> imports,
+                   HashSet<String> packageImports) {
+      this.sources = sources;
+      this.compiled = compiled;
+      this.imports = imports;
+      this.packageImports = packageImports;
+    }
+
+    public Object call() {
+      int i;
+      while ((i = next.getAndIncrement()) < sources.length) {
+        try {
+          compiled[i] = MVEL.compileExpression(sources[i],
+              new ParserContext(new ExpressionConfiguration(configuration, imports, packageImports)));
+        }
+        catch (RuntimeException e) {
+          compiled[i] = e;
+        }
+      }
+      return null;
+    }
+  }
+
+  /**
+   * The results of a bulk compilation.
+   */
+  public static class Results {
+    private final Map<String, Serializable> compiled = new LinkedHashMap<String, Serializable>();
+    private final Map<String, RuntimeException> errors = new LinkedHashMap<String, RuntimeException>();
+
+    private Results(String[] sources, Object[] results) {
+      for (int i = 0; i < sources.length; i++) {
+        if (results[i] instanceof RuntimeException) {
+          errors.put(sources[i], (RuntimeException) results[i]);
+        }
+        else {
+          compiled.put(sources[i], (Serializable) results[i]);
+        }
+      }
+    }
+
+    /**
+     * @return the compiled expression, or null if the expression failed to compile or was not compiled
+     */
+    public Serializable get(String expression) {
+      return compiled.get(expression);
+    }
+
+    /**
+     * @return the compiled expressions, by source, in the order they were given
+     */
+    public Map<String, Serializable> getCompiled() {
+      return Collections.unmodifiableMap(compiled);
+    }
+
+    /**
+     * @return the exceptions thrown by expressions which failed to compile, by source; usually a
+     *         {@link org.mvel2.CompileException}
+     */
+    public Map<String, RuntimeException> getErrors() {
+      return Collections.unmodifiableMap(errors);
+    }
+
+    public boolean hasErrors() {
+      return !errors.isEmpty();
+    }
+  }
+
+  /**
+   * The configuration of a single expression.  It reads the imports and package imports shared by the whole batch,
+   * and copies them the first time the expression adds to them.
+   */
+  private static final class ExpressionConfiguration extends ParserConfiguration {
+    private static final long serialVersionUID = 1L;
+
+    private boolean ownImports;
+    private boolean ownPackageImports;
+
+    private ExpressionConfiguration(ParserConfiguration configuration, Map<String, Object> imports,
+                                    HashSet<String> packageImports) {
+      this.imports = imports;
+      this.packageImports = packageImports;
+      setInterceptors(configuration.getInterceptors());
+      setClassLoader(configuration.getClassLoader());
+      setFunctionCacheSize(configuration.getFunctionCacheSize());
+    }
+
+    private void copyImports() {
+      if (!ownImports) {
+        if (imports != null) imports = new LinkedHashMap<String, Object>(imports);
+        ownImports = true;
+      }
+    }
+
+    public void addAllImports(Map<String, Object> imports) {
+      copyImports();
+      super.addAllImports(imports);
+    }
+
+    public void setAllImports(Map<String, Object> imports) {
+      super.setAllImports(imports);
+      ownImports = true;
+    }
+
+    @SuppressWarnings({"rawtypes"})
+    public void addImport(String name, Class cls) {
+      copyImports();
+      super.addImport(name, cls);
+    }
+
+    public void addImport(String name, Proto proto) {
+      copyImports();
+      super.addImport(name, proto);
+    }
+
+    public void addImport(String name, MethodStub method) {
+      copyImports();
+      super.addImport(name, method);
+    }
+
+    public void addPackageImport(String packageName) {
+      if (!ownPackageImports) {
+        if (packageImports != null) packageImports = new HashSet<String>(packageImports);
+        ownPackageImports = true;
+      }
+      super.addPackageImport(packageName);
+    }
+
+    public void setPackageImports(HashSet<String> packageImports) {
+      super.setPackageImports(packageImports);
+      ownPackageImports = true;
+    }
+  }
+
+  /**
+   * Runs a worker on a pooled thread, and then removes any parser context it left on the thread.
+   */
+  private static final class PooledWorker implements Callable<Object> {
+    private final Callable<Object> worker;
+
+    private PooledWorker(Callable<Object> worker) {
+      this.worker = worker;
+    }
+
+    public Object call() throws Exception {
+      try {
+        return worker.call();
+      }
+      finally {
+        AbstractParser.resetParserContext();
+      }
+    }
+  }
+
+  private static final class CompilerThreadFactory implements ThreadFactory {
+    public Thread newThread(Runnable r) {
+      Thread t = new Thread(r, "mvel-compiler-" + threadCount.incrementAndGet());
+      t.setDaemon(true);
+      return t;
+    }
+  }
+}
@@ -28,6 +28,7 @@ import org.mvel2.optimizers.OptimizerFactory;
 import org.mvel2.util.ASTLinkedList;
 
 import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 import static org.mvel2.MVELRuntime.execute;
 import static org.mvel2.optimizers.OptimizerFactory.setThreadAccessorOptimizer;
@@ -49,6 +50,12 @@ public class CompiledExpression implements Serializable, ExecutableStatement {
 
   private ParserContext parserContext;
 
+  private transient volatile ClassImportResolverFactory idleImportFactory;
+
+  private static final AtomicReferenceFieldUpdater<CompiledExpression, ClassImportResolverFactory> IDLE_IMPORT_FACTORY
+      = AtomicReferenceFieldUpdater.newUpdater(CompiledExpression.class, ClassImportResolverFactory.class,
+      "idleImportFactory");
+
   public CompiledExpression(ASTLinkedList astMap, String sourceName, Class egressType, ParserContext ctx, boolean literalOnly) {
     this.firstNode = astMap.firstNode();
     this.sourceName = sourceName;
@@ -119,7 +126,7 @@ public class CompiledExpression implements Serializable, ExecutableStatement {
       }
     }
     if (importInjectionRequired) {
-      return execute(false, this, staticContext, new ClassImportResolverFactory(parserContext.getParserConfiguration(), factory, true));
+      return executeWithImports(staticContext, factory);
     }
     else {
       return execute(false, this, staticContext, factory);
@@ -128,13 +135,34 @@ public class CompiledExpression implements Serializable, ExecutableStatement {
 
   public Object getDirectValue(Object staticContext, VariableResolverFactory factory) {
     if (importInjectionRequired) {
-      return execute(false, this, staticContext, new ClassImportResolverFactory(parserContext.getParserConfiguration(), factory, true));
+      return executeWithImports(staticContext, factory);
     }
     else {
       return execute(false, this, staticContext, factory);
     }
   }
 
+  /**
+   * Executes with the imports of the parser configuration injected ahead of the specified factory.  The import factory
+   * is recycled between executions, so that expressions with imports do not allocate one on each call.
+   */
+  private Object executeWithImports(Object staticContext, VariableResolverFactory factory) {
+    ClassImportResolverFactory importFactory = IDLE_IMPORT_FACTORY.getAndSet(this, null);
+    if (importFactory == null) {
+      importFactory = new ClassImportResolverFactory(parserContext.getParserConfiguration(), factory, true);
+    }
+    else {
+      importFactory.reset(factory);
+    }
+
+    try {
+      return execute(false, this, staticContext, importFactory);
+    }
+    finally {
+      if (importFactory.release()) idleImportFactory = importFactory;
+    }
+  }
+
   private void setupOptimizers() {
     if (accessorOptimizer != null) setThreadAccessorOptimizer(accessorOptimizer);
     optimized = true;
@@ -0,0 +1,126 @@
+/**
+ * MVEL 2.0
+ * Copyright (C) 2007 The Codehaus
+ * Mike Brock, Dhanji Prasanna, John Graham, Mark Proctor
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mvel2.compiler;
+
+import org.mvel2.MVEL;
+import org.mvel2.ParserConfiguration;
+import org.mvel2.ParserContext;
+import org.mvel2.util.BoundedCache;
+
+/**
+ * A bounded cache of compiled expressions, keyed by the expression source and the identity of the
+ * {@link ParserConfiguration} it was compiled against.  When installed with {@link org.mvel2.MVEL#setEvalCache},
+ * the <tt>MVEL.eval()</tt> family of methods will execute the cached, compiled form of an expression rather than
+ * re-parsing it through the interpreter on every call.
+ * <p/>
+ * Expressions compiled without a configuration are each given their own {@link ParserContext}, so that imports
+ * declared by one script do not leak into another.
+ */
+public class CompiledExpressionCache {
+  private final BoundedCache<Key, ExecutableStatement> cache;
+
+  public CompiledExpressionCache(int maxSize) {
+    this(maxSize, BoundedCache.LRU);
+  }
+
+  /**
+   * @param maxSize        the maximum number of compiled expressions to retain.
+   * @param evictionPolicy either {@link BoundedCache#LRU} or {@link BoundedCache#LFU}
+   */
+  public CompiledExpressionCache(int maxSize, int evictionPolicy) {
+    this.cache = new BoundedCache<Key, ExecutableStatement>(maxSize, evictionPolicy);
+  }
+
+  public ExecutableStatement getCompiled(String expression) {
+    return getCompiled(expression, null);
+  }
+
+  /**
+   * Returns the compiled form of the expression, compiling and caching it if it is not already present.
+   *
+   * @param expression the expression source
+   * @param conf       the parser configuration to compile against; may be <tt>null</tt>
+   * @return the compiled expression
+   */
+  public ExecutableStatement getCompiled(String expression, ParserConfiguration conf) {
+    Key key = new Key(expression, conf);
+    ExecutableStatement stmt = cache.get(key);
+    if (stmt != null) return stmt;
+
+    stmt = (ExecutableStatement) MVEL.compileExpression(expression,
+        conf == null ? new ParserContext() : new ParserContext(conf));
+
+    return cache.putIfAbsent(key, stmt);
+  }
+
+  public void clear() {
+    cache.clear();
+  }
+
+  public int size() {
+    return cache.size();
+  }
+
+  public int getMaxSize() {
+    return cache.getMaxSize();
+  }
+
+  public long getHits() {
+    return cache.getHits();
+  }
+
+  public long getMisses() {
+    return cache.getMisses();
+  }
+
+  public long getEvictions() {
+    return cache.getEvictions();
+  }
+
+  public double getHitRate() {
+    return cache.getHitRate();
+  }
+
+  public void resetStatistics() {
+    cache.resetStatistics();
+  }
+
+  private static final class Key {
+    private final String expression;
+    private final ParserConfiguration conf;
+    private final int hash;
+
+    private Key(String expression, ParserConfiguration conf) {
+      this.expression = expression;
+      this.conf = conf;
+      this.hash = 31 * expression.hashCode() + System.identityHashCode(conf);
+    }
+
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (!(o instanceof Key)) return false;
+      Key key = (Key) o;
+      return conf == key.conf && expression.equals(key.expression);
+    }
+
+    public int hashCode() {
+      return hash;
+    }
+  }
+}
@@ -0,0 +1,486 @@
+/**
+ * MVEL 2.0
+ * Copyright (C) 2007 The Codehaus
+ * Mike Brock, Dhanji Prasanna, John Graham, Mark Proctor
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mvel2.compiler;
+
+import org.mvel2.MVEL;
+import org.mvel2.optimizers.impl.asm.ASMStatement;
+import org.mvel2.optimizers.impl.asm.ASMStatementCompiler;
+import org.mvel2.templates.ASMTemplateCompiler;
+import org.mvel2.templates.ASMTemplateNode;
+import org.mvel2.templates.CompiledTemplate;
+import org.mvel2.templates.res.Node;
+import org.mvel2.templates.util.EncodedText;
+import org.mvel2.util.MVELClassLoader;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.*;
+
+/**
+ * A file of compiled expressions and templates, which can be restored without parsing them again.
+ * <p/>
+ * The entries are written with Java serialization, as a single stream, so that the class descriptors, strings and
+ * parser configurations they have in common are written and restored once.  Class descriptors are further reduced
+ * to class names, serialVersionUIDs and a hash of the serializable fields, which makes a snapshot smaller and faster
+ * to read than the same entries serialized as usual.  For the same reason, a snapshot can only be read by the
+ * version of MVEL which wrote it.  A class whose serialVersionUID or serializable fields differ from those the
+ * snapshot was written with is rejected with an <tt>InvalidClassException</tt>; unlike ordinary serialization, a
+ * snapshot cannot be read into a class whose fields have changed compatibly.
+ * <p/>
+ * Opening a snapshot only reads its index, and snapshot files are memory-mapped rather than read.  Entries are
+ * restored on demand, in the order they were written: restoring an entry also restores the entries written before
+ * it.  Each entry is restored once, and the same instance is returned by later calls.
+ * <p/>
+ * Statements compiled by {@link ASMStatementCompiler} and templates compiled by {@link ASMTemplateCompiler} may be
+ * written with their generated bytecode, in which case they are restored already compiled.  Accessors optimized
+ * while an expression runs are never written: they are bound to the classes of the values they were optimized
+ * against, and are rebuilt on first execution.
+ * <pre><code>
+ * CompiledSnapshot.write(new File("rules.snapshot"), compiledRules, true);
+ * ...
+ * CompiledSnapshot snapshot = CompiledSnapshot.open(new File("rules.snapshot"));
+ * MVEL.executeExpression(snapshot.get("discount"), vars);
+ * </code></pre>
+ */
+public class CompiledSnapshot {
+  public static final int FORMAT_VERSION = 3;
+
+  private static final int MAGIC = 0x4D56454C;
+  private static final String MVEL_VERSION = MVEL.VERSION + "." + MVEL.VERSION_SUB;
+
+  private static final byte SERIALIZED = 0;
+  private static final byte STATEMENT = 1;
+  private static final byte TEMPLATE = 2;
+
+  private final Map<String, Integer> index;
+  private final byte[] kinds;
+  private final ClassLoader classLoader;
+  private SnapshotClassLoader generatedClasses;
+
+  private CompactInputStream in;
+  private final Serializable[] entries;
+  private int restored;
+  private RuntimeException failure;
+
+  private CompiledSnapshot(ByteBuffer buffer, ClassLoader classLoader) throws IOException {
+    this.classLoader = classLoader;
+
+    BufferInputStream stream = new BufferInputStream(buffer.duplicate());
+    DataInputStream in = new DataInputStream(stream);
+
+    if (in.readInt() != MAGIC) throw new IOException("not a compiled snapshot");
+
+    int format = in.readUnsignedShort();
+    if (format != FORMAT_VERSION) {
+      throw new IOException("unsupported snapshot format: " + format + " (expected: " + FORMAT_VERSION + ")");
+    }
+
+    String version = in.readUTF();
+    if (!MVEL_VERSION.equals(version)) {
+      throw new IOException("snapshot was written by MVEL " + version + " and cannot be read by MVEL " + MVEL_VERSION);
+    }
+
+    int count = in.readInt();
+    index = new LinkedHashMap<String, Integer>(count * 2);
+    kinds = new byte[count];
+    for (int i = 0; i < count; i++) {
+      index.put(in.readUTF(), i);
+      kinds[i] = in.readByte();
+    }
+
+    entries = new Serializable[count];
+    this.in = count == 0 ? null : new CompactInputStream(stream, classLoader);
+  }
+
+  /**
+   * Opens a snapshot file, resolving classes with the context class loader.
+   */
+  public static CompiledSnapshot open(File file) throws IOException {
+    return open(file, getDefaultClassLoader());
+  }
+
+  /**
+   * Opens a snapshot file.  The file is memory-mapped, and may be deleted or replaced once it has been opened.
+   *
+   * @param file        the snapshot file
+   * @param classLoader the class loader to resolve classes with
+   */
+  public static CompiledSnapshot open(File file, ClassLoader classLoader) throws IOException {
+    RandomAccessFile raf = new RandomAccessFile(file, "r");
+    try {
+      FileChannel channel = raf.getChannel();
+      return new CompiledSnapshot(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), classLoader);
+    }
+    finally {
+      raf.close();
+    }
+  }
+
+  /**
+   * Opens a snapshot held in memory.
+   *
+   * @param data        the snapshot
+   * @param classLoader the class loader to resolve classes with
+   */
+  public static CompiledSnapshot open(ByteBuffer data, ClassLoader classLoader) throws IOException {
+    return new CompiledSnapshot(data, classLoader);
+  }
+
+  /**
+   * Opens a snapshot stored as a resource, such as those written by the {@link AheadOfTimeCompiler}.
+   *
+   * @param owner    the class the resource is relative to, whose class loader classes are resolved with
+   * @param resource the name of the resource
+   */
+  public static CompiledSnapshot open(Class<?> owner, String resource) throws IOException {
+    InputStream in = owner.getResourceAsStream(resource);
+    if (in == null) throw new FileNotFoundException("no such resource: " + resource);
+
+    ByteArrayOutputStream data = new ByteArrayOutputStream();
+    try {
+      byte[] buf = new byte[4096];
+      int read;
+      while ((read = in.read(buf)) != -1) {
+        data.write(buf, 0, read);
+      }
+    }
+    finally {
+      in.close();
+    }
+    return new CompiledSnapshot(ByteBuffer.wrap(data.toByteArray()), owner.getClassLoader());
+  }
+
+  /**
+   * Writes a snapshot file.
+   *
+   * @param file            the file to write
+   * @param entries         compiled expressions and templates, by name
+   * @param includeBytecode true to write the bytecode of statements and templates compiled to bytecode; otherwise
+   *                        they are written as the statements and templates they were compiled from
+   */
+  public static void write(File file, Map<String, ? extends Serializable> entries, boolean includeBytecode)
+      throws IOException {
+    OutputStream out = new BufferedOutputStream(new FileOutputStream(file));
+    try {
+      write(out, entries, includeBytecode);
+    }
+    finally {
+      out.close();
+    }
+  }
+
+  /**
+   * Writes a snapshot to a stream.
+   *
+   * @see #write(File, Map, boolean)
+   */
+  public static void write(OutputStream out, Map<String, ? extends Serializable> entries, boolean includeBytecode)
+      throws IOException {
+    DataOutputStream hdr = new DataOutputStream(out);
+    hdr.writeInt(MAGIC);
+    hdr.writeShort(FORMAT_VERSION);
+    hdr.writeUTF(MVEL_VERSION);
+    hdr.writeInt(entries.size());
+
+    for (Map.Entry<String, ? extends Serializable> entry : entries.entrySet()) {
+      hdr.writeUTF(entry.getKey());
+      hdr.writeByte(kindOf(entry.getValue(), includeBytecode));
+    }
+    hdr.flush();
+
+    if (entries.isEmpty()) return;
+
+    CompactOutputStream stream = new CompactOutputStream(out);
+    for (Serializable value : entries.values()) {
+      writeEntry(stream, value, kindOf(value, includeBytecode));
+    }
+    stream.flush();
+  }
+
+  private static byte kindOf(Serializable value, boolean includeBytecode) {
+    if (includeBytecode && value instanceof ASMStatement && ((ASMStatement) value).getBytecode() != null) {
+      return STATEMENT;
+    }
+    else if (includeBytecode && value instanceof CompiledTemplate
+        && ((CompiledTemplate) value).getRoot() instanceof ASMTemplateNode
+        && ((ASMTemplateNode) ((CompiledTemplate) value).getRoot()).getBytecode() != null) {
+      return TEMPLATE;
+    }
+    return SERIALIZED;
+  }
+
+  private static void writeEntry(ObjectOutputStream out, Serializable value, byte kind) throws IOException {
+    switch (kind) {
+      case STATEMENT: {
+        ASMStatement stmt = (ASMStatement) value;
+        writeClass(out, stmt.getClass().getName(), stmt.getBytecode());
+        out.writeObject(stmt.getSource());
+        break;
+      }
+      case TEMPLATE: {
+        ASMTemplateNode node = (ASMTemplateNode) ((CompiledTemplate) value).getRoot();
+        writeClass(out, node.getClass().getName(), node.getBytecode());
+        out.writeObject(((CompiledTemplate) value).getTemplate());
+        out.writeObject(node.getSource());
+        out.writeObject(node.getStatements());
+        out.writeObject(node.getNodes());
+        out.writeObject(node.getText());
+        break;
+      }
+      default:
+        out.writeObject(value);
+    }
+  }
+
+  private static void writeClass(ObjectOutputStream out, String className, byte[] bytecode) throws IOException {
+    out.writeUTF(className);
+    out.writeInt(bytecode.length);
+    out.write(bytecode);
+  }
+
+  /**
+   * @return the names of the entries in the snapshot, in the order they were written
+   */
+  public Set<String> getNames() {
+    return Collections.unmodifiableSet(index.keySet());
+  }
+
+  public boolean contains(String name) {
+    return index.containsKey(name);
+  }
+
+  public int size() {
+    return index.size();
+  }
+
+  /**
+   * Restores an entry, and any entries written before it which have not been restored yet.
+   *
+   * @param name the name of the entry
+   * @return the compiled expression or template, or null if the snapshot has no such entry
+   */
+  public Serializable get(String name) {
+    Integer i = index.get(name);
+    return i == null ? null : restore(i);
+  }
+
+  private synchronized Serializable restore(int entry) {
+    if (entry < restored) return entries[entry];
+    if (failure != null) throw failure;
+
+    for (; restored <= entry; restored++) {
+      try {
+        entries[restored] = readEntry(kinds[restored]);
+      }
+      catch (Exception e) {
+        /**
+         * The rest of the stream cannot be read past a broken entry.
+         */
+        throw failure = new RuntimeException("unable to restore compiled snapshot entry: " + getName(restored), e);
+      }
+    }
+
+    if (restored == entries.length && in != null) {
+      try {
+        in.close();
+      }
+      catch (IOException e) {
+        // the snapshot is read from memory
+      }
+      in = null;
+    }
+    return entries[entry];
+  }
+
+  private Serializable readEntry(byte kind) throws Exception {
+    switch (kind) {
+      case STATEMENT: {
+        String className = in.readUTF();
+        byte[] bytecode = readBytecode(in);
+        return ASMStatementCompiler.define(getGeneratedClasses(), className, bytecode,
+            (ExecutableStatement) in.readObject());
+      }
+      case TEMPLATE: {
+        String className = in.readUTF();
+        byte[] bytecode = readBytecode(in);
+        char[] template = (char[]) in.readObject();
+        return new CompiledTemplate(template, ASMTemplateCompiler.define(getGeneratedClasses(), className, bytecode,
+            (Node) in.readObject(), (ExecutableStatement[]) in.readObject(), (Node[]) in.readObject(),
+            (EncodedText[]) in.readObject()));
+      }
+      default:
+        return (Serializable) in.readObject();
+    }
+  }
+
+  private String getName(int entry) {
+    for (Map.Entry<String, Integer> e : index.entrySet()) {
+      if (e.getValue() == entry) return e.getKey();
+    }
+    return null;
+  }
+
+  /**
+   * Restores every entry.
+   *
+   * @return the entries, by name, in the order they were written
+   */
+  public Map<String, Serializable> getAll() {
+    Map<String, Serializable> all = new LinkedHashMap<String, Serializable>(index.size() * 2);
+    for (String name : index.keySet()) {
+      all.put(name, get(name));
+    }
+    return all;
+  }
+
+  private static byte[] readBytecode(ObjectInputStream in) throws IOException {
+    byte[] bytecode = new byte[in.readInt()];
+    in.readFully(bytecode);
+    return bytecode;
+  }
+
+  private synchronized SnapshotClassLoader getGeneratedClasses() {
+    if (generatedClasses == null) {
+      generatedClasses = new SnapshotClassLoader(classLoader);
+    }
+    return generatedClasses;
+  }
+
+  private static ClassLoader getDefaultClassLoader() {
+    ClassLoader cl = Thread.currentThread().getContextClassLoader();
+    return cl != null ? cl : CompiledSnapshot.class.getClassLoader();
+  }
+
+  /**
+   * Generated classes are named uniquely only within the JVM which generated them, so classes restored from a
+   * snapshot are defined in a class loader of their own.
+   */
+  private static final class SnapshotClassLoader extends ClassLoader implements MVELClassLoader {
+    private SnapshotClassLoader(ClassLoader parent) {
+      super(parent);
+    }
+
+    public synchronized Class<?> defineClassX(String className, byte[] b, int start, int end) {
+      Class<?> cls = findLoadedClass(className);
+      return cls != null ? cls : defineClass(className, b, start, end);
+    }
+  }
+
+  /**
+   * A hash of the names and types of the serializable fields of a class, which is compared when a snapshot is read
+   * in place of the field descriptors themselves.
+   */
+  private static int layoutOf(ObjectStreamClass desc) {
+    int hash = 0;
+    for (ObjectStreamField field : desc.getFields()) {
+      hash = 31 * hash + field.getName().hashCode();
+      hash = 31 * hash + (field.isPrimitive() ? field.getTypeCode() : field.getTypeString().hashCode());
+    }
+    return hash;
+  }
+
+  /**
+   * Writes the descriptors of serializable classes as bare class names, serialVersionUIDs and field layouts.  Like
+   * any other descriptor, each is written once per snapshot, and referred to by handle afterwards.  Other classes
+   * can only appear as class literals (<tt>int.class</tt>, for instance), and keep their full descriptors.
+   */
+  private static final class CompactOutputStream extends ObjectOutputStream {
+    private CompactOutputStream(OutputStream out) throws IOException {
+      super(out);
+    }
+
+    protected void writeClassDescriptor(ObjectStreamClass desc) throws IOException {
+      Class<?> cls = desc.forClass();
+      if (cls != null && ObjectStreamClass.lookup(cls) != null) {
+        writeBoolean(true);
+        writeUTF(desc.getName());
+        writeLong(desc.getSerialVersionUID());
+        writeInt(layoutOf(desc));
+      }
+      else {
+        writeBoolean(false);
+        super.writeClassDescriptor(desc);
+      }
+    }
+  }
+
+  private static final class CompactInputStream extends ObjectInputStream {
+    private final ClassLoader classLoader;
+
+    private CompactInputStream(InputStream in, ClassLoader classLoader) throws IOException {
+      super(in);
+      this.classLoader = classLoader;
+    }
+
+    protected ObjectStreamClass readClassDescriptor() throws IOException, ClassNotFoundException {
+      if (!readBoolean()) return super.readClassDescriptor();
+
+      String name = readUTF();
+      long serialVersionUID = readLong();
+      int layout = readInt();
+
+      ObjectStreamClass desc = ObjectStreamClass.lookup(Class.forName(name, false, classLoader));
+      if (desc == null) throw new InvalidClassException(name, "class is no longer serializable");
+      if (desc.getSerialVersionUID() != serialVersionUID) {
+        throw new InvalidClassException(name, "local class incompatible: snapshot serialVersionUID = "
+            + serialVersionUID + ", local class serialVersionUID = " + desc.getSerialVersionUID());
+      }
+      if (layoutOf(desc) != layout) {
+        throw new InvalidClassException(name, "local class incompatible: serializable fields have changed");
+      }
+      return desc;
+    }
+
+    protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+      try {
+        return Class.forName(desc.getName(), false, classLoader);
+      }
+      catch (ClassNotFoundException e) {
+        /**
+         * Primitive types.
+         */
+        return super.resolveClass(desc);
+      }
+    }
+  }
+
+  private static final class BufferInputStream extends InputStream {
+    private final ByteBuffer buffer;
+
+    private BufferInputStream(ByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+
+    public int read() {
+      return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+    }
+
+    public int read(byte[] b, int off, int len) {
+      if (!buffer.hasRemaining()) return -1;
+      len = Math.min(len, buffer.remaining());
+      buffer.get(b, off, len);
+      return len;
+    }
+
+    public int available() {
+      return buffer.remaining();
+    }
+  }
+}
@@ -20,16 +20,16 @@
 package org.mvel2.conversion;
 
 import org.mvel2.ConversionException;
-import org.mvel2.ConversionHandler;
 
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 
-public class BigIntegerCH implements ConversionHandler {
-  private static final Map<Class, Converter> CNV =
-      new HashMap<Class, Converter>();
+public class BigIntegerCH implements ConverterProvider {
+  private static final Map<Class<?>, Converter> CNV =
+      new HashMap<Class<?>, Converter>();
 
 
   public Object convertFrom(Object in) {
@@ -43,6 +43,14 @@ public class BigIntegerCH implements ConversionHandler {
     return CNV.containsKey(cls);
   }
 
+  public Converter getConverter(Class<?> cls) {
+    return CNV.get(cls);
+  }
+
+  public Set<Class<?>> getSourceTypes() {
+    return CNV.keySet();
+  }
+
   static {
     CNV.put(Object.class,
         new Converter() {
@@ -19,17 +19,17 @@
 package org.mvel2.conversion;
 
 import org.mvel2.ConversionException;
-import org.mvel2.ConversionHandler;
 
 import java.math.BigDecimal;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 
 import static java.lang.String.valueOf;
 
-public class BooleanCH implements ConversionHandler {
-  private static final Map<Class, Converter> CNV =
-      new HashMap<Class, Converter>();
+public class BooleanCH implements ConverterProvider {
+  private static final Map<Class<?>, Converter> CNV =
+      new HashMap<Class<?>, Converter>();
 
   private static Converter stringConverter = new Converter() {
     public Object convert(Object o) {
@@ -52,6 +52,14 @@ public class BooleanCH implements ConversionHandler {
     return CNV.containsKey(cls);
   }
 
+  public Converter getConverter(Class<?> cls) {
+    return CNV.get(cls);
+  }
+
+  public Set<Class<?>> getSourceTypes() {
+    return CNV.keySet();
+  }
+
   static {
     CNV.put(String.class,
         stringConverter
@@ -19,14 +19,14 @@
 package org.mvel2.conversion;
 
 import org.mvel2.ConversionException;
-import org.mvel2.ConversionHandler;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 
-public class CharArrayCH implements ConversionHandler {
-  private static final Map<Class, Converter> CNV =
-      new HashMap<Class, Converter>();
+public class CharArrayCH implements ConverterProvider {
+  private static final Map<Class<?>, Converter> CNV =
+      new HashMap<Class<?>, Converter>();
 
 
   public Object convertFrom(Object in) {
@@ -40,6 +40,14 @@ public class CharArrayCH implements ConversionHandler {
     return CNV.containsKey(cls);
   }
 
+  public Converter getConverter(Class<?> cls) {
+    return CNV.get(cls);
+  }
+
+  public Set<Class<?>> getSourceTypes() {
+    return CNV.keySet();
+  }
+
   static {
     CNV.put(String.class,
         new Converter() {
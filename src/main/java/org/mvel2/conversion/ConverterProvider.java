@@ -0,0 +1,41 @@
+/**
+ * MVEL 2.0
+ * Copyright (C) 2007 The Codehaus
+ * Mike Brock, Dhanji Prasanna, John Graham, Mark Proctor
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mvel2.conversion;
+
+import org.mvel2.ConversionHandler;
+
+import java.util.Set;
+
+/**
+ * A conversion handler which delegates to a separate {@link Converter} for each source type it supports.  The
+ * converters are exposed so that {@link org.mvel2.DataConversion} can dispatch on the (source, target) pair directly,
+ * and so that accessors can bind the converter they need once.
+ */
+public interface ConverterProvider extends ConversionHandler {
+  /**
+   * @param cls - the source type
+   * @return the converter used for the specified source type, or null if the type is not supported
+   */
+  public Converter getConverter(Class<?> cls);
+
+  /**
+   * @return the source types this handler has converters for
+   */
+  public Set<Class<?>> getSourceTypes();
+}
@@ -19,17 +19,17 @@
 package org.mvel2.conversion;
 
 import org.mvel2.ConversionException;
-import org.mvel2.ConversionHandler;
 
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 
 import static java.lang.Short.parseShort;
 import static java.lang.String.valueOf;
 
-public class ShortCH implements ConversionHandler {
+public class ShortCH implements ConverterProvider {
   /**
    * This is purely because Eclipse sucks, and has a serious bug with
    * it's java parser.
@@ -43,8 +43,8 @@ public class ShortCH implements ConversionHandler {
     }
   };
 
-  private static final Map<Class, Converter> CNV =
-      new HashMap<Class, Converter>();
+  private static final Map<Class<?>, Converter> CNV =
+      new HashMap<Class<?>, Converter>();
 
 
   public Object convertFrom(Object in) {
@@ -58,6 +58,14 @@ public class ShortCH implements ConversionHandler {
     return CNV.containsKey(cls);
   }
 
+  public Converter getConverter(Class<?> cls) {
+    return CNV.get(cls);
+  }
+
+  public Set<Class<?>> getSourceTypes() {
+    return CNV.keySet();
+  }
+
 
   static {
     CNV.put(String.class,
@@ -25,12 +25,23 @@ import org.mvel2.integration.VariableResolverFactory;
 
 import java.util.*;
 
+/**
+ * Resolves the classes imported by a parser configuration, ahead of the variables of the next factory in the chain.
+ * <p/>
+ * Compiled expressions recycle their import factory between executions, unless it has been
+ * {@link FunctionVariableResolverFactory#retain(VariableResolverFactory) retained}.  Nothing may use the factory once
+ * the execution it was given to has returned, so work deferred to other threads must retain it or not capture it.
+ */
 public class ClassImportResolverFactory extends BaseVariableResolverFactory {
   private Set<String> packageImports;
   private ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
   private Map<String, Object> imports;
   private Map<String, Object> dynImports;
 
+  private ParserConfiguration configuration;
+  private Map<String, Object> importSource;
+  boolean retained;
+
   public ClassImportResolverFactory() {
     super();
   }
@@ -42,8 +53,35 @@ public class ClassImportResolverFactory extends BaseVariableResolverFactory {
 
     classLoader = ctx.getClassLoader();
     this.nextFactory = nextFactory;
+    this.configuration = ctx;
+
+    imports = Collections.unmodifiableMap(importSource = ctx.getImports());
+  }
+
+  /**
+   * Prepares a recycled factory for another execution, against the specified next factory.
+   */
+  public ClassImportResolverFactory reset(VariableResolverFactory nextFactory) {
+    this.nextFactory = nextFactory;
+    classLoader = configuration.getClassLoader();
+    if (importSource != configuration.getImports()) {
+      imports = Collections.unmodifiableMap(importSource = configuration.getImports());
+    }
+    return this;
+  }
 
-    imports = Collections.unmodifiableMap(ctx.getImports());
+  /**
+   * Releases the next factory and any classes imported during the last execution.
+   *
+   * @return false if the factory has been retained, and must not be reused
+   */
+  public boolean release() {
+    if (retained) return false;
+
+    nextFactory = null;
+    dynImports = null;
+    packageImports = null;
+    return true;
   }
 
   public VariableResolver createVariable(String name, Object value) {
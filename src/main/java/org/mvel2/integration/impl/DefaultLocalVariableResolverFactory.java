@@ -52,6 +52,18 @@ public class DefaultLocalVariableResolverFactory extends MapVariableResolverFact
     this.indexedVariableResolvers = new VariableResolver[indexedVariables.length];
   }
 
+  void reset(VariableResolverFactory nextFactory) {
+    this.nextFactory = nextFactory;
+  }
+
+  /**
+   * Forgets the variables of the scope and detaches it from the next factory, for reuse.
+   */
+  void release() {
+    nextFactory = null;
+    variables.clear();
+    variableResolvers.clear();
+  }
 
   public VariableResolver getIndexedVariableResolver(int index) {
     if (indexedVariableNames == null) return null;
@@ -22,15 +22,20 @@ import org.mvel2.ast.Function;
 import org.mvel2.integration.VariableResolver;
 import org.mvel2.integration.VariableResolverFactory;
 
-import java.util.HashMap;
-
+/**
+ * The variable frame of a function invocation.  Parameters, locals and the globals used by the function are held in
+ * slots assigned when the function is compiled.
+ * <p/>
+ * Frames are recycled by {@link Function} once the invocation returns, unless they have been
+ * {@link #retain(VariableResolverFactory) retained}.
+ */
 public class FunctionVariableResolverFactory extends BaseVariableResolverFactory implements LocalVariableResolverFactory {
   private Function function;
+  private boolean retained;
 
   public FunctionVariableResolverFactory(Function function, VariableResolverFactory nextFactory, String[] indexedVariables, Object[] parameters) {
     this.function = function;
 
-    this.variableResolvers = new HashMap<String, VariableResolver>();
     this.nextFactory = nextFactory;
     this.indexedVariableResolvers = new VariableResolver[(this.indexedVariableNames = indexedVariables).length];
     for (int i = 0; i < parameters.length; i++) {
@@ -170,4 +175,64 @@ public class FunctionVariableResolverFactory extends BaseVariableResolverFactory
   public void setIndexOffset(int offset) {
     this.indexOffset = offset;
   }
+
+  /**
+   * Prepares a recycled frame for another invocation of its function.
+   */
+  public FunctionVariableResolverFactory reset(VariableResolverFactory nextFactory, String[] indexedVariables,
+                                               Object[] parameters) {
+    setTiltFlag(false);
+    this.nextFactory = nextFactory;
+
+    if (indexedVariableNames != indexedVariables) {
+      indexedVariableResolvers = new VariableResolver[(indexedVariableNames = indexedVariables).length];
+    }
+
+    variableResolvers.clear();
+    for (int i = 0; i < parameters.length; i++) {
+      variableResolvers.put(indexedVariableNames[i], null);
+      if (indexedVariableResolvers[i] instanceof SimpleValueResolver) {
+        indexedVariableResolvers[i].setValue(parameters[i]);
+      }
+      else {
+        indexedVariableResolvers[i] = new SimpleValueResolver(parameters[i]);
+      }
+    }
+    return this;
+  }
+
+  /**
+   * Releases everything the frame refers to, so that an idle frame does not hold on to the values of its last
+   * invocation.  Parameter slots keep their resolvers, for reuse.
+   *
+   * @return false if the frame has been retained, and must not be reused
+   */
+  public boolean release(int parameterCount) {
+    if (retained) return false;
+
+    nextFactory = null;
+    for (int i = 0; i < indexedVariableResolvers.length; i++) {
+      if (i < parameterCount && indexedVariableResolvers[i] instanceof SimpleValueResolver) {
+        indexedVariableResolvers[i].setValue(null);
+      }
+      else {
+        indexedVariableResolvers[i] = null;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Marks the function frames, loop frames and import factories in a chain of factories as retained beyond the
+   * executions which created them, so that they are not recycled.  Anything which keeps a reference to a factory
+   * after it has been evaluated must call this, including work handed to other threads, such as the background
+   * compiler's.
+   */
+  public static void retain(VariableResolverFactory factory) {
+    for (VariableResolverFactory f = factory; f != null; f = f.getNextFactory()) {
+      if (f instanceof FunctionVariableResolverFactory) ((FunctionVariableResolverFactory) f).retained = true;
+      else if (f instanceof ClassImportResolverFactory) ((ClassImportResolverFactory) f).retained = true;
+      else if (f instanceof ItemResolverFactory) ((ItemResolverFactory) f).retained = true;
+    }
+  }
 }
\ No newline at end of file
@@ -22,14 +22,58 @@ import org.mvel2.integration.VariableResolver;
 import org.mvel2.integration.VariableResolverFactory;
 
 
+/**
+ * Resolves the item of a loop or projection, ahead of the variables of the next factory in the chain.
+ * <p/>
+ * Loop frames, created with {@link #ItemResolverFactory(String, VariableResolverFactory)}, are recycled by the
+ * nodes which create them once the loop completes, unless they have been
+ * {@link FunctionVariableResolverFactory#retain(VariableResolverFactory) retained}.
+ */
 public class ItemResolverFactory extends BaseVariableResolverFactory {
   private final ItemResolver resolver;
+  private DefaultLocalVariableResolverFactory scope;
+  boolean retained;
 
   public ItemResolverFactory(ItemResolver resolver, VariableResolverFactory nextFactory) {
     this.resolver = resolver;
     this.nextFactory = nextFactory;
   }
 
+  /**
+   * Creates the frame of a loop: the item, ahead of a scope of its own for the variables declared in the loop.
+   */
+  public ItemResolverFactory(String item, VariableResolverFactory nextFactory) {
+    this.resolver = new ItemResolver(item);
+    this.nextFactory = scope = new DefaultLocalVariableResolverFactory(nextFactory);
+  }
+
+  public ItemResolver getResolver() {
+    return resolver;
+  }
+
+  /**
+   * Prepares a recycled loop frame for another execution of its loop, against the specified next factory.
+   */
+  public ItemResolverFactory reset(VariableResolverFactory nextFactory) {
+    setTiltFlag(false);
+    scope.reset(nextFactory);
+    return this;
+  }
+
+  /**
+   * Releases the item and the variables declared during the last execution, so that an idle frame does not hold on
+   * to them.
+   *
+   * @return false if this is not a loop frame, or if it has been retained, and must not be reused
+   */
+  public boolean release() {
+    if (scope == null || retained) return false;
+
+    resolver.value = null;
+    scope.release();
+    return true;
+  }
+
   public VariableResolver createVariable(String name, Object value) {
     if (isTarget(name)) {
       resolver.setValue(value);
@@ -44,16 +44,31 @@ public strictfp class MathProcessor {
   private static final MathContext MATH_CONTEXT = MathContext.DECIMAL128;
 
   public static Object doOperations(Object val1, int operation, Object val2) {
+    if (operation < 20) {
+      Object result = doPrimitiveOperation(val1, operation, val2);
+      if (result != null) return result;
+    }
+
     return doOperations(val1 == null ? DataTypes.OBJECT : __resolveType(val1.getClass()),
         val1, operation,
         val2 == null ? DataTypes.NULL : __resolveType(val2.getClass()), val2);
   }
 
   public static Object doOperations(Object val1, int operation, int type2, Object val2) {
+    if (operation < 20 && isPrimitiveOperand(type2, val2)) {
+      Object result = doPrimitiveOperation(val1, operation, val2);
+      if (result != null) return result;
+    }
+
     return doOperations(val1 == null ? DataTypes.OBJECT : __resolveType(val1.getClass()), val1, operation, type2, val2);
   }
 
   public static Object doOperations(int type1, Object val1, int operation, int type2, Object val2) {
+    if (operation < 20 && isPrimitiveOperand(type1, val1) && isPrimitiveOperand(type2, val2)) {
+      Object result = doPrimitiveOperation(val1, operation, val2);
+      if (result != null) return result;
+    }
+
     if (type1 == -1)
       type1 = val1 == null ? DataTypes.OBJECT : __resolveType(val1.getClass());
 
@@ -80,6 +95,185 @@ public strictfp class MathProcessor {
     }
   }
 
+  /**
+   * True if the value is an <tt>Integer</tt>, <tt>Long</tt> or <tt>Double</tt>, and the type code supplied for it
+   * (if any) agrees with its class.
+   */
+  private static boolean isPrimitiveOperand(int type, Object val) {
+    if (val == null) return false;
+    Class<?> cls = val.getClass();
+    if (cls == Integer.class) return type == -1 || type == DataTypes.W_INTEGER;
+    if (cls == Double.class) return type == -1 || type == DataTypes.W_DOUBLE;
+    if (cls == Long.class) return type == -1 || type == DataTypes.W_LONG;
+    return false;
+  }
+
+  /**
+   * Performs arithmetic and comparisons on <tt>Integer</tt>, <tt>Long</tt> and <tt>Double</tt> operands directly on
+   * primitives, without resolving type codes.  The results are the same as those of {@link #doOperations}: operands
+   * of the same type are combined in that type (except for division, which is always performed in floating point),
+   * and mixed operands are combined in floating point and narrowed to the wider of the two types.
+   * <p/>
+   * Boxing of integral results goes through <tt>Integer.valueOf()</tt> and <tt>Long.valueOf()</tt>, and so reuses
+   * the cached instances of small values.
+   *
+   * @return the result, or null if the operands or the operation are not handled here.
+   */
+  public static Object doPrimitiveOperation(Object val1, int operation, Object val2) {
+    if (val1 == null || val2 == null) return null;
+
+    Class<?> cls1 = val1.getClass();
+    Class<?> cls2 = val2.getClass();
+
+    if (cls1 == cls2) {
+      if (cls1 == Integer.class) return doIntOperation((Integer) val1, operation, (Integer) val2);
+      if (cls1 == Double.class) return doDoubleOperation((Double) val1, operation, (Double) val2);
+      if (cls1 == Long.class) return doLongOperation((Long) val1, operation, (Long) val2);
+      return null;
+    }
+
+    int wider = primitiveRank(cls1);
+    int rank2 = primitiveRank(cls2);
+    if (wider == 0 || rank2 == 0) return null;
+    if (rank2 > wider) wider = rank2;
+
+    double d1 = ((Number) val1).doubleValue();
+    double d2 = ((Number) val2).doubleValue();
+    double result;
+
+    switch (operation) {
+      case ADD:
+        result = d1 + d2;
+        break;
+      case SUB:
+        result = d1 - d2;
+        break;
+      case MULT:
+        result = d1 * d2;
+        break;
+      case DIV:
+        result = d1 / d2;
+        break;
+      case MOD:
+        result = d1 % d2;
+        break;
+      case GTHAN:
+        return d1 > d2 ? Boolean.TRUE : Boolean.FALSE;
+      case GETHAN:
+        return d1 >= d2 ? Boolean.TRUE : Boolean.FALSE;
+      case LTHAN:
+        return d1 < d2 ? Boolean.TRUE : Boolean.FALSE;
+      case LETHAN:
+        return d1 <= d2 ? Boolean.TRUE : Boolean.FALSE;
+      case EQUAL:
+        return d1 == d2 ? Boolean.TRUE : Boolean.FALSE;
+      case NEQUAL:
+        return d1 != d2 ? Boolean.TRUE : Boolean.FALSE;
+      default:
+        return null;
+    }
+
+    switch (wider) {
+      case 1:
+        return (int) result;
+      case 2:
+        return (long) result;
+      default:
+        return result;
+    }
+  }
+
+  private static int primitiveRank(Class<?> cls) {
+    if (cls == Integer.class) return 1;
+    if (cls == Long.class) return 2;
+    if (cls == Double.class) return 3;
+    return 0;
+  }
+
+  private static Object doIntOperation(int val1, int operation, int val2) {
+    switch (operation) {
+      case ADD:
+        return val1 + val2;
+      case SUB:
+        return val1 - val2;
+      case MULT:
+        return val1 * val2;
+      case DIV:
+        return (double) val1 / (double) val2;
+      case MOD:
+        return val1 % val2;
+      case GTHAN:
+        return val1 > val2 ? Boolean.TRUE : Boolean.FALSE;
+      case GETHAN:
+        return val1 >= val2 ? Boolean.TRUE : Boolean.FALSE;
+      case LTHAN:
+        return val1 < val2 ? Boolean.TRUE : Boolean.FALSE;
+      case LETHAN:
+        return val1 <= val2 ? Boolean.TRUE : Boolean.FALSE;
+      case EQUAL:
+        return val1 == val2 ? Boolean.TRUE : Boolean.FALSE;
+      case NEQUAL:
+        return val1 != val2 ? Boolean.TRUE : Boolean.FALSE;
+    }
+    return null;
+  }
+
+  private static Object doLongOperation(long val1, int operation, long val2) {
+    switch (operation) {
+      case ADD:
+        return val1 + val2;
+      case SUB:
+        return val1 - val2;
+      case MULT:
+        return val1 * val2;
+      case DIV:
+        return (double) val1 / (double) val2;
+      case MOD:
+        return val1 % val2;
+      case GTHAN:
+        return val1 > val2 ? Boolean.TRUE : Boolean.FALSE;
+      case GETHAN:
+        return val1 >= val2 ? Boolean.TRUE : Boolean.FALSE;
+      case LTHAN:
+        return val1 < val2 ? Boolean.TRUE : Boolean.FALSE;
+      case LETHAN:
+        return val1 <= val2 ? Boolean.TRUE : Boolean.FALSE;
+      case EQUAL:
+        return val1 == val2 ? Boolean.TRUE : Boolean.FALSE;
+      case NEQUAL:
+        return val1 != val2 ? Boolean.TRUE : Boolean.FALSE;
+    }
+    return null;
+  }
+
+  private static Object doDoubleOperation(double val1, int operation, double val2) {
+    switch (operation) {
+      case ADD:
+        return val1 + val2;
+      case SUB:
+        return val1 - val2;
+      case MULT:
+        return val1 * val2;
+      case DIV:
+        return val1 / val2;
+      case MOD:
+        return val1 % val2;
+      case GTHAN:
+        return val1 > val2 ? Boolean.TRUE : Boolean.FALSE;
+      case GETHAN:
+        return val1 >= val2 ? Boolean.TRUE : Boolean.FALSE;
+      case LTHAN:
+        return val1 < val2 ? Boolean.TRUE : Boolean.FALSE;
+      case LETHAN:
+        return val1 <= val2 ? Boolean.TRUE : Boolean.FALSE;
+      case EQUAL:
+        return val1 == val2 ? Boolean.TRUE : Boolean.FALSE;
+      case NEQUAL:
+        return val1 != val2 ? Boolean.TRUE : Boolean.FALSE;
+    }
+    return null;
+  }
+
   private static Object doPrimWrapperArithmetic(final Number val1, final int operation, final Number val2, boolean iNumber, int returnTarget) {
     switch (operation) {
       case ADD:
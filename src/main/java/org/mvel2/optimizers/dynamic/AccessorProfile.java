@@ -0,0 +1,81 @@
+/**
+ * MVEL 2.0
+ * Copyright (C) 2007 The Codehaus
+ * Mike Brock, Dhanji Prasanna, John Graham, Mark Proctor
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mvel2.optimizers.dynamic;
+
+/**
+ * A point-in-time snapshot of the profiling counters of a single dynamic accessor.
+ */
+public class AccessorProfile {
+  private final String expression;
+  private final int type;
+  private final long invocations;
+  private final int promotions;
+  private final boolean optimized;
+
+  public AccessorProfile(String expression, int type, long invocations, int promotions, boolean optimized) {
+    this.expression = expression;
+    this.type = type;
+    this.invocations = invocations;
+    this.promotions = promotions;
+    this.optimized = optimized;
+  }
+
+  /**
+   * @return the source of the accessor's expression
+   */
+  public String getExpression() {
+    return expression;
+  }
+
+  /**
+   * @return one of {@link DynamicOptimizer#REGULAR_ACCESSOR}, {@link DynamicOptimizer#SET_ACCESSOR},
+   *         {@link DynamicOptimizer#COLLECTION} or {@link DynamicOptimizer#OBJ_CREATION}
+   */
+  public int getType() {
+    return type;
+  }
+
+  /**
+   * @return the number of times the accessor has been invoked.  Accessors count in an unsynchronized int, so the
+   *         count may miss invocations of an accessor shared between threads, and wraps after
+   *         <tt>Integer.MAX_VALUE</tt> invocations; it is meant for profiling, not accounting.
+   */
+  public long getInvocations() {
+    return invocations;
+  }
+
+  /**
+   * @return the number of times the accessor has been compiled to bytecode
+   */
+  public int getPromotions() {
+    return promotions;
+  }
+
+  /**
+   * @return true if the accessor is currently running compiled bytecode
+   */
+  public boolean isOptimized() {
+    return optimized;
+  }
+
+  public String toString() {
+    return expression + " [invocations=" + invocations + ", promotions=" + promotions
+        + ", optimized=" + optimized + "]";
+  }
+}
@@ -0,0 +1,137 @@
+/**
+ * MVEL 2.0
+ * Copyright (C) 2007 The Codehaus
+ * Mike Brock, Dhanji Prasanna, John Graham, Mark Proctor
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mvel2.optimizers.dynamic;
+
+import org.mvel2.compiler.Accessor;
+import org.mvel2.optimizers.impl.asm.DeferredAccessor;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Finishes the compilation of dynamic accessors on a dedicated executor, so that the thread which tips an accessor
+ * over its tiering threshold does not pay for class definition and verification.  The accessor continues to run
+ * reflectively until its compiled form is ready, at which point it is swapped in.
+ * <p/>
+ * The compiler's queue is bounded.  When it is full, new compilation requests are dropped and the accessors
+ * concerned are left to request promotion again later.
+ * <p/>
+ * Where every step of a property accessor's reflective form is one the
+ * {@link org.mvel2.optimizers.impl.asm.ASMAccessorChainCompiler} handles (variables, getters, public fields, map,
+ * list and array elements), its bytecode is generated on the compiler threads from the members the reflective
+ * accessor has already resolved, and the calling thread does nothing but queue the task.  Other accessors, such as
+ * those calling methods with arguments, and inline collections are still generated by the
+ * {@link org.mvel2.optimizers.impl.asm.ASMAccessorOptimizer}, which evaluates the expression as it goes, on the
+ * calling thread; only the definition, verification and instantiation of their classes are left to the compiler
+ * threads, which never see the caller's context, variables or parser context.  Object creation is always compiled on
+ * the calling thread.
+ * <p/>
+ * Background compilation is enabled with {@link DynamicOptimizer#setBackgroundCompilation(boolean)} or the
+ * <tt>mvel2.optimizer.background_jit</tt> system property.  The number of compiler threads and the queue capacity
+ * are set with the <tt>mvel2.optimizer.compiler_threads</tt> and <tt>mvel2.optimizer.compiler_queue</tt> system
+ * properties.
+ */
+public class BackgroundCompiler {
+  private static final int THREADS = Integer.getInteger("mvel2.optimizer.compiler_threads", 1);
+  private static final int QUEUE_CAPACITY = Integer.getInteger("mvel2.optimizer.compiler_queue", 256);
+
+  private static ThreadPoolExecutor executor;
+
+  private BackgroundCompiler() {
+  }
+
+  private static synchronized ThreadPoolExecutor getExecutor() {
+    if (executor == null) {
+      executor = new ThreadPoolExecutor(THREADS, THREADS, 60, TimeUnit.SECONDS,
+          new ArrayBlockingQueue<Runnable>(QUEUE_CAPACITY), new CompilerThreadFactory());
+    }
+    return executor;
+  }
+
+  /**
+   * Defines the classes generated for an accessor.
+   *
+   * @param generated the accessor returned by the optimizer
+   * @param deferred  the accessors generated, but not yet defined, by the optimizer
+   * @return the defined form of <tt>generated</tt> if it was deferred, or else the first accessor defined
+   */
+  static Accessor define(Accessor generated, List<DeferredAccessor> deferred) throws Exception {
+    Accessor first = null;
+    for (DeferredAccessor accessor : deferred) {
+      Accessor defined = accessor.define();
+      if (first == null) first = defined;
+    }
+    if (generated instanceof DeferredAccessor) return ((DeferredAccessor) generated).define();
+    return first == null ? generated : first;
+  }
+
+  /**
+   * Queues a compilation task.
+   *
+   * @return false if the queue is full and the task was dropped
+   */
+  static boolean submit(Runnable task) {
+    try {
+      getExecutor().execute(task);
+      DynamicOptimizerMetrics.compilationQueued();
+      return true;
+    }
+    catch (RejectedExecutionException e) {
+      DynamicOptimizerMetrics.compilationDropped();
+      return false;
+    }
+  }
+
+  /**
+   * @return the number of compilation tasks waiting to be run
+   */
+  public static int getQueueSize() {
+    ThreadPoolExecutor ex;
+    synchronized (BackgroundCompiler.class) {
+      ex = executor;
+    }
+    return ex == null ? 0 : ex.getQueue().size();
+  }
+
+  /**
+   * Stops the compiler threads, discarding any queued tasks.  The compiler is restarted if another compilation is
+   * requested.
+   */
+  public static synchronized void shutdown() {
+    if (executor != null) {
+      executor.shutdownNow();
+      executor = null;
+    }
+  }
+
+  private static class CompilerThreadFactory implements ThreadFactory {
+    private final AtomicInteger count = new AtomicInteger();
+
+    public Thread newThread(Runnable r) {
+      Thread thread = new Thread(r, "MVEL JIT compiler " + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
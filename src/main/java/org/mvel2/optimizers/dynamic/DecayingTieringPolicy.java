@@ -0,0 +1,116 @@
+/**
+ * MVEL 2.0
+ * Copyright (C) 2007 The Codehaus
+ * Mike Brock, Dhanji Prasanna, John Graham, Mark Proctor
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mvel2.optimizers.dynamic;
+
+/**
+ * The default {@link TieringPolicy}.  Each accessor keeps a plain invocation counter which is only compared against
+ * a threshold on the hot path; the clock is consulted once per <tt>threshold</tt> invocations.  An accessor is
+ * promoted when:
+ * <ul>
+ * <li>it reaches the threshold within one half-life of last reaching it, ie. it is being invoked rapidly; or</li>
+ * <li>its lifetime invocations reach the lifetime threshold, so that steadily but slowly invoked accessors are
+ * eventually compiled too.</li>
+ * </ul>
+ * Otherwise the count decays, being halved for every half-life that has elapsed.
+ * <p/>
+ * Unless configured explicitly, the threshold and half-life are taken from {@link DynamicOptimizer#tenuringThreshold}
+ * and {@link DynamicOptimizer#timeSpan}, so that they may be tuned at runtime.
+ */
+public class DecayingTieringPolicy implements TieringPolicy {
+  public static final int DEFAULT_LIFETIME_THRESHOLD = 10000;
+
+  private final int threshold;
+  private final long halfLife;
+  private final int lifetimeThreshold;
+
+  public DecayingTieringPolicy() {
+    this(0, 0, DEFAULT_LIFETIME_THRESHOLD);
+  }
+
+  /**
+   * @param threshold         the number of invocations within one half-life which triggers promotion, or <tt>0</tt>
+   *                          to use {@link DynamicOptimizer#tenuringThreshold}
+   * @param halfLife          the half-life of the count in milliseconds, or <tt>0</tt> to use
+   *                          {@link DynamicOptimizer#timeSpan}
+   * @param lifetimeThreshold the total number of invocations which triggers promotion regardless of rate
+   */
+  public DecayingTieringPolicy(int threshold, long halfLife, int lifetimeThreshold) {
+    if (threshold < 0 || halfLife < 0 || lifetimeThreshold < 1)
+      throw new IllegalArgumentException("invalid tiering policy configuration");
+
+    this.threshold = threshold;
+    this.halfLife = halfLife;
+    this.lifetimeThreshold = lifetimeThreshold;
+  }
+
+  public InvocationCounter createCounter(int accessorType) {
+    return new Counter();
+  }
+
+  public int getThreshold() {
+    return threshold == 0 ? DynamicOptimizer.tenuringThreshold : threshold;
+  }
+
+  public long getHalfLife() {
+    return halfLife == 0 ? DynamicOptimizer.timeSpan : halfLife;
+  }
+
+  public int getLifetimeThreshold() {
+    return lifetimeThreshold;
+  }
+
+  private final class Counter implements InvocationCounter {
+    private int count;
+    private int decayed;
+    private int lifetime;
+    private long stamp = System.currentTimeMillis();
+
+    public boolean increment() {
+      if (++count < getThreshold()) return false;
+
+      long now = System.currentTimeMillis();
+      long elapsed = now - stamp;
+      long halfLife = getHalfLife();
+
+      stamp = now;
+
+      /**
+       * Only the invocations since the last decay are new.
+       */
+      lifetime += count - decayed;
+
+      if (elapsed < halfLife || lifetime >= lifetimeThreshold) {
+        return true;
+      }
+
+      long halvings = halfLife <= 0 ? 32 : elapsed / halfLife;
+      decayed = count = halvings > 31 ? 0 : count >> halvings;
+      return false;
+    }
+
+    public void reset() {
+      count = decayed = lifetime = 0;
+      stamp = System.currentTimeMillis();
+    }
+
+    public int getCount() {
+      return count;
+    }
+  }
+}
@@ -22,4 +22,11 @@ import org.mvel2.compiler.Accessor;
 
 public interface DynamicAccessor extends Accessor {
   public void deoptimize();
+
+  public AccessorProfile getProfile();
+
+  /**
+   * @return the accessor currently in use: either the original reflective accessor, or its compiled replacement
+   */
+  public Accessor getAccessor();
 }
@@ -18,54 +18,226 @@
 
 package org.mvel2.optimizers.dynamic;
 
+import org.mvel2.compiler.Accessor;
 import org.mvel2.util.MVELClassLoader;
 
-import java.util.LinkedList;
-
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * Defines the classes generated by the {@link DynamicOptimizer}.  Rather than defining every class itself, the
+ * loader spreads them across a series of small <em>shard</em> loaders, each holding at most <tt>shardSize</tt>
+ * classes, so that generated code can be unloaded a shard at a time:
+ * <ul>
+ * <li>Shards other than the one currently being filled are only weakly referenced, so once every accessor compiled
+ * into a shard has become unreachable the shard and its classes are collected.</li>
+ * <li>When the number of live classes exceeds the tenure limit, the oldest shard is retired: the accessors compiled
+ * into it are deoptimized, releasing the shard.  Accessors which are still hot are promoted again by their tiering
+ * policy, into the newest shard, so only cold code is dropped.</li>
+ * </ul>
+ * Dynamic accessors are also only weakly referenced, so registering an accessor does not keep its expression alive.
+ */
 public class DynamicClassLoader extends ClassLoader implements MVELClassLoader {
   private int totalClasses;
+  private int liveClasses;
   private int tenureLimit;
-  private final LinkedList<DynamicAccessor> allAccessors = new LinkedList<DynamicAccessor>();
+  private int shardSize;
+
+  private Shard current;
+  private int currentClasses;
+  private final List<ShardReference> shards = new ArrayList<ShardReference>();
+  private final ReferenceQueue<Shard> collected = new ReferenceQueue<Shard>();
+
+  private final ConcurrentLinkedQueue<WeakReference<DynamicAccessor>> allAccessors
+      = new ConcurrentLinkedQueue<WeakReference<DynamicAccessor>>();
+  private final AtomicInteger registrations = new AtomicInteger();
 
   public DynamicClassLoader(ClassLoader classLoader, int tenureLimit) {
+    this(classLoader, tenureLimit, DynamicOptimizer.shardSize);
+  }
+
+  public DynamicClassLoader(ClassLoader classLoader, int tenureLimit, int shardSize) {
     super(classLoader);
     this.tenureLimit = tenureLimit;
+    this.shardSize = shardSize < 1 ? 1 : shardSize;
   }
 
-  public Class defineClassX(String className, byte[] b, int start, int end) {
+  public synchronized Class defineClassX(String className, byte[] b, int start, int end) {
+    expungeCollectedShards();
+
+    if (current == null || currentClasses >= shardSize) {
+      current = new Shard(getParent());
+      currentClasses = 0;
+      shards.add(new ShardReference(current, collected));
+    }
+
+    Class cls = current.define(className, b, start, end);
+
+    currentClasses++;
+    shards.get(shards.size() - 1).classes++;
     totalClasses++;
-    return super.defineClass(className, b, start, end);
+    liveClasses++;
+    DynamicOptimizerMetrics.classGenerated();
+    return cls;
+  }
+
+  public synchronized void setTenureLimit(int tenureLimit) {
+    this.tenureLimit = tenureLimit;
+  }
+
+  /**
+   * Applies to shards created after the call.
+   */
+  public synchronized void setShardSize(int shardSize) {
+    this.shardSize = shardSize < 1 ? 1 : shardSize;
   }
 
   public int getTotalClasses() {
     return totalClasses;
   }
 
+  /**
+   * @return the number of generated classes in shards which have been neither retired nor collected
+   */
+  public synchronized int getLiveClasses() {
+    expungeCollectedShards();
+    return liveClasses;
+  }
+
+  /**
+   * @return the number of shards which have been neither retired nor collected
+   */
+  public synchronized int getShardCount() {
+    expungeCollectedShards();
+    return shards.size();
+  }
+
   public DynamicAccessor registerDynamicAccessor(DynamicAccessor accessor) {
-    synchronized (allAccessors) {
-      allAccessors.add(accessor);
-      while (allAccessors.size() > tenureLimit) {
-        DynamicAccessor da = allAccessors.removeFirst();
-        if (da != null) {
-          da.deoptimize();
-        }
+    DynamicOptimizerMetrics.accessorCreated();
+    allAccessors.add(new WeakReference<DynamicAccessor>(accessor));
+
+    if ((registrations.incrementAndGet() & 1023) == 0) {
+      for (Iterator<WeakReference<DynamicAccessor>> iter = allAccessors.iterator(); iter.hasNext(); ) {
+        if (iter.next().get() == null) iter.remove();
       }
-      assert accessor != null;
-      return accessor;
     }
+    return accessor;
   }
 
-  public void deoptimizeAll() {
-    synchronized (allAccessors) {
-      for (DynamicAccessor a : allAccessors) {
-        if (a != null) a.deoptimize();
+  /**
+   * Records that the dynamic accessor has been promoted to the specified compiled accessor, so that it can be
+   * deoptimized if the shard the compiled accessor's class was defined in is retired.
+   */
+  public synchronized void registerPromotion(DynamicAccessor accessor, Accessor compiled) {
+    ClassLoader cl = compiled.getClass().getClassLoader();
+    for (int i = shards.size() - 1; i >= 0; i--) {
+      ShardReference ref = shards.get(i);
+      if (ref.get() == cl) {
+        ref.promotions.add(new Promotion(accessor, compiled));
+        return;
       }
-      allAccessors.clear();
     }
   }
 
-  public boolean isOverloaded() {
-    return tenureLimit < totalClasses;
+  public List<AccessorProfile> getAccessorProfiles() {
+    List<AccessorProfile> profiles = new ArrayList<AccessorProfile>();
+    for (WeakReference<DynamicAccessor> ref : allAccessors) {
+      DynamicAccessor a = ref.get();
+      if (a != null) profiles.add(a.getProfile());
+    }
+    return profiles;
+  }
+
+  /**
+   * Retires the oldest shard, deoptimizing the accessors compiled into it.
+   *
+   * @return the number of classes in the retired shard, or <tt>0</tt> if there are no shards to retire
+   */
+  public synchronized int retireOldestShard() {
+    expungeCollectedShards();
+    if (shards.isEmpty()) return 0;
+
+    ShardReference oldest = shards.remove(0);
+    if (oldest.get() == current) current = null;
+    oldest.retired = true;
+
+    for (Promotion p : oldest.promotions) {
+      DynamicAccessor a = p.get();
+      Accessor compiled = p.compiled.get();
+      if (a != null && compiled != null && a.getAccessor() == compiled) {
+        a.deoptimize();
+      }
+    }
+    oldest.promotions.clear();
+
+    liveClasses -= oldest.classes;
+    return oldest.classes;
+  }
+
+  public synchronized void deoptimizeAll() {
+    for (WeakReference<DynamicAccessor> ref : allAccessors) {
+      DynamicAccessor a = ref.get();
+      if (a != null) a.deoptimize();
+    }
+    allAccessors.clear();
+
+    for (ShardReference ref : shards) {
+      ref.retired = true;
+      ref.promotions.clear();
+    }
+    shards.clear();
+    current = null;
+    liveClasses = 0;
+  }
+
+  public synchronized boolean isOverloaded() {
+    expungeCollectedShards();
+    return tenureLimit < liveClasses;
+  }
+
+  private void expungeCollectedShards() {
+    Reference<? extends Shard> r;
+    while ((r = collected.poll()) != null) {
+      ShardReference ref = (ShardReference) r;
+      DynamicOptimizerMetrics.classLoaderUnloaded();
+      if (!ref.retired && shards.remove(ref)) {
+        liveClasses -= ref.classes;
+      }
+    }
+  }
+
+  private static final class Shard extends ClassLoader {
+    private Shard(ClassLoader parent) {
+      super(parent);
+    }
+
+    private Class define(String className, byte[] b, int start, int len) {
+      return defineClass(className, b, start, len);
+    }
+  }
+
+  private static final class ShardReference extends WeakReference<Shard> {
+    private int classes;
+    private boolean retired;
+    private final List<Promotion> promotions = new ArrayList<Promotion>();
+
+    private ShardReference(Shard shard, ReferenceQueue<Shard> queue) {
+      super(shard, queue);
+    }
+  }
+
+  private static final class Promotion extends WeakReference<DynamicAccessor> {
+    private final WeakReference<Accessor> compiled;
+
+    private Promotion(DynamicAccessor accessor, Accessor compiled) {
+      super(accessor);
+      this.compiled = new WeakReference<Accessor>(compiled);
+    }
   }
 }
@@ -22,9 +22,12 @@ import org.mvel2.ParserContext;
 import org.mvel2.compiler.AbstractParser;
 import org.mvel2.compiler.Accessor;
 import org.mvel2.integration.VariableResolverFactory;
+import org.mvel2.optimizers.AccessorOptimizer;
 import org.mvel2.optimizers.OptimizerFactory;
+import org.mvel2.optimizers.impl.asm.ASMAccessorOptimizer;
+import org.mvel2.optimizers.impl.asm.DeferredAccessor;
 
-import static java.lang.System.currentTimeMillis;
+import java.util.List;
 
 public class DynamicCollectionAccessor implements DynamicAccessor {
   private Object rootObject;
@@ -34,15 +37,17 @@ public class DynamicCollectionAccessor implements DynamicAccessor {
   private int start;
   private int offset;
 
-  private long stamp;
   private int type;
 
-  private int runcount;
+  private final InvocationCounter counter;
+  private int invocations;
+  private int promotions;
 
   private boolean opt = false;
+  private volatile int generation;
 
   private Accessor _safeAccessor;
-  private Accessor _accessor;
+  private volatile Accessor _accessor;
 
   public DynamicCollectionAccessor(Object rootObject, Class colType, char[] property, int start, int offset, int type, Accessor _accessor) {
     this.rootObject = rootObject;
@@ -54,57 +59,117 @@ public class DynamicCollectionAccessor implements DynamicAccessor {
     this.start = start;
     this.offset = offset;
 
-    stamp = currentTimeMillis();
+    this.counter = DynamicOptimizer.getTieringPolicy().createCounter(type);
   }
 
   public Object getValue(Object ctx, Object elCtx, VariableResolverFactory variableFactory) {
-    if (!opt) {
-      if (++runcount > DynamicOptimizer.tenuringThreshold) {
-        if ((currentTimeMillis() - stamp) < DynamicOptimizer.timeSpan) {
-          opt = true;
-
-          return optimize(AbstractParser.getCurrentThreadParserContext(), ctx, elCtx, variableFactory);
-        }
-        else {
-          runcount = 0;
-          stamp = currentTimeMillis();
-        }
+    invocations++;
+    if (!opt && counter.increment()) {
+      opt = true;
+      if (!DynamicOptimizer.isBackgroundCompilation()) {
+        return optimize(AbstractParser.getCurrentThreadParserContext(), ctx, elCtx, variableFactory);
       }
+      return optimizeInBackground(AbstractParser.getCurrentThreadParserContext(), ctx, elCtx, variableFactory);
     }
 
     return _accessor.getValue(ctx, elCtx, variableFactory);
   }
 
   public Object setValue(Object ctx, Object elCtx, VariableResolverFactory variableFactory, Object value) {
-    runcount++;
+    invocations++;
     return _accessor.setValue(ctx, elCtx, variableFactory, value);
   }
 
   private Object optimize(ParserContext pCtx, Object ctx, Object elCtx, VariableResolverFactory variableResolverFactory) {
+    int gen = generation;
+
+    long time = System.nanoTime();
+    Accessor compiled = generate(OptimizerFactory.getAccessorCompiler("ASM"), pCtx, ctx, elCtx,
+        variableResolverFactory);
+    DynamicOptimizerMetrics.promoted(System.nanoTime() - time);
+    DynamicOptimizer.registerPromotion(this, compiled);
+    promote(gen, compiled);
+
+    return compiled.getValue(ctx, elCtx, variableResolverFactory);
+  }
+
+  /**
+   * Generates the accessor on the calling thread and leaves the definition of the generated classes to the
+   * background compiler.
+   */
+  private Object optimizeInBackground(ParserContext pCtx, Object ctx, Object elCtx,
+                                      VariableResolverFactory variableResolverFactory) {
+    final int gen = generation;
+    ASMAccessorOptimizer ao = (ASMAccessorOptimizer) OptimizerFactory.getAccessorCompiler("ASM");
+    ao.setDeferredDefinition(true);
+
+    final long time = System.nanoTime();
+    final Accessor generated = generate(ao, pCtx, ctx, elCtx, variableResolverFactory);
+    final long elapsed = System.nanoTime() - time;
+    final List<DeferredAccessor> deferred = ao.getDeferredAccessors();
+
+    boolean queued = BackgroundCompiler.submit(new Runnable() {
+      public void run() {
+        try {
+          long time = System.nanoTime();
+          Accessor defined = BackgroundCompiler.define(generated, deferred);
+          DynamicOptimizerMetrics.promoted(elapsed + System.nanoTime() - time);
+          DynamicOptimizer.registerPromotion(DynamicCollectionAccessor.this, defined);
+          promote(gen, generated instanceof DeferredAccessor ? defined : generated);
+        }
+        catch (Throwable t) {
+          DynamicOptimizerMetrics.compilationFailed();
+        }
+      }
+    });
 
+    if (!queued) {
+      opt = false;
+      counter.reset();
+    }
+
+    return _safeAccessor.getValue(ctx, elCtx, variableResolverFactory);
+  }
+
+  private Accessor generate(AccessorOptimizer ao, ParserContext pCtx, Object ctx, Object elCtx,
+                            VariableResolverFactory variableResolverFactory) {
     if (DynamicOptimizer.isOverloaded()) {
       DynamicOptimizer.enforceTenureLimit();
     }
 
-    _accessor = OptimizerFactory.getAccessorCompiler("ASM").optimizeCollection(pCtx, rootObject, colType,
-        property, start, offset, ctx, elCtx, variableResolverFactory);
-    return _accessor.getValue(ctx, elCtx, variableResolverFactory);
+    return ao.optimizeCollection(pCtx, rootObject, colType, property, start, offset, ctx, elCtx,
+        variableResolverFactory);
   }
 
+  /**
+   * Swaps in a compiled accessor, unless the accessor has been deoptimized since its compilation was requested.
+   */
+  private synchronized void promote(int gen, Accessor compiled) {
+    if (generation == gen) {
+      promotions++;
+      _accessor = compiled;
+    }
+  }
 
-  public void deoptimize() {
+  public synchronized void deoptimize() {
+    if (_accessor != _safeAccessor) DynamicOptimizerMetrics.deoptimized();
+    generation++;
     this._accessor = this._safeAccessor;
     opt = false;
-    runcount = 0;
-    stamp = currentTimeMillis();
+    counter.reset();
   }
 
-  public long getStamp() {
-    return stamp;
+  public int getRuncount() {
+    return counter.getCount();
   }
 
-  public int getRuncount() {
-    return runcount;
+  public AccessorProfile getProfile() {
+    return new AccessorProfile(new String(property, start, offset), type, invocations, promotions,
+        _accessor != _safeAccessor);
+  }
+
+  public Accessor getAccessor() {
+    return _accessor;
   }
 
   public Class getKnownEgressType() {
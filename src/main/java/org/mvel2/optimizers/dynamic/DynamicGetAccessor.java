@@ -24,25 +24,33 @@ import org.mvel2.compiler.Accessor;
 import org.mvel2.integration.VariableResolverFactory;
 import org.mvel2.optimizers.AccessorOptimizer;
 import org.mvel2.optimizers.OptimizerFactory;
+import org.mvel2.optimizers.impl.asm.ASMAccessorChainCompiler;
+import org.mvel2.optimizers.impl.asm.ASMAccessorOptimizer;
+import org.mvel2.optimizers.impl.asm.DeferredAccessor;
 
-import static java.lang.System.currentTimeMillis;
+import java.util.List;
 
 public class DynamicGetAccessor implements DynamicAccessor {
   private char[] expr;
   private int start;
   private int offset;
 
-  private long stamp;
   private int type;
 
-  private int runcount;
+  private final InvocationCounter counter;
+  /**
+   * A plain int, rather than an atomic, to keep the hot path cheap: see {@link AccessorProfile#getInvocations()}.
+   */
+  private int invocations;
+  private int promotions;
 
   private boolean opt = false;
+  private volatile int generation;
 
   private ParserContext context;
 
   private Accessor _safeAccessor;
-  private Accessor _accessor;
+  private volatile Accessor _accessor;
 
   public DynamicGetAccessor(ParserContext context, char[] expr, int start, int offset, int type, Accessor _accessor) {
     this._safeAccessor = this._accessor = _accessor;
@@ -53,65 +61,171 @@ public class DynamicGetAccessor implements DynamicAccessor {
     this.offset = offset;
 
     this.context = context;
-    stamp = currentTimeMillis();
+    this.counter = DynamicOptimizer.getTieringPolicy().createCounter(type);
   }
 
   public Object getValue(Object ctx, Object elCtx, VariableResolverFactory variableFactory) {
-    if (!opt) {
-      if (++runcount > DynamicOptimizer.tenuringThreshold) {
-        if ((currentTimeMillis() - stamp) < DynamicOptimizer.timeSpan) {
-          opt = true;
-          return optimize(ctx, elCtx, variableFactory);
-        }
-        else {
-          runcount = 0;
-          stamp = currentTimeMillis();
-        }
+    invocations++;
+    if (!opt && counter.increment()) {
+      opt = true;
+      if (type == DynamicOptimizer.OBJ_CREATION || !DynamicOptimizer.isBackgroundCompilation()) {
+        return optimize(ctx, elCtx, variableFactory);
       }
+      return optimizeInBackground(ctx, elCtx, variableFactory);
     }
 
     return _accessor.getValue(ctx, elCtx, variableFactory);
   }
 
   public Object setValue(Object ctx, Object elCtx, VariableResolverFactory variableFactory, Object value) {
-    runcount++;
+    invocations++;
     return _accessor.setValue(ctx, elCtx, variableFactory, value);
   }
 
   private Object optimize(Object ctx, Object elCtx, VariableResolverFactory variableResolverFactory) {
+    int gen = generation;
+    AccessorOptimizer ao = OptimizerFactory.getAccessorCompiler("ASM");
+
+    long time = System.nanoTime();
+    Accessor compiled = generate(ao, ctx, elCtx, variableResolverFactory);
+    DynamicOptimizerMetrics.promoted(System.nanoTime() - time);
+    DynamicOptimizer.registerPromotion(this, compiled);
+    promote(gen, compiled);
+
+    if (type == DynamicOptimizer.REGULAR_ACCESSOR) {
+      return ao.getResultOptPass();
+    }
+    return compiled.getValue(ctx, elCtx, variableResolverFactory);
+  }
+
+  /**
+   * Compiles the reflective accessor on the background compiler if it can be, or else generates the accessor on the
+   * calling thread, which is the only one to evaluate the expression, and leaves the definition of the generated
+   * classes to the background compiler.
+   */
+  private Object optimizeInBackground(Object ctx, Object elCtx, VariableResolverFactory variableResolverFactory) {
+    if (type == DynamicOptimizer.REGULAR_ACCESSOR && ASMAccessorChainCompiler.isCompilable(_safeAccessor)) {
+      return compileInBackground(ctx, elCtx, variableResolverFactory);
+    }
+
+    final int gen = generation;
+    ASMAccessorOptimizer ao = (ASMAccessorOptimizer) OptimizerFactory.getAccessorCompiler("ASM");
+    ao.setDeferredDefinition(true);
+
+    final long time = System.nanoTime();
+    final Accessor generated = generate(ao, ctx, elCtx, variableResolverFactory);
+    final long elapsed = System.nanoTime() - time;
+    final List<DeferredAccessor> deferred = ao.getDeferredAccessors();
+
+    boolean queued = BackgroundCompiler.submit(new Runnable() {
+      public void run() {
+        try {
+          long time = System.nanoTime();
+          Accessor defined = BackgroundCompiler.define(generated, deferred);
+          DynamicOptimizerMetrics.promoted(elapsed + System.nanoTime() - time);
+          DynamicOptimizer.registerPromotion(DynamicGetAccessor.this, defined);
+          promote(gen, generated instanceof DeferredAccessor ? defined : generated);
+        }
+        catch (Throwable t) {
+          /**
+           * Leave the accessor running reflectively; it will not be promoted again unless deoptimized.
+           */
+          DynamicOptimizerMetrics.compilationFailed();
+        }
+      }
+    });
+
+    if (!queued) {
+      opt = false;
+      counter.reset();
+    }
+
+    if (type == DynamicOptimizer.REGULAR_ACCESSOR) {
+      return ao.getResultOptPass();
+    }
+    return _safeAccessor.getValue(ctx, elCtx, variableResolverFactory);
+  }
+
+  /**
+   * Compiles the reflective accessor on the background compiler, which reads the members it has resolved rather than
+   * evaluating the expression.  The reflective accessor serves this and every other call until the compiled one is
+   * swapped in.
+   */
+  private Object compileInBackground(Object ctx, Object elCtx, VariableResolverFactory variableResolverFactory) {
+    final int gen = generation;
+    final Accessor source = _safeAccessor;
+
+    boolean queued = BackgroundCompiler.submit(new Runnable() {
+      public void run() {
+        try {
+          long time = System.nanoTime();
+          Accessor compiled = ASMAccessorChainCompiler.compile(source);
+          DynamicOptimizerMetrics.promoted(System.nanoTime() - time);
+          DynamicOptimizer.registerPromotion(DynamicGetAccessor.this, compiled);
+          promote(gen, compiled);
+        }
+        catch (Throwable t) {
+          DynamicOptimizerMetrics.compilationFailed();
+        }
+      }
+    });
+
+    if (!queued) {
+      opt = false;
+      counter.reset();
+    }
+
+    return source.getValue(ctx, elCtx, variableResolverFactory);
+  }
 
+  private Accessor generate(AccessorOptimizer ao, Object ctx, Object elCtx,
+                            VariableResolverFactory variableResolverFactory) {
     if (DynamicOptimizer.isOverloaded()) {
       DynamicOptimizer.enforceTenureLimit();
     }
 
-    AccessorOptimizer ao = OptimizerFactory.getAccessorCompiler("ASM");
     switch (type) {
       case DynamicOptimizer.REGULAR_ACCESSOR:
-        _accessor = ao.optimizeAccessor(context, expr, start, offset, ctx, elCtx, variableResolverFactory, false, null);
-        return ao.getResultOptPass();
+        return ao.optimizeAccessor(context, expr, start, offset, ctx, elCtx, variableResolverFactory, false, null);
       case DynamicOptimizer.OBJ_CREATION:
-        _accessor = ao.optimizeObjectCreation(context, expr, start, offset, ctx, elCtx, variableResolverFactory);
-        return _accessor.getValue(ctx, elCtx, variableResolverFactory);
+        return ao.optimizeObjectCreation(context, expr, start, offset, ctx, elCtx, variableResolverFactory);
       case DynamicOptimizer.COLLECTION:
-        _accessor = ao.optimizeCollection(AbstractParser.getCurrentThreadParserContext(), ctx, null, expr, start, offset, ctx, elCtx, variableResolverFactory);
-        return _accessor.getValue(ctx, elCtx, variableResolverFactory);
+        return ao.optimizeCollection(AbstractParser.getCurrentThreadParserContext(), ctx, null, expr, start, offset,
+            ctx, elCtx, variableResolverFactory);
+      default:
+        return _safeAccessor;
+    }
+  }
+
+  /**
+   * Swaps in a compiled accessor, unless the accessor has been deoptimized since its compilation was requested.
+   */
+  private synchronized void promote(int gen, Accessor compiled) {
+    if (generation == gen) {
+      if (compiled != _safeAccessor) promotions++;
+      _accessor = compiled;
     }
-    return null;
   }
 
-  public void deoptimize() {
+  public synchronized void deoptimize() {
+    if (_accessor != _safeAccessor) DynamicOptimizerMetrics.deoptimized();
+    generation++;
     this._accessor = this._safeAccessor;
     opt = false;
-    runcount = 0;
-    stamp = currentTimeMillis();
+    counter.reset();
   }
 
-  public long getStamp() {
-    return stamp;
+  public int getRuncount() {
+    return counter.getCount();
   }
 
-  public int getRuncount() {
-    return runcount;
+  public AccessorProfile getProfile() {
+    return new AccessorProfile(new String(expr, start, offset), type, invocations, promotions,
+        _accessor != _safeAccessor);
+  }
+
+  public Accessor getAccessor() {
+    return _accessor;
   }
 
   public Class getKnownEgressType() {
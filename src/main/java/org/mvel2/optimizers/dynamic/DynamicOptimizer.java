@@ -24,6 +24,9 @@ import org.mvel2.integration.VariableResolverFactory;
 import org.mvel2.optimizers.AbstractOptimizer;
 import org.mvel2.optimizers.AccessorOptimizer;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import static java.lang.Thread.currentThread;
 import static org.mvel2.optimizers.OptimizerFactory.SAFE_REFLECTIVE;
 import static org.mvel2.optimizers.OptimizerFactory.getAccessorCompiler;
@@ -37,27 +40,67 @@ public class DynamicOptimizer extends AbstractOptimizer implements AccessorOptim
   public static int tenuringThreshold = 50;
   public static long timeSpan = 100;
   public static int maximumTenure = 1500;
+  public static int shardSize = 100;
   public static int totalRecycled = 0;
   private static volatile boolean useSafeClassloading = false;
+  private static volatile TieringPolicy tieringPolicy = new DecayingTieringPolicy();
+  private static volatile boolean backgroundCompilation = Boolean.getBoolean("mvel2.optimizer.background_jit");
 
   public void init() {
     _init();
   }
 
   private static void _init() {
+    if (Boolean.getBoolean("mvel2.optimizer.jmx")) {
+      DynamicOptimizerMonitor.register();
+    }
     setMVELClassLoader(classLoader = new DynamicClassLoader(currentThread().getContextClassLoader(), maximumTenure));
   }
 
+  /**
+   * Retires the oldest generated code until the number of live generated classes is within
+   * {@link #maximumTenure}.
+   */
   public static void enforceTenureLimit() {
     if (classLoader.isOverloaded()) {
       synchronized (oLock) {
-        classLoader.deoptimizeAll();
-        totalRecycled = +classLoader.getTotalClasses();
-        _init();
+        int retired;
+        while (classLoader.isOverloaded() && (retired = classLoader.retireOldestShard()) != 0) {
+          totalRecycled += retired;
+          DynamicOptimizerMetrics.classLoaderRecycled();
+        }
       }
     }
   }
 
+  /**
+   * Applies changes to {@link #maximumTenure} and {@link #shardSize} to the current class loader.
+   */
+  public static void updateLimits() {
+    if (classLoader != null) {
+      classLoader.setTenureLimit(maximumTenure);
+      classLoader.setShardSize(shardSize);
+    }
+  }
+
+  static void registerPromotion(DynamicAccessor accessor, Accessor compiled) {
+    if (compiled != null) classLoader.registerPromotion(accessor, compiled);
+  }
+
+  /**
+   * @return the number of generated classes which have been neither retired nor unloaded
+   */
+  public static int getLiveClasses() {
+    return classLoader == null ? 0 : classLoader.getLiveClasses();
+  }
+
+  /**
+   * @return the number of class loaders holding live generated classes
+   */
+  public static int getShardCount() {
+    return classLoader == null ? 0 : classLoader.getShardCount();
+  }
+
   public static final int REGULAR_ACCESSOR = 0;
 
   public Accessor optimizeAccessor(ParserContext pCtx, char[] property, int start, int offset, Object ctx, Object thisRef,
@@ -100,6 +143,36 @@ public class DynamicOptimizer extends AbstractOptimizer implements AccessorOptim
     }
   }
 
+  static List<AccessorProfile> getAccessorProfiles() {
+    return classLoader == null ? new ArrayList<AccessorProfile>() : classLoader.getAccessorProfiles();
+  }
+
+  public static TieringPolicy getTieringPolicy() {
+    return tieringPolicy;
+  }
+
+  /**
+   * Sets the policy deciding when accessors are promoted to bytecode.  The policy applies to accessors created
+   * after it is set.
+   */
+  public static void setTieringPolicy(TieringPolicy policy) {
+    if (policy == null) throw new IllegalArgumentException("tiering policy cannot be null");
+    tieringPolicy = policy;
+  }
+
+  public static boolean isBackgroundCompilation() {
+    return backgroundCompilation;
+  }
+
+  /**
+   * Enables or disables compilation of accessors on a background thread.
+   *
+   * @see BackgroundCompiler
+   */
+  public static void setBackgroundCompilation(boolean backgroundCompilation) {
+    DynamicOptimizer.backgroundCompilation = backgroundCompilation;
+  }
+
   public static boolean isOverloaded() {
     return classLoader.isOverloaded();
   }
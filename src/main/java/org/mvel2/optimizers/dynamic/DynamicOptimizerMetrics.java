@@ -0,0 +1,172 @@
+/**
+ * MVEL 2.0
+ * Copyright (C) 2007 The Codehaus
+ * Mike Brock, Dhanji Prasanna, John Graham, Mark Proctor
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mvel2.optimizers.dynamic;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters describing the activity of the {@link DynamicOptimizer}: how often accessors are promoted to bytecode,
+ * deoptimized and recycled, and how much time is spent generating bytecode.
+ *
+ * @see DynamicOptimizerMonitor
+ */
+public class DynamicOptimizerMetrics {
+  private static final AtomicLong accessorsCreated = new AtomicLong();
+  private static final AtomicLong promotions = new AtomicLong();
+  private static final AtomicLong deoptimizations = new AtomicLong();
+  private static final AtomicLong generatedClasses = new AtomicLong();
+  private static final AtomicLong classLoaderRecycles = new AtomicLong();
+  private static final AtomicLong classLoadersUnloaded = new AtomicLong();
+  private static final AtomicLong generationTime = new AtomicLong();
+  private static final AtomicLong compilationsQueued = new AtomicLong();
+  private static final AtomicLong compilationsDropped = new AtomicLong();
+  private static final AtomicLong compilationFailures = new AtomicLong();
+
+  private DynamicOptimizerMetrics() {
+  }
+
+  static void accessorCreated() {
+    accessorsCreated.incrementAndGet();
+  }
+
+  static void promoted(long nanos) {
+    promotions.incrementAndGet();
+    generationTime.addAndGet(nanos);
+  }
+
+  static void compilationQueued() {
+    compilationsQueued.incrementAndGet();
+  }
+
+  static void compilationDropped() {
+    compilationsDropped.incrementAndGet();
+  }
+
+  static void compilationFailed() {
+    compilationFailures.incrementAndGet();
+  }
+
+  static void deoptimized() {
+    deoptimizations.incrementAndGet();
+  }
+
+  static void classGenerated() {
+    generatedClasses.incrementAndGet();
+  }
+
+  static void classLoaderRecycled() {
+    classLoaderRecycles.incrementAndGet();
+  }
+
+  static void classLoaderUnloaded() {
+    classLoadersUnloaded.incrementAndGet();
+  }
+
+  /**
+   * @return the number of dynamic accessors created
+   */
+  public static long getAccessorsCreated() {
+    return accessorsCreated.get();
+  }
+
+  /**
+   * @return the number of times an accessor has been promoted to compiled bytecode
+   */
+  public static long getPromotions() {
+    return promotions.get();
+  }
+
+  /**
+   * @return the number of times a compiled accessor has been reverted to its reflective form
+   */
+  public static long getDeoptimizations() {
+    return deoptimizations.get();
+  }
+
+  /**
+   * @return the number of accessor classes defined
+   */
+  public static long getGeneratedClasses() {
+    return generatedClasses.get();
+  }
+
+  /**
+   * @return the number of class loaders retired, with their accessors deoptimized, because more than
+   *         {@link DynamicOptimizer#maximumTenure} generated classes were live
+   */
+  public static long getClassLoaderRecycles() {
+    return classLoaderRecycles.get();
+  }
+
+  /**
+   * @return the number of class loaders, with their generated classes, which have been garbage collected
+   */
+  public static long getClassLoadersUnloaded() {
+    return classLoadersUnloaded.get();
+  }
+
+  /**
+   * @return the total time spent generating bytecode, in nanoseconds
+   */
+  public static long getGenerationTime() {
+    return generationTime.get();
+  }
+
+  /**
+   * @return the number of accessors queued for background compilation
+   */
+  public static long getCompilationsQueued() {
+    return compilationsQueued.get();
+  }
+
+  /**
+   * @return the number of background compilation requests dropped because the compiler's queue was full
+   */
+  public static long getCompilationsDropped() {
+    return compilationsDropped.get();
+  }
+
+  /**
+   * @return the number of background compilations which failed, leaving the accessor running reflectively
+   */
+  public static long getCompilationFailures() {
+    return compilationFailures.get();
+  }
+
+  /**
+   * @return profiles of the accessors currently registered with the optimizer's class loader
+   */
+  public static List<AccessorProfile> getAccessorProfiles() {
+    return DynamicOptimizer.getAccessorProfiles();
+  }
+
+  public static void reset() {
+    accessorsCreated.set(0);
+    promotions.set(0);
+    deoptimizations.set(0);
+    generatedClasses.set(0);
+    classLoaderRecycles.set(0);
+    classLoadersUnloaded.set(0);
+    generationTime.set(0);
+    compilationsQueued.set(0);
+    compilationsDropped.set(0);
+    compilationFailures.set(0);
+  }
+}
@@ -0,0 +1,181 @@
+/**
+ * MVEL 2.0
+ * Copyright (C) 2007 The Codehaus
+ * Mike Brock, Dhanji Prasanna, John Graham, Mark Proctor
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mvel2.optimizers.dynamic;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Exposes {@link DynamicOptimizerMetrics} and the {@link DynamicOptimizer} tuning knobs over JMX.  The monitor is
+ * registered on the platform MBean server with {@link #register()}, or automatically when the optimizer is first
+ * used if the <tt>mvel2.optimizer.jmx</tt> system property is set.
+ */
+public class DynamicOptimizerMonitor implements DynamicOptimizerMonitorMBean {
+  public static final String OBJECT_NAME = "org.mvel2:type=DynamicOptimizer";
+
+  /**
+   * Registers the monitor with the platform MBean server, if it has not already been registered.
+   */
+  public static synchronized void register() {
+    try {
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      ObjectName name = new ObjectName(OBJECT_NAME);
+      if (!server.isRegistered(name)) {
+        server.registerMBean(new DynamicOptimizerMonitor(), name);
+      }
+    }
+    catch (Exception e) {
+      throw new RuntimeException("unable to register " + OBJECT_NAME, e);
+    }
+  }
+
+  public static synchronized void unregister() {
+    try {
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      ObjectName name = new ObjectName(OBJECT_NAME);
+      if (server.isRegistered(name)) {
+        server.unregisterMBean(name);
+      }
+    }
+    catch (Exception e) {
+      throw new RuntimeException("unable to unregister " + OBJECT_NAME, e);
+    }
+  }
+
+  public long getAccessorsCreated() {
+    return DynamicOptimizerMetrics.getAccessorsCreated();
+  }
+
+  public long getPromotions() {
+    return DynamicOptimizerMetrics.getPromotions();
+  }
+
+  public long getDeoptimizations() {
+    return DynamicOptimizerMetrics.getDeoptimizations();
+  }
+
+  public long getGeneratedClasses() {
+    return DynamicOptimizerMetrics.getGeneratedClasses();
+  }
+
+  public long getClassLoaderRecycles() {
+    return DynamicOptimizerMetrics.getClassLoaderRecycles();
+  }
+
+  public long getClassLoadersUnloaded() {
+    return DynamicOptimizerMetrics.getClassLoadersUnloaded();
+  }
+
+  public int getLiveClasses() {
+    return DynamicOptimizer.getLiveClasses();
+  }
+
+  public int getLiveClassLoaders() {
+    return DynamicOptimizer.getShardCount();
+  }
+
+  public long getRecycledClasses() {
+    return DynamicOptimizer.totalRecycled;
+  }
+
+  public long getGenerationTimeMillis() {
+    return DynamicOptimizerMetrics.getGenerationTime() / 1000000;
+  }
+
+  public long getCompilationsQueued() {
+    return DynamicOptimizerMetrics.getCompilationsQueued();
+  }
+
+  public long getCompilationsDropped() {
+    return DynamicOptimizerMetrics.getCompilationsDropped();
+  }
+
+  public long getCompilationFailures() {
+    return DynamicOptimizerMetrics.getCompilationFailures();
+  }
+
+  public int getCompilerQueueSize() {
+    return BackgroundCompiler.getQueueSize();
+  }
+
+  public boolean isBackgroundCompilation() {
+    return DynamicOptimizer.isBackgroundCompilation();
+  }
+
+  public void setBackgroundCompilation(boolean backgroundCompilation) {
+    DynamicOptimizer.setBackgroundCompilation(backgroundCompilation);
+  }
+
+  public int getTenuringThreshold() {
+    return DynamicOptimizer.tenuringThreshold;
+  }
+
+  public void setTenuringThreshold(int tenuringThreshold) {
+    DynamicOptimizer.tenuringThreshold = tenuringThreshold;
+  }
+
+  public long getTimeSpan() {
+    return DynamicOptimizer.timeSpan;
+  }
+
+  public void setTimeSpan(long timeSpan) {
+    DynamicOptimizer.timeSpan = timeSpan;
+  }
+
+  public int getMaximumTenure() {
+    return DynamicOptimizer.maximumTenure;
+  }
+
+  public void setMaximumTenure(int maximumTenure) {
+    DynamicOptimizer.maximumTenure = maximumTenure;
+    DynamicOptimizer.updateLimits();
+  }
+
+  public int getShardSize() {
+    return DynamicOptimizer.shardSize;
+  }
+
+  public void setShardSize(int shardSize) {
+    DynamicOptimizer.shardSize = shardSize;
+    DynamicOptimizer.updateLimits();
+  }
+
+  public String[] topAccessors(int limit) {
+    List<AccessorProfile> profiles = DynamicOptimizerMetrics.getAccessorProfiles();
+    Collections.sort(profiles, new Comparator<AccessorProfile>() {
+      public int compare(AccessorProfile a, AccessorProfile b) {
+        return a.getInvocations() > b.getInvocations() ? -1 : (a.getInvocations() == b.getInvocations() ? 0 : 1);
+      }
+    });
+
+    String[] top = new String[Math.min(limit, profiles.size())];
+    for (int i = 0; i < top.length; i++) {
+      top[i] = profiles.get(i).toString();
+    }
+    return top;
+  }
+
+  public void resetMetrics() {
+    DynamicOptimizerMetrics.reset();
+  }
+}
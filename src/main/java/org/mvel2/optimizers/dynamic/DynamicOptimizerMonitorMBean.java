@@ -0,0 +1,80 @@
+/**
+ * MVEL 2.0
+ * Copyright (C) 2007 The Codehaus
+ * Mike Brock, Dhanji Prasanna, John Graham, Mark Proctor
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mvel2.optimizers.dynamic;
+
+/**
+ * The management interface of {@link DynamicOptimizerMonitor}.
+ */
+public interface DynamicOptimizerMonitorMBean {
+  public long getAccessorsCreated();
+
+  public long getPromotions();
+
+  public long getDeoptimizations();
+
+  public long getGeneratedClasses();
+
+  public long getClassLoaderRecycles();
+
+  public long getClassLoadersUnloaded();
+
+  public long getRecycledClasses();
+
+  public int getLiveClasses();
+
+  public int getLiveClassLoaders();
+
+  public long getGenerationTimeMillis();
+
+  public long getCompilationsQueued();
+
+  public long getCompilationsDropped();
+
+  public long getCompilationFailures();
+
+  public int getCompilerQueueSize();
+
+  public boolean isBackgroundCompilation();
+
+  public void setBackgroundCompilation(boolean backgroundCompilation);
+
+  public int getTenuringThreshold();
+
+  public void setTenuringThreshold(int tenuringThreshold);
+
+  public long getTimeSpan();
+
+  public void setTimeSpan(long timeSpan);
+
+  public int getMaximumTenure();
+
+  public void setMaximumTenure(int maximumTenure);
+
+  public int getShardSize();
+
+  public void setShardSize(int shardSize);
+
+  /**
+   * @param limit the maximum number of accessors to report
+   * @return the most frequently invoked accessors, most frequent first
+   */
+  public String[] topAccessors(int limit);
+
+  public void resetMetrics();
+}
@@ -24,20 +24,20 @@ import org.mvel2.integration.VariableResolverFactory;
 import org.mvel2.optimizers.AccessorOptimizer;
 import org.mvel2.optimizers.OptimizerFactory;
 
-import static java.lang.System.currentTimeMillis;
-
 public class DynamicSetAccessor implements DynamicAccessor {
   private char[] property;
   private int start;
   private int offset;
 
   private boolean opt = false;
-  private int runcount = 0;
-  private long stamp;
+  private volatile int generation;
+  private final InvocationCounter counter;
+  private int invocations;
+  private int promotions;
 
   private ParserContext context;
   private final Accessor _safeAccessor;
-  private Accessor _accessor;
+  private volatile Accessor _accessor;
   private String description;
 
   public DynamicSetAccessor(ParserContext context, char[] property, int start, int offset, Accessor _accessor) {
@@ -49,21 +49,14 @@ public class DynamicSetAccessor implements DynamicAccessor {
     this.start = start;
     this.offset = offset;
 
-    this.stamp = System.currentTimeMillis();
+    this.counter = DynamicOptimizer.getTieringPolicy().createCounter(DynamicOptimizer.SET_ACCESSOR);
   }
 
   public Object setValue(Object ctx, Object elCtx, VariableResolverFactory variableFactory, Object value) {
-    if (!opt) {
-      if (++runcount > DynamicOptimizer.tenuringThreshold) {
-        if ((currentTimeMillis() - stamp) < DynamicOptimizer.timeSpan) {
-          opt = true;
-          return optimize(ctx, elCtx, variableFactory, value);
-        }
-        else {
-          runcount = 0;
-          stamp = currentTimeMillis();
-        }
-      }
+    invocations++;
+    if (!opt && counter.increment()) {
+      opt = true;
+      return optimize(ctx, elCtx, variableFactory, value);
     }
 
     _accessor.setValue(ctx, elCtx, variableFactory, value);
@@ -79,19 +72,36 @@ public class DynamicSetAccessor implements DynamicAccessor {
       DynamicOptimizer.enforceTenureLimit();
     }
 
+    int gen = generation;
     AccessorOptimizer ao = OptimizerFactory.getAccessorCompiler("ASM");
-    _accessor = ao.optimizeSetAccessor(context, property, start, offset, ctx, elCtx,
+    long time = System.nanoTime();
+    Accessor compiled = ao.optimizeSetAccessor(context, property, start, offset, ctx, elCtx,
         variableResolverFactory, false, value, value != null ? value.getClass() : Object.class);
-    assert _accessor != null;
+    assert compiled != null;
+
+    DynamicOptimizerMetrics.promoted(System.nanoTime() - time);
+    DynamicOptimizer.registerPromotion(this, compiled);
+    promote(gen, compiled);
 
     return value;
   }
 
-  public void deoptimize() {
+  /**
+   * Swaps in a compiled accessor, unless the accessor has been deoptimized since its compilation began.
+   */
+  private synchronized void promote(int gen, Accessor compiled) {
+    if (generation == gen) {
+      promotions++;
+      _accessor = compiled;
+    }
+  }
+
+  public synchronized void deoptimize() {
+    if (_accessor != _safeAccessor) DynamicOptimizerMetrics.deoptimized();
+    generation++;
     this._accessor = this._safeAccessor;
     opt = false;
-    runcount = 0;
-    stamp = currentTimeMillis();
+    counter.reset();
   }
 
   public String getDescription() {
@@ -102,6 +112,15 @@ public class DynamicSetAccessor implements DynamicAccessor {
     this.description = description;
   }
 
+  public AccessorProfile getProfile() {
+    return new AccessorProfile(new String(property, start, offset), DynamicOptimizer.SET_ACCESSOR, invocations,
+        promotions, _accessor != _safeAccessor);
+  }
+
+  public Accessor getAccessor() {
+    return _accessor;
+  }
+
   public Class getKnownEgressType() {
     return _safeAccessor.getKnownEgressType();
   }
@@ -0,0 +1,42 @@
+/**
+ * MVEL 2.0
+ * Copyright (C) 2007 The Codehaus
+ * Mike Brock, Dhanji Prasanna, John Graham, Mark Proctor
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mvel2.optimizers.dynamic;
+
+/**
+ * Tracks the invocations of a single accessor on behalf of a {@link TieringPolicy}.  Counters are invoked on every
+ * call to an accessor that has not yet been promoted, so must be cheap; they need not be thread-safe.
+ */
+public interface InvocationCounter {
+  /**
+   * Records an invocation of the accessor.
+   *
+   * @return true if the accessor should now be promoted to compiled bytecode
+   */
+  public boolean increment();
+
+  /**
+   * Called when the accessor has been deoptimized, and is to be profiled from scratch.
+   */
+  public void reset();
+
+  /**
+   * @return the current count
+   */
+  public int getCount();
+}
@@ -0,0 +1,34 @@
+/**
+ * MVEL 2.0
+ * Copyright (C) 2007 The Codehaus
+ * Mike Brock, Dhanji Prasanna, John Graham, Mark Proctor
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mvel2.optimizers.dynamic;
+
+/**
+ * Decides when a dynamic accessor is hot enough to be promoted from its reflective form to compiled bytecode.
+ * Each accessor is given its own {@link InvocationCounter} by the policy in effect when the accessor is created.
+ *
+ * @see DynamicOptimizer#setTieringPolicy(TieringPolicy)
+ */
+public interface TieringPolicy {
+  /**
+   * @param accessorType one of {@link DynamicOptimizer#REGULAR_ACCESSOR}, {@link DynamicOptimizer#SET_ACCESSOR},
+   *                     {@link DynamicOptimizer#COLLECTION} or {@link DynamicOptimizer#OBJ_CREATION}
+   * @return a new counter for an accessor of the specified type
+   */
+  public InvocationCounter createCounter(int accessorType);
+}
@@ -0,0 +1,53 @@
+/**
+ * MVEL 2.0
+ * Copyright (C) 2007 The Codehaus
+ * Mike Brock, Dhanji Prasanna, John Graham, Mark Proctor
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mvel2.optimizers.impl.asm;
+
+import org.mvel2.compiler.Accessor;
+import org.mvel2.integration.VariableResolverFactory;
+
+/**
+ * The base class of accessors compiled by {@link ASMAccessorChainCompiler}.  Generated subclasses implement
+ * {@link #getValue(Object, Object, VariableResolverFactory)}; assignments and the egress type are answered by the
+ * reflective accessor the class was compiled from.
+ */
+public abstract class ASMAccessorChain implements Accessor {
+  private Accessor source;
+
+  protected ASMAccessorChain() {
+  }
+
+  void setSource(Accessor source) {
+    this.source = source;
+  }
+
+  /**
+   * @return the reflective accessor this accessor was compiled from.
+   */
+  public Accessor getSource() {
+    return source;
+  }
+
+  public Object setValue(Object ctx, Object elCtx, VariableResolverFactory variableFactory, Object value) {
+    return source.setValue(ctx, elCtx, variableFactory, value);
+  }
+
+  public Class<?> getKnownEgressType() {
+    return source.getKnownEgressType();
+  }
+}
@@ -0,0 +1,252 @@
+/**
+ * MVEL 2.0
+ * Copyright (C) 2007 The Codehaus
+ * Mike Brock, Dhanji Prasanna, John Graham, Mark Proctor
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mvel2.optimizers.impl.asm;
+
+import org.mvel2.asm.ClassWriter;
+import org.mvel2.asm.MethodVisitor;
+import org.mvel2.asm.Opcodes;
+import org.mvel2.asm.Type;
+import org.mvel2.compiler.Accessor;
+import org.mvel2.compiler.AccessorNode;
+import org.mvel2.integration.VariableResolver;
+import org.mvel2.integration.VariableResolverFactory;
+import org.mvel2.optimizers.impl.refl.nodes.*;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.lang.reflect.Modifier.isPublic;
+import static java.lang.reflect.Modifier.isStatic;
+import static org.mvel2.asm.Opcodes.*;
+import static org.mvel2.util.ParseTools.getWidenedTarget;
+
+/**
+ * Compiles an accessor built by the {@link org.mvel2.optimizers.impl.refl.ReflectiveAccessorOptimizer} into bytecode
+ * which performs the same steps without reflection.  Unlike the {@link ASMAccessorOptimizer}, which resolves an
+ * expression by evaluating it, the compiler only reads the members and keys the reflective accessor has already
+ * resolved, so it needs neither the expression's context nor its variables, and may run on any thread.
+ * <p/>
+ * Only chains made of variable and <tt>this</tt> references, getters, fields, string-keyed map entries, list
+ * elements and array elements are compiled, and only where the members are public.  Anything else, including method
+ * calls with arguments, null-safe and static references and property handlers, is not compiled:
+ * {@link #compile(Accessor)} returns the accessor unchanged.
+ * <p/>
+ * As with the classes the {@link ASMAccessorOptimizer} generates, a compiled accessor expects the types the chain was
+ * resolved against, and throws a <tt>ClassCastException</tt>, on which its node is deoptimized, when given others.
+ */
+public class ASMAccessorChainCompiler {
+  private static final String CHAIN = Type.getInternalName(ASMAccessorChain.class);
+  private static final String FACTORY = Type.getInternalName(VariableResolverFactory.class);
+  private static final String RESOLVER = Type.getInternalName(VariableResolver.class);
+  private static final String GET_VALUE_DESC = "(Ljava/lang/Object;Ljava/lang/Object;L" + FACTORY
+      + ";)Ljava/lang/Object;";
+
+  private static final AtomicInteger classCount = new AtomicInteger();
+
+  private MethodVisitor mv;
+
+  private ASMAccessorChainCompiler() {
+  }
+
+  /**
+   * @param accessor an accessor returned by the reflective optimizer
+   * @return true if every step of the accessor can be compiled to bytecode
+   */
+  public static boolean isCompilable(Accessor accessor) {
+    if (!(accessor instanceof AccessorNode)) return false;
+
+    for (AccessorNode node = (AccessorNode) accessor; node != null; node = node.getNextNode()) {
+      if (!isCompilable(node)) return false;
+    }
+    return true;
+  }
+
+  private static boolean isCompilable(AccessorNode node) {
+    Class<?> type = node.getClass();
+    if (type == GetterAccessor.class) {
+      return getTarget(((GetterAccessor) node).getMethod()) != null;
+    }
+    else if (type == FieldAccessor.class) {
+      Field field = ((FieldAccessor) node).getField();
+      return isPublic(field.getModifiers()) && !isStatic(field.getModifiers())
+          && isPublic(field.getDeclaringClass().getModifiers());
+    }
+    else if (type == MapAccessor.class) {
+      return ((MapAccessor) node).getProperty() instanceof String;
+    }
+    return type == VariableAccessor.class || type == IndexedVariableAccessor.class || type == ThisValueAccessor.class
+        || type == ListAccessor.class || type == ArrayAccessor.class;
+  }
+
+  /**
+   * @return the public, non-static method a getter can be invoked through from generated code, or null if it has none
+   */
+  private static Method getTarget(Method method) {
+    Method target = getWidenedTarget(method);
+    if (isStatic(target.getModifiers()) || !isPublic(target.getModifiers())
+        || !isPublic(target.getDeclaringClass().getModifiers())) {
+      return null;
+    }
+    return target;
+  }
+
+  /**
+   * Compiles the accessor to bytecode, and defines the generated class in the
+   * {@link ASMAccessorOptimizer#getMVELClassLoader() JIT class loader}.
+   *
+   * @param accessor an accessor returned by the reflective optimizer
+   * @return the compiled accessor, or the accessor itself if it cannot be compiled
+   */
+  public static Accessor compile(Accessor accessor) {
+    if (!isCompilable(accessor)) return accessor;
+
+    String className = "ASMAccessorChainImpl_" + classCount.incrementAndGet();
+    try {
+      byte[] b = new ASMAccessorChainCompiler().generate(className, (AccessorNode) accessor);
+      ASMAccessorChain compiled = (ASMAccessorChain) ASMAccessorOptimizer.getMVELClassLoader()
+          .defineClassX(className, b, 0, b.length).newInstance();
+      compiled.setSource(accessor);
+      return compiled;
+    }
+    catch (Exception e) {
+      throw new RuntimeException("unable to compile accessor: " + accessor, e);
+    }
+  }
+
+  private byte[] generate(String className, AccessorNode root) {
+    ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+    cw.visit(Opcodes.V1_5, ACC_PUBLIC + ACC_SUPER, className, null, CHAIN, null);
+
+    MethodVisitor init = cw.visitMethod(ACC_PUBLIC, "<init>", "()V", null, null);
+    init.visitCode();
+    init.visitVarInsn(ALOAD, 0);
+    init.visitMethodInsn(INVOKESPECIAL, CHAIN, "<init>", "()V");
+    init.visitInsn(RETURN);
+    init.visitMaxs(0, 0);
+    init.visitEnd();
+
+    mv = cw.visitMethod(ACC_PUBLIC, "getValue", GET_VALUE_DESC, null, null);
+    mv.visitCode();
+    mv.visitVarInsn(ALOAD, 1);
+    for (AccessorNode node = root; node != null; node = node.getNextNode()) {
+      emitNode(node);
+    }
+    mv.visitInsn(ARETURN);
+    mv.visitMaxs(0, 0);
+    mv.visitEnd();
+
+    cw.visitEnd();
+
+    return cw.toByteArray();
+  }
+
+  /**
+   * Emits one step of the chain, which replaces the value on top of the stack with the value it reads from it.
+   */
+  private void emitNode(AccessorNode node) {
+    if (node instanceof VariableAccessor) {
+      mv.visitInsn(POP);
+      mv.visitVarInsn(ALOAD, 3);
+      mv.visitLdcInsn(((VariableAccessor) node).getProperty());
+      mv.visitMethodInsn(INVOKEINTERFACE, FACTORY, "getVariableResolver",
+          "(Ljava/lang/String;)L" + RESOLVER + ";");
+      mv.visitMethodInsn(INVOKEINTERFACE, RESOLVER, "getValue", "()Ljava/lang/Object;");
+    }
+    else if (node instanceof IndexedVariableAccessor) {
+      mv.visitInsn(POP);
+      mv.visitVarInsn(ALOAD, 3);
+      pushInt(((IndexedVariableAccessor) node).getRegister());
+      mv.visitMethodInsn(INVOKEINTERFACE, FACTORY, "getIndexedVariableResolver", "(I)L" + RESOLVER + ";");
+      mv.visitMethodInsn(INVOKEINTERFACE, RESOLVER, "getValue", "()Ljava/lang/Object;");
+    }
+    else if (node instanceof ThisValueAccessor) {
+      mv.visitInsn(POP);
+      mv.visitVarInsn(ALOAD, 2);
+    }
+    else if (node instanceof GetterAccessor) {
+      Method method = getTarget(((GetterAccessor) node).getMethod());
+      String owner = Type.getInternalName(method.getDeclaringClass());
+      mv.visitTypeInsn(CHECKCAST, owner);
+      mv.visitMethodInsn(method.getDeclaringClass().isInterface() ? INVOKEINTERFACE : INVOKEVIRTUAL, owner,
+          method.getName(), Type.getMethodDescriptor(method));
+      box(method.getReturnType());
+    }
+    else if (node instanceof FieldAccessor) {
+      Field field = ((FieldAccessor) node).getField();
+      String owner = Type.getInternalName(field.getDeclaringClass());
+      mv.visitTypeInsn(CHECKCAST, owner);
+      mv.visitFieldInsn(GETFIELD, owner, field.getName(), Type.getDescriptor(field.getType()));
+      box(field.getType());
+    }
+    else if (node instanceof MapAccessor) {
+      mv.visitTypeInsn(CHECKCAST, "java/util/Map");
+      mv.visitLdcInsn(((MapAccessor) node).getProperty());
+      mv.visitMethodInsn(INVOKEINTERFACE, "java/util/Map", "get", "(Ljava/lang/Object;)Ljava/lang/Object;");
+    }
+    else if (node instanceof ListAccessor) {
+      mv.visitTypeInsn(CHECKCAST, "java/util/List");
+      pushInt(((ListAccessor) node).getIndex());
+      mv.visitMethodInsn(INVOKEINTERFACE, "java/util/List", "get", "(I)Ljava/lang/Object;");
+    }
+    else {
+      pushInt(((ArrayAccessor) node).getIndex());
+      mv.visitMethodInsn(INVOKESTATIC, "java/lang/reflect/Array", "get", "(Ljava/lang/Object;I)Ljava/lang/Object;");
+    }
+  }
+
+  private void pushInt(int value) {
+    if (value >= -1 && value <= 5) {
+      mv.visitInsn(ICONST_0 + value);
+    }
+    else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+      mv.visitIntInsn(BIPUSH, value);
+    }
+    else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+      mv.visitIntInsn(SIPUSH, value);
+    }
+    else {
+      mv.visitLdcInsn(value);
+    }
+  }
+
+  /**
+   * Boxes a primitive value as reflection would; a void getter yields null.
+   */
+  private void box(Class<?> type) {
+    if (!type.isPrimitive()) return;
+
+    if (type == void.class) {
+      mv.visitInsn(ACONST_NULL);
+      return;
+    }
+
+    String wrapper;
+    if (type == int.class) wrapper = "java/lang/Integer";
+    else if (type == long.class) wrapper = "java/lang/Long";
+    else if (type == double.class) wrapper = "java/lang/Double";
+    else if (type == float.class) wrapper = "java/lang/Float";
+    else if (type == boolean.class) wrapper = "java/lang/Boolean";
+    else if (type == short.class) wrapper = "java/lang/Short";
+    else if (type == byte.class) wrapper = "java/lang/Byte";
+    else wrapper = "java/lang/Character";
+
+    mv.visitMethodInsn(INVOKESTATIC, wrapper, "valueOf", "(" + Type.getDescriptor(type) + ")L" + wrapper + ";");
+  }
+}
@@ -130,6 +130,9 @@ public class ASMAccessorOptimizer extends AbstractOptimizer implements AccessorO
 
   private int compileDepth = 0;
 
+  private boolean deferDefinition;
+  private List<DeferredAccessor> deferred;
+
   @SuppressWarnings({"StringBufferField"})
   private StringAppender buildLog;
 
@@ -697,6 +700,17 @@ public class ASMAccessorOptimizer extends AbstractOptimizer implements AccessorO
     if (deferFinish) {
       return null;
     }
+
+    ExecutableStatement[] inputs = compiledInputs.toArray(new ExecutableStatement[compiledInputs.size()]);
+    PropertyHandler nullProperty = propNull ? getNullPropertyHandler() : null;
+    PropertyHandler nullMethod = methNull ? getNullMethodHandler() : null;
+
+    if (deferDefinition) {
+      DeferredAccessor accessor = new DeferredAccessor(className, cw.toByteArray(), inputs, nullProperty, nullMethod);
+      deferred.add(accessor);
+      return accessor;
+    }
+
     /**
      * Hot load the class we just generated.
      */
@@ -705,33 +719,52 @@ public class ASMAccessorOptimizer extends AbstractOptimizer implements AccessorO
     assert debug("[MVEL JIT Completed Optimization <<" + (expr != null ? new String(expr) : "") + ">>]::" + cls
         + " (time: " + (System.currentTimeMillis() - time) + "ms)");
 
-    Object o;
-
     try {
-      if (compiledInputs.size() == 0) {
-        o = cls.newInstance();
-      }
-      else {
-        Class[] parms = new Class[compiledInputs.size()];
-        for (int i = 0; i < compiledInputs.size(); i++) {
-          parms[i] = ExecutableStatement.class;
-        }
-        o = cls.getConstructor(parms).newInstance(compiledInputs.toArray(new ExecutableStatement[compiledInputs.size()]));
-      }
-
-      if (propNull) cls.getField("nullPropertyHandler").set(o, getNullPropertyHandler());
-      if (methNull) cls.getField("nullMethodHandler").set(o, getNullMethodHandler());
-
+      return instantiate(cls, inputs, nullProperty, nullMethod);
     }
     catch (VerifyError e) {
       System.out.println("**** COMPILER BUG! REPORT THIS IMMEDIATELY AT http://jira.codehaus.org/browse/mvel2");
       System.out.println("Expression: " + (expr == null ? null : new String(expr)));
       throw e;
     }
+  }
+
+  static Accessor instantiate(Class cls, ExecutableStatement[] inputs, PropertyHandler nullPropertyHandler,
+                              PropertyHandler nullMethodHandler) throws Exception {
+    Object o;
+    if (inputs.length == 0) {
+      o = cls.newInstance();
+    }
+    else {
+      Class[] parms = new Class[inputs.length];
+      for (int i = 0; i < inputs.length; i++) {
+        parms[i] = ExecutableStatement.class;
+      }
+      o = cls.getConstructor(parms).newInstance((Object[]) inputs);
+    }
+
+    if (nullPropertyHandler != null) cls.getField("nullPropertyHandler").set(o, nullPropertyHandler);
+    if (nullMethodHandler != null) cls.getField("nullMethodHandler").set(o, nullMethodHandler);
 
     return (Accessor) o;
   }
 
+  /**
+   * When set, the classes this optimizer generates are not defined: it returns {@link DeferredAccessor}s instead,
+   * which are defined later, possibly on another thread.  Expressions are still evaluated while they are compiled.
+   */
+  public void setDeferredDefinition(boolean deferDefinition) {
+    this.deferDefinition = deferDefinition;
+    this.deferred = deferDefinition ? new ArrayList<DeferredAccessor>() : null;
+  }
+
+  /**
+   * @return the accessors generated, but not yet defined, since deferred definition was enabled
+   */
+  public List<DeferredAccessor> getDeferredAccessors() {
+    return deferred;
+  }
+
   private Accessor compileAccessor() {
     assert debug("<<INITIATE COMPILE>>");
 
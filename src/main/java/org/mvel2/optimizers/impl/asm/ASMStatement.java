@@ -0,0 +1,166 @@
+/**
+ * MVEL 2.0
+ * Copyright (C) 2007 The Codehaus
+ * Mike Brock, Dhanji Prasanna, John Graham, Mark Proctor
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mvel2.optimizers.impl.asm;
+
+import org.mvel2.PropertyAccessor;
+import org.mvel2.compiler.CompiledSnapshot;
+import org.mvel2.compiler.ExecutableStatement;
+import org.mvel2.integration.VariableResolverFactory;
+
+import java.io.ObjectStreamException;
+
+/**
+ * The base class of expressions compiled by {@link ASMStatementCompiler}.  Generated subclasses implement
+ * {@link #getValue(Object, Object, VariableResolverFactory)}; everything else is answered by the statement the
+ * class was compiled from.
+ * <p/>
+ * Generated classes only exist in the JVM which compiled them, so a compiled statement serializes as its source
+ * statement.  Classes compiled ahead of time by the {@link org.mvel2.compiler.AheadOfTimeCompiler} are loaded from
+ * the classpath instead, and restore their source statement from a snapshot resource the first time it is needed.
+ */
+public abstract class ASMStatement implements ExecutableStatement {
+  private static final long serialVersionUID = 1L;
+
+  private volatile ExecutableStatement source;
+  private transient String snapshot;
+  private transient byte[] bytecode;
+
+  protected ASMStatement() {
+  }
+
+  /**
+   * @param snapshot the snapshot resource, relative to the generated class, holding the source statement
+   */
+  protected ASMStatement(String snapshot) {
+    this.snapshot = snapshot;
+  }
+
+  void setSource(ExecutableStatement source) {
+    this.source = source;
+  }
+
+  /**
+   * @return the interpreted statement this statement was compiled from.
+   */
+  public ExecutableStatement getSource() {
+    ExecutableStatement stmt = source;
+    if (stmt == null && snapshot != null) {
+      synchronized (this) {
+        if ((stmt = source) == null) {
+          try {
+            source = stmt = (ExecutableStatement) CompiledSnapshot.open(getClass(), snapshot)
+                .get(ASMStatementCompiler.SOURCE_ENTRY);
+          }
+          catch (Exception e) {
+            throw new RuntimeException("unable to restore precompiled statement: " + getClass().getName(), e);
+          }
+        }
+      }
+    }
+    return stmt;
+  }
+
+  void setBytecode(byte[] bytecode) {
+    this.bytecode = bytecode;
+  }
+
+  /**
+   * @return the bytecode of the generated class.
+   */
+  public byte[] getBytecode() {
+    return bytecode;
+  }
+
+  public Object getValue(Object staticContext, VariableResolverFactory factory) {
+    return getValue(staticContext, staticContext, factory);
+  }
+
+  public Object setValue(Object ctx, Object elCtx, VariableResolverFactory variableFactory, Object value) {
+    return getSource().setValue(ctx, elCtx, variableFactory, value);
+  }
+
+  @SuppressWarnings({"rawtypes"})
+  public void setKnownIngressType(Class type) {
+    getSource().setKnownIngressType(type);
+  }
+
+  @SuppressWarnings({"rawtypes"})
+  public void setKnownEgressType(Class type) {
+    getSource().setKnownEgressType(type);
+  }
+
+  public Class<?> getKnownIngressType() {
+    return getSource().getKnownIngressType();
+  }
+
+  public Class<?> getKnownEgressType() {
+    return getSource().getKnownEgressType();
+  }
+
+  public boolean isExplicitCast() {
+    return getSource().isExplicitCast();
+  }
+
+  public boolean isConvertableIngressEgress() {
+    return getSource().isConvertableIngressEgress();
+  }
+
+  public void computeTypeConversionRule() {
+    getSource().computeTypeConversionRule();
+  }
+
+  public boolean intOptimized() {
+    return false;
+  }
+
+  public boolean isLiteralOnly() {
+    return false;
+  }
+
+  public boolean isEmptyStatement() {
+    return false;
+  }
+
+  /**
+   * Resolves a variable the way the interpreter does: from the variable factory if it can resolve the name,
+   * otherwise as a property of the context object.
+   */
+  protected static Object getVariable(String name, Object ctx, VariableResolverFactory factory) {
+    if (factory != null && factory.isResolveable(name)) {
+      return factory.getVariableResolver(name).getValue();
+    }
+    return PropertyAccessor.get(name, ctx, factory, ctx);
+  }
+
+  /**
+   * Evaluates the source statement.  Used by classes compiled ahead of time from statements which cannot be
+   * compiled to bytecode.
+   */
+  protected Object interpret(Object ctx, Object elCtx, VariableResolverFactory factory) {
+    return getSource().getValue(ctx, elCtx, factory);
+  }
+
+  protected Object writeReplace() throws ObjectStreamException {
+    return getSource();
+  }
+
+  public String toString() {
+    return getSource().toString();
+  }
+}
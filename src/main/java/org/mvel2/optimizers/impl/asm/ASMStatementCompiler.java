@@ -0,0 +1,561 @@
+/**
+ * MVEL 2.0
+ * Copyright (C) 2007 The Codehaus
+ * Mike Brock, Dhanji Prasanna, John Graham, Mark Proctor
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mvel2.optimizers.impl.asm;
+
+import org.mvel2.asm.ClassWriter;
+import org.mvel2.asm.Label;
+import org.mvel2.asm.MethodVisitor;
+import org.mvel2.asm.Opcodes;
+import org.mvel2.asm.Type;
+import org.mvel2.ast.*;
+import org.mvel2.compiler.CompiledExpression;
+import org.mvel2.compiler.CompiledSnapshot;
+import org.mvel2.compiler.ExecutableAccessor;
+import org.mvel2.compiler.ExecutableAccessorSafe;
+import org.mvel2.compiler.ExecutableLiteral;
+import org.mvel2.compiler.ExecutableStatement;
+import org.mvel2.integration.VariableResolverFactory;
+import org.mvel2.util.GeneratedClassLoader;
+import org.mvel2.util.MVELClassLoader;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.mvel2.Operator.*;
+import static org.mvel2.asm.Opcodes.*;
+
+/**
+ * Compiles a single typed arithmetic or boolean expression into one generated class.  Where the types of the
+ * variables an expression reads are known at compile time (from strong typing, or from typed inputs declared in the
+ * {@link org.mvel2.ParserContext}), its arithmetic, comparisons, boolean logic and ternaries are performed on
+ * primitives in the generated code, without the operand stack or any boxing of intermediate values.
+ * <p/>
+ * Only expressions made of <tt>int</tt>, <tt>long</tt>, <tt>double</tt> and <tt>boolean</tt> literals and plain
+ * variables, the arithmetic and comparison operators, <tt>&&</tt>, <tt>||</tt>, <tt>!</tt>, unary minus, nested
+ * sub-statements and ternaries are compiled.  Mixed operand types are promoted as {@link
+ * org.mvel2.math.MathProcessor} promotes them, so the results match the interpreter's.  Anything else, including
+ * property reads (<tt>order.price * qty</tt>), method calls, assignments, <tt>if</tt> and <tt>foreach</tt> blocks
+ * and scripts of more than one statement, is not compiled: {@link #compile(Serializable)} returns it unchanged, and
+ * it runs on the interpreter.
+ * <p/>
+ * The compiler is not one of the optimizers chosen through {@link org.mvel2.optimizers.OptimizerFactory}, which
+ * compile accessors; a statement is only compiled when it is passed to {@link #compile(Serializable)}.
+ * <pre><code>
+ * ParserContext ctx = new ParserContext();
+ * ctx.setStrongTyping(true);
+ * ctx.addInput("a", int.class);
+ * ctx.addInput("b", int.class);
+ * <p/>
+ * Serializable s = ASMStatementCompiler.compile(MVEL.compileExpression("a * b + 1 > 10", ctx));
+ * </code></pre>
+ */
+public class ASMStatementCompiler {
+  /**
+   * The snapshot entry holding the source statement of a class compiled ahead of time.
+   */
+  public static final String SOURCE_ENTRY = "source";
+
+  private static final String STATEMENT = Type.getInternalName(ASMStatement.class);
+  private static final String GET_VALUE_DESC = "(Ljava/lang/Object;Ljava/lang/Object;L"
+      + Type.getInternalName(VariableResolverFactory.class) + ";)Ljava/lang/Object;";
+  private static final String GET_VARIABLE_DESC = "(Ljava/lang/String;Ljava/lang/Object;L"
+      + Type.getInternalName(VariableResolverFactory.class) + ";)Ljava/lang/Object;";
+
+  /**
+   * The only fields an identifier may carry to be read as a plain variable.
+   */
+  private static final int PLAIN_IDENTIFIER = ASTNode.IDENTIFIER | ASTNode.COMPILE_IMMEDIATE
+      | ASTNode.STRONG_TYPING | ASTNode.PCTX_STORED;
+
+  private static final AtomicInteger classCount = new AtomicInteger();
+
+  private MethodVisitor mv;
+
+  private ASMStatementCompiler() {
+  }
+
+  /**
+   * @param compiled a statement returned by <tt>MVEL.compileExpression()</tt>
+   * @return true if the statement can be compiled to bytecode
+   */
+  public static boolean isCompilable(Serializable compiled) {
+    return compiled instanceof ASMStatement || typeOf(compiled) != null;
+  }
+
+  /**
+   * Compiles the statement to bytecode.
+   *
+   * @param compiled a statement returned by <tt>MVEL.compileExpression()</tt>
+   * @return the compiled statement, or the statement itself if it cannot be compiled
+   */
+  public static Serializable compile(Serializable compiled) {
+    if (compiled instanceof ASMStatement) return compiled;
+
+    Class<?> type = typeOf(compiled);
+    if (type == null) return compiled;
+
+    try {
+      return new ASMStatementCompiler().generate((ExecutableStatement) compiled, type);
+    }
+    catch (Exception e) {
+      throw new RuntimeException("unable to compile statement: " + compiled, e);
+    }
+  }
+
+  /**
+   * Compiles the statement ahead of time, into a named class which is loaded from the classpath rather than
+   * generated at runtime.  Statements which cannot be compiled to bytecode are compiled into a class which runs the
+   * interpreter.  Either way, the source statement is written alongside the class as a
+   * {@link CompiledSnapshot} resource, and is only restored if it is needed.
+   *
+   * @param compiled  a statement returned by <tt>MVEL.compileExpression()</tt>
+   * @param className the fully qualified name of the class to generate
+   * @param output    receives the class file and the snapshot resource, by resource path
+   */
+  public static void compileAheadOfTime(Serializable compiled, String className, Map<String, byte[]> output) {
+    ExecutableStatement stmt = (ExecutableStatement)
+        (compiled instanceof ASMStatement ? ((ASMStatement) compiled).getSource() : compiled);
+
+    String internalName = className.replace('.', '/');
+    String snapshot = internalName.substring(internalName.lastIndexOf('/') + 1) + ".snapshot";
+
+    try {
+      ByteArrayOutputStream data = new ByteArrayOutputStream();
+      CompiledSnapshot.write(data, Collections.singletonMap(SOURCE_ENTRY, stmt), false);
+
+      output.put(internalName + ".class",
+          new ASMStatementCompiler().generate(internalName, stmt, typeOf(stmt), snapshot));
+      output.put(internalName + ".snapshot", data.toByteArray());
+    }
+    catch (Exception e) {
+      throw new RuntimeException("unable to compile statement: " + compiled, e);
+    }
+  }
+
+  private ASMStatement generate(ExecutableStatement stmt, Class<?> type) throws Exception {
+    String className = "ASMStatementImpl_" + classCount.incrementAndGet();
+    return define(newClassLoader(), className, generate(className, stmt, type, null), stmt);
+  }
+
+  /**
+   * @param snapshot the snapshot resource the class restores its source from, or null if the source is set when
+   *                 the class is defined
+   */
+  private byte[] generate(String className, ExecutableStatement stmt, Class<?> type, String snapshot) {
+    ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS + ClassWriter.COMPUTE_FRAMES);
+    cw.visit(Opcodes.V1_5, ACC_PUBLIC + ACC_SUPER, className, null, STATEMENT, null);
+
+    MethodVisitor init = cw.visitMethod(ACC_PUBLIC, "<init>", "()V", null, null);
+    init.visitCode();
+    init.visitVarInsn(ALOAD, 0);
+    if (snapshot == null) {
+      init.visitMethodInsn(INVOKESPECIAL, STATEMENT, "<init>", "()V");
+    }
+    else {
+      init.visitLdcInsn(snapshot);
+      init.visitMethodInsn(INVOKESPECIAL, STATEMENT, "<init>", "(Ljava/lang/String;)V");
+    }
+    init.visitInsn(Opcodes.RETURN);
+    init.visitMaxs(0, 0);
+    init.visitEnd();
+
+    mv = cw.visitMethod(ACC_PUBLIC, "getValue", GET_VALUE_DESC, null, null);
+    mv.visitCode();
+    if (type == null) {
+      mv.visitVarInsn(ALOAD, 0);
+      mv.visitVarInsn(ALOAD, 1);
+      mv.visitVarInsn(ALOAD, 2);
+      mv.visitVarInsn(ALOAD, 3);
+      mv.visitMethodInsn(INVOKEVIRTUAL, STATEMENT, "interpret", GET_VALUE_DESC);
+    }
+    else {
+      emitStatement(stmt);
+      box(type);
+    }
+    mv.visitInsn(ARETURN);
+    mv.visitMaxs(0, 0);
+    mv.visitEnd();
+
+    cw.visitEnd();
+
+    return cw.toByteArray();
+  }
+
+  /**
+   * Defines a statement class previously generated by this compiler, for instance one read back from a
+   * {@link org.mvel2.compiler.CompiledSnapshot}.
+   *
+   * @param loader    the class loader to define the class in
+   * @param className the name of the generated class
+   * @param bytecode  the bytecode of the generated class
+   * @param source    the statement the class was compiled from
+   * @return the compiled statement
+   */
+  public static ASMStatement define(MVELClassLoader loader, String className, byte[] bytecode,
+                                    ExecutableStatement source) throws Exception {
+    ASMStatement compiled = (ASMStatement) loader.defineClassX(className, bytecode, 0, bytecode.length).newInstance();
+    compiled.setSource(source);
+    compiled.setBytecode(bytecode);
+    return compiled;
+  }
+
+  /**
+   * Each generated class is defined in a loader of its own, so that it is unloaded once what it was compiled from is
+   * no longer used.
+   */
+  private static MVELClassLoader newClassLoader() {
+    return new GeneratedClassLoader(ASMStatementCompiler.class.getClassLoader());
+  }
+
+  /**
+   * Determines the primitive type a statement evaluates to.
+   *
+   * @return the type, or null if the statement cannot be compiled
+   */
+  private static Class<?> typeOf(Object stmt) {
+    if (stmt instanceof ExecutableAccessor) {
+      return typeOf(((ExecutableAccessor) stmt).getNode());
+    }
+    else if (stmt instanceof ExecutableAccessorSafe) {
+      return typeOf(((ExecutableAccessorSafe) stmt).getNode());
+    }
+    else if (stmt instanceof ExecutableLiteral) {
+      return literalType(((ExecutableLiteral) stmt).getLiteral());
+    }
+    else if (stmt instanceof CompiledExpression) {
+      return typeOf(((CompiledExpression) stmt).getFirstNode());
+    }
+    return null;
+  }
+
+  /**
+   * Determines the type of the statement starting at the node, which is either a single node, or a chain of
+   * ternaries: <tt>cond ? a : b</tt>, where <tt>b</tt> may itself be a ternary.
+   */
+  private static Class<?> typeOf(ASTNode node) {
+    if (node == null) return null;
+    if (node.nextASTNode == null) return nodeType(node);
+
+    ASTNode tern = node.nextASTNode;
+    if (!tern.isOperator(TERNARY) || nodeType(node) != boolean.class) return null;
+
+    ASTNode then = tern.nextASTNode;
+    if (then == null || then.nextASTNode == null || !then.nextASTNode.isOperator(TERNARY_ELSE)) return null;
+
+    Class<?> type = nodeType(then);
+    return type != null && type == typeOf(then.nextASTNode.nextASTNode) ? type : null;
+  }
+
+  private static Class<?> nodeType(ASTNode node) {
+    if (node.getClass() == LiteralNode.class) {
+      return literalType(node.getLiteralValue());
+    }
+    else if (node.getClass() == ASTNode.class) {
+      if ((node.getFields() & ~PLAIN_IDENTIFIER) != 0 || !node.isIdentifier()) return null;
+      Class<?> type = node.getEgressType();
+      return type == int.class || type == long.class || type == double.class || type == boolean.class ? type : null;
+    }
+    else if (node instanceof Substatement) {
+      return typeOf(((Substatement) node).getStatement());
+    }
+    else if (node instanceof Negation) {
+      return typeOf(((Negation) node).getStatement()) == boolean.class ? boolean.class : null;
+    }
+    else if (node instanceof Sign) {
+      Class<?> type = typeOf(((Sign) node).getStatement());
+      return isNumeric(type) ? type : null;
+    }
+    else if (node instanceof And || node instanceof Or) {
+      BooleanNode bn = (BooleanNode) node;
+      return nodeType(bn.getLeft()) == boolean.class && nodeType(bn.getRight()) == boolean.class ? boolean.class : null;
+    }
+    else if (node instanceof BinaryOperation) {
+      BinaryOperation bo = (BinaryOperation) node;
+      Class<?> left = nodeType(bo.getLeft());
+      Class<?> right = nodeType(bo.getRight());
+      if (left == null || right == null) return null;
+
+      if (left == boolean.class || right == boolean.class) {
+        return left == right && (bo.getOperation() == EQUAL || bo.getOperation() == NEQUAL) ? boolean.class : null;
+      }
+
+      switch (bo.getOperation()) {
+        case ADD:
+        case SUB:
+        case MULT:
+        case MOD:
+          return widest(left, right);
+        case DIV:
+          /**
+           * The interpreter divides operands of the same type in floating point, and narrows the quotient of mixed
+           * operands to the wider of the two types.
+           */
+          return left == right ? double.class : widest(left, right);
+        case LTHAN:
+        case GTHAN:
+        case LETHAN:
+        case GETHAN:
+        case EQUAL:
+        case NEQUAL:
+          return boolean.class;
+      }
+    }
+    return null;
+  }
+
+  private static Class<?> widest(Class<?> left, Class<?> right) {
+    if (left == double.class || right == double.class) return double.class;
+    if (left == long.class || right == long.class) return long.class;
+    return int.class;
+  }
+
+  private static Class<?> literalType(Object literal) {
+    if (literal instanceof Integer) return int.class;
+    if (literal instanceof Long) return long.class;
+    if (literal instanceof Double) return double.class;
+    if (literal instanceof Boolean) return boolean.class;
+    return null;
+  }
+
+  private static boolean isNumeric(Class<?> type) {
+    return type == int.class || type == long.class || type == double.class;
+  }
+
+  private void emitStatement(Object stmt) {
+    if (stmt instanceof ExecutableAccessor) {
+      emitChain(((ExecutableAccessor) stmt).getNode());
+    }
+    else if (stmt instanceof ExecutableAccessorSafe) {
+      emitChain(((ExecutableAccessorSafe) stmt).getNode());
+    }
+    else if (stmt instanceof ExecutableLiteral) {
+      emitLiteral(((ExecutableLiteral) stmt).getLiteral());
+    }
+    else {
+      emitChain(((CompiledExpression) stmt).getFirstNode());
+    }
+  }
+
+  private void emitChain(ASTNode node) {
+    if (node.nextASTNode == null) {
+      emit(node);
+      return;
+    }
+
+    ASTNode then = node.nextASTNode.nextASTNode;
+    Label otherwise = new Label();
+    Label end = new Label();
+
+    emit(node);
+    mv.visitJumpInsn(IFEQ, otherwise);
+    emit(then);
+    mv.visitJumpInsn(GOTO, end);
+    mv.visitLabel(otherwise);
+    emitChain(then.nextASTNode.nextASTNode);
+    mv.visitLabel(end);
+  }
+
+  private void emit(ASTNode node) {
+    if (node.getClass() == LiteralNode.class) {
+      emitLiteral(node.getLiteralValue());
+    }
+    else if (node.getClass() == ASTNode.class) {
+      mv.visitLdcInsn(node.getName());
+      mv.visitVarInsn(ALOAD, 1);
+      mv.visitVarInsn(ALOAD, 3);
+      mv.visitMethodInsn(INVOKESTATIC, STATEMENT, "getVariable", GET_VARIABLE_DESC);
+      unbox(node.getEgressType());
+    }
+    else if (node instanceof Substatement) {
+      emitStatement(((Substatement) node).getStatement());
+    }
+    else if (node instanceof Negation) {
+      emitStatement(((Negation) node).getStatement());
+      mv.visitInsn(ICONST_1);
+      mv.visitInsn(IXOR);
+    }
+    else if (node instanceof Sign) {
+      ExecutableStatement stmt = ((Sign) node).getStatement();
+      emitStatement(stmt);
+      mv.visitInsn(opcode(typeOf(stmt), INEG, LNEG, DNEG));
+    }
+    else if (node instanceof And || node instanceof Or) {
+      emitLogical((BooleanNode) node, node instanceof And);
+    }
+    else {
+      emitBinary((BinaryOperation) node);
+    }
+  }
+
+  private void emitLiteral(Object literal) {
+    if (literal instanceof Boolean) {
+      mv.visitInsn((Boolean) literal ? ICONST_1 : ICONST_0);
+    }
+    else {
+      mv.visitLdcInsn(literal);
+    }
+  }
+
+  private void emitLogical(BooleanNode node, boolean and) {
+    Label shortCircuit = new Label();
+    Label end = new Label();
+
+    emit(node.getLeft());
+    mv.visitJumpInsn(and ? IFEQ : IFNE, shortCircuit);
+    emit(node.getRight());
+    mv.visitJumpInsn(GOTO, end);
+    mv.visitLabel(shortCircuit);
+    mv.visitInsn(and ? ICONST_0 : ICONST_1);
+    mv.visitLabel(end);
+  }
+
+  private void emitBinary(BinaryOperation bo) {
+    Class<?> left = nodeType(bo.getLeft());
+    Class<?> right = nodeType(bo.getRight());
+    int operation = bo.getOperation();
+
+    /**
+     * Operands of different types, and operands of a division, are combined in floating point as the interpreter
+     * does; the result of mixed arithmetic is then narrowed to the wider of the operand types.
+     */
+    Class<?> type = left;
+    if (left != right || operation == DIV) {
+      type = double.class;
+    }
+
+    emit(bo.getLeft());
+    widen(left, type);
+    emit(bo.getRight());
+    widen(right, type);
+
+    switch (operation) {
+      case ADD:
+        mv.visitInsn(opcode(type, IADD, LADD, DADD));
+        narrow(type, nodeType(bo));
+        return;
+      case SUB:
+        mv.visitInsn(opcode(type, ISUB, LSUB, DSUB));
+        narrow(type, nodeType(bo));
+        return;
+      case MULT:
+        mv.visitInsn(opcode(type, IMUL, LMUL, DMUL));
+        narrow(type, nodeType(bo));
+        return;
+      case DIV:
+        mv.visitInsn(DDIV);
+        narrow(type, nodeType(bo));
+        return;
+      case MOD:
+        mv.visitInsn(opcode(type, IREM, LREM, DREM));
+        narrow(type, nodeType(bo));
+        return;
+    }
+
+    /**
+     * A comparison: reduce long and double operands to an int in the same way javac does, such that NaN
+     * compares false, then branch on the result.
+     */
+    int jump;
+    if (type == int.class || type == boolean.class) {
+      jump = comparison(operation, IF_ICMPEQ, IF_ICMPNE, IF_ICMPLT, IF_ICMPGT, IF_ICMPLE, IF_ICMPGE);
+    }
+    else {
+      if (type == long.class) mv.visitInsn(LCMP);
+      else mv.visitInsn(operation == LTHAN || operation == LETHAN ? DCMPG : DCMPL);
+      jump = comparison(operation, IFEQ, IFNE, IFLT, IFGT, IFLE, IFGE);
+    }
+
+    Label isTrue = new Label();
+    Label end = new Label();
+    mv.visitJumpInsn(jump, isTrue);
+    mv.visitInsn(ICONST_0);
+    mv.visitJumpInsn(GOTO, end);
+    mv.visitLabel(isTrue);
+    mv.visitInsn(ICONST_1);
+    mv.visitLabel(end);
+  }
+
+  private static int comparison(int operation, int eq, int ne, int lt, int gt, int le, int ge) {
+    switch (operation) {
+      case EQUAL:
+        return eq;
+      case NEQUAL:
+        return ne;
+      case LTHAN:
+        return lt;
+      case GTHAN:
+        return gt;
+      case LETHAN:
+        return le;
+      default:
+        return ge;
+    }
+  }
+
+  private static int opcode(Class<?> type, int intOp, int longOp, int doubleOp) {
+    if (type == int.class) return intOp;
+    if (type == long.class) return longOp;
+    return doubleOp;
+  }
+
+  private void widen(Class<?> from, Class<?> to) {
+    if (to == double.class) {
+      if (from == int.class) mv.visitInsn(I2D);
+      else if (from == long.class) mv.visitInsn(L2D);
+    }
+  }
+
+  private void narrow(Class<?> from, Class<?> to) {
+    if (from == double.class) {
+      if (to == int.class) mv.visitInsn(D2I);
+      else if (to == long.class) mv.visitInsn(D2L);
+    }
+  }
+
+  private void unbox(Class<?> type) {
+    if (type == boolean.class) {
+      mv.visitTypeInsn(CHECKCAST, "java/lang/Boolean");
+      mv.visitMethodInsn(INVOKEVIRTUAL, "java/lang/Boolean", "booleanValue", "()Z");
+    }
+    else {
+      mv.visitTypeInsn(CHECKCAST, "java/lang/Number");
+      if (type == int.class) mv.visitMethodInsn(INVOKEVIRTUAL, "java/lang/Number", "intValue", "()I");
+      else if (type == long.class) mv.visitMethodInsn(INVOKEVIRTUAL, "java/lang/Number", "longValue", "()J");
+      else mv.visitMethodInsn(INVOKEVIRTUAL, "java/lang/Number", "doubleValue", "()D");
+    }
+  }
+
+  private void box(Class<?> type) {
+    if (type == int.class) {
+      mv.visitMethodInsn(INVOKESTATIC, "java/lang/Integer", "valueOf", "(I)Ljava/lang/Integer;");
+    }
+    else if (type == long.class) {
+      mv.visitMethodInsn(INVOKESTATIC, "java/lang/Long", "valueOf", "(J)Ljava/lang/Long;");
+    }
+    else if (type == double.class) {
+      mv.visitMethodInsn(INVOKESTATIC, "java/lang/Double", "valueOf", "(D)Ljava/lang/Double;");
+    }
+    else {
+      mv.visitMethodInsn(INVOKESTATIC, "java/lang/Boolean", "valueOf", "(Z)Ljava/lang/Boolean;");
+    }
+  }
+}
@@ -0,0 +1,81 @@
+/**
+ * MVEL 2.0
+ * Copyright (C) 2007 The Codehaus
+ * Mike Brock, Dhanji Prasanna, John Graham, Mark Proctor
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mvel2.optimizers.impl.asm;
+
+import org.mvel2.compiler.Accessor;
+import org.mvel2.compiler.ExecutableStatement;
+import org.mvel2.integration.PropertyHandler;
+import org.mvel2.integration.VariableResolverFactory;
+
+/**
+ * An accessor generated by the {@link ASMAccessorOptimizer} whose class has not been defined yet.  Generating an
+ * accessor evaluates the expression, and so must happen on the thread executing it, but defining, verifying and
+ * instantiating the generated class needs nothing but the bytecode, and may be left to another thread.
+ *
+ * @see ASMAccessorOptimizer#setDeferredDefinition(boolean)
+ */
+public class DeferredAccessor implements Accessor {
+  private final String className;
+  private final byte[] bytecode;
+  private final ExecutableStatement[] inputs;
+  private final PropertyHandler nullPropertyHandler;
+  private final PropertyHandler nullMethodHandler;
+
+  private volatile Accessor accessor;
+
+  DeferredAccessor(String className, byte[] bytecode, ExecutableStatement[] inputs,
+                   PropertyHandler nullPropertyHandler, PropertyHandler nullMethodHandler) {
+    this.className = className;
+    this.bytecode = bytecode;
+    this.inputs = inputs;
+    this.nullPropertyHandler = nullPropertyHandler;
+    this.nullMethodHandler = nullMethodHandler;
+  }
+
+  /**
+   * Defines and instantiates the generated class, if that has not been done already.
+   *
+   * @return the generated accessor
+   */
+  public synchronized Accessor define() throws Exception {
+    if (accessor == null) {
+      accessor = ASMAccessorOptimizer.instantiate(ASMAccessorOptimizer.getMVELClassLoader()
+          .defineClassX(className, bytecode, 0, bytecode.length), inputs, nullPropertyHandler, nullMethodHandler);
+    }
+    return accessor;
+  }
+
+  public Object getValue(Object ctx, Object elCtx, VariableResolverFactory variableFactory) {
+    return getAccessor().getValue(ctx, elCtx, variableFactory);
+  }
+
+  public Object setValue(Object ctx, Object elCtx, VariableResolverFactory variableFactory, Object value) {
+    return getAccessor().setValue(ctx, elCtx, variableFactory, value);
+  }
+
+  public Class<?> getKnownEgressType() {
+    return getAccessor().getKnownEgressType();
+  }
+
+  private Accessor getAccessor() {
+    Accessor a = accessor;
+    if (a == null) throw new IllegalStateException("accessor not yet defined: " + className);
+    return a;
+  }
+}
@@ -254,7 +254,14 @@ public class ReflectiveAccessorOptimizer extends AbstractOptimizer implements Ac
         addAccessorNode(new Notify(tk));
       }
 
-      Member member = getFieldOrWriteAccessor(ctx.getClass(), tk, value == null ? null : ingressType);
+      Member member;
+      if (value == null) {
+        member = getFieldOrWriteAccessor(ctx.getClass(), tk, null);
+      }
+      else if ((member = MemberCache.getWriteMember(ctx.getClass(), tk, ingressType)) == null) {
+        MemberCache.putWriteMember(ctx.getClass(), tk, ingressType,
+            member = getFieldOrWriteAccessor(ctx.getClass(), tk, ingressType));
+      }
 
       if (member instanceof Field) {
         Field fld = (Field) member;
@@ -522,7 +529,10 @@ public class ReflectiveAccessorOptimizer extends AbstractOptimizer implements Ac
       return acc.getValue(ctx, thisRef, variableFactory);
     }
 
-    Member member = cls != null ? getFieldOrAccessor(cls, property) : null;
+    Member member = null;
+    if (cls != null && (member = MemberCache.getReadMember(cls, property)) == null) {
+      MemberCache.putReadMember(cls, property, member = getFieldOrAccessor(cls, property));
+    }
 
     if (member != null && classRef && (member.getModifiers() & Modifier.STATIC) == 0) {
       member = null;
@@ -19,11 +19,12 @@
 package org.mvel2.optimizers.impl.refl.nodes;
 
 import org.mvel2.compiler.ExecutableStatement;
+import org.mvel2.conversion.Converter;
 import org.mvel2.integration.VariableResolverFactory;
 
 import java.lang.reflect.Constructor;
 
-import static org.mvel2.DataConversion.convert;
+import static org.mvel2.DataConversion.getConverters;
 
 public class ConstructorAccessor extends BaseAccessor {
   private Constructor constructor;
@@ -31,6 +32,7 @@ public class ConstructorAccessor extends BaseAccessor {
   private ExecutableStatement[] parms;
   private int length;
   private boolean coercionNeeded = false;
+  private volatile Converter[] converters;
 
   public Object getValue(Object ctx, Object elCtx, VariableResolverFactory variableFactory) {
     try {
@@ -51,11 +53,11 @@ public class ConstructorAccessor extends BaseAccessor {
       }
       else {
         if (nextNode != null) {
-          return nextNode.getValue(constructor.newInstance(executeAndCoerce(parmTypes, elCtx, variableFactory)),
+          return nextNode.getValue(constructor.newInstance(executeAndCoerce(elCtx, variableFactory)),
               elCtx, variableFactory);
         }
         else {
-          return constructor.newInstance(executeAndCoerce(parmTypes, elCtx, variableFactory));
+          return constructor.newInstance(executeAndCoerce(elCtx, variableFactory));
         }
       }
     }
@@ -78,11 +80,13 @@ public class ConstructorAccessor extends BaseAccessor {
     return vals;
   }
 
-  private Object[] executeAndCoerce(Class[] target, Object elCtx, VariableResolverFactory vars) {
+  private Object[] executeAndCoerce(Object elCtx, VariableResolverFactory vars) {
+    Converter[] converters = this.converters;
+    if (converters == null) this.converters = converters = getConverters(parmTypes);
+
     Object[] values = new Object[length];
     for (int i = 0; i < length; i++) {
-      //noinspection unchecked
-      values[i] = convert(parms[i].getValue(elCtx, vars), target[i]);
+      values[i] = converters[i].convert(parms[i].getValue(elCtx, vars));
     }
     return values;
   }
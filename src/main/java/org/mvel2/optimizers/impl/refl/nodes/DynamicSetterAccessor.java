@@ -19,11 +19,12 @@
 package org.mvel2.optimizers.impl.refl.nodes;
 
 import org.mvel2.compiler.AccessorNode;
+import org.mvel2.conversion.Converter;
 import org.mvel2.integration.VariableResolverFactory;
 
 import java.lang.reflect.Method;
 
-import static org.mvel2.DataConversion.convert;
+import static org.mvel2.DataConversion.getConverter;
 
 @SuppressWarnings({"unchecked"})
 public class DynamicSetterAccessor implements AccessorNode {
@@ -31,12 +32,13 @@ public class DynamicSetterAccessor implements AccessorNode {
 
   private final Method method;
   private Class targetType;
+  private final Converter converter;
 
   public static final Object[] EMPTY = new Object[0];
 
   public Object setValue(Object ctx, Object elCtx, VariableResolverFactory variableFactory, Object value) {
     try {
-      return method.invoke(ctx, convert(value, targetType));
+      return method.invoke(ctx, converter.convert(value));
     }
     catch (Exception e) {
       throw new RuntimeException("error binding property", e);
@@ -49,7 +51,7 @@ public class DynamicSetterAccessor implements AccessorNode {
 
   public DynamicSetterAccessor(Method method) {
     this.method = method;
-    this.targetType = method.getParameterTypes()[0];
+    this.converter = getConverter(this.targetType = method.getParameterTypes()[0]);
   }
 
   public Method getMethod() {
@@ -20,11 +20,13 @@ package org.mvel2.optimizers.impl.refl.nodes;
 
 import org.mvel2.compiler.AccessorNode;
 import org.mvel2.compiler.ExecutableStatement;
+import org.mvel2.conversion.Converter;
 import org.mvel2.integration.VariableResolverFactory;
 
 import java.lang.reflect.Method;
 
 import static org.mvel2.DataConversion.convert;
+import static org.mvel2.DataConversion.getConverters;
 import static org.mvel2.util.ParseTools.getBestCandidate;
 import static org.mvel2.util.ParseTools.getWidenedTarget;
 
@@ -36,6 +38,11 @@ public class MethodAccessor implements AccessorNode {
   private ExecutableStatement[] parms;
   private int length;
   private boolean coercionNeeded = false;
+  /**
+   * Created when coercion is first needed, possibly by several threads at once; volatile, so that no thread sees
+   * the array before its elements.
+   */
+  private volatile Converter[] converters;
 
   public Object getValue(Object ctx, Object elCtx, VariableResolverFactory vars) {
     if (!coercionNeeded) {
@@ -66,14 +73,14 @@ public class MethodAccessor implements AccessorNode {
     else {
       try {
         if (nextNode != null) {
-          return nextNode.getValue(method.invoke(ctx, executeAndCoerce(parameterTypes, elCtx, vars)), elCtx, vars);
+          return nextNode.getValue(method.invoke(ctx, executeAndCoerce(elCtx, vars)), elCtx, vars);
         }
         else {
-          return method.invoke(ctx, executeAndCoerce(parameterTypes, elCtx, vars));
+          return method.invoke(ctx, executeAndCoerce(elCtx, vars));
         }
       }
       catch (IllegalArgumentException e) {
-        Object[] vs = executeAndCoerce(parameterTypes, elCtx, vars);
+        Object[] vs = executeAndCoerce(elCtx, vars);
         Method newMeth;
         if ((newMeth = getWidenedTarget(getBestCandidate(vs, method.getName(), ctx.getClass(),
             ctx.getClass().getMethods(), false))) != null) {
@@ -141,6 +148,17 @@ public class MethodAccessor implements AccessorNode {
     return vals;
   }
 
+  private Object[] executeAndCoerce(Object elCtx, VariableResolverFactory vars) {
+    Converter[] converters = this.converters;
+    if (converters == null) this.converters = converters = getConverters(parameterTypes);
+
+    Object[] values = new Object[length];
+    for (int i = 0; i < length; i++) {
+      values[i] = converters[i].convert(parms[i].getValue(elCtx, vars));
+    }
+    return values;
+  }
+
   private Object[] executeAndCoerce(Class[] target, Object elCtx, VariableResolverFactory vars) {
     Object[] values = new Object[length];
     for (int i = 0; i < length; i++) {
@@ -157,6 +175,7 @@ public class MethodAccessor implements AccessorNode {
   public void setMethod(Method method) {
     this.method = method;
     this.length = (this.parameterTypes = this.method.getParameterTypes()).length;
+    this.converters = null;
   }
 
   public ExecutableStatement[] getParms() {
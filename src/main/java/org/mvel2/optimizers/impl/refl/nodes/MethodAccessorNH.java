@@ -20,12 +20,13 @@ package org.mvel2.optimizers.impl.refl.nodes;
 
 import org.mvel2.compiler.AccessorNode;
 import org.mvel2.compiler.ExecutableStatement;
+import org.mvel2.conversion.Converter;
 import org.mvel2.integration.PropertyHandler;
 import org.mvel2.integration.VariableResolverFactory;
 
 import java.lang.reflect.Method;
 
-import static org.mvel2.DataConversion.convert;
+import static org.mvel2.DataConversion.getConverters;
 import static org.mvel2.util.ParseTools.getBestCandidate;
 
 
@@ -37,6 +38,7 @@ public class MethodAccessorNH implements AccessorNode {
   private ExecutableStatement[] parms;
   private int length;
   private boolean coercionNeeded = false;
+  private volatile Converter[] converters;
 
   private PropertyHandler nullHandler;
 
@@ -72,10 +74,10 @@ public class MethodAccessorNH implements AccessorNode {
     else {
       try {
         if (nextNode != null) {
-          return nextNode.getValue(method.invoke(ctx, executeAndCoerce(parameterTypes, elCtx, vars)), elCtx, vars);
+          return nextNode.getValue(method.invoke(ctx, executeAndCoerce(elCtx, vars)), elCtx, vars);
         }
         else {
-          return method.invoke(ctx, executeAndCoerce(parameterTypes, elCtx, vars));
+          return method.invoke(ctx, executeAndCoerce(elCtx, vars));
         }
       }
       catch (Exception e) {
@@ -111,11 +113,13 @@ public class MethodAccessorNH implements AccessorNode {
     return vals;
   }
 
-  private Object[] executeAndCoerce(Class[] target, Object elCtx, VariableResolverFactory vars) {
+  private Object[] executeAndCoerce(Object elCtx, VariableResolverFactory vars) {
+    Converter[] converters = this.converters;
+    if (converters == null) this.converters = converters = getConverters(parameterTypes);
+
     Object[] values = new Object[length];
     for (int i = 0; i < length; i++) {
-      //noinspection unchecked
-      values[i] = convert(parms[i].getValue(elCtx, vars), target[i]);
+      values[i] = converters[i].convert(parms[i].getValue(elCtx, vars));
     }
     return values;
   }
@@ -127,6 +131,7 @@ public class MethodAccessorNH implements AccessorNode {
   public void setMethod(Method method) {
     this.method = method;
     this.length = (this.parameterTypes = this.method.getParameterTypes()).length;
+    this.converters = null;
   }
 
   public ExecutableStatement[] getParms() {
@@ -1,12 +1,14 @@
 package org.mvel2.optimizers.impl.refl.nodes;
 
 import org.mvel2.compiler.AccessorNode;
+import org.mvel2.conversion.Converter;
 import org.mvel2.integration.VariableResolverFactory;
 import org.mvel2.util.PropertyTools;
 
 import java.lang.reflect.Method;
 
 import static org.mvel2.DataConversion.convert;
+import static org.mvel2.DataConversion.getConverter;
 import static org.mvel2.util.ParseTools.getBestCandidate;
 
 public class SetterAccessor implements AccessorNode {
@@ -16,13 +18,14 @@ public class SetterAccessor implements AccessorNode {
   private boolean primitive;
 
   private boolean coercionRequired = false;
+  private final Converter converter;
 
   public static final Object[] EMPTY = new Object[0];
 
   public Object setValue(Object ctx, Object elCtx, VariableResolverFactory variableFactory, Object value) {
     try {
       if (coercionRequired) {
-        return method.invoke(ctx, convert(value, targetType));
+        return method.invoke(ctx, converter.convert(value));
       }
       else {
         return method.invoke(ctx, value == null && primitive ? PropertyTools.getPrimitiveInitialValue(targetType) : value);
@@ -55,6 +58,7 @@ public class SetterAccessor implements AccessorNode {
     this.method = method;
     assert method != null;
     primitive = (this.targetType = method.getParameterTypes()[0]).isPrimitive();
+    this.converter = getConverter(targetType);
   }
 
   public Method getMethod() {
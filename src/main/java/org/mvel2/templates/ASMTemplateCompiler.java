@@ -0,0 +1,484 @@
+/**
+ * MVEL 2.0
+ * Copyright (C) 2007 The Codehaus
+ * Mike Brock, Dhanji Prasanna, John Graham, Mark Proctor
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mvel2.templates;
+
+import org.mvel2.asm.ClassWriter;
+import org.mvel2.asm.Label;
+import org.mvel2.asm.MethodVisitor;
+import org.mvel2.asm.Type;
+import org.mvel2.compiler.CompiledSnapshot;
+import org.mvel2.compiler.ExecutableStatement;
+import org.mvel2.integration.VariableResolverFactory;
+import org.mvel2.templates.res.*;
+import org.mvel2.templates.util.EncodedText;
+import org.mvel2.templates.util.TemplateOutputStream;
+import org.mvel2.util.GeneratedClassLoader;
+import org.mvel2.util.MVELClassLoader;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.mvel2.asm.Opcodes.*;
+
+/**
+ * An optional back-end for the {@link TemplateCompiler} which compiles a template into a single generated class,
+ * rather than executing it by walking its chain of nodes.  Static text is written as pre-encoded constants (see
+ * {@link EncodedText}), expressions are invoked directly through their compiled accessors, and <tt>@if{}</tt>
+ * blocks become plain branches.
+ * <p/>
+ * The bodies of <tt>@foreach{}</tt> blocks are compiled into classes of their own, which the loop then runs.  Any
+ * other kind of node (<tt>@include{}</tt>, <tt>@declare{}</tt>, custom nodes, and templates compiled without the
+ * code cache) is evaluated by the interpreter, along with the rest of the template following it.
+ * <pre><code>
+ * CompiledTemplate compiled = ASMTemplateCompiler.compile(TemplateCompiler.compileTemplate(template));
+ * String output = (String) TemplateRuntime.execute(compiled, vars);
+ * </code></pre>
+ */
+public class ASMTemplateCompiler {
+  /**
+   * The snapshot entry holding the state of a node compiled ahead of time.
+   */
+  public static final String STATE_ENTRY = "state";
+
+  private static final String TEMPLATE_NODE = Type.getInternalName(ASMTemplateNode.class);
+  private static final String NODE = Type.getInternalName(Node.class);
+  private static final String OUTPUT_STREAM = Type.getInternalName(TemplateOutputStream.class);
+  private static final String STATEMENT = Type.getInternalName(ExecutableStatement.class);
+  private static final String FOREACH = Type.getInternalName(CompiledForEachNode.class);
+  private static final String TEXT = Type.getInternalName(EncodedText.class);
+
+  private static final String EVAL_DESC = "(L" + Type.getInternalName(TemplateRuntime.class) + ";L" + OUTPUT_STREAM
+      + ";Ljava/lang/Object;L" + Type.getInternalName(VariableResolverFactory.class) + ";)Ljava/lang/Object;";
+
+  private static final AtomicInteger classCount = new AtomicInteger();
+
+  private final char[] template;
+
+  /**
+   * When compiling ahead of time: the name of the class to generate, the number of nested classes generated so
+   * far, and the generated class files and snapshot resources.
+   */
+  private final String className;
+  private final AtomicInteger nestedCount;
+  private final Map<String, byte[]> output;
+
+  /**
+   * True if every node is to be evaluated by the interpreter.
+   */
+  private final boolean interpretOnly;
+
+  private final List<ExecutableStatement> statements = new ArrayList<ExecutableStatement>();
+  private final List<Node> nodes = new ArrayList<Node>();
+  private final List<EncodedText> text = new ArrayList<EncodedText>();
+  private final Map<Node, Label> labels = new IdentityHashMap<Node, Label>();
+
+  private MethodVisitor mv;
+
+  private ASMTemplateCompiler(char[] template) {
+    this(template, null, null, null, false);
+  }
+
+  private ASMTemplateCompiler(char[] template, String className, AtomicInteger nestedCount,
+                              Map<String, byte[]> output, boolean interpretOnly) {
+    this.template = template;
+    this.className = className;
+    this.nestedCount = nestedCount;
+    this.output = output;
+    this.interpretOnly = interpretOnly;
+  }
+
+  /**
+   * Compiles the template to bytecode.
+   *
+   * @param compiled a template returned by {@link TemplateCompiler}
+   * @return the compiled template, or the template itself if it is already compiled or is too large to be compiled
+   *         into a single method
+   */
+  public static CompiledTemplate compile(CompiledTemplate compiled) {
+    if (compiled.getRoot() instanceof ASMTemplateNode) return compiled;
+
+    try {
+      return new CompiledTemplate(compiled.getTemplate(),
+          new ASMTemplateCompiler(compiled.getTemplate()).generate(compiled.getRoot()));
+    }
+    catch (ClassFormatError e) {
+      /**
+       * The generated method exceeded the 64k limit.
+       */
+      return compiled;
+    }
+    catch (RuntimeException e) {
+      throw e;
+    }
+    catch (Exception e) {
+      throw new RuntimeException("unable to compile template", e);
+    }
+  }
+
+  /**
+   * Compiles the template ahead of time, into a named subclass of {@link CompiledTemplate} which is loaded from the
+   * classpath rather than generated at runtime:
+   * <pre><code>
+   * String output = (String) TemplateRuntime.execute(new com.acme.templates.Invoice(), vars);
+   * </code></pre>
+   * The template itself is compiled into one or more node classes, whose statements and interpreted nodes are
+   * written alongside them as {@link CompiledSnapshot} resources.  A template too large to be compiled into a
+   * single method is compiled into a node class which runs the interpreter.
+   *
+   * @param compiled  a template returned by {@link TemplateCompiler}
+   * @param className the fully qualified name of the class to generate
+   * @param output    receives the class files and snapshot resources, by resource path
+   */
+  public static void compileAheadOfTime(CompiledTemplate compiled, String className, Map<String, byte[]> output) {
+    Node root = compiled.getRoot() instanceof ASMTemplateNode ? ((ASMTemplateNode) compiled.getRoot()).getSource()
+        : compiled.getRoot();
+    String internalName = className.replace('.', '/');
+    String nodeName = internalName + "$Node";
+
+    try {
+      Map<String, byte[]> classes = new LinkedHashMap<String, byte[]>();
+      new ASMTemplateCompiler(compiled.getTemplate(), nodeName, new AtomicInteger(), classes, false).generate(root);
+
+      try {
+        Verifier verifier = new Verifier();
+        for (Map.Entry<String, byte[]> entry : classes.entrySet()) {
+          if (entry.getKey().endsWith(".class")) verifier.verify(entry.getValue());
+        }
+      }
+      catch (ClassFormatError e) {
+        /**
+         * A generated method exceeded the 64k limit.
+         */
+        classes.clear();
+        new ASMTemplateCompiler(compiled.getTemplate(), nodeName, new AtomicInteger(), classes, true).generate(root);
+      }
+
+      output.putAll(classes);
+      output.put(internalName + ".class", generateTemplateClass(internalName, nodeName));
+    }
+    catch (RuntimeException e) {
+      throw e;
+    }
+    catch (Exception e) {
+      throw new RuntimeException("unable to compile template", e);
+    }
+  }
+
+  /**
+   * Generates a node class for the chain of nodes starting at the specified node.
+   *
+   * @return the compiled node or, when compiling ahead of time, a placeholder for it
+   */
+  private Node generate(Node root) throws Exception {
+    if (output == null) {
+      String className = "ASMTemplateImpl_" + classCount.incrementAndGet();
+      return define(newClassLoader(), className, generate(className, root, null), root,
+          statements.toArray(new ExecutableStatement[statements.size()]), nodes.toArray(new Node[nodes.size()]),
+          text.toArray(new EncodedText[text.size()]));
+    }
+
+    String snapshot = className.substring(className.lastIndexOf('/') + 1) + ".snapshot";
+    byte[] bytecode = generate(className, root, snapshot);
+
+    Object[] state = {root, statements.toArray(new ExecutableStatement[statements.size()]),
+        nodes.toArray(new Node[nodes.size()]), text.toArray(new EncodedText[text.size()]),
+        className.endsWith("$Node") ? template : null};
+    ByteArrayOutputStream data = new ByteArrayOutputStream();
+    CompiledSnapshot.write(data, Collections.singletonMap(STATE_ENTRY, state), false);
+
+    output.put(className + ".class", bytecode);
+    output.put(className + ".snapshot", data.toByteArray());
+    return new ASMTemplateNode.Precompiled(className.replace('/', '.'));
+  }
+
+  /**
+   * @param snapshot the snapshot resource the class restores its state from, or null if its state is set when the
+   *                 class is defined
+   */
+  private byte[] generate(String className, Node root, String snapshot) throws Exception {
+    ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS + ClassWriter.COMPUTE_FRAMES);
+    cw.visit(V1_5, ACC_PUBLIC + ACC_SUPER, className, null, TEMPLATE_NODE, null);
+
+    MethodVisitor init = cw.visitMethod(ACC_PUBLIC, "<init>", "()V", null, null);
+    init.visitCode();
+    init.visitVarInsn(ALOAD, 0);
+    if (snapshot == null) {
+      init.visitMethodInsn(INVOKESPECIAL, TEMPLATE_NODE, "<init>", "()V");
+    }
+    else {
+      init.visitLdcInsn(snapshot);
+      init.visitMethodInsn(INVOKESPECIAL, TEMPLATE_NODE, "<init>", "(Ljava/lang/String;)V");
+    }
+    init.visitInsn(RETURN);
+    init.visitMaxs(0, 0);
+    init.visitEnd();
+
+    mv = cw.visitMethod(ACC_PUBLIC, "eval", EVAL_DESC, null, null);
+    mv.visitCode();
+    emitChain(root);
+    mv.visitMaxs(0, 0);
+    mv.visitEnd();
+
+    cw.visitEnd();
+
+    return cw.toByteArray();
+  }
+
+  /**
+   * Generates the subclass of {@link CompiledTemplate} for a template compiled ahead of time, which constructs its
+   * root node and takes the template from it.
+   */
+  private static byte[] generateTemplateClass(String className, String nodeName) {
+    String compiledTemplate = Type.getInternalName(CompiledTemplate.class);
+
+    ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS + ClassWriter.COMPUTE_FRAMES);
+    cw.visit(V1_5, ACC_PUBLIC + ACC_SUPER, className, null, compiledTemplate, null);
+
+    MethodVisitor init = cw.visitMethod(ACC_PUBLIC, "<init>", "()V", null, null);
+    init.visitCode();
+    init.visitVarInsn(ALOAD, 0);
+    init.visitTypeInsn(NEW, nodeName);
+    init.visitInsn(DUP);
+    init.visitMethodInsn(INVOKESPECIAL, nodeName, "<init>", "()V");
+    init.visitVarInsn(ASTORE, 1);
+    init.visitVarInsn(ALOAD, 1);
+    init.visitMethodInsn(INVOKEVIRTUAL, TEMPLATE_NODE, "getTemplate", "()[C");
+    init.visitVarInsn(ALOAD, 1);
+    init.visitMethodInsn(INVOKESPECIAL, compiledTemplate, "<init>", "([CL" + NODE + ";)V");
+    init.visitInsn(RETURN);
+    init.visitMaxs(0, 0);
+    init.visitEnd();
+
+    cw.visitEnd();
+
+    return cw.toByteArray();
+  }
+
+  /**
+   * Defines a node class previously generated by this compiler, for instance one read back from a
+   * {@link org.mvel2.compiler.CompiledSnapshot}.
+   *
+   * @param loader     the class loader to define the class in
+   * @param className  the name of the generated class
+   * @param bytecode   the bytecode of the generated class
+   * @param root       the node the class was compiled from
+   * @param statements the statements evaluated by the generated code
+   * @param nodes      the nodes the generated code delegates to
+   * @param text       the static text written by the generated code
+   * @return the compiled node
+   */
+  public static ASMTemplateNode define(MVELClassLoader loader, String className, byte[] bytecode, Node root,
+                                       ExecutableStatement[] statements, Node[] nodes, EncodedText[] text)
+      throws Exception {
+    ASMTemplateNode node = (ASMTemplateNode) loader.defineClassX(className, bytecode, 0, bytecode.length).newInstance();
+    node.init(root, statements, nodes, text);
+    node.setBytecode(bytecode);
+    return node;
+  }
+
+  /**
+   * Each generated class is defined in a loader of its own, so that it is unloaded once what it was compiled from is
+   * no longer used.
+   */
+  private static MVELClassLoader newClassLoader() {
+    return new GeneratedClassLoader(ASMTemplateCompiler.class.getClassLoader());
+  }
+
+  /**
+   * Emits the chain of nodes starting at the specified node, up to the point at which it returns.  The branches of
+   * an <tt>@if{}</tt> block rejoin at a shared terminal node, so a node which has already been emitted is jumped to
+   * rather than emitted again.
+   */
+  private void emitChain(Node n) throws Exception {
+    Label label;
+    while (true) {
+      if (n == null) {
+        mv.visitInsn(ACONST_NULL);
+        mv.visitInsn(ARETURN);
+        return;
+      }
+      else if ((label = labels.get(n)) != null) {
+        mv.visitJumpInsn(GOTO, label);
+        return;
+      }
+
+      labels.put(n, label = new Label());
+      mv.visitLabel(label);
+
+      Class<?> type = interpretOnly ? Node.class : n.getClass();
+      if (type == TextNode.class) {
+        if (n.getEnd() != n.getBegin()) emitText(((TextNode) n).getText(template));
+      }
+      else if (type == CompiledExpressionNode.class) {
+        mv.visitVarInsn(ALOAD, 2);
+        emitStatement(((CompiledExpressionNode) n).getCompiledExpression());
+        mv.visitMethodInsn(INVOKESTATIC, "java/lang/String", "valueOf", "(Ljava/lang/Object;)Ljava/lang/String;");
+        emitAppend();
+      }
+      else if (type == CompiledCodeNode.class) {
+        emitStatement(((CompiledCodeNode) n).getCompiledExpression());
+        mv.visitInsn(POP);
+      }
+      else if (type == CompiledIfNode.class) {
+        Serializable ce = ((CompiledIfNode) n).getCompiledExpression();
+        if (ce == null) {
+          /**
+           * An unconditional @else{}: the rest of the chain is never reached.
+           */
+          n = ((CompiledIfNode) n).getTrueNode();
+          continue;
+        }
+
+        Label otherwise = new Label();
+        emitStatement(ce);
+        mv.visitMethodInsn(INVOKESTATIC, TEMPLATE_NODE, "test", "(Ljava/lang/Object;)Z");
+        mv.visitJumpInsn(IFEQ, otherwise);
+        emitChain(((CompiledIfNode) n).getTrueNode());
+        mv.visitLabel(otherwise);
+      }
+      else if (type == CompiledForEachNode.class && ((CompiledForEachNode) n).getNestedNode() != null) {
+        emitNode(n);
+        mv.visitTypeInsn(CHECKCAST, FOREACH);
+        emitArguments();
+        emitNode(nested().generate(((CompiledForEachNode) n).getNestedNode()));
+        mv.visitMethodInsn(INVOKEVIRTUAL, FOREACH, "iterate", EVAL_DESC.substring(0, EVAL_DESC.indexOf(')'))
+            + "L" + NODE + ";)V");
+      }
+      else if (type == CompiledTerminalExpressionNode.class) {
+        emitStatement(((CompiledTerminalExpressionNode) n).getCompiledExpression());
+        mv.visitInsn(ARETURN);
+        return;
+      }
+      else if (type == EndNode.class) {
+        mv.visitVarInsn(ALOAD, 2);
+        mv.visitMethodInsn(INVOKEVIRTUAL, "java/lang/Object", "toString", "()Ljava/lang/String;");
+        mv.visitInsn(ARETURN);
+        return;
+      }
+      else if (type != TerminalNode.class && type != CommentNode.class) {
+        /**
+         * Hand this node, and everything after it, to the interpreter.
+         */
+        emitNode(n);
+        emitArguments();
+        mv.visitMethodInsn(INVOKEVIRTUAL, NODE, "eval", EVAL_DESC);
+        mv.visitInsn(ARETURN);
+        return;
+      }
+
+      n = n.getNext();
+    }
+  }
+
+  /**
+   * @return a compiler for the body of a <tt>@foreach{}</tt> block
+   */
+  private ASMTemplateCompiler nested() {
+    if (output == null) return new ASMTemplateCompiler(template);
+
+    String name = className.substring(0, className.lastIndexOf('$')) + "$Node" + nestedCount.incrementAndGet();
+    return new ASMTemplateCompiler(template, name, nestedCount, output, false);
+  }
+
+  /**
+   * Emits <tt>text[i].appendTo(appender)</tt>.
+   */
+  private void emitText(EncodedText t) {
+    text.add(t);
+
+    mv.visitVarInsn(ALOAD, 0);
+    mv.visitFieldInsn(GETFIELD, TEMPLATE_NODE, "text", "[L" + TEXT + ";");
+    emitIndex(text.size() - 1);
+    mv.visitInsn(AALOAD);
+    mv.visitVarInsn(ALOAD, 2);
+    mv.visitMethodInsn(INVOKEVIRTUAL, TEXT, "appendTo", "(L" + OUTPUT_STREAM + ";)V");
+  }
+
+  private void emitAppend() {
+    mv.visitMethodInsn(INVOKEINTERFACE, OUTPUT_STREAM, "append",
+        "(Ljava/lang/CharSequence;)L" + OUTPUT_STREAM + ";");
+    mv.visitInsn(POP);
+  }
+
+  /**
+   * Emits <tt>statements[i].getValue(ctx, factory)</tt>.
+   */
+  private void emitStatement(Serializable ce) {
+    statements.add((ExecutableStatement) ce);
+
+    mv.visitVarInsn(ALOAD, 0);
+    mv.visitFieldInsn(GETFIELD, TEMPLATE_NODE, "statements", "[L" + STATEMENT + ";");
+    emitIndex(statements.size() - 1);
+    mv.visitInsn(AALOAD);
+    mv.visitVarInsn(ALOAD, 3);
+    mv.visitVarInsn(ALOAD, 4);
+    mv.visitMethodInsn(INVOKEINTERFACE, STATEMENT, "getValue",
+        "(Ljava/lang/Object;L" + Type.getInternalName(VariableResolverFactory.class) + ";)Ljava/lang/Object;");
+  }
+
+  private void emitNode(Node node) {
+    nodes.add(node);
+
+    mv.visitVarInsn(ALOAD, 0);
+    mv.visitFieldInsn(GETFIELD, TEMPLATE_NODE, "nodes", "[L" + NODE + ";");
+    emitIndex(nodes.size() - 1);
+    mv.visitInsn(AALOAD);
+  }
+
+  private void emitArguments() {
+    for (int i = 1; i <= 4; i++) {
+      mv.visitVarInsn(ALOAD, i);
+    }
+  }
+
+  /**
+   * Defines generated classes, without linking them, to check that they are well formed.
+   */
+  private static final class Verifier extends ClassLoader {
+    private Verifier() {
+      super(ASMTemplateCompiler.class.getClassLoader());
+    }
+
+    private void verify(byte[] bytecode) {
+      defineClass(null, bytecode, 0, bytecode.length);
+    }
+  }
+
+  private void emitIndex(int i) {
+    if (i <= 5) {
+      mv.visitInsn(ICONST_0 + i);
+    }
+    else if (i <= Byte.MAX_VALUE) {
+      mv.visitIntInsn(BIPUSH, i);
+    }
+    else if (i <= Short.MAX_VALUE) {
+      mv.visitIntInsn(SIPUSH, i);
+    }
+    else {
+      mv.visitLdcInsn(i);
+    }
+  }
+}
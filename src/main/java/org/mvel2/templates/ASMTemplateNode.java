@@ -0,0 +1,180 @@
+/**
+ * MVEL 2.0
+ * Copyright (C) 2007 The Codehaus
+ * Mike Brock, Dhanji Prasanna, John Graham, Mark Proctor
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mvel2.templates;
+
+import org.mvel2.compiler.CompiledSnapshot;
+import org.mvel2.compiler.ExecutableStatement;
+import org.mvel2.integration.VariableResolverFactory;
+import org.mvel2.templates.res.Node;
+import org.mvel2.templates.util.EncodedText;
+import org.mvel2.templates.util.TemplateOutputStream;
+
+import java.io.ObjectStreamException;
+
+import static org.mvel2.DataConversion.convert;
+
+/**
+ * The base class of template nodes generated by {@link ASMTemplateCompiler}.  A generated node renders the whole
+ * chain of nodes it was compiled from.
+ * <p/>
+ * Generated classes only exist in the JVM which compiled them, so a compiled node serializes as the node it was
+ * compiled from.  Classes compiled ahead of time by the {@link org.mvel2.compiler.AheadOfTimeCompiler} are loaded
+ * from the classpath instead, and restore their state from a snapshot resource when they are constructed.
+ */
+public abstract class ASMTemplateNode extends Node {
+  private static final long serialVersionUID = 1L;
+
+  private Node source;
+
+  /**
+   * The compiled expressions evaluated by the generated code.
+   */
+  protected ExecutableStatement[] statements;
+
+  /**
+   * Nodes the generated code delegates to.
+   */
+  protected Node[] nodes;
+
+  /**
+   * The static text written by the generated code.
+   */
+  protected EncodedText[] text;
+
+  private char[] template;
+  private transient byte[] bytecode;
+
+  protected ASMTemplateNode() {
+  }
+
+  /**
+   * @param snapshot the snapshot resource, relative to the generated class, holding the state of the node
+   */
+  protected ASMTemplateNode(String snapshot) {
+    try {
+      Object[] state = (Object[]) CompiledSnapshot.open(getClass(), snapshot).get(ASMTemplateCompiler.STATE_ENTRY);
+      Node[] nodes = (Node[]) state[2];
+
+      /**
+       * The bodies of @foreach{} blocks were compiled into classes of their own.
+       */
+      for (int i = 0; i < nodes.length; i++) {
+        if (nodes[i] instanceof Precompiled) {
+          nodes[i] = (Node) Class.forName(((Precompiled) nodes[i]).className, true, getClass().getClassLoader())
+              .newInstance();
+        }
+      }
+
+      init((Node) state[0], (ExecutableStatement[]) state[1], nodes, (EncodedText[]) state[3]);
+      this.template = (char[]) state[4];
+    }
+    catch (Exception e) {
+      throw new RuntimeException("unable to restore precompiled template: " + getClass().getName(), e);
+    }
+  }
+
+  void init(Node source, ExecutableStatement[] statements, Node[] nodes, EncodedText[] text) {
+    this.source = source;
+    this.statements = statements;
+    this.nodes = nodes;
+    this.text = text;
+    this.begin = source.getBegin();
+    this.end = source.getEnd();
+  }
+
+  /**
+   * @return the node this node was compiled from.
+   */
+  public Node getSource() {
+    return source;
+  }
+
+  public ExecutableStatement[] getStatements() {
+    return statements;
+  }
+
+  public Node[] getNodes() {
+    return nodes;
+  }
+
+  public EncodedText[] getText() {
+    return text;
+  }
+
+  /**
+   * @return the template a node compiled ahead of time was compiled from, or null for any other node.
+   */
+  public char[] getTemplate() {
+    return template;
+  }
+
+  void setBytecode(byte[] bytecode) {
+    this.bytecode = bytecode;
+  }
+
+  /**
+   * @return the bytecode of the generated class.
+   */
+  public byte[] getBytecode() {
+    return bytecode;
+  }
+
+  public boolean demarcate(Node terminatingNode, char[] template) {
+    return false;
+  }
+
+  /**
+   * Converts the value of an <tt>@if{}</tt> condition the same way {@link org.mvel2.templates.res.CompiledIfNode}
+   * does.
+   */
+  protected static boolean test(Object value) {
+    if (value instanceof Boolean) return (Boolean) value;
+    return convert(value, Boolean.class);
+  }
+
+  protected Object writeReplace() throws ObjectStreamException {
+    return source;
+  }
+
+  public String toString() {
+    return "ASMTemplateNode:" + source;
+  }
+
+  /**
+   * Stands in for a node compiled ahead of time into a class of its own, until the class is loaded.
+   */
+  static final class Precompiled extends Node {
+    private static final long serialVersionUID = 1L;
+
+    private final String className;
+
+    Precompiled(String className) {
+      this.className = className;
+    }
+
+    public Object eval(TemplateRuntime runtime, TemplateOutputStream appender, Object ctx,
+                       VariableResolverFactory factory) {
+      throw new IllegalStateException("precompiled node not loaded: " + className);
+    }
+
+    public boolean demarcate(Node terminatingNode, char[] template) {
+      return false;
+    }
+  }
+}
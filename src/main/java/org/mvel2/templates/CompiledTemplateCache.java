@@ -0,0 +1,145 @@
+/**
+ * MVEL 2.0
+ * Copyright (C) 2007 The Codehaus
+ * Mike Brock, Dhanji Prasanna, John Graham, Mark Proctor
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mvel2.templates;
+
+import org.mvel2.templates.util.TemplateTools;
+import org.mvel2.util.BoundedCache;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.mvel2.templates.TemplateCompiler.compileTemplate;
+
+/**
+ * A bounded cache of compiled templates.  When installed with {@link TemplateRuntime#setTemplateCache}, the
+ * <tt>TemplateRuntime.eval()</tt> family of methods compile each distinct template once and execute the compiled
+ * form thereafter, performing as <tt>TemplateRuntime.execute()</tt> would with a template compiled up front.
+ * <p/>
+ * Templates given as strings or streams are keyed by their source.  Templates read from files are keyed by the
+ * canonical path of the file, along with its modification time and length, so a file is only read again once it
+ * has changed.  The compiled form of a file which has since changed is not used again, and is eventually evicted.
+ */
+public class CompiledTemplateCache {
+  private final BoundedCache<Object, CompiledTemplate> cache;
+
+  public CompiledTemplateCache(int maxSize) {
+    this(maxSize, BoundedCache.LRU);
+  }
+
+  /**
+   * @param maxSize        the maximum number of compiled templates to retain.
+   * @param evictionPolicy either {@link BoundedCache#LRU} or {@link BoundedCache#LFU}
+   */
+  public CompiledTemplateCache(int maxSize, int evictionPolicy) {
+    this.cache = new BoundedCache<Object, CompiledTemplate>(maxSize, evictionPolicy);
+  }
+
+  /**
+   * Returns the compiled form of the template, compiling and caching it if it is not already present.
+   *
+   * @param template the template source
+   * @return the compiled template
+   */
+  public CompiledTemplate getCompiled(String template) {
+    CompiledTemplate compiled = cache.get(template);
+    if (compiled != null) return compiled;
+
+    return cache.putIfAbsent(template, compileTemplate(template));
+  }
+
+  /**
+   * Returns the compiled form of the template file, reading and compiling it if it is not already present or if
+   * it has been modified since it was cached.
+   *
+   * @param file the template file
+   * @return the compiled template
+   */
+  public CompiledTemplate getCompiled(File file) {
+    FileKey key = new FileKey(file);
+    CompiledTemplate compiled = cache.get(key);
+    if (compiled != null) return compiled;
+
+    return cache.putIfAbsent(key, compileTemplate(TemplateTools.readInFile(file)));
+  }
+
+  public void clear() {
+    cache.clear();
+  }
+
+  public int size() {
+    return cache.size();
+  }
+
+  public int getMaxSize() {
+    return cache.getMaxSize();
+  }
+
+  public long getHits() {
+    return cache.getHits();
+  }
+
+  public long getMisses() {
+    return cache.getMisses();
+  }
+
+  public long getEvictions() {
+    return cache.getEvictions();
+  }
+
+  public double getHitRate() {
+    return cache.getHitRate();
+  }
+
+  public void resetStatistics() {
+    cache.resetStatistics();
+  }
+
+  private static final class FileKey {
+    private final String path;
+    private final long lastModified;
+    private final long length;
+    private final int hash;
+
+    private FileKey(File file) {
+      String path;
+      try {
+        path = file.getCanonicalPath();
+      }
+      catch (IOException e) {
+        path = file.getAbsolutePath();
+      }
+
+      this.path = path;
+      this.lastModified = file.lastModified();
+      this.length = file.length();
+      this.hash = 31 * (31 * path.hashCode() + (int) (lastModified ^ (lastModified >>> 32))) + (int) length;
+    }
+
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (!(o instanceof FileKey)) return false;
+      FileKey key = (FileKey) o;
+      return lastModified == key.lastModified && length == key.length && path.equals(key.path);
+    }
+
+    public int hashCode() {
+      return hash;
+    }
+  }
+}
@@ -0,0 +1,353 @@
+/**
+ * MVEL 2.0
+ * Copyright (C) 2007 The Codehaus
+ * Mike Brock, Dhanji Prasanna, John Graham, Mark Proctor
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mvel2.templates;
+
+import org.mvel2.templates.util.TemplateTools;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import static org.mvel2.templates.TemplateCompiler.compileTemplate;
+
+/**
+ * A thread-safe {@link TemplateRegistry} which loads named templates from a directory, or from a root on the
+ * class path.  The template named <tt>foo/bar</tt> is read from <tt>foo/bar.mv</tt> (or whichever extension the
+ * registry was given) under the root, and is compiled the first time it is asked for.
+ * <p/>
+ * Templates read from files can be reloaded when they change, either by calling {@link #reload()} or by starting a
+ * background thread with {@link #startReloading(long)} which checks for changes at a fixed interval.  A changed
+ * template is recompiled and replaces the old one; renders already underway finish with the old one.
+ * <p/>
+ * To avoid compiling templates during the first requests a service handles, {@link #preload(int)} compiles every
+ * template in a directory up front, in parallel.
+ */
+public class ResourceTemplateRegistry implements TemplateRegistry {
+  private final File directory;
+  private final ClassLoader classLoader;
+  private final String root;
+  private final String extension;
+
+  private final ConcurrentHashMap<String, Entry> templates = new ConcurrentHashMap<String, Entry>();
+
+  private ScheduledExecutorService reloader;
+
+  /**
+   * @param directory the directory to read templates from
+   * @param extension the extension of template files, eg. <tt>.mv</tt>
+   */
+  public ResourceTemplateRegistry(File directory, String extension) {
+    this.directory = directory;
+    this.classLoader = null;
+    this.root = null;
+    this.extension = extension;
+  }
+
+  /**
+   * @param classLoader the class loader to read templates from
+   * @param root        the path of the root of the templates on the class path, eg. <tt>com/acme/templates</tt>
+   * @param extension   the extension of template files, eg. <tt>.mv</tt>
+   */
+  public ResourceTemplateRegistry(ClassLoader classLoader, String root, String extension) {
+    this.directory = null;
+    this.classLoader = classLoader;
+    this.root = root.length() == 0 || root.endsWith("/") ? root : root + "/";
+    this.extension = extension;
+  }
+
+  public CompiledTemplate getNamedTemplate(String name) {
+    Entry entry = templates.get(name);
+    if (entry == null) {
+      /**
+       * Two threads may both compile a template the first time it is used; only one of the results is kept.
+       */
+      if ((entry = load(name)) == null) throw new TemplateError("no named template exists '" + name + "'");
+
+      Entry existing = templates.putIfAbsent(name, entry);
+      if (existing != null) entry = existing;
+    }
+    return entry.template;
+  }
+
+  /**
+   * Adds a template which does not come from the registry's root.  It is never reloaded.
+   */
+  public void addNamedTemplate(String name, CompiledTemplate template) {
+    templates.put(name, new Entry(template, null, 0, 0));
+  }
+
+  public boolean contains(String name) {
+    return templates.containsKey(name) || locate(name) != null;
+  }
+
+  /**
+   * @return the names of the templates which have been loaded or added, and, for a directory, the names of all the
+   *         templates in it
+   */
+  public Set<String> getNames() {
+    Set<String> names = new TreeSet<String>(templates.keySet());
+    if (directory != null) list(directory, "", names);
+    return names;
+  }
+
+  public Iterator<String> iterator() {
+    return getNames().iterator();
+  }
+
+  /**
+   * Checks each template read from a file, recompiling those which have changed and dropping those which have been
+   * deleted.  A template which fails to compile is passed to {@link #reloadFailed(String, RuntimeException)} and the
+   * old version is kept until the file changes again.  A template added or reloaded by another thread in the meantime
+   * is left alone.
+   *
+   * @return the number of templates reloaded or dropped
+   */
+  public int reload() {
+    int changed = 0;
+    for (Map.Entry<String, Entry> e : templates.entrySet()) {
+      Entry entry = e.getValue();
+      if (entry.file == null || !entry.isModified()) continue;
+
+      if (!entry.file.exists()) {
+        if (templates.remove(e.getKey(), entry)) changed++;
+        continue;
+      }
+
+      long lastModified = entry.file.lastModified();
+      long length = entry.file.length();
+      Entry updated;
+      try {
+        updated = new Entry(compileTemplate(TemplateTools.readInFile(entry.file)), entry.file, lastModified, length);
+      }
+      catch (RuntimeException ex) {
+        templates.replace(e.getKey(), entry, new Entry(entry.template, entry.file, lastModified, length));
+        reloadFailed(e.getKey(), ex);
+        continue;
+      }
+      if (templates.replace(e.getKey(), entry, updated)) changed++;
+    }
+    return changed;
+  }
+
+  /**
+   * Called by {@link #reload()} when a changed template fails to compile.  The default prints the error to
+   * <tt>System.err</tt>.
+   *
+   * @param name  the name of the template
+   * @param error the error it failed with
+   */
+  protected void reloadFailed(String name, RuntimeException error) {
+    System.err.println("[MVEL] failed to reload template '" + name + "', keeping the previous version: " + error);
+  }
+
+  /**
+   * Starts a daemon thread which calls {@link #reload()} at a fixed interval.
+   *
+   * @param intervalMillis the interval between checks, in milliseconds
+   */
+  public synchronized void startReloading(long intervalMillis) {
+    if (reloader != null) return;
+
+    reloader = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+      public Thread newThread(Runnable r) {
+        Thread t = new Thread(r, "mvel template reloader");
+        t.setDaemon(true);
+        return t;
+      }
+    });
+    reloader.scheduleWithFixedDelay(new Runnable() {
+      public void run() {
+        try {
+          reload();
+        }
+        catch (RuntimeException e) {
+          /**
+           * An exception escaping would cancel the schedule; report it and try again at the next interval.
+           */
+          System.err.println("[MVEL] template reload failed: " + e);
+        }
+      }
+    }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+  }
+
+  public synchronized void stopReloading() {
+    if (reloader != null) {
+      reloader.shutdownNow();
+      reloader = null;
+    }
+  }
+
+  /**
+   * Compiles every template returned by {@link #getNames()}, in parallel.
+   *
+   * @param threads the number of threads to compile with
+   */
+  public void preload(int threads) {
+    preload(getNames(), threads);
+  }
+
+  /**
+   * Compiles the named templates, in parallel.
+   *
+   * @param names   the names of the templates to compile
+   * @param threads the number of threads to compile with
+   * @throws TemplateError if a template does not exist, or fails to compile
+   */
+  public void preload(Collection<String> names, int threads) {
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<CompiledTemplate>> futures = new ArrayList<Future<CompiledTemplate>>(names.size());
+      for (final String name : names) {
+        futures.add(executor.submit(new Callable<CompiledTemplate>() {
+          public CompiledTemplate call() {
+            return getNamedTemplate(name);
+          }
+        }));
+      }
+
+      for (Future<CompiledTemplate> f : futures) {
+        f.get();
+      }
+    }
+    catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+      throw new TemplateError("failed to preload templates", e.getCause());
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new TemplateError("interrupted while preloading templates", e);
+    }
+    finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private Entry load(String name) {
+    URL url = locate(name);
+    if (url == null) return null;
+
+    File file = toFile(url);
+    if (file != null) return load(file);
+
+    try {
+      InputStream stream = url.openStream();
+      try {
+        return new Entry(compileTemplate(TemplateTools.readStream(stream)), null, 0, 0);
+      }
+      finally {
+        stream.close();
+      }
+    }
+    catch (IOException e) {
+      throw new TemplateError("unable to read template '" + name + "' from " + url, e);
+    }
+  }
+
+  /**
+   * The file's modification time and length are taken before it is read, so that a change made while it is being
+   * read is picked up by the next reload.
+   */
+  private static Entry load(File file) {
+    long lastModified = file.lastModified();
+    long length = file.length();
+    return new Entry(compileTemplate(TemplateTools.readInFile(file)), file, lastModified, length);
+  }
+
+  private URL locate(String name) {
+    /**
+     * Names must not escape the root.
+     */
+    if (name.indexOf("..") != -1) return null;
+
+    if (directory != null) {
+      File file = new File(directory, name + extension);
+      try {
+        return file.isFile() ? file.toURI().toURL() : null;
+      }
+      catch (IOException e) {
+        return null;
+      }
+    }
+    return classLoader.getResource(root + name + extension);
+  }
+
+  /**
+   * @return the file a template was loaded from, or null if it was not loaded from a file (eg. from a jar), in
+   *         which case it is never reloaded
+   */
+  private static File toFile(URL url) {
+    if (!"file".equals(url.getProtocol())) return null;
+    try {
+      return new File(url.toURI());
+    }
+    catch (URISyntaxException e) {
+      return null;
+    }
+  }
+
+  private void list(File dir, String prefix, Set<String> names) {
+    File[] files = dir.listFiles();
+    if (files == null) return;
+
+    for (File f : files) {
+      if (f.isDirectory()) {
+        list(f, prefix + f.getName() + "/", names);
+      }
+      else if (f.getName().endsWith(extension)) {
+        names.add(prefix + f.getName().substring(0, f.getName().length() - extension.length()));
+      }
+    }
+  }
+
+  private static final class Entry {
+    private final CompiledTemplate template;
+    private final File file;
+    private final long lastModified;
+    private final long length;
+
+    private Entry(CompiledTemplate template, File file, long lastModified, long length) {
+      this.template = template;
+      this.file = file;
+      this.lastModified = lastModified;
+      this.length = length;
+    }
+
+    private boolean isModified() {
+      return file.lastModified() != lastModified || file.length() != length;
+    }
+  }
+}
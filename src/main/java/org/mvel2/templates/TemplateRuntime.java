@@ -22,17 +22,22 @@ import org.mvel2.integration.VariableResolverFactory;
 import org.mvel2.integration.impl.ImmutableDefaultFactory;
 import org.mvel2.integration.impl.MapVariableResolverFactory;
 import org.mvel2.templates.res.Node;
+import org.mvel2.templates.util.ByteTemplateOutputStream;
 import org.mvel2.templates.util.TemplateOutputStream;
 import org.mvel2.templates.util.TemplateTools;
 import org.mvel2.templates.util.io.StandardOutputStream;
 import org.mvel2.templates.util.io.StringAppenderStream;
 import org.mvel2.templates.util.io.StringBuilderStream;
+import org.mvel2.templates.util.io.WriterStream;
+import org.mvel2.util.BoundedCache;
 import org.mvel2.util.ExecutionStack;
 import org.mvel2.util.StringAppender;
 
 import java.io.File;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.Charset;
 import java.util.Map;
 
 import static org.mvel2.templates.TemplateCompiler.compileTemplate;
@@ -47,6 +52,15 @@ public class TemplateRuntime {
   private String baseDir;
   private ExecutionStack relPath;
 
+  private static volatile CompiledTemplateCache templateCache;
+
+  static {
+    if (System.getProperty("mvel2.templates.cache_size") != null) {
+      templateCache = new CompiledTemplateCache(Integer.getInteger("mvel2.templates.cache_size"),
+          "lfu".equalsIgnoreCase(System.getProperty("mvel2.templates.cache_policy")) ? BoundedCache.LFU : BoundedCache.LRU);
+    }
+  }
+
 
   public TemplateRuntime(char[] template, TemplateRegistry namedTemplateRegistry, Node rootNode, String baseDir) {
     this.template = template;
@@ -55,8 +69,36 @@ public class TemplateRuntime {
     this.baseDir = baseDir;
   }
 
+  /**
+   * Installs a cache of compiled templates to be used by the <tt>eval()</tt> methods.  When a cache is installed,
+   * the <tt>eval()</tt> methods compile each distinct template once and execute the compiled form thereafter.
+   * Passing <tt>null</tt> restores the default behaviour of compiling the template on every call.
+   * <p/>
+   * A cache may also be installed at startup by setting the <tt>mvel2.templates.cache_size</tt> system property
+   * (and, optionally, <tt>mvel2.templates.cache_policy</tt> to either <tt>lru</tt> or <tt>lfu</tt>).
+   *
+   * @param cache the cache to use, or <tt>null</tt> to disable caching.
+   */
+  public static void setTemplateCache(CompiledTemplateCache cache) {
+    templateCache = cache;
+  }
+
+  public static CompiledTemplateCache getTemplateCache() {
+    return templateCache;
+  }
+
+  private static CompiledTemplate compile(String template) {
+    CompiledTemplateCache cache = templateCache;
+    return cache != null ? cache.getCompiled(template) : compileTemplate(template);
+  }
+
+  private static CompiledTemplate compile(File file) {
+    CompiledTemplateCache cache = templateCache;
+    return cache != null ? cache.getCompiled(file) : compileTemplate(TemplateTools.readInFile(file));
+  }
+
   public static Object eval(File file, Object ctx, VariableResolverFactory vars, TemplateRegistry registry) {
-    return execute(compileTemplate(TemplateTools.readInFile(file)), ctx, vars, registry);
+    return execute(compile(file), ctx, vars, registry);
   }
 
   public static Object eval(InputStream instream) {
@@ -76,79 +118,79 @@ public class TemplateRuntime {
   }
 
   public static Object eval(InputStream instream, Object ctx, Map vars, TemplateRegistry registry) {
-    return execute(compileTemplate(TemplateTools.readStream(instream)), ctx, new MapVariableResolverFactory(vars), registry);
+    return execute(compile(TemplateTools.readStream(instream)), ctx, new MapVariableResolverFactory(vars), registry);
   }
 
   public static Object eval(InputStream instream, Object ctx, VariableResolverFactory vars, TemplateRegistry registry) {
-    return execute(compileTemplate(TemplateTools.readStream(instream)), ctx, vars, registry);
+    return execute(compile(TemplateTools.readStream(instream)), ctx, vars, registry);
   }
 
   public static void eval(InputStream instream, Object ctx, VariableResolverFactory vars, TemplateRegistry register, OutputStream stream) {
-    execute(compileTemplate(TemplateTools.readStream(instream)), ctx, vars, register, stream);
+    execute(compile(TemplateTools.readStream(instream)), ctx, vars, register, stream);
   }
 
   public static Object eval(String template, Map vars) {
-    return execute(compileTemplate(template), null, new MapVariableResolverFactory(vars));
+    return execute(compile(template), null, new MapVariableResolverFactory(vars));
   }
 
   public static void eval(String template, Map vars, OutputStream stream) {
-    execute(compileTemplate(template), null, new MapVariableResolverFactory(vars), null, stream);
+    execute(compile(template), null, new MapVariableResolverFactory(vars), null, stream);
   }
 
   public static Object eval(String template, Object ctx) {
-    return execute(compileTemplate(template), ctx);
+    return execute(compile(template), ctx);
   }
 
   public static Object eval(String template, Object ctx, Map vars) {
-    return execute(compileTemplate(template), ctx, new MapVariableResolverFactory(vars));
+    return execute(compile(template), ctx, new MapVariableResolverFactory(vars));
   }
 
   public static void eval(String template, Object ctx, Map vars, OutputStream stream) {
-    execute(compileTemplate(template), ctx, new MapVariableResolverFactory(vars), null, stream);
+    execute(compile(template), ctx, new MapVariableResolverFactory(vars), null, stream);
   }
 
   public static Object eval(String template, Object ctx, VariableResolverFactory vars) {
-    return execute(compileTemplate(template), ctx, vars);
+    return execute(compile(template), ctx, vars);
   }
 
   public static void eval(String template, Object ctx, VariableResolverFactory vars, TemplateOutputStream stream) {
-    execute(compileTemplate(template), ctx, vars, null, stream);
+    execute(compile(template), ctx, vars, null, stream);
   }
 
   public static void eval(String template, Object ctx, VariableResolverFactory vars, OutputStream stream) {
-    execute(compileTemplate(template), ctx, vars, null, stream);
+    execute(compile(template), ctx, vars, null, stream);
   }
 
   public static Object eval(String template, Map vars, TemplateRegistry registry) {
-    return execute(compileTemplate(template), null, new MapVariableResolverFactory(vars), registry);
+    return execute(compile(template), null, new MapVariableResolverFactory(vars), registry);
   }
 
   public static void eval(String template, Map vars, TemplateRegistry registry, TemplateOutputStream stream) {
-    execute(compileTemplate(template), null, new MapVariableResolverFactory(vars), registry, stream);
+    execute(compile(template), null, new MapVariableResolverFactory(vars), registry, stream);
   }
 
   public static void eval(String template, Map vars, TemplateRegistry registry, OutputStream stream) {
-    execute(compileTemplate(template), null, new MapVariableResolverFactory(vars), registry, stream);
+    execute(compile(template), null, new MapVariableResolverFactory(vars), registry, stream);
   }
 
   public static Object eval(String template, Object ctx, Map vars, TemplateRegistry registry) {
-    return execute(compileTemplate(template), ctx, new MapVariableResolverFactory(vars), registry);
+    return execute(compile(template), ctx, new MapVariableResolverFactory(vars), registry);
   }
 
   public static void eval(String template, Object ctx, Map vars, TemplateRegistry registry, OutputStream stream) {
-    execute(compileTemplate(template), ctx, new MapVariableResolverFactory(vars), registry, stream);
+    execute(compile(template), ctx, new MapVariableResolverFactory(vars), registry, stream);
   }
 
   public static Object eval(String template, Object ctx, VariableResolverFactory vars, TemplateRegistry registry) {
-    return execute(compileTemplate(template), ctx, vars, registry);
+    return execute(compile(template), ctx, vars, registry);
   }
 
   public static void eval(String template, Object ctx, VariableResolverFactory vars, TemplateRegistry registry, OutputStream stream) {
-    execute(compileTemplate(template), ctx, vars, registry, stream);
+    execute(compile(template), ctx, vars, registry, stream);
   }
 
   public static void eval(String template, Object ctx, VariableResolverFactory vars, TemplateRegistry registry, TemplateOutputStream stream) {
-    execute(compileTemplate(template), ctx, vars, registry, stream);
+    execute(compile(template), ctx, vars, registry, stream);
   }
 
   public static Object execute(CompiledTemplate compiled) {
@@ -236,6 +278,32 @@ public class TemplateRuntime {
     return execute(compiled.getRoot(), compiled.getTemplate(), stream, context, factory, registry, basedir);
   }
 
+  /**
+   * Renders a template to a <tt>Writer</tt>, writing the output out (and flushing the writer) each time
+   * {@link WriterStream#DEFAULT_FLUSH_THRESHOLD} characters have been rendered, rather than building the whole
+   * output in memory.  See also {@link org.mvel2.templates.util.io.ByteBufferStream} for rendering to bytes.
+   */
+  public static void execute(CompiledTemplate compiled, Object context, VariableResolverFactory factory, TemplateRegistry registry, Writer writer) {
+    WriterStream stream = new WriterStream(writer);
+    execute(compiled.getRoot(), compiled.getTemplate(), stream, context, factory, registry);
+    stream.flush();
+  }
+
+  /**
+   * Renders a template into the output of an enclosing template, as <tt>@include{}</tt> and
+   * <tt>@includeNamed{}</tt> do, without first rendering it to a string.
+   */
+  public static void include(CompiledTemplate compiled, Object context, VariableResolverFactory factory, TemplateRegistry registry, TemplateOutputStream stream) {
+    IncludeStream include = stream instanceof ByteTemplateOutputStream ?
+        new ByteIncludeStream((ByteTemplateOutputStream) stream) : new IncludeStream(stream);
+    Object result = execute(compiled.getRoot(), compiled.getTemplate(), include, context, factory, registry);
+
+    /**
+     * A template which consists of a single expression returns its value rather than writing it.
+     */
+    if (!include.written) stream.append(String.valueOf(result));
+  }
+
   public static Object execute(Node root, char[] template,
                                StringAppender appender, Object context,
                                VariableResolverFactory factory, TemplateRegistry registry) {
@@ -316,4 +384,51 @@ public class TemplateRuntime {
     }
     return relPath;
   }
+
+  /**
+   * Passes the output of an included template through to the enclosing template's stream, and records whether the
+   * template wrote anything.  Its <tt>toString()</tt>, which is what a template returns once rendered, is empty, as
+   * the output has already been passed on.
+   */
+  private static class IncludeStream implements TemplateOutputStream {
+    protected final TemplateOutputStream stream;
+    protected boolean written;
+
+    private IncludeStream(TemplateOutputStream stream) {
+      this.stream = stream;
+    }
+
+    public TemplateOutputStream append(CharSequence c) {
+      written = true;
+      stream.append(c);
+      return this;
+    }
+
+    public TemplateOutputStream append(char[] c) {
+      written = true;
+      stream.append(c);
+      return this;
+    }
+
+    @Override
+    public String toString() {
+      return "";
+    }
+  }
+
+  private static class ByteIncludeStream extends IncludeStream implements ByteTemplateOutputStream {
+    private ByteIncludeStream(ByteTemplateOutputStream stream) {
+      super(stream);
+    }
+
+    public Charset getCharset() {
+      return ((ByteTemplateOutputStream) stream).getCharset();
+    }
+
+    public ByteTemplateOutputStream write(byte[] b, int off, int len) {
+      written = true;
+      ((ByteTemplateOutputStream) stream).write(b, off, len);
+      return this;
+    }
+  }
 }
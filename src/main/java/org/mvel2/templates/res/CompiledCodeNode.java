@@ -46,6 +46,10 @@ public class CompiledCodeNode extends Node {
 //                   context);
   }
 
+  public Serializable getCompiledExpression() {
+    return ce;
+  }
+
   public Object eval(TemplateRuntime runtime, TemplateOutputStream appender, Object ctx, VariableResolverFactory factory) {
     MVEL.executeExpression(ce, ctx, factory);
     return next != null ? next.eval(runtime, appender, ctx, factory) : null;
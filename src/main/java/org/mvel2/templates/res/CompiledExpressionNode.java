@@ -41,6 +41,10 @@ public class CompiledExpressionNode extends ExpressionNode {
     ce = MVEL.compileExpression(template, cStart, cEnd - cStart, context);
   }
 
+  public Serializable getCompiledExpression() {
+    return ce;
+  }
+
   public Object eval(TemplateRuntime runtime, TemplateOutputStream appender, Object ctx, VariableResolverFactory factory) {
     appender.append(valueOf(MVEL.executeExpression(ce, ctx, factory)));
     return next != null ? next.eval(runtime, appender, ctx, factory) : null;
@@ -77,6 +77,16 @@ public class CompiledForEachNode extends Node {
   }
 
   public Object eval(TemplateRuntime runtime, TemplateOutputStream appender, Object ctx, VariableResolverFactory factory) {
+    iterate(runtime, appender, ctx, factory, nestedNode);
+    return next != null ? next.eval(runtime, appender, ctx, factory) : null;
+  }
+
+  /**
+   * Runs the loop, evaluating the specified node as the body of each iteration, without continuing on to the
+   * nodes which follow the loop.
+   */
+  public void iterate(TemplateRuntime runtime, TemplateOutputStream appender, Object ctx, VariableResolverFactory factory,
+                      Node body) {
     Iterator[] iters = new Iterator[item.length];
 
     Object o;
@@ -111,7 +121,7 @@ public class CompiledForEachNode extends Node {
         }
       }
       if (iterate != 0) {
-        nestedNode.eval(runtime, appender, ctx, localFactory);
+        body.eval(runtime, appender, ctx, localFactory);
 
         if (sepExpr != null) {
           for (Iterator it : iters) {
@@ -124,8 +134,6 @@ public class CompiledForEachNode extends Node {
       }
       else break;
     }
-
-    return next != null ? next.eval(runtime, appender, ctx, factory) : null;
   }
 
   private void configure() {
@@ -39,6 +39,10 @@ public class CompiledIfNode extends IfNode {
     }
   }
 
+  public Serializable getCompiledExpression() {
+    return ce;
+  }
+
   public Object eval(TemplateRuntime runtime, TemplateOutputStream appender, Object ctx, VariableResolverFactory factory) {
     if (ce == null || MVEL.executeExpression(ce, ctx, factory, Boolean.class)) {
       return trueNode.eval(runtime, appender, ctx, factory);
@@ -63,21 +63,20 @@ public class CompiledIncludeNode extends Node {
       MVEL.executeExpression(cPreExpression, ctx, factory);
     }
 
-    if (next != null) {
-      return next.eval(runtime, appender.append(String.valueOf(TemplateRuntime.eval(readFile(runtime, file, ctx, factory), ctx, factory))), ctx, factory);
-    }
-    else {
-      return appender.append(String.valueOf(MVEL.eval(readFile(runtime, file, ctx, factory), ctx, factory)));
-    }
+    /**
+     * Render the included template straight into the output, rather than to a string first.
+     */
+    TemplateRuntime.include(readFile(runtime, file), ctx, factory, null, appender);
+    return next != null ? next.eval(runtime, appender, ctx, factory) : null;
   }
 
-  private String readFile(TemplateRuntime runtime, String fileName, Object ctx, VariableResolverFactory factory) {
+  private CompiledTemplate readFile(TemplateRuntime runtime, String fileName) {
     File file = new File(String.valueOf(runtime.getRelPath().peek()) + "/" + fileName);
     if (fileDateStamp == 0 || fileDateStamp != file.lastModified()) {
       fileDateStamp = file.lastModified();
       cFileCache = TemplateCompiler.compileTemplate(readInFile(runtime, file), context);
     }
-    return String.valueOf(TemplateRuntime.execute(cFileCache, ctx, factory));
+    return cFileCache;
   }
 
   public boolean demarcate(Node terminatingNode, char[] template) {
@@ -57,21 +57,17 @@ public class CompiledNamedIncludeNode extends Node {
     }
 
 
-    if (next != null) {
-      String namedTemplate = MVEL.executeExpression(cIncludeExpression, ctx, factory, String.class);
-      CompiledTemplate ct = runtime.getNamedTemplateRegistry().getNamedTemplate(namedTemplate);
+    String namedTemplate = MVEL.executeExpression(cIncludeExpression, ctx, factory, String.class);
+    CompiledTemplate ct = runtime.getNamedTemplateRegistry().getNamedTemplate(namedTemplate);
 
-      if (ct == null)
-        throw new TemplateError("named template does not exist: " + namedTemplate);
+    if (ct == null)
+      throw new TemplateError("named template does not exist: " + namedTemplate);
 
-      return next.eval(runtime, appender.append(String.valueOf(TemplateRuntime.execute(ct, ctx, factory, runtime.getNamedTemplateRegistry()))), ctx, factory);
-
-//            return next.eval(runtime,
-//                    appender.append(String.valueOf(TemplateRuntime.execute(runtime.getNamedTemplateRegistry().getNamedTemplate(MVEL.executeExpression(cIncludeExpression, ctx, factory, String.class)), ctx, factory))), ctx, factory);
-    }
-    else {
-      return appender.append(String.valueOf(TemplateRuntime.execute(runtime.getNamedTemplateRegistry().getNamedTemplate(MVEL.executeExpression(cIncludeExpression, ctx, factory, String.class)), ctx, factory, runtime.getNamedTemplateRegistry())));
-    }
+    /**
+     * Render the named template straight into the output, rather than to a string first.
+     */
+    TemplateRuntime.include(ct, ctx, factory, runtime.getNamedTemplateRegistry(), appender);
+    return next != null ? next.eval(runtime, appender, ctx, factory) : null;
   }
 
   public boolean demarcate(Node terminatingNode, char[] template) {
@@ -35,6 +35,10 @@ public class CompiledTerminalExpressionNode extends TerminalExpressionNode {
     ce = MVEL.compileExpression(node.contents, node.cStart, node.cEnd - node.cStart, context);
   }
 
+  public Serializable getCompiledExpression() {
+    return ce;
+  }
+
   public Object eval(TemplateRuntime runtime, TemplateOutputStream appender, Object ctx, VariableResolverFactory factory) {
     return MVEL.executeExpression(ce, ctx, factory);
   }
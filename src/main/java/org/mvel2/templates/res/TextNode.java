@@ -20,9 +20,12 @@ package org.mvel2.templates.res;
 
 import org.mvel2.integration.VariableResolverFactory;
 import org.mvel2.templates.TemplateRuntime;
+import org.mvel2.templates.util.EncodedText;
 import org.mvel2.templates.util.TemplateOutputStream;
 
 public class TextNode extends Node {
+  private transient volatile Text text;
+
   public TextNode(int begin, int end) {
     this.begin = begin;
     this.end = end;
@@ -35,13 +38,23 @@ public class TextNode extends Node {
   }
 
   public Object eval(TemplateRuntime runtime, TemplateOutputStream appender, Object ctx, VariableResolverFactory factory) {
-    int len = end - begin;
-    if (len != 0) {
-      appender.append(new String(runtime.getTemplate(), begin, len));
+    if (end != begin) {
+      getText(runtime.getTemplate()).appendTo(appender);
     }
     return next != null ? next.eval(runtime, appender, ctx, factory) : null;
   }
 
+  /**
+   * @return the text of this node, which is only extracted from the template (and encoded) once.
+   */
+  public EncodedText getText(char[] template) {
+    Text t = text;
+    if (t == null || t.template != template) {
+      text = t = new Text(template, new EncodedText(new String(template, begin, end - begin)));
+    }
+    return t.text;
+  }
+
   public String toString() {
     return "TextNode(" + begin + "," + end + ")";
   }
@@ -52,4 +65,14 @@ public class TextNode extends Node {
 
   public void calculateContents(char[] template) {
   }
+
+  private static final class Text {
+    private final char[] template;
+    private final EncodedText text;
+
+    private Text(char[] template, EncodedText text) {
+      this.template = template;
+      this.text = text;
+    }
+  }
 }
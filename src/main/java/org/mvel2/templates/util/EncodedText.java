@@ -0,0 +1,102 @@
+/**
+ * MVEL 2.0
+ * Copyright (C) 2007 The Codehaus
+ * Mike Brock, Dhanji Prasanna, John Graham, Mark Proctor
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mvel2.templates.util;
+
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * A run of static template text, together with its encodings in the character sets it has been written in.  Text
+ * written to a {@link ByteTemplateOutputStream} is encoded once for each character set, rather than on every render.
+ */
+public class EncodedText implements Serializable {
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * The number of character sets an encoding is kept for.  Text written in more is encoded each time.
+   */
+  private static final int MAX_ENCODINGS = 4;
+
+  private static final Encoding[] NONE = new Encoding[0];
+
+  private final String text;
+  private transient volatile Encoding[] encodings;
+
+  public EncodedText(String text) {
+    this.text = text;
+  }
+
+  public String getText() {
+    return text;
+  }
+
+  /**
+   * @return the text encoded in the specified character set.  The returned array must not be modified.
+   */
+  public byte[] getBytes(Charset charset) {
+    Encoding[] cached = encodings;
+    if (cached == null) cached = NONE;
+
+    for (Encoding e : cached) {
+      if (e.charset == charset || e.charset.equals(charset)) return e.bytes;
+    }
+
+    ByteBuffer buf = charset.encode(text);
+    byte[] bytes = new byte[buf.remaining()];
+    buf.get(bytes);
+
+    /**
+     * Copy on write.  Two threads adding different character sets at once may lose one of them, which only means
+     * it is encoded again next time.
+     */
+    if (cached.length < MAX_ENCODINGS) {
+      Encoding[] updated = new Encoding[cached.length + 1];
+      System.arraycopy(cached, 0, updated, 0, cached.length);
+      updated[cached.length] = new Encoding(charset, bytes);
+      encodings = updated;
+    }
+    return bytes;
+  }
+
+  public void appendTo(TemplateOutputStream stream) {
+    if (stream instanceof ByteTemplateOutputStream) {
+      ByteTemplateOutputStream out = (ByteTemplateOutputStream) stream;
+      byte[] bytes = getBytes(out.getCharset());
+      out.write(bytes, 0, bytes.length);
+    }
+    else {
+      stream.append(text);
+    }
+  }
+
+  public String toString() {
+    return text;
+  }
+
+  private static final class Encoding {
+    private final Charset charset;
+    private final byte[] bytes;
+
+    private Encoding(Charset charset, byte[] bytes) {
+      this.charset = charset;
+      this.bytes = bytes;
+    }
+  }
+}
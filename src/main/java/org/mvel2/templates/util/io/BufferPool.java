@@ -0,0 +1,85 @@
+/**
+ * MVEL 2.0
+ * Copyright (C) 2007 The Codehaus
+ * Mike Brock, Dhanji Prasanna, John Graham, Mark Proctor
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mvel2.templates.util.io;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A pool of fixed size byte arrays, used as the chunks of a {@link ByteBufferStream}.
+ * <p/>
+ * The size of the chunks and the number of idle chunks retained by the default pool may be set with the
+ * <tt>mvel2.templates.buffer_size</tt> and <tt>mvel2.templates.buffer_pool_size</tt> system properties.
+ */
+public class BufferPool {
+  public static final BufferPool DEFAULT = new BufferPool(Integer.getInteger("mvel2.templates.buffer_size", 8192),
+      Integer.getInteger("mvel2.templates.buffer_pool_size", 256));
+
+  private final int bufferSize;
+  private final int maxPooled;
+
+  private final ConcurrentLinkedQueue<byte[]> buffers = new ConcurrentLinkedQueue<byte[]>();
+  private final AtomicInteger pooled = new AtomicInteger();
+
+  /**
+   * @param bufferSize the size of each buffer
+   * @param maxPooled  the maximum number of idle buffers to retain
+   */
+  public BufferPool(int bufferSize, int maxPooled) {
+    if (bufferSize <= 0) throw new IllegalArgumentException("buffer size must be positive: " + bufferSize);
+    this.bufferSize = bufferSize;
+    this.maxPooled = maxPooled;
+  }
+
+  public int getBufferSize() {
+    return bufferSize;
+  }
+
+  /**
+   * @return an idle buffer from the pool, or a new buffer if the pool is empty
+   */
+  public byte[] acquire() {
+    byte[] buf = buffers.poll();
+    if (buf == null) return new byte[bufferSize];
+
+    pooled.decrementAndGet();
+    return buf;
+  }
+
+  /**
+   * Returns a buffer to the pool.  Buffers which did not come from this pool, and buffers in excess of the maximum
+   * number of idle buffers, are left to the garbage collector.
+   */
+  public void release(byte[] buf) {
+    if (buf.length != bufferSize) return;
+
+    if (pooled.incrementAndGet() > maxPooled) {
+      pooled.decrementAndGet();
+      return;
+    }
+    buffers.offer(buf);
+  }
+
+  /**
+   * @return the number of idle buffers in the pool
+   */
+  public int size() {
+    return pooled.get();
+  }
+}
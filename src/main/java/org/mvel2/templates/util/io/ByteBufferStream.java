@@ -0,0 +1,325 @@
+/**
+ * MVEL 2.0
+ * Copyright (C) 2007 The Codehaus
+ * Mike Brock, Dhanji Prasanna, John Graham, Mark Proctor
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mvel2.templates.util.io;
+
+import org.mvel2.templates.util.ByteTemplateOutputStream;
+import org.mvel2.templates.util.TemplateOutputStream;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * A {@link ByteTemplateOutputStream} which collects the rendered output in a chain of buffers taken from a
+ * {@link BufferPool}.  The output grows by adding buffers rather than by copying, and is written out to an
+ * <tt>OutputStream</tt> or a <tt>WritableByteChannel</tt> directly from the buffers.
+ * <p/>
+ * Given a target to stream to, the stream writes its buffers out to the target (and reuses them) each time the
+ * output reaches the flush threshold, so that only a bounded amount of the output is held in memory.  The threshold
+ * is checked as each buffer fills, so it is effectively rounded up to a whole number of buffers.  Call
+ * {@link #flush()} once rendering is complete to write out the rest.
+ * <pre><code>
+ * ByteBufferStream out = new ByteBufferStream(Charset.forName("UTF-8"));
+ * try {
+ *   TemplateRuntime.execute(compiled, ctx, factory, null, out);
+ *   out.writeTo(channel);
+ * }
+ * finally {
+ *   out.release();
+ * }
+ * </code></pre>
+ * As with {@link StandardOutputStream}, <tt>toString()</tt> does not return the output, so that rendering does not
+ * decode it again; use {@link #decode()}.
+ * <p/>
+ * Text is encoded a piece at a time, so the character set must not write a header: use <tt>UTF-16BE</tt> or
+ * <tt>UTF-16LE</tt> rather than <tt>UTF-16</tt>, which begins every piece with a byte order mark.
+ */
+public class ByteBufferStream implements ByteTemplateOutputStream {
+  private final BufferPool pool;
+  private final Charset charset;
+  private final boolean asciiCompatible;
+
+  private final OutputStream out;
+  private final WritableByteChannel channel;
+  private final int flushThreshold;
+
+  private CharsetEncoder encoder;
+
+  private byte[][] buffers = new byte[4][];
+  private int[] lengths = new int[4];
+  private int count;
+  private int written;
+
+  private byte[] buf;
+  private int pos;
+
+  public ByteBufferStream(Charset charset) {
+    this(charset, BufferPool.DEFAULT);
+  }
+
+  public ByteBufferStream(Charset charset, BufferPool pool) {
+    this(charset, pool, null, null, Integer.MAX_VALUE);
+  }
+
+  public ByteBufferStream(Charset charset, OutputStream out) {
+    this(charset, BufferPool.DEFAULT, out, null, WriterStream.DEFAULT_FLUSH_THRESHOLD);
+  }
+
+  /**
+   * @param charset        the character set to encode the output in
+   * @param pool           the pool to take buffers from
+   * @param out            the stream to write the output to
+   * @param flushThreshold the number of bytes to buffer before writing them out and flushing the stream
+   */
+  public ByteBufferStream(Charset charset, BufferPool pool, OutputStream out, int flushThreshold) {
+    this(charset, pool, out, null, flushThreshold);
+  }
+
+  public ByteBufferStream(Charset charset, WritableByteChannel channel) {
+    this(charset, BufferPool.DEFAULT, null, channel, WriterStream.DEFAULT_FLUSH_THRESHOLD);
+  }
+
+  /**
+   * @param charset        the character set to encode the output in
+   * @param pool           the pool to take buffers from
+   * @param channel        the channel to write the output to
+   * @param flushThreshold the number of bytes to buffer before writing them out
+   */
+  public ByteBufferStream(Charset charset, BufferPool pool, WritableByteChannel channel, int flushThreshold) {
+    this(charset, pool, null, channel, flushThreshold);
+  }
+
+  private ByteBufferStream(Charset charset, BufferPool pool, OutputStream out, WritableByteChannel channel,
+                           int flushThreshold) {
+    this.charset = charset;
+    this.pool = pool;
+    this.out = out;
+    this.channel = channel;
+    this.flushThreshold = flushThreshold;
+
+    String name = charset.name();
+    this.asciiCompatible = "UTF-8".equals(name) || "ISO-8859-1".equals(name) || "US-ASCII".equals(name)
+        || "windows-1252".equals(name);
+
+    buffers[count++] = buf = pool.acquire();
+  }
+
+  public Charset getCharset() {
+    return charset;
+  }
+
+  public ByteTemplateOutputStream write(byte[] b, int off, int len) {
+    int n;
+    while (len > 0) {
+      if (pos == buf.length) nextBuffer();
+      System.arraycopy(b, off, buf, pos, n = Math.min(len, buf.length - pos));
+      pos += n;
+      off += n;
+      len -= n;
+    }
+    return this;
+  }
+
+  public TemplateOutputStream append(CharSequence c) {
+    int len = c.length();
+    if (asciiCompatible) {
+      char ch;
+      for (int i = 0; i < len; i++) {
+        if ((ch = c.charAt(i)) >= 0x80) {
+          encode(CharBuffer.wrap(c, i, len));
+          return this;
+        }
+        if (pos == buf.length) nextBuffer();
+        buf[pos++] = (byte) ch;
+      }
+    }
+    else {
+      encode(CharBuffer.wrap(c));
+    }
+    return this;
+  }
+
+  public TemplateOutputStream append(char[] c) {
+    if (asciiCompatible) {
+      for (int i = 0; i < c.length; i++) {
+        if (c[i] >= 0x80) {
+          encode(CharBuffer.wrap(c, i, c.length - i));
+          return this;
+        }
+        if (pos == buf.length) nextBuffer();
+        buf[pos++] = (byte) c[i];
+      }
+    }
+    else {
+      encode(CharBuffer.wrap(c));
+    }
+    return this;
+  }
+
+  private void encode(CharBuffer in) {
+    if (encoder == null) {
+      encoder = charset.newEncoder().onMalformedInput(CodingErrorAction.REPLACE)
+          .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+    else {
+      encoder.reset();
+    }
+
+    ByteBuffer out;
+    CoderResult result;
+    do {
+      if (pos == buf.length) nextBuffer();
+      out = ByteBuffer.wrap(buf, pos, buf.length - pos);
+      result = encoder.encode(in, out, true);
+      pos = out.position();
+      if (result.isOverflow()) nextBuffer();
+    }
+    while (result.isOverflow());
+
+    do {
+      out = ByteBuffer.wrap(buf, pos, buf.length - pos);
+      result = encoder.flush(out);
+      pos = out.position();
+      if (result.isOverflow()) nextBuffer();
+    }
+    while (result.isOverflow());
+  }
+
+  /**
+   * Moves on to a new buffer.  The current buffer may not be full, if a multi-byte character did not fit at its end.
+   */
+  private void nextBuffer() {
+    written += lengths[count - 1] = pos;
+    if (written >= flushThreshold) {
+      flush();
+      return;
+    }
+
+    if (count == buffers.length) {
+      byte[][] newBuffers = new byte[count * 2][];
+      System.arraycopy(buffers, 0, newBuffers, 0, count);
+      buffers = newBuffers;
+
+      int[] newLengths = new int[count * 2];
+      System.arraycopy(lengths, 0, newLengths, 0, count);
+      lengths = newLengths;
+    }
+    buffers[count++] = buf = pool.acquire();
+    pos = 0;
+  }
+
+  /**
+   * Writes the buffered output out to the target, and flushes it.
+   *
+   * @throws IllegalStateException if the stream was not given a target
+   */
+  public void flush() {
+    if (out == null && channel == null) throw new IllegalStateException("no stream or channel to flush to");
+    try {
+      if (channel != null) {
+        writeTo(channel);
+      }
+      else {
+        writeTo(out);
+        out.flush();
+      }
+    }
+    catch (IOException e) {
+      throw new RuntimeException("failed to write to stream", e);
+    }
+    reset();
+  }
+
+  /**
+   * @return the number of bytes buffered
+   */
+  public int size() {
+    return written + pos;
+  }
+
+  public void writeTo(OutputStream stream) throws IOException {
+    for (int i = 0; i < count; i++) {
+      stream.write(buffers[i], 0, i == count - 1 ? pos : lengths[i]);
+    }
+  }
+
+  public void writeTo(WritableByteChannel channel) throws IOException {
+    ByteBuffer out;
+    for (int i = 0; i < count; i++) {
+      out = ByteBuffer.wrap(buffers[i], 0, i == count - 1 ? pos : lengths[i]);
+      while (out.hasRemaining()) {
+        channel.write(out);
+      }
+    }
+  }
+
+  public byte[] toByteArray() {
+    byte[] b = new byte[size()];
+    int off = 0;
+    int len;
+    for (int i = 0; i < count; i++) {
+      System.arraycopy(buffers[i], 0, b, off, len = i == count - 1 ? pos : lengths[i]);
+      off += len;
+    }
+    return b;
+  }
+
+  /**
+   * @return the output, decoded back into a string
+   */
+  public String decode() {
+    return charset.decode(ByteBuffer.wrap(toByteArray())).toString();
+  }
+
+  /**
+   * Discards the output, so that the stream may be reused.  All but the first buffer are returned to the pool.
+   */
+  public void reset() {
+    for (int i = 1; i < count; i++) {
+      pool.release(buffers[i]);
+      buffers[i] = null;
+    }
+    buf = buffers[0];
+    count = 1;
+    pos = written = 0;
+  }
+
+  /**
+   * Returns all buffers to the pool.  The stream must not be used afterwards.
+   */
+  public void release() {
+    for (int i = 0; i < count; i++) {
+      pool.release(buffers[i]);
+      buffers[i] = null;
+    }
+    count = 0;
+    buf = null;
+  }
+
+  @Override
+  public String toString() {
+    return null;
+  }
+}
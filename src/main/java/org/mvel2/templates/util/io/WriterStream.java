@@ -0,0 +1,101 @@
+/**
+ * MVEL 2.0
+ * Copyright (C) 2007 The Codehaus
+ * Mike Brock, Dhanji Prasanna, John Graham, Mark Proctor
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mvel2.templates.util.io;
+
+import org.mvel2.templates.util.TemplateOutputStream;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * A {@link TemplateOutputStream} which streams the rendered output to a <tt>Writer</tt>.  Output is buffered, and
+ * written out and flushed each time the buffer fills, so that no more than the flush threshold is held in memory
+ * and the first of the output reaches the writer while the rest is still being rendered.
+ * <p/>
+ * As with {@link StandardOutputStream}, <tt>toString()</tt> does not return the output.
+ */
+public class WriterStream implements TemplateOutputStream {
+  public static final int DEFAULT_FLUSH_THRESHOLD = Integer.getInteger("mvel2.templates.flush_threshold", 8192);
+
+  private final Writer writer;
+  private final char[] buf;
+  private int pos;
+
+  public WriterStream(Writer writer) {
+    this(writer, DEFAULT_FLUSH_THRESHOLD);
+  }
+
+  /**
+   * @param writer         the writer to stream the output to
+   * @param flushThreshold the number of characters to buffer before writing them out and flushing the writer
+   */
+  public WriterStream(Writer writer, int flushThreshold) {
+    if (flushThreshold <= 0) throw new IllegalArgumentException("flush threshold must be positive: " + flushThreshold);
+    this.writer = writer;
+    this.buf = new char[flushThreshold];
+  }
+
+  public TemplateOutputStream append(CharSequence c) {
+    int len = c.length();
+    int n;
+    for (int i = 0; i < len; i += n) {
+      if (pos == buf.length) flush();
+      n = Math.min(len - i, buf.length - pos);
+      if (c instanceof String) {
+        ((String) c).getChars(i, i + n, buf, pos);
+        pos += n;
+      }
+      else {
+        for (int x = i; x < i + n; x++) {
+          buf[pos++] = c.charAt(x);
+        }
+      }
+    }
+    return this;
+  }
+
+  public TemplateOutputStream append(char[] c) {
+    int n;
+    for (int i = 0; i < c.length; i += n) {
+      if (pos == buf.length) flush();
+      System.arraycopy(c, i, buf, pos, n = Math.min(c.length - i, buf.length - pos));
+      pos += n;
+    }
+    return this;
+  }
+
+  /**
+   * Writes out any buffered output, and flushes the writer.
+   */
+  public void flush() {
+    try {
+      writer.write(buf, 0, pos);
+      writer.flush();
+      pos = 0;
+    }
+    catch (IOException e) {
+      throw new RuntimeException("failed to write to stream", e);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return null;
+  }
+}
@@ -0,0 +1,242 @@
+/**
+ * MVEL 2.0
+ * Copyright (C) 2007 The Codehaus
+ * Mike Brock, Dhanji Prasanna, John Graham, Mark Proctor
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mvel2.util;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A size-bounded, thread-safe cache.  Reads never block: entries are held in a <tt>ConcurrentHashMap</tt> and the
+ * access bookkeeping used for eviction is recorded with plain volatile writes.  When the cache grows beyond its
+ * maximum size, a single thread trims it back down to roughly 90% of capacity, discarding either the least
+ * recently used (<tt>LRU</tt>) or the least frequently used (<tt>LFU</tt>) entries.
+ * <p/>
+ * <tt>LFU</tt> counts are aged: a new entry starts from the count of the last entry evicted, plus one, rather than
+ * from zero.  Otherwise new entries would always be evicted first, and entries which were used heavily once would
+ * never be evicted.  Only the bookkeeping the policy needs is kept, so an <tt>LFU</tt> cache never reads the clock.
+ * <p/>
+ * The access bookkeeping is deliberately racy; under contention some touches may be lost, which only makes the
+ * eviction order approximate.
+ */
+public class BoundedCache<K, V> {
+  public static final int LRU = 0;
+  public static final int LFU = 1;
+
+  private final ConcurrentHashMap<K, Entry<V>> map;
+  private final int maxSize;
+  private final int evictionPolicy;
+
+  private final AtomicBoolean evicting = new AtomicBoolean();
+
+  /**
+   * Under <tt>LFU</tt>, the access count of the last entry evicted.
+   */
+  private volatile int age;
+
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong evictions = new AtomicLong();
+
+  public BoundedCache(int maxSize) {
+    this(maxSize, LRU);
+  }
+
+  public BoundedCache(int maxSize, int evictionPolicy) {
+    if (maxSize < 1) throw new IllegalArgumentException("maximum size must be at least 1: " + maxSize);
+    if (evictionPolicy != LRU && evictionPolicy != LFU)
+      throw new IllegalArgumentException("unknown eviction policy: " + evictionPolicy);
+
+    this.maxSize = maxSize;
+    this.evictionPolicy = evictionPolicy;
+    this.map = new ConcurrentHashMap<K, Entry<V>>(maxSize < 16 ? 16 : maxSize + (maxSize >> 2));
+  }
+
+  /**
+   * Returns the cached value for the specified key, or <tt>null</tt> if there is none.
+   *
+   * @param key the key
+   * @return the cached value
+   */
+  public V get(K key) {
+    Entry<V> entry = map.get(key);
+    if (entry == null) {
+      misses.incrementAndGet();
+      return null;
+    }
+
+    hits.incrementAndGet();
+    touch(entry);
+    return entry.value;
+  }
+
+  /**
+   * Caches the value for the specified key unless a value is already present, in which case the existing value is
+   * retained.
+   *
+   * @param key   the key
+   * @param value the value
+   * @return the value now held by the cache for the key.
+   */
+  public V putIfAbsent(K key, V value) {
+    Entry<V> entry = new Entry<V>(value);
+    if (evictionPolicy == LRU) {
+      entry.lastAccess = System.nanoTime();
+    }
+    else {
+      entry.accessCount = age == Integer.MAX_VALUE ? age : age + 1;
+    }
+
+    Entry<V> existing = map.putIfAbsent(key, entry);
+    if (existing != null) {
+      touch(existing);
+      return existing.value;
+    }
+
+    if (map.size() > maxSize) evict();
+    return value;
+  }
+
+  public V remove(K key) {
+    Entry<V> entry = map.remove(key);
+    return entry == null ? null : entry.value;
+  }
+
+  public void clear() {
+    map.clear();
+  }
+
+  public int size() {
+    return map.size();
+  }
+
+  public int getMaxSize() {
+    return maxSize;
+  }
+
+  public int getEvictionPolicy() {
+    return evictionPolicy;
+  }
+
+  public long getHits() {
+    return hits.get();
+  }
+
+  public long getMisses() {
+    return misses.get();
+  }
+
+  public long getEvictions() {
+    return evictions.get();
+  }
+
+  /**
+   * @return the ratio of hits to total lookups, or <tt>0</tt> if there have been no lookups.
+   */
+  public double getHitRate() {
+    long h = hits.get();
+    long total = h + misses.get();
+    return total == 0 ? 0 : (double) h / total;
+  }
+
+  public void resetStatistics() {
+    hits.set(0);
+    misses.set(0);
+    evictions.set(0);
+  }
+
+  private void touch(Entry<V> entry) {
+    if (evictionPolicy == LRU) {
+      entry.lastAccess = System.nanoTime();
+    }
+    else if (entry.accessCount != Integer.MAX_VALUE) {
+      entry.accessCount++;
+    }
+  }
+
+  private void evict() {
+    if (!evicting.compareAndSet(false, true)) return;
+
+    try {
+      int target = maxSize - (maxSize / 10);
+      int excess = map.size() - target;
+      if (excess <= 0) return;
+
+      /**
+       * Snapshot the access bookkeeping before sorting, as other threads continue to touch entries while we
+       * work, and the sort requires a stable ordering.
+       */
+      Candidate[] candidates = new Candidate[map.size()];
+      int count = 0;
+      for (Map.Entry<K, Entry<V>> e : map.entrySet()) {
+        if (count == candidates.length) break;
+        candidates[count++] = new Candidate(e.getKey(), e.getValue());
+      }
+
+      Arrays.sort(candidates, 0, count);
+
+      int i = 0;
+      for (; i < excess && i < count; i++) {
+        if (map.remove(candidates[i].key, candidates[i].entry)) {
+          evictions.incrementAndGet();
+        }
+      }
+      if (evictionPolicy == LFU && i > 0) age = candidates[i - 1].accessCount;
+    }
+    finally {
+      evicting.set(false);
+    }
+  }
+
+  /**
+   * Under <tt>LRU</tt> access counts are always zero, and under <tt>LFU</tt> access times are.
+   */
+  private static final class Candidate implements Comparable<Candidate> {
+    private final Object key;
+    private final Entry<?> entry;
+    private final int accessCount;
+    private final long lastAccess;
+
+    private Candidate(Object key, Entry<?> entry) {
+      this.key = key;
+      this.entry = entry;
+      this.accessCount = entry.accessCount;
+      this.lastAccess = entry.lastAccess;
+    }
+
+    public int compareTo(Candidate o) {
+      if (accessCount != o.accessCount) {
+        return accessCount < o.accessCount ? -1 : 1;
+      }
+      return lastAccess < o.lastAccess ? -1 : (lastAccess == o.lastAccess ? 0 : 1);
+    }
+  }
+
+  private static final class Entry<V> {
+    private final V value;
+    private volatile long lastAccess;
+    private volatile int accessCount;
+
+    private Entry(V value) {
+      this.value = value;
+    }
+  }
+}
@@ -26,8 +26,10 @@ import org.mvel2.compiler.*;
 import org.mvel2.integration.VariableResolverFactory;
 import org.mvel2.integration.impl.ClassImportResolverFactory;
 
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Set;
 
 import static org.mvel2.Operator.PTABLE;
 import static org.mvel2.compiler.AbstractParser.getCurrentThreadParserContext;
@@ -114,7 +116,7 @@ public class CompilerTools {
             }
 
             if (bo == null)
-              bo = new BinaryOperation(op, tk, tk2, ctx);
+              bo = newBinaryOperation(op, tk, tk2, ctx);
           }
 
           tkOp2 = null;
@@ -142,11 +144,11 @@ public class CompilerTools {
                   bo = new BinaryOperation(bo.getOperation(), bo.getLeft(), bo.getRight(), ctx);
                 }
 
-                bo.setRight(new BinaryOperation(op2, bo.getRight(), tk2, ctx));
+                bo.setRight(newBinaryOperation(op2, bo.getRight(), tk2, ctx));
               }
             }
             else if (PTABLE[bo.getOperation()] >= PTABLE[op2]) {
-              bo = new BinaryOperation(op2, bo, astLinkedList.nextNode(), ctx);
+              bo = newBinaryOperation(op2, bo, astLinkedList.nextNode(), ctx);
             }
             else {
               tk2 = astLinkedList.nextNode();
@@ -155,7 +157,7 @@ public class CompilerTools {
                 bo = new BinaryOperation(bo.getOperation(), bo.getLeft(), bo.getRight(), ctx);
               }
 
-              bo.setRight(new BinaryOperation(op2, bo.getRight(), tk2, ctx));
+              bo.setRight(newBinaryOperation(op2, bo.getRight(), tk2, ctx));
             }
 
             op = op2;
@@ -274,10 +276,40 @@ public class CompilerTools {
       }
     }
     else {
-      return new BinaryOperation(op, tk, tk2, ctx);
+      return newBinaryOperation(op, tk, tk2, ctx);
     }
   }
 
+  /**
+   * Creates a binary operation, specialized for primitive operands if the egress types of both operands are known
+   * to be <tt>int</tt>, <tt>long</tt> or <tt>double</tt>.
+   */
+  private static BinaryOperation newBinaryOperation(int op, ASTNode tk, ASTNode tk2, ParserContext ctx) {
+    if (isPrimitiveOptimizable(op) && PrimitiveOperation.isPrimitiveOperand(tk.getEgressType())
+        && PrimitiveOperation.isPrimitiveOperand(tk2.getEgressType())) {
+      return new PrimitiveOperation(op, tk, tk2, ctx);
+    }
+    return new BinaryOperation(op, tk, tk2, ctx);
+  }
+
+  private static boolean isPrimitiveOptimizable(int op) {
+    switch (op) {
+      case Operator.ADD:
+      case Operator.SUB:
+      case Operator.MULT:
+      case Operator.DIV:
+      case Operator.MOD:
+      case Operator.LTHAN:
+      case Operator.GTHAN:
+      case Operator.LETHAN:
+      case Operator.GETHAN:
+      case Operator.EQUAL:
+      case Operator.NEQUAL:
+        return true;
+    }
+    return false;
+  }
+
   private static boolean isReductionOpportunity(ASTNode oper, ASTNode node) {
     ASTNode n = node;
     return (n != null && n.isLiteral()
@@ -486,4 +518,119 @@ public class CompilerTools {
     }
   }
 
+  /**
+   * A conservative test for side effects: only literals, property and variable reads, arithmetic, comparisons,
+   * conditionals and nested projections are accepted.  Method calls, assignments and anything else are assumed to
+   * have side effects.
+   */
+  public static boolean isSideEffectFree(ExecutableStatement stmt) {
+    return isSideEffectFree(stmt, null);
+  }
+
+  /**
+   * As {@link #isSideEffectFree(ExecutableStatement)}, but if <tt>defined</tt> is not null, the statement may also
+   * assign local variables, and may read no variables other than those in <tt>defined</tt> (or those it assigned
+   * earlier).  Assigned variables are added to <tt>defined</tt>.
+   */
+  public static boolean isSideEffectFree(ExecutableStatement stmt, Set<String> defined) {
+    if (stmt == null || stmt instanceof ExecutableLiteral) {
+      return true;
+    }
+    else if (stmt instanceof ExecutableAccessor) {
+      return isSideEffectFree(((ExecutableAccessor) stmt).getNode(), defined);
+    }
+    else if (stmt instanceof ExecutableAccessorSafe) {
+      return isSideEffectFree(((ExecutableAccessorSafe) stmt).getNode(), defined);
+    }
+    else if (stmt instanceof CompiledExpression) {
+      for (ASTNode node = ((CompiledExpression) stmt).getFirstNode(); node != null; node = node.nextASTNode) {
+        if (!isSideEffectFree(node, defined)) return false;
+      }
+      return true;
+    }
+    return false;
+  }
+
+  private static boolean isSideEffectFree(ASTNode node, Set<String> defined) {
+    if (node == null || node instanceof LiteralNode || node instanceof OperatorNode || node instanceof EndOfStatement) {
+      return true;
+    }
+    else if (node.getClass() == ASTNode.class) {
+      if ((node.getFields() & ASTNode.ASSIGN) != 0) return false;
+
+      char[] expr = node.getExpr();
+      int end = node.getStart() + node.getOffset();
+      for (int i = node.getStart(); i < end; i++) {
+        if (expr[i] == '(') return false;
+      }
+
+      if (defined != null) {
+        int i = node.getStart();
+        while (i < end && Character.isJavaIdentifierPart(expr[i])) i++;
+        return defined.contains(new String(expr, node.getStart(), i - node.getStart()));
+      }
+      return true;
+    }
+    else if (node instanceof BooleanNode) {
+      return isSideEffectFree(((BooleanNode) node).getLeft(), defined)
+          && isSideEffectFree(((BooleanNode) node).getRight(), defined);
+    }
+    else if (node instanceof Substatement) {
+      return isSideEffectFree(((Substatement) node).getStatement(), defined);
+    }
+    else if (node instanceof Negation) {
+      return isSideEffectFree(((Negation) node).getStatement(), defined);
+    }
+    else if (node instanceof Sign) {
+      return isSideEffectFree(((Sign) node).getStatement(), defined);
+    }
+    else if (node instanceof ReturnNode) {
+      return node.getAccessor() instanceof ExecutableStatement
+          && isSideEffectFree((ExecutableStatement) node.getAccessor(), defined);
+    }
+    else if (node instanceof IfNode) {
+      for (IfNode n = (IfNode) node; n != null; n = n.getElseIf()) {
+        /**
+         * Variables assigned within a block are only defined within it.
+         */
+        if (!isSideEffectFree(n.getCondition(), defined)
+            || !isSideEffectFree(n.getNestedStatement(), scope(defined))
+            || !isSideEffectFree(n.getElseBlock(), scope(defined))) return false;
+      }
+      return true;
+    }
+    else if (node instanceof Fold) {
+      /**
+       * The sub-expressions of a projection are evaluated against each item, so they can only be checked for side
+       * effects, not for the variables they read.
+       */
+      return defined == null && ((Fold) node).isPure() && isSideEffectFree(((Fold) node).getDataStatement(), null);
+    }
+    else if (defined != null && (node.getFields() & ASTNode.COLLECTION) == 0) {
+      if (node instanceof AssignmentNode) {
+        return define(((AssignmentNode) node).getAssignmentVar(), ((AssignmentNode) node).getStatement(), defined);
+      }
+      else if (node instanceof IndexedAssignmentNode) {
+        return define(((IndexedAssignmentNode) node).getAssignmentVar(), ((IndexedAssignmentNode) node).getStatement(),
+            defined);
+      }
+      else if (node instanceof TypedVarNode) {
+        return define(((TypedVarNode) node).getAssignmentVar(), ((TypedVarNode) node).getStatement(), defined);
+      }
+      else if (node instanceof DeclTypedVarNode) {
+        return define(((DeclTypedVarNode) node).getAssignmentVar(), null, defined);
+      }
+    }
+    return false;
+  }
+
+  private static boolean define(String name, ExecutableStatement value, Set<String> defined) {
+    if (name == null || !isSideEffectFree(value, defined)) return false;
+    defined.add(name);
+    return true;
+  }
+
+  private static Set<String> scope(Set<String> defined) {
+    return defined == null ? null : new HashSet<String>(defined);
+  }
 }
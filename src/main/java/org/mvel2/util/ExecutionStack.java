@@ -23,117 +23,127 @@ import org.mvel2.ScriptRuntimeException;
 import static java.lang.String.valueOf;
 import static org.mvel2.math.MathProcessor.doOperations;
 
+/**
+ * The operand stack used by the MVEL runtimes.  The stack is backed by a growable array, so pushing and popping
+ * values does not allocate, and a stack may be {@link #clear() cleared} and reused across executions.  See
+ * {@link #acquire()} for the per-thread pool used by {@link org.mvel2.MVELRuntime}.
+ */
 public class ExecutionStack {
-  private StackElement element;
+  private static final int DEFAULT_CAPACITY = 8;
+
+  private Object[] elements;
   private int size = 0;
 
+  public ExecutionStack() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  public ExecutionStack(int capacity) {
+    elements = new Object[capacity < 2 ? 2 : capacity];
+  }
+
   public boolean isEmpty() {
     return size == 0;
   }
 
+  /**
+   * Adds an element to the <em>bottom</em> of the stack.
+   *
+   * @param o the element
+   */
   public void add(Object o) {
-    size++;
-    StackElement el = element;
-    if (el != null) {
-      while (el.next != null) {
-        el = el.next;
-      }
-      el.next = new StackElement(null, o);
-    }
-    else {
-      element = new StackElement(null, o);
-    }
+    ensureCapacity(size + 1);
+    System.arraycopy(elements, 0, elements, 1, size++);
+    elements[0] = o;
   }
 
   public void push(Object o) {
-    size++;
-    element = new StackElement(element, o);
+    if (size == elements.length) grow(size + 1);
+    elements[size++] = o;
   }
 
   public Object pushAndPeek(Object o) {
-    size++;
-    element = new StackElement(element, o);
+    push(o);
     return o;
   }
 
   public void push(Object obj1, Object obj2) {
-    size += 2;
-    element = new StackElement(new StackElement(element, obj1), obj2);
+    ensureCapacity(size + 2);
+    elements[size++] = obj1;
+    elements[size++] = obj2;
   }
 
   public void push(Object obj1, Object obj2, Object obj3) {
-    size += 3;
-    element = new StackElement(new StackElement(new StackElement(element, obj1), obj2), obj3);
+    ensureCapacity(size + 3);
+    elements[size++] = obj1;
+    elements[size++] = obj2;
+    elements[size++] = obj3;
   }
 
   public Object peek() {
     if (size == 0) return null;
-    else return element.value;
+    else return elements[size - 1];
   }
 
   public Boolean peekBoolean() {
     if (size == 0) return null;
-    if (element.value instanceof Boolean) return (Boolean) element.value;
-    throw new ScriptRuntimeException("expected Boolean; but found: " + (element.value == null ? "null" : element.value.getClass().getName()));
+    return asBoolean(elements[size - 1]);
   }
 
+  /**
+   * Moves the top two elements of the specified stack onto this stack, preserving their order.
+   */
   public void copy2(ExecutionStack es) {
-    element = new StackElement(new StackElement(element, es.element.value), es.element.next.value);
-    es.element = es.element.next.next;
-    size += 2;
-    es.size -= 2;
+    ensureCapacity(size + 2);
+    elements[size++] = es.elements[es.size - 1];
+    elements[size++] = es.elements[es.size - 2];
+    es.elements[--es.size] = null;
+    es.elements[--es.size] = null;
   }
 
+  /**
+   * Moves the top two elements of the specified stack onto this stack, reversing their order.
+   */
   public void copyx2(ExecutionStack es) {
-    element = new StackElement(new StackElement(element, es.element.next.value), es.element.value);
-    es.element = es.element.next.next;
-    size += 2;
-    es.size -= 2;
+    ensureCapacity(size + 2);
+    elements[size++] = es.elements[es.size - 2];
+    elements[size++] = es.elements[es.size - 1];
+    es.elements[--es.size] = null;
+    es.elements[--es.size] = null;
   }
 
   public Object peek2() {
-    return element.next.value;
+    return elements[size - 2];
   }
 
   public Object pop() {
-    if (size-- == 0) {
+    if (size == 0) {
       return null;
     }
-    try {
-      return element.value;
-    }
-    finally {
-      element = element.next;
-    }
+    Object o = elements[--size];
+    elements[size] = null;
+    return o;
   }
 
   public Boolean popBoolean() {
-    if (size-- == 0) {
+    if (size == 0) {
       return null;
     }
-    try {
-      if (element.value instanceof Boolean) return (Boolean) element.value;
-      throw new ScriptRuntimeException("expected Boolean; but found: " + (element.value == null ? "null" : element.value.getClass().getName()));
-    }
-    finally {
-      element = element.next;
-    }
+    Object o = elements[--size];
+    elements[size] = null;
+    return asBoolean(o);
   }
 
   public Object pop2() {
-    try {
-      size -= 2;
-      return element.value;
-    }
-    finally {
-      element = element.next.next;
-    }
+    Object o = elements[size - 1];
+    elements[--size] = null;
+    elements[--size] = null;
+    return o;
   }
 
   public void discard() {
     if (size != 0) {
-      size--;
-      element = element.next;
+      elements[--size] = null;
     }
   }
 
@@ -146,47 +156,130 @@ public class ExecutionStack {
   }
 
   public void clear() {
-    size = 0;
-    element = null;
+    while (size != 0) {
+      elements[--size] = null;
+    }
   }
 
+  /**
+   * Reduces <tt>[.., v1, op, v2]</tt> to <tt>[.., (v1 op v2)]</tt>.
+   */
   public void xswap_op() {
-    element = new StackElement(element.next.next.next, doOperations(element.next.next.value, (Integer) element.next.value, element.value));
-    size -= 2;
+    Object v2 = elements[--size];
+    int operator = (Integer) elements[--size];
+    elements[size] = null;
+    elements[size + 1] = null;
+    elements[size - 1] = doOperations(elements[size - 1], operator, v2);
   }
 
+  /**
+   * Reduces <tt>[.., v1, v2, op]</tt> to <tt>[.., (v1 op v2)]</tt>.
+   */
   public void op() {
-    element = new StackElement(element.next.next.next, doOperations(element.next.next.value, (Integer) element.value, element.next.value));
-    size -= 2;
-
+    int operator = (Integer) elements[--size];
+    Object v2 = elements[--size];
+    elements[size] = null;
+    elements[size + 1] = null;
+    elements[size - 1] = doOperations(elements[size - 1], operator, v2);
   }
 
+  /**
+   * Reduces <tt>[.., v1, v2]</tt> to <tt>[.., (v1 op v2)]</tt>.
+   */
   public void op(int operator) {
-    element = new StackElement(element.next.next, doOperations(element.next.value, operator, element.value));
-    size--;
+    Object v2 = elements[--size];
+    elements[size] = null;
+    elements[size - 1] = doOperations(elements[size - 1], operator, v2);
   }
 
   public void xswap() {
-    StackElement e = element.next;
-    StackElement relink = e.next;
-    e.next = element;
-    (element = e).next.next = relink;
+    Object o = elements[size - 1];
+    elements[size - 1] = elements[size - 2];
+    elements[size - 2] = o;
   }
 
-  public String toString() {
-    StackElement el = element;
+  private static Boolean asBoolean(Object o) {
+    if (o instanceof Boolean) return (Boolean) o;
+    throw new ScriptRuntimeException("expected Boolean; but found: " + (o == null ? "null" : o.getClass().getName()));
+  }
 
-    if (element == null) return "<EMPTY>";
+  private void ensureCapacity(int capacity) {
+    if (capacity > elements.length) grow(capacity);
+  }
+
+  private void grow(int capacity) {
+    Object[] newElements = new Object[Math.max(capacity, elements.length * 2)];
+    System.arraycopy(elements, 0, newElements, 0, size);
+    elements = newElements;
+  }
+
+  public String toString() {
+    if (size == 0) return "<EMPTY>";
 
     StringBuilder appender = new StringBuilder().append("[");
-    do {
-      appender.append(valueOf(el.value));
-      if (el.next != null) appender.append(", ");
+    for (int i = size - 1; i >= 0; i--) {
+      appender.append(valueOf(elements[i]));
+      if (i != 0) appender.append(", ");
     }
-    while ((el = el.next) != null);
 
     appender.append("]");
 
     return appender.toString();
   }
+
+  private static final ThreadLocal<Pool> POOL = new ThreadLocal<Pool>() {
+    protected Pool initialValue() {
+      return new Pool();
+    }
+  };
+
+  /**
+   * Acquires a stack from the calling thread's pool.  Every call must be paired with a call to
+   * {@link #release(ExecutionStack)} on the same thread, in the reverse order of acquisition; re-entrant
+   * executions (blocks, sub-statements, function calls) each acquire their own stack.
+   *
+   * @return an empty stack
+   */
+  public static ExecutionStack acquire() {
+    return POOL.get().acquire();
+  }
+
+  /**
+   * Returns a stack acquired with {@link #acquire()} to the calling thread's pool.
+   *
+   * @param stk the stack to release
+   */
+  public static void release(ExecutionStack stk) {
+    stk.clear();
+    POOL.get().release(stk);
+  }
+
+  private static final class Pool {
+    private static final int MAX_POOLED_DEPTH = 32;
+
+    private final ExecutionStack[] stacks = new ExecutionStack[MAX_POOLED_DEPTH];
+    private int depth;
+
+    private ExecutionStack acquire() {
+      if (depth == MAX_POOLED_DEPTH) {
+        /**
+         * We're nested deeper than we're willing to pool, so just hand out a throw-away stack.
+         */
+        return new ExecutionStack();
+      }
+
+      ExecutionStack stk = stacks[depth];
+      if (stk == null) {
+        stk = stacks[depth] = new ExecutionStack();
+      }
+      depth++;
+      return stk;
+    }
+
+    private void release(ExecutionStack stk) {
+      if (depth != 0 && stacks[depth - 1] == stk) {
+        depth--;
+      }
+    }
+  }
 }
@@ -0,0 +1,34 @@
+/**
+ * MVEL 2.0
+ * Copyright (C) 2007 The Codehaus
+ * Mike Brock, Dhanji Prasanna, John Graham, Mark Proctor
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mvel2.util;
+
+/**
+ * A class loader for classes generated for a single statement or template.  The loader is only reachable from the
+ * classes it defines, so it is collected together with them once the statement or template they were generated for
+ * is no longer used.  A shared loader would instead keep every generated class for the life of the JVM.
+ */
+public class GeneratedClassLoader extends ClassLoader implements MVELClassLoader {
+  public GeneratedClassLoader(ClassLoader parent) {
+    super(parent);
+  }
+
+  public Class<?> defineClassX(String className, byte[] b, int start, int end) {
+    return defineClass(className, b, start, end);
+  }
+}
@@ -0,0 +1,373 @@
+/**
+ * MVEL 2.0
+ * Copyright (C) 2007 The Codehaus
+ * Mike Brock, Dhanji Prasanna, John Graham, Mark Proctor
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mvel2.util;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A concurrent cache of resolved reflective members (property getters and fields, setters, and method overload
+ * resolutions), shared by {@link org.mvel2.PropertyAccessor}, {@link ParseTools#getBestCandidate} and the accessor
+ * optimizers.
+ * <p/>
+ * Members are kept in a table per declaring class.  Tables are found through a weakly-keyed, lock-free map, and
+ * entries are keyed by the complete signature being resolved (the member name, the identities of the argument types
+ * and any resolution flags), so two different lookups can never share an entry.
+ * <p/>
+ * The cache will not prevent classes from being unloaded: signature keys never reference <tt>Class</tt> objects,
+ * and a resolved member is only held strongly if every class involved was loaded by MVEL's own class loader (or one
+ * of its parents), in which case the classes cannot be unloaded before MVEL itself is.  All other members are held
+ * through weak references, so that a cached member never keeps a foreign class loader alive; such entries are
+ * cleared by the next garbage collection, and resolved again the next time they are looked up.
+ */
+public class MemberCache {
+  public static final int READ = 0;
+  public static final int WRITE = 1;
+  public static final int METHOD = 2;
+  public static final int CANDIDATE = 3;
+
+  private static final int KINDS = 4;
+
+  private static final Class<?>[] NO_TYPES = new Class<?>[0];
+
+  private static final ConcurrentHashMap<ClassKey, ClassTable> TABLES = new ConcurrentHashMap<ClassKey, ClassTable>();
+  private static final ReferenceQueue<Class<?>> STALE = new ReferenceQueue<Class<?>>();
+
+  private static final AtomicLong[] HITS = new AtomicLong[KINDS];
+  private static final AtomicLong[] MISSES = new AtomicLong[KINDS];
+
+  static {
+    for (int i = 0; i < KINDS; i++) {
+      HITS[i] = new AtomicLong();
+      MISSES[i] = new AtomicLong();
+    }
+  }
+
+  private MemberCache() {
+  }
+
+  public static Member getReadMember(Class<?> cls, String property) {
+    Entry e = lookup(READ, cls, property, NO_TYPES, 0);
+    return e == null ? null : e.member;
+  }
+
+  public static void putReadMember(Class<?> cls, String property, Member member) {
+    store(READ, cls, property, NO_TYPES, 0, member);
+  }
+
+  public static Member getWriteMember(Class<?> cls, String property, Class<?> valueType) {
+    Entry e = lookup(WRITE, cls, property, new Class<?>[]{valueType}, 0);
+    return e == null ? null : e.member;
+  }
+
+  public static void putWriteMember(Class<?> cls, String property, Class<?> valueType, Member member) {
+    store(WRITE, cls, property, new Class<?>[]{valueType}, 0, member);
+  }
+
+  /**
+   * Returns a method previously resolved for invocation against the specified argument types.  The returned array
+   * contains the <tt>Method</tt> and its parameter types.
+   */
+  public static Object[] getMethod(Class<?> cls, String name, Class<?>[] argTypes) {
+    Entry e = lookup(METHOD, cls, name, argTypes, 0);
+    return e == null ? null : new Object[]{e.member, e.parameterTypes};
+  }
+
+  public static void putMethod(Class<?> cls, String name, Class<?>[] argTypes, Method method) {
+    store(METHOD, cls, name, argTypes, 0, method);
+  }
+
+  public static Method getCandidate(Class<?> cls, String name, Class<?>[] argTypes, boolean requireExact,
+                                    boolean classTarget) {
+    Entry e = lookup(CANDIDATE, cls, name, argTypes, flags(requireExact, classTarget));
+    return e == null ? null : (Method) e.member;
+  }
+
+  public static void putCandidate(Class<?> cls, String name, Class<?>[] argTypes, boolean requireExact,
+                                  boolean classTarget, Method method) {
+    store(CANDIDATE, cls, name, argTypes, flags(requireExact, classTarget), method);
+  }
+
+  /**
+   * Returns the parameter types of a method, avoiding the defensive copy made by
+   * {@link Method#getParameterTypes()}.  The returned array must not be modified.
+   */
+  public static Class<?>[] getParameterTypes(Method method) {
+    Class<?> cls = method.getDeclaringClass();
+    if (!isSafe(cls)) return method.getParameterTypes();
+
+    ClassTable table = getTable(cls);
+    Class<?>[] types = table.parameterTypes.get(method);
+    if (types == null) {
+      table.parameterTypes.putIfAbsent(method, types = method.getParameterTypes());
+    }
+    return types;
+  }
+
+  public static void clear() {
+    TABLES.clear();
+  }
+
+  public static long getHits(int kind) {
+    return HITS[kind].get();
+  }
+
+  public static long getMisses(int kind) {
+    return MISSES[kind].get();
+  }
+
+  /**
+   * @return the number of members currently cached for the specified kind
+   */
+  public static int size(int kind) {
+    int size = 0;
+    for (ClassTable table : TABLES.values()) {
+      size += table.size(kind);
+    }
+    return size;
+  }
+
+  /**
+   * @return the number of classes for which members are cached
+   */
+  public static int getClassCount() {
+    expungeStaleTables();
+    return TABLES.size();
+  }
+
+  public static void resetStatistics() {
+    for (int i = 0; i < KINDS; i++) {
+      HITS[i].set(0);
+      MISSES[i].set(0);
+    }
+  }
+
+  /**
+   * @return a human readable summary of the cache statistics
+   */
+  public static String getStatistics() {
+    StringBuilder sb = new StringBuilder("member cache: ").append(getClassCount()).append(" classes");
+    String[] names = {"read property", "write property", "method", "method candidate"};
+    for (int i = 0; i < KINDS; i++) {
+      sb.append("; ").append(names[i]).append(": ").append(size(i)).append(" entries, ")
+          .append(HITS[i].get()).append(" hits, ").append(MISSES[i].get()).append(" misses");
+    }
+    return sb.toString();
+  }
+
+  private static int flags(boolean requireExact, boolean classTarget) {
+    return (requireExact ? 1 : 0) | (classTarget ? 2 : 0);
+  }
+
+  private static Entry lookup(int kind, Class<?> cls, String name, Class<?>[] types, int flags) {
+    ClassTable table = cls == null ? null : TABLES.get(new ClassKey(cls));
+    if (table != null) {
+      Entry e = table.get(new Signature(kind, name, types, flags));
+      if (e != null && e.matches(types)) {
+        HITS[kind].incrementAndGet();
+        return e;
+      }
+    }
+    MISSES[kind].incrementAndGet();
+    return null;
+  }
+
+  private static void store(int kind, Class<?> cls, String name, Class<?>[] types, int flags, Member member) {
+    if (cls == null || member == null) return;
+
+    ClassTable table = getTable(cls);
+    Class<?>[] copy = types.length == 0 ? NO_TYPES : types.clone();
+    table.put(new Signature(kind, name, copy, flags), new Entry(member, copy), isSafe(member, copy));
+  }
+
+  private static ClassTable getTable(Class<?> cls) {
+    ClassTable table = TABLES.get(new ClassKey(cls));
+    if (table == null) {
+      expungeStaleTables();
+
+      ClassTable existing = TABLES.putIfAbsent(new ClassKey(cls, STALE), table = new ClassTable(isSafe(cls)));
+      if (existing != null) table = existing;
+    }
+    return table;
+  }
+
+  private static void expungeStaleTables() {
+    Reference<? extends Class<?>> ref;
+    while ((ref = STALE.poll()) != null) {
+      TABLES.remove(ref);
+    }
+  }
+
+  private static final ClassLoader MVEL_LOADER = MemberCache.class.getClassLoader();
+
+  /**
+   * A class is safe to reference strongly if it cannot be unloaded before MVEL itself is: ie. it was loaded by
+   * the bootstrap loader, or by MVEL's class loader or one of its parents.
+   */
+  private static boolean isSafe(Class<?> cls) {
+    if (cls == null) return true;
+
+    ClassLoader loader = cls.getClassLoader();
+    if (loader == null) return true;
+
+    for (ClassLoader cl = MVEL_LOADER; cl != null; cl = cl.getParent()) {
+      if (cl == loader) return true;
+    }
+    return false;
+  }
+
+  private static boolean isSafe(Member member, Class<?>[] types) {
+    if (!isSafe(member.getDeclaringClass())) return false;
+    for (Class<?> c : types) {
+      if (!isSafe(c)) return false;
+    }
+    return true;
+  }
+
+  private static final class ClassTable {
+    private final boolean safe;
+    private final ConcurrentHashMap<Signature, Object> entries = new ConcurrentHashMap<Signature, Object>();
+
+    /**
+     * Only used for classes which are safe to reference strongly.
+     */
+    private final ConcurrentHashMap<Method, Class<?>[]> parameterTypes = new ConcurrentHashMap<Method, Class<?>[]>();
+
+    private ClassTable(boolean safe) {
+      this.safe = safe;
+    }
+
+    private Entry get(Signature signature) {
+      Object o = entries.get(signature);
+      if (o instanceof Entry) return (Entry) o;
+      if (o != null) {
+        Entry e = ((WeakEntry) o).get();
+        if (e == null) entries.remove(signature, o);
+        return e;
+      }
+      return null;
+    }
+
+    private void put(Signature signature, Entry entry, boolean memberSafe) {
+      entries.put(signature, safe && memberSafe ? entry : new WeakEntry(entry));
+    }
+
+    private int size(int kind) {
+      int size = 0;
+      for (Signature s : entries.keySet()) {
+        if (s.kind == kind) size++;
+      }
+      return size;
+    }
+  }
+
+  private static final class WeakEntry extends WeakReference<Entry> {
+    private WeakEntry(Entry referent) {
+      super(referent);
+    }
+  }
+
+  private static final class Entry {
+    private final Member member;
+    private final Class<?>[] types;
+    private final Class<?>[] parameterTypes;
+
+    private Entry(Member member, Class<?>[] types) {
+      this.member = member;
+      this.types = types;
+      this.parameterTypes = member instanceof Method ? ((Method) member).getParameterTypes() : null;
+    }
+
+    /**
+     * Signatures only record the identity hash codes of the argument types, so confirm that the types really are
+     * the same classes.
+     */
+    private boolean matches(Class<?>[] argTypes) {
+      if (argTypes.length != types.length) return false;
+      for (int i = 0; i < argTypes.length; i++) {
+        if (argTypes[i] != types[i]) return false;
+      }
+      return true;
+    }
+  }
+
+  private static final class Signature {
+    private final int kind;
+    private final String name;
+    private final int[] types;
+    private final int flags;
+    private final int hash;
+
+    private Signature(int kind, String name, Class<?>[] argTypes, int flags) {
+      this.kind = kind;
+      this.name = name;
+      this.flags = flags;
+      this.types = new int[argTypes.length];
+
+      int h = 31 * (31 * kind + flags) + name.hashCode();
+      for (int i = 0; i < argTypes.length; i++) {
+        h = 31 * h + (types[i] = System.identityHashCode(argTypes[i]));
+      }
+      this.hash = h;
+    }
+
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (!(o instanceof Signature)) return false;
+      Signature s = (Signature) o;
+      return hash == s.hash && kind == s.kind && flags == s.flags && name.equals(s.name)
+          && Arrays.equals(types, s.types);
+    }
+
+    public int hashCode() {
+      return hash;
+    }
+  }
+
+  private static final class ClassKey extends WeakReference<Class<?>> {
+    private final int hash;
+
+    private ClassKey(Class<?> cls) {
+      super(cls);
+      this.hash = System.identityHashCode(cls);
+    }
+
+    private ClassKey(Class<?> cls, ReferenceQueue<Class<?>> queue) {
+      super(cls, queue);
+      this.hash = System.identityHashCode(cls);
+    }
+
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (!(o instanceof ClassKey)) return false;
+      Class<?> cls = get();
+      return cls != null && cls == ((ClassKey) o).get();
+    }
+
+    public int hashCode() {
+      return hash;
+    }
+  }
+}
@@ -209,8 +209,6 @@ public class ParseTools {
     return list;
   }
 
-  private static Map<String, Map<Integer, WeakReference<Method>>> RESOLVED_METH_CACHE = new WeakHashMap<String, Map<Integer, WeakReference<Method>>>(10);
-
   public static Method getBestCandidate(Object[] arguments, String method, Class decl, Method[] methods, boolean requireExact) {
     Class[] targetParms = new Class[arguments.length];
     for (int i = 0; i != arguments.length; i++) {
@@ -236,13 +234,7 @@ public class ParseTools {
     int score = 0;
     boolean retry = false;
 
-    Integer hash = createClassSignatureHash(decl, arguments);
-
-    Map<Integer, WeakReference<Method>> methCache = RESOLVED_METH_CACHE.get(method);
-
-    WeakReference<Method> ref;
-
-    if (methCache != null && (ref = methCache.get(hash)) != null && (bestCandidate = ref.get()) != null) {
+    if ((bestCandidate = MemberCache.getCandidate(decl, method, arguments, requireExact, classTarget)) != null) {
       return bestCandidate;
     }
 
@@ -308,12 +300,7 @@ public class ParseTools {
       }
 
       if (bestCandidate != null) {
-        if (methCache == null) {
-          RESOLVED_METH_CACHE.put(method, methCache = new WeakHashMap<Integer, WeakReference<Method>>());
-        }
-
-        methCache.put(hash, new WeakReference<Method>(bestCandidate));
-
+        MemberCache.putCandidate(decl, method, arguments, requireExact, classTarget, bestCandidate);
         break;
       }
 
@@ -508,25 +495,30 @@ public class ParseTools {
   }
 
 
-  private static Map<ClassLoader, Map<String, WeakReference<Class>>> CLASS_RESOLVER_CACHE
+  private static final Map<ClassLoader, Map<String, WeakReference<Class>>> CLASS_RESOLVER_CACHE
       = new WeakHashMap<ClassLoader, Map<String, WeakReference<Class>>>(1, 1.0f);
-  private static Map<Class, WeakReference<Constructor[]>> CLASS_CONSTRUCTOR_CACHE
+  private static final Map<Class, WeakReference<Constructor[]>> CLASS_CONSTRUCTOR_CACHE
       = new WeakHashMap<Class, WeakReference<Constructor[]>>(10);
 
 
   public static Class createClass(String className, ParserContext pCtx) throws ClassNotFoundException {
     ClassLoader classLoader = currentThread().getContextClassLoader();
-    Map<String, WeakReference<Class>> cache = CLASS_RESOLVER_CACHE.get(classLoader);
-
-    if (cache == null) {
-      CLASS_RESOLVER_CACHE.put(classLoader, cache = new WeakHashMap<String, WeakReference<Class>>(10));
-    }
-
-
+    Map<String, WeakReference<Class>> cache;
     WeakReference<Class> ref;
     Class cls;
 
-    if ((ref = cache.get(className)) != null && (cls = ref.get()) != null) {
+    /**
+     * The caches are shared by every thread compiling expressions, so access to them is synchronized; classes are
+     * loaded outside of the lock.
+     */
+    synchronized (CLASS_RESOLVER_CACHE) {
+      if ((cache = CLASS_RESOLVER_CACHE.get(classLoader)) == null) {
+        CLASS_RESOLVER_CACHE.put(classLoader, cache = new WeakHashMap<String, WeakReference<Class>>(10));
+      }
+      ref = cache.get(className);
+    }
+
+    if (ref != null && (cls = ref.get()) != null) {
       return cls;
     }
     else {
@@ -541,21 +533,30 @@ public class ParseTools {
         cls = forName(className, true, Thread.currentThread().getContextClassLoader());
       }
 
-      cache.put(className, new WeakReference<Class>(cls));
+      synchronized (CLASS_RESOLVER_CACHE) {
+        cache.put(className, new WeakReference<Class>(cls));
+      }
       return cls;
     }
   }
 
 
   public static Constructor[] getConstructors(Class cls) {
-    WeakReference<Constructor[]> ref = CLASS_CONSTRUCTOR_CACHE.get(cls);
+    WeakReference<Constructor[]> ref;
     Constructor[] cns;
 
+    synchronized (CLASS_CONSTRUCTOR_CACHE) {
+      ref = CLASS_CONSTRUCTOR_CACHE.get(cls);
+    }
+
     if (ref != null && (cns = ref.get()) != null) {
       return cns;
     }
     else {
-      CLASS_CONSTRUCTOR_CACHE.put(cls, new WeakReference<Constructor[]>(cns = cls.getConstructors()));
+      cns = cls.getConstructors();
+      synchronized (CLASS_CONSTRUCTOR_CACHE) {
+        CLASS_CONSTRUCTOR_CACHE.put(cls, new WeakReference<Constructor[]>(cns));
+      }
       return cns;
     }
   }
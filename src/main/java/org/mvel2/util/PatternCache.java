@@ -0,0 +1,99 @@
+/**
+ * MVEL 2.0
+ * Copyright (C) 2007 The Codehaus
+ * Mike Brock, Dhanji Prasanna, John Graham, Mark Proctor
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mvel2.util;
+
+import java.util.regex.Pattern;
+
+import static java.lang.String.valueOf;
+
+/**
+ * A shared, bounded cache of compiled regular expressions, used by the <tt>~=</tt> operator whenever the pattern is
+ * not a literal (literal patterns are compiled once, with the expression).  The size of the cache may be set with
+ * the <tt>mvel2.regex.cache_size</tt> system property (default 256); zero disables it.
+ */
+public class PatternCache {
+  private static final int MAX_SIZE = Integer.getInteger("mvel2.regex.cache_size", 256);
+
+  private static final BoundedCache<String, Pattern> CACHE = MAX_SIZE > 0 ? new BoundedCache<String, Pattern>(MAX_SIZE)
+      : null;
+
+  private PatternCache() {
+  }
+
+  /**
+   * Returns the compiled form of the regular expression, compiling and caching it if it is not already present.
+   *
+   * @throws java.util.regex.PatternSyntaxException if the expression is not valid
+   */
+  public static Pattern compile(String regex) {
+    if (CACHE == null) return Pattern.compile(regex);
+
+    Pattern p = CACHE.get(regex);
+    if (p != null) return p;
+
+    return CACHE.putIfAbsent(regex, Pattern.compile(regex));
+  }
+
+  /**
+   * @return true if the string value of <tt>value</tt> matches the pattern
+   */
+  public static boolean matches(Object pattern, Object value) {
+    return compile(valueOf(pattern)).matcher(valueOf(value)).matches();
+  }
+
+  public static void clear() {
+    if (CACHE != null) CACHE.clear();
+  }
+
+  public static int size() {
+    return CACHE == null ? 0 : CACHE.size();
+  }
+
+  public static int getMaxSize() {
+    return CACHE == null ? 0 : CACHE.getMaxSize();
+  }
+
+  public static long getHits() {
+    return CACHE == null ? 0 : CACHE.getHits();
+  }
+
+  public static long getMisses() {
+    return CACHE == null ? 0 : CACHE.getMisses();
+  }
+
+  public static long getEvictions() {
+    return CACHE == null ? 0 : CACHE.getEvictions();
+  }
+
+  public static double getHitRate() {
+    return CACHE == null ? 0 : CACHE.getHitRate();
+  }
+
+  public static void resetStatistics() {
+    if (CACHE != null) CACHE.resetStatistics();
+  }
+
+  /**
+   * @return a human readable summary of the cache statistics
+   */
+  public static String getStatistics() {
+    return "pattern cache: " + size() + " of " + getMaxSize() + " entries, " + getHits() + " hits, " + getMisses()
+        + " misses, " + getEvictions() + " evictions";
+  }
+}
@@ -6,10 +6,13 @@ import static org.mvel2.MVEL.compileExpression;
 import static org.mvel2.MVEL.executeExpression;
 
 import org.mvel2.ParserConfiguration;
+import org.mvel2.Operator;
 import org.mvel2.ParserContext;
+import org.mvel2.ast.PrimitiveOperation;
 import org.mvel2.compiler.CompiledExpression;
 import org.mvel2.compiler.ExecutableStatement;
 import org.mvel2.compiler.ExpressionCompiler;
+import org.mvel2.math.MathProcessor;
 import org.mvel2.optimizers.OptimizerFactory;
 import org.mvel2.util.Make;
 
@@ -976,4 +979,52 @@ public class ArithmeticTests extends AbstractTest {
       assertEquals(expected, ((Boolean) MVEL.executeExpression(stmt, null, vars)).booleanValue());
     }
   }
+
+  public void testPrimitiveOperations() {
+    assertEquals(7, MathProcessor.doPrimitiveOperation(3, Operator.ADD, 4));
+    assertEquals(0.75d, MathProcessor.doPrimitiveOperation(3, Operator.DIV, 4));
+    assertEquals(10000000003L, MathProcessor.doPrimitiveOperation(10000000000L, Operator.ADD, 3));
+    assertEquals(3333333333L, MathProcessor.doPrimitiveOperation(10000000000L, Operator.DIV, 3));
+    assertEquals(5.5d, MathProcessor.doPrimitiveOperation(2.5d, Operator.ADD, 3));
+    assertEquals(Boolean.TRUE, MathProcessor.doPrimitiveOperation(3, Operator.EQUAL, 3.0d));
+    assertEquals(Boolean.FALSE, MathProcessor.doPrimitiveOperation(Double.NaN, Operator.GETHAN, 1));
+
+    assertNull(MathProcessor.doPrimitiveOperation(3, Operator.BW_AND, 1));
+    assertNull(MathProcessor.doPrimitiveOperation(3, Operator.ADD, "foo"));
+    assertNull(MathProcessor.doPrimitiveOperation(new BigDecimal(3), Operator.ADD, 1));
+  }
+
+  public void testTypedOperationsArePrimitive() {
+    ParserContext ctx = new ParserContext();
+    ctx.setStrongTyping(true);
+    ctx.addInput("a", int.class);
+    ctx.addInput("d", double.class);
+
+    CompiledExpression compiled = (CompiledExpression) new ExpressionCompiler("a * d + 1").compile(ctx);
+    assertTrue(compiled.getFirstNode() instanceof PrimitiveOperation);
+
+    Map<String, Object> vars = new HashMap<String, Object>();
+    vars.put("a", 4);
+    vars.put("d", 2.5d);
+    assertEquals(11.0d, MVEL.executeExpression(compiled, vars));
+
+    vars.put("d", new BigDecimal("2.5"));
+    assertEquals(0, new BigDecimal("11").compareTo((BigDecimal) MVEL.executeExpression(compiled, vars)));
+  }
+
+  public void testRightmostOperandTypeResolvedAtRuntime() {
+    ParserContext ctx = new ParserContext();
+    ctx.setStrongTyping(true);
+    ctx.addInput("a", int.class);
+    ctx.addInput("b", int.class);
+    ctx.addInput("c", int.class);
+
+    Map<String, Object> vars = new HashMap<String, Object>();
+    vars.put("a", 1);
+    vars.put("b", 7);
+    vars.put("c", 2);
+
+    assertEquals(4.5d, MVEL.executeExpression(MVEL.compileExpression("a + b / c", ctx), vars));
+    assertEquals(15, MVEL.executeExpression(MVEL.compileExpression("a + b * c", ctx), vars));
+  }
 }
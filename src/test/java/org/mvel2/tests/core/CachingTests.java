@@ -0,0 +1,297 @@
+package org.mvel2.tests.core;
+
+import junit.framework.TestCase;
+import org.mvel2.MVEL;
+import org.mvel2.ParserConfiguration;
+import org.mvel2.ParserContext;
+import org.mvel2.PropertyAccessor;
+import org.mvel2.compiler.CompiledExpressionCache;
+import org.mvel2.compiler.ExecutableStatement;
+import org.mvel2.integration.impl.MapVariableResolverFactory;
+import org.mvel2.tests.core.res.Foo;
+import org.mvel2.util.BoundedCache;
+import org.mvel2.util.MemberCache;
+import org.mvel2.util.PatternCache;
+import org.mvel2.util.PropertyTools;
+
+import java.io.Serializable;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.HashMap;
+import java.util.Map;
+
+public class CachingTests extends TestCase {
+
+  public void testBoundedCacheLRU() {
+    BoundedCache<String, Integer> cache = new BoundedCache<String, Integer>(10);
+    for (int i = 0; i < 10; i++) {
+      cache.putIfAbsent("k" + i, i);
+    }
+
+    // touch everything except k0
+    for (int i = 1; i < 10; i++) {
+      assertEquals(new Integer(i), cache.get("k" + i));
+    }
+
+    cache.putIfAbsent("k10", 10);
+
+    assertTrue(cache.size() <= 10);
+    assertNull(cache.get("k0"));
+    assertEquals(new Integer(10), cache.get("k10"));
+    assertTrue(cache.getEvictions() > 0);
+  }
+
+  public void testBoundedCacheLFU() {
+    BoundedCache<String, Integer> cache = new BoundedCache<String, Integer>(10, BoundedCache.LFU);
+    for (int i = 0; i < 10; i++) {
+      cache.putIfAbsent("k" + i, i);
+    }
+
+    for (int i = 0; i < 10; i++) {
+      for (int x = 0; x < 5; x++) {
+        if (i != 3) cache.get("k" + i);
+      }
+    }
+
+    cache.putIfAbsent("k10", 10);
+    assertNull(cache.get("k3"));
+    assertEquals(new Integer(0), cache.get("k0"));
+  }
+
+  public void testBoundedCacheLFUAgesOutStaleEntries() {
+    BoundedCache<String, Integer> cache = new BoundedCache<String, Integer>(10, BoundedCache.LFU);
+    for (int i = 0; i < 10; i++) {
+      cache.putIfAbsent("k" + i, i);
+      for (int x = 0; x < 3; x++) {
+        cache.get("k" + i);
+      }
+    }
+
+    // the old entries are never used again, while each new one is used a few times
+    for (int i = 0; i < 30; i++) {
+      cache.putIfAbsent("n" + i, i);
+      for (int x = 0; x < 3; x++) {
+        cache.get("n" + i);
+      }
+    }
+
+    for (int i = 0; i < 10; i++) {
+      assertNull("k" + i, cache.get("k" + i));
+    }
+    assertEquals(new Integer(29), cache.get("n29"));
+  }
+
+  public void testBoundedCacheStatistics() {
+    BoundedCache<String, String> cache = new BoundedCache<String, String>(5);
+    assertNull(cache.get("foo"));
+    assertEquals("bar", cache.putIfAbsent("foo", "bar"));
+    assertEquals("bar", cache.putIfAbsent("foo", "baz"));
+    assertEquals("bar", cache.get("foo"));
+
+    assertEquals(1, cache.getHits());
+    assertEquals(1, cache.getMisses());
+    assertEquals(0.5d, cache.getHitRate());
+
+    cache.resetStatistics();
+    assertEquals(0, cache.getHits());
+  }
+
+  public void testEvalCache() {
+    CompiledExpressionCache cache = new CompiledExpressionCache(100);
+    MVEL.setEvalCache(cache);
+    try {
+      Map<String, Object> vars = new HashMap<String, Object>();
+      vars.put("a", 10);
+      vars.put("b", 20);
+
+      for (int i = 0; i < 10; i++) {
+        assertEquals(30, MVEL.eval("a + b", vars));
+      }
+
+      assertEquals(1, cache.size());
+      assertEquals(9, cache.getHits());
+      assertEquals(1, cache.getMisses());
+
+      assertEquals("dog", MVEL.eval("bar.name", new Foo()));
+      assertEquals(new Integer(30), MVEL.eval("a + b", vars, Integer.class));
+      assertEquals("30", MVEL.eval("a + b", vars, String.class));
+      assertEquals(Boolean.TRUE, MVEL.evalToBoolean("bar.name == 'dog'", new Foo()));
+      assertEquals(2, MVEL.eval("1 + 1".toCharArray()));
+    }
+    finally {
+      MVEL.setEvalCache(null);
+    }
+  }
+
+  public void testEvalCacheIsBounded() {
+    CompiledExpressionCache cache = new CompiledExpressionCache(10);
+    MVEL.setEvalCache(cache);
+    try {
+      for (int i = 0; i < 100; i++) {
+        assertEquals(i + 1, MVEL.eval(i + " + 1"));
+      }
+      assertTrue(cache.size() <= 10);
+      assertTrue(cache.getEvictions() >= 90);
+    }
+    finally {
+      MVEL.setEvalCache(null);
+    }
+  }
+
+  public void testEvalCacheKeyedByConfiguration() {
+    CompiledExpressionCache cache = new CompiledExpressionCache(10);
+
+    ParserConfiguration conf1 = new ParserConfiguration();
+    ParserConfiguration conf2 = new ParserConfiguration();
+
+    ExecutableStatement s1 = cache.getCompiled("foo.bar", conf1);
+    assertSame(s1, cache.getCompiled("foo.bar", conf1));
+    assertNotSame(s1, cache.getCompiled("foo.bar", conf2));
+    assertEquals(2, cache.size());
+  }
+
+  public void testMemberCacheKeyedBySignature() {
+    MemberCache.clear();
+
+    Member getter = PropertyTools.getFieldOrAccessor(Foo.class, "name");
+    MemberCache.putReadMember(Foo.class, "name", getter);
+    assertSame(getter, MemberCache.getReadMember(Foo.class, "name"));
+    assertNull(MemberCache.getReadMember(Foo.class, "bar"));
+    assertNull(MemberCache.getWriteMember(Foo.class, "name", String.class));
+
+    Member setter = PropertyTools.getFieldOrWriteAccessor(Foo.class, "name", String.class);
+    MemberCache.putWriteMember(Foo.class, "name", String.class, setter);
+    assertSame(setter, MemberCache.getWriteMember(Foo.class, "name", String.class));
+    assertNull(MemberCache.getWriteMember(Foo.class, "name", Integer.class));
+
+    MemberCache.clear();
+    assertNull(MemberCache.getReadMember(Foo.class, "name"));
+  }
+
+  public void testMemberCacheDoesNotRetainForeignClassLoaders() throws Exception {
+    URL location = Foo.class.getProtectionDomain().getCodeSource().getLocation();
+    ClassLoader loader = new URLClassLoader(new URL[]{location}, null);
+    Class<?> foreign = loader.loadClass(Foo.class.getName());
+    assertNotSame(Foo.class, foreign);
+
+    MemberCache.putReadMember(foreign, "name", PropertyTools.getFieldOrAccessor(foreign, "name"));
+
+    WeakReference<ClassLoader> ref = new WeakReference<ClassLoader>(loader);
+    loader = null;
+    foreign = null;
+    for (int i = 0; i < 10 && ref.get() != null; i++) {
+      System.gc();
+      Thread.sleep(10);
+    }
+    assertNull("the class loader is still reachable", ref.get());
+  }
+
+  public void testMemberCacheStatistics() {
+    MemberCache.clear();
+    MemberCache.resetStatistics();
+
+    Map<String, Object> vars = new HashMap<String, Object>();
+    vars.put("foo", new Foo());
+    for (int i = 0; i < 5; i++) {
+      assertEquals("dog", MVEL.eval("foo.bar.name", vars));
+    }
+
+    assertTrue(MemberCache.size(MemberCache.READ) >= 2);
+    assertTrue(MemberCache.getHits(MemberCache.READ) >= 8);
+    assertTrue(MemberCache.getStatistics().startsWith("member cache:"));
+    assertEquals(MemberCache.getStatistics(), PropertyAccessor.getCacheSizes());
+  }
+
+  public void testPatternCache() {
+    PatternCache.clear();
+    PatternCache.resetStatistics();
+
+    Map<String, Object> vars = new HashMap<String, Object>();
+    vars.put("pattern", "[a-z]+");
+    vars.put("value", "foo");
+
+    Serializable compiled = MVEL.compileExpression("value ~= pattern");
+    for (int i = 0; i < 5; i++) {
+      assertEquals(Boolean.TRUE, MVEL.executeExpression(compiled, vars));
+      assertEquals(Boolean.TRUE, MVEL.eval("value ~= pattern", vars));
+    }
+    assertEquals(Boolean.FALSE, MVEL.eval("'FOO' ~= pattern", vars));
+
+    assertEquals(1, PatternCache.size());
+    assertEquals(1, PatternCache.getMisses());
+    assertEquals(10, PatternCache.getHits());
+    assertTrue(PatternCache.getHitRate() > 0.9);
+    assertSame(PatternCache.compile("[a-z]+"), PatternCache.compile("[a-z]+"));
+    assertTrue(PatternCache.getStatistics().startsWith("pattern cache:"));
+  }
+
+  public void testImportFactoryRecycled() throws Exception {
+    ParserContext ctx = new ParserContext();
+    ctx.addImport("Foo", Foo.class);
+
+    final Serializable s = MVEL.compileExpression("import java.util.HashMap; m = new HashMap(); m.put('x', x);" +
+        " new Foo().bar.name + m.x", ctx);
+
+    for (int i = 0; i < 10; i++) {
+      Map<String, Object> vars = new HashMap<String, Object>();
+      vars.put("x", i);
+      assertEquals("dog" + i, MVEL.executeExpression(s, new MapVariableResolverFactory(vars)));
+      assertTrue(vars.containsKey("m"));
+    }
+
+    final Map<String, Object> vars = new HashMap<String, Object>();
+    vars.put("x", "!");
+    vars.put("s", s);
+    assertEquals("dogdogdog!", MVEL.eval("new org.mvel2.tests.core.res.Foo().bar.name + org.mvel2.MVEL.executeExpression(s, ['x' : 'dog!'])", vars));
+
+    final Object[] results = new Object[4];
+    Thread[] threads = new Thread[results.length];
+    for (int i = 0; i < threads.length; i++) {
+      final int t = i;
+      threads[i] = new Thread() {
+        public void run() {
+          Object result = null;
+          for (int x = 0; x < 1000; x++) {
+            result = MVEL.executeExpression(s, new MapVariableResolverFactory(new HashMap<String, Object>(vars)));
+          }
+          results[t] = result;
+        }
+      };
+      threads[i].start();
+    }
+    for (int i = 0; i < threads.length; i++) {
+      threads[i].join();
+      assertEquals("dog!", results[i]);
+    }
+  }
+
+  public void testMethodResolutionUsesRuntimeArgumentTypes() {
+    Map<String, Object> vars = new HashMap<String, Object>();
+    vars.put("o", new Overloaded());
+
+    vars.put("x", "foo");
+    assertEquals("string", MVEL.eval("o.describe(x)", vars));
+
+    vars.put("x", 10);
+    assertEquals("int", MVEL.eval("o.describe(x)", vars));
+  }
+
+  public void testParameterTypes() throws Exception {
+    Method m = Overloaded.class.getMethod("describe", String.class);
+    assertSame(MemberCache.getParameterTypes(m), MemberCache.getParameterTypes(m));
+    assertEquals(String.class, MemberCache.getParameterTypes(m)[0]);
+  }
+
+  public static class Overloaded {
+    public String describe(String s) {
+      return "string";
+    }
+
+    public String describe(int i) {
+      return "int";
+    }
+  }
+}
@@ -407,4 +407,37 @@ public class ControlFlowTests extends AbstractTest {
             new HashMap<String, Object>());
   }
 
+  public void testForEachPrimitiveArrays() {
+    Serializable s = MVEL.compileExpression("out = ''; foreach (x : arr) { out += x + ','; } out");
+    Object[] arrays = {new int[]{1, 2}, new long[]{1, 2}, new double[]{1.5, 2.5}, new float[]{1.5f, 2.5f},
+        new short[]{1, 2}, new byte[]{1, 2}, new char[]{'a', 'b'}, new boolean[]{true, false},
+        new String[]{"a", "b"}};
+    String[] expected = {"1,2,", "1,2,", "1.5,2.5,", "1.5,2.5,", "1,2,", "1,2,", "a,b,", "true,false,", "a,b,"};
+
+    for (int i = 0; i < arrays.length; i++) {
+      Map<String, Object> vars = new HashMap<String, Object>();
+      vars.put("arr", arrays[i]);
+      assertEquals(expected[i], MVEL.executeExpression(s, vars));
+      assertEquals(expected[i], MVEL.eval("out = ''; foreach (x : arr) { out += x + ','; } out", vars));
+    }
+  }
+
+  public void testForEachIterableTypeChanges() {
+    Serializable s = MVEL.compileExpression("out = ''; foreach (x : v) { out += x; } out");
+    Object[] values = {new double[]{1.0, 2.0}, Arrays.asList(1, 2), new LinkedList<Object>(Arrays.asList("a", "b")),
+        new StringBuilder("xyz"), 3, new java.util.concurrent.CopyOnWriteArrayList<Object>(Arrays.asList(4, 5))};
+    String[] expected = {"1.02.0", "12", "ab", "xyz", "123", "45"};
+
+    for (int i = 0; i < values.length; i++) {
+      Map<String, Object> vars = new HashMap<String, Object>();
+      vars.put("v", values[i]);
+      assertEquals(expected[i], MVEL.executeExpression(s, vars));
+    }
+  }
+
+  public void testForEachReturnFromPrimitiveArray() {
+    Map<String, Object> vars = new HashMap<String, Object>();
+    vars.put("arr", new double[]{0.5, 1.5, 2.5});
+    assertEquals(1.5, MVEL.executeExpression(MVEL.compileExpression("foreach (x : arr) { if (x > 1) return x; }"), vars));
+  }
 }
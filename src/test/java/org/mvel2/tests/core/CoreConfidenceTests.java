@@ -3,6 +3,7 @@ package org.mvel2.tests.core;
 import junit.framework.TestCase;
 import org.mvel2.*;
 import org.mvel2.ast.ASTNode;
+import org.mvel2.compiler.BulkCompiler;
 import org.mvel2.compiler.CompiledExpression;
 import org.mvel2.compiler.ExecutableStatement;
 import org.mvel2.compiler.ExpressionCompiler;
@@ -3389,5 +3390,41 @@ public class CoreConfidenceTests extends AbstractTest {
     assertFalse((Boolean) MVEL.executeExpression(s));
   }
 
+  public void testCompileAll() {
+    ParserConfiguration conf = new ParserConfiguration();
+    conf.addImport("Foo", Foo.class);
+    conf.addPackageImport("java.util");
 
+    List<String> expressions = new ArrayList<String>();
+    for (int i = 0; i < 500; i++) {
+      expressions.add("new Foo().bar.name + " + (i % 100));
+    }
+    expressions.add("import org.mvel2.tests.core.res.Cheese; new Cheese('brie', 2).type");
+    expressions.add("new ArrayList().size()");
+    expressions.add("foo.bar.name + (");
+
+    BulkCompiler.Results results = compileAll(expressions, conf);
+    assertEquals(102, results.getCompiled().size());
+    assertEquals(1, results.getErrors().size());
+    assertTrue(results.hasErrors());
+    assertTrue(results.getErrors().containsKey("foo.bar.name + ("));
+    assertNull(results.get("foo.bar.name + ("));
+
+    for (int i = 0; i < 100; i++) {
+      assertEquals("dog" + i, executeExpression(results.get("new Foo().bar.name + " + i)));
+    }
+    assertEquals("brie", executeExpression(results.get("import org.mvel2.tests.core.res.Cheese; new Cheese('brie', 2).type")));
+    assertEquals(0, executeExpression(results.get("new ArrayList().size()")));
+
+    assertFalse(conf.hasImport("Cheese"));
+
+    // expressions which declare no imports of their own share the batch's imports, rather than a copy each
+    ParserConfiguration first = ((CompiledExpression) results.get("new Foo().bar.name + 0")).getParserContext()
+        .getParserConfiguration();
+    ParserConfiguration last = ((CompiledExpression) results.get("new Foo().bar.name + 99")).getParserContext()
+        .getParserConfiguration();
+    assertNotSame(first, last);
+    assertSame(first.getImports(), last.getImports());
+    assertFalse(first.hasImport("Cheese"));
+  }
 }
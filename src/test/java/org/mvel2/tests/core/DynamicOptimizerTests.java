@@ -0,0 +1,380 @@
+package org.mvel2.tests.core;
+
+import junit.framework.TestCase;
+import org.mvel2.MVEL;
+import org.mvel2.ParserContext;
+import org.mvel2.compiler.Accessor;
+import org.mvel2.compiler.CompiledExpression;
+import org.mvel2.compiler.ExecutableAccessor;
+import org.mvel2.integration.impl.MapVariableResolverFactory;
+import org.mvel2.optimizers.OptimizerFactory;
+import org.mvel2.optimizers.dynamic.AccessorProfile;
+import org.mvel2.optimizers.dynamic.DecayingTieringPolicy;
+import org.mvel2.optimizers.dynamic.DynamicAccessor;
+import org.mvel2.optimizers.dynamic.DynamicOptimizer;
+import org.mvel2.optimizers.dynamic.DynamicOptimizerMetrics;
+import org.mvel2.optimizers.dynamic.DynamicOptimizerMonitor;
+import org.mvel2.optimizers.dynamic.InvocationCounter;
+import org.mvel2.optimizers.dynamic.TieringPolicy;
+import org.mvel2.optimizers.impl.asm.ASMAccessorChain;
+import org.mvel2.optimizers.impl.asm.ASMAccessorChainCompiler;
+import org.mvel2.tests.core.res.Foo;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.Serializable;
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+
+public class DynamicOptimizerTests extends TestCase {
+  private int tenuringThreshold;
+  private long timeSpan;
+  private boolean backgroundCompilation;
+  private int maximumTenure;
+  private int shardSize;
+
+  protected void setUp() throws Exception {
+    tenuringThreshold = DynamicOptimizer.tenuringThreshold;
+    timeSpan = DynamicOptimizer.timeSpan;
+    backgroundCompilation = DynamicOptimizer.isBackgroundCompilation();
+    maximumTenure = DynamicOptimizer.maximumTenure;
+    shardSize = DynamicOptimizer.shardSize;
+
+    DynamicOptimizer.tenuringThreshold = 5;
+    DynamicOptimizer.timeSpan = 60000;
+    OptimizerFactory.setDefaultOptimizer(OptimizerFactory.DYNAMIC);
+    DynamicOptimizer.setBackgroundCompilation(false);
+    DynamicOptimizerMetrics.reset();
+  }
+
+  protected void tearDown() throws Exception {
+    DynamicOptimizer.tenuringThreshold = tenuringThreshold;
+    DynamicOptimizer.timeSpan = timeSpan;
+    DynamicOptimizer.maximumTenure = maximumTenure;
+    DynamicOptimizer.shardSize = shardSize;
+    OptimizerFactory.setDefaultOptimizer(OptimizerFactory.DYNAMIC);
+    DynamicOptimizer.setTieringPolicy(new DecayingTieringPolicy());
+    DynamicOptimizer.setBackgroundCompilation(backgroundCompilation);
+  }
+
+  private Map<String, Object> createVars() {
+    Map<String, Object> vars = new HashMap<String, Object>();
+    vars.put("foo", new Foo());
+    return vars;
+  }
+
+  public void testPromotionIsCounted() {
+    Serializable s = MVEL.compileExpression("foo.bar.name");
+    Map<String, Object> vars = createVars();
+    for (int i = 0; i < 20; i++) {
+      assertEquals("dog", MVEL.executeExpression(s, vars));
+    }
+
+    assertTrue(DynamicOptimizerMetrics.getAccessorsCreated() > 0);
+    assertEquals(1, DynamicOptimizerMetrics.getPromotions());
+    assertTrue(DynamicOptimizerMetrics.getGenerationTime() > 0);
+    assertTrue(DynamicOptimizerMetrics.getGeneratedClasses() > 0);
+  }
+
+  public void testAccessorProfiles() {
+    Serializable s = MVEL.compileExpression("foo.countTest");
+    Map<String, Object> vars = createVars();
+    for (int i = 0; i < 20; i++) {
+      MVEL.executeExpression(s, vars);
+    }
+
+    AccessorProfile profile = null;
+    for (AccessorProfile p : DynamicOptimizerMetrics.getAccessorProfiles()) {
+      if ("foo.countTest".equals(p.getExpression())) profile = p;
+    }
+
+    assertNotNull(profile);
+    // the first execution is performed by the optimizer itself, while creating the accessor
+    assertEquals(19, profile.getInvocations());
+    assertEquals(1, profile.getPromotions());
+    assertTrue(profile.isOptimized());
+
+    s = MVEL.compileExpression("foo.countTest = 5");
+    for (int i = 0; i < 20; i++) {
+      MVEL.executeExpression(s, vars);
+    }
+
+    profile = null;
+    for (AccessorProfile p : DynamicOptimizerMetrics.getAccessorProfiles()) {
+      if (p.getType() == DynamicOptimizer.SET_ACCESSOR) profile = p;
+    }
+
+    assertNotNull(profile);
+    assertEquals(1, profile.getPromotions());
+    assertTrue(profile.isOptimized());
+  }
+
+  public void testMonitor() throws Exception {
+    DynamicOptimizerMonitor.register();
+    try {
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      ObjectName name = new ObjectName(DynamicOptimizerMonitor.OBJECT_NAME);
+
+      assertEquals(5, server.getAttribute(name, "TenuringThreshold"));
+      assertEquals(0L, server.getAttribute(name, "Promotions"));
+
+      Serializable s = MVEL.compileExpression("foo.bar.name");
+      Map<String, Object> vars = createVars();
+      for (int i = 0; i < 20; i++) {
+        MVEL.executeExpression(s, vars);
+      }
+
+      assertEquals(1L, server.getAttribute(name, "Promotions"));
+      String[] top = (String[]) server.invoke(name, "topAccessors", new Object[]{1}, new String[]{"int"});
+      assertEquals(1, top.length);
+    }
+    finally {
+      DynamicOptimizerMonitor.unregister();
+    }
+  }
+
+  public void testCustomTieringPolicy() {
+    DynamicOptimizer.setTieringPolicy(new TieringPolicy() {
+      public InvocationCounter createCounter(int accessorType) {
+        return new InvocationCounter() {
+          public boolean increment() {
+            return false;
+          }
+
+          public void reset() {
+          }
+
+          public int getCount() {
+            return 0;
+          }
+        };
+      }
+    });
+
+    Serializable s = MVEL.compileExpression("foo.bar.name");
+    Map<String, Object> vars = createVars();
+    for (int i = 0; i < 100; i++) {
+      assertEquals("dog", MVEL.executeExpression(s, vars));
+    }
+
+    assertEquals(0, DynamicOptimizerMetrics.getPromotions());
+  }
+
+  public void testDecayingCounterPromotesHotAccessor() {
+    InvocationCounter counter = new DecayingTieringPolicy(5, 60000, 1000).createCounter(DynamicOptimizer.REGULAR_ACCESSOR);
+    for (int i = 0; i < 4; i++) {
+      assertFalse(counter.increment());
+    }
+    assertTrue(counter.increment());
+  }
+
+  public void testDecayingCounterPromotesSteadyAccessor() throws Exception {
+    InvocationCounter counter = new DecayingTieringPolicy(5, 1, 20).createCounter(DynamicOptimizer.REGULAR_ACCESSOR);
+
+    int invocations = 0;
+    boolean promoted = false;
+    while (!promoted && invocations < 100) {
+      Thread.sleep(2);
+      promoted = counter.increment();
+      invocations++;
+    }
+
+    assertTrue(promoted);
+    assertTrue(invocations >= 20);
+  }
+
+  public void testBackgroundCompilation() throws Exception {
+    DynamicOptimizer.setBackgroundCompilation(true);
+
+    Serializable s = MVEL.compileExpression("foo.bar.name");
+    Map<String, Object> vars = createVars();
+    for (int i = 0; i < 20; i++) {
+      assertEquals("dog", MVEL.executeExpression(s, vars));
+    }
+
+    assertEquals(1, DynamicOptimizerMetrics.getCompilationsQueued());
+
+    for (int i = 0; i < 500 && DynamicOptimizerMetrics.getPromotions() == 0; i++) {
+      Thread.sleep(10);
+    }
+    assertEquals(1, DynamicOptimizerMetrics.getPromotions());
+    assertEquals(0, DynamicOptimizerMetrics.getCompilationFailures());
+
+    AccessorProfile profile = null;
+    for (AccessorProfile p : DynamicOptimizerMetrics.getAccessorProfiles()) {
+      if ("foo.bar.name".equals(p.getExpression())) profile = p;
+    }
+    assertTrue(profile.isOptimized());
+    assertEquals("dog", MVEL.executeExpression(s, vars));
+
+    // compiled on the compiler thread from the reflective accessor, without evaluating the expression
+    DynamicAccessor accessor = (DynamicAccessor) ((ExecutableAccessor) s).getNode().getAccessor();
+    assertTrue(accessor.getAccessor() instanceof ASMAccessorChain);
+  }
+
+  public static class Holder {
+    public int count = 3;
+  }
+
+  public void testAccessorChainCompilation() {
+    Map<String, Object> vars = createVars();
+    Foo foo = (Foo) vars.get("foo");
+    foo.getBar().getTestList().add(42);
+    foo.getBar().getIntarray()[0] = 7;
+    Map<String, Object> map = new HashMap<String, Object>();
+    map.put("key", new int[]{5, 6});
+    vars.put("map", map);
+    vars.put("holder", new Holder());
+    MapVariableResolverFactory factory = new MapVariableResolverFactory(vars);
+
+    String[] expressions = {"foo.bar.name", "foo.bar.age", "foo.bar.woof", "foo.bar.testList[0]",
+        "foo.bar.intarray[0]", "map.key[1]", "holder.count"};
+    for (String expr : expressions) {
+      Accessor reflective = OptimizerFactory.getAccessorCompiler(OptimizerFactory.SAFE_REFLECTIVE)
+          .optimizeAccessor(new ParserContext(), expr.toCharArray(), 0, expr.length(), null, null, factory, false, null);
+      assertTrue(expr, ASMAccessorChainCompiler.isCompilable(reflective));
+
+      Accessor compiled = ASMAccessorChainCompiler.compile(reflective);
+      assertTrue(expr, compiled instanceof ASMAccessorChain);
+      assertEquals(expr, reflective.getValue(null, null, factory), compiled.getValue(null, null, factory));
+    }
+
+    String expr = "foo.bar.happy()";
+    Accessor reflective = OptimizerFactory.getAccessorCompiler(OptimizerFactory.SAFE_REFLECTIVE)
+        .optimizeAccessor(new ParserContext(), expr.toCharArray(), 0, expr.length(), null, null, factory, false, null);
+    assertFalse(ASMAccessorChainCompiler.isCompilable(reflective));
+    assertSame(reflective, ASMAccessorChainCompiler.compile(reflective));
+  }
+
+  public static class Counter {
+    private int count;
+
+    public int next() {
+      return ++count;
+    }
+  }
+
+  public void testBackgroundCompilationEvaluatesOnce() throws Exception {
+    DynamicOptimizer.setBackgroundCompilation(true);
+
+    Serializable s = MVEL.compileExpression("counter.next()");
+    Map<String, Object> vars = createVars();
+    Counter counter = new Counter();
+    vars.put("counter", counter);
+    for (int i = 1; i <= 20; i++) {
+      assertEquals(i, MVEL.executeExpression(s, vars));
+    }
+
+    assertEquals(1, DynamicOptimizerMetrics.getCompilationsQueued());
+    for (int i = 0; i < 500 && DynamicOptimizerMetrics.getPromotions() == 0; i++) {
+      Thread.sleep(10);
+    }
+    assertEquals(1, DynamicOptimizerMetrics.getPromotions());
+    assertEquals(0, DynamicOptimizerMetrics.getCompilationFailures());
+
+    // the compiler thread never evaluates the expression itself
+    assertEquals(20, counter.count);
+    assertEquals(21, MVEL.executeExpression(s, vars));
+  }
+
+  private AccessorProfile awaitBackgroundCompilation(String expression) throws Exception {
+    for (int i = 0; i < 500 && DynamicOptimizerMetrics.getCompilationFailures() == 0; i++) {
+      for (AccessorProfile p : DynamicOptimizerMetrics.getAccessorProfiles()) {
+        if (expression.equals(p.getExpression()) && p.isOptimized()) return p;
+      }
+      Thread.sleep(10);
+    }
+    return null;
+  }
+
+  public void testBackgroundCompilationInRecycledFrames() throws Exception {
+    DynamicOptimizer.setBackgroundCompilation(true);
+
+    Serializable s = MVEL.compileExpression("def g(o) { o.bar.name }; g(foo)");
+    Map<String, Object> vars = createVars();
+    for (int i = 0; i < 50; i++) {
+      assertEquals("dog", MVEL.executeExpression(s, new HashMap<String, Object>(vars)));
+    }
+
+    assertNotNull(awaitBackgroundCompilation("o.bar.name"));
+    assertEquals(0, DynamicOptimizerMetrics.getCompilationFailures());
+    assertEquals("dog", MVEL.executeExpression(s, new HashMap<String, Object>(vars)));
+  }
+
+  public void testBackgroundCompilationWithRecycledImports() throws Exception {
+    DynamicOptimizer.setBackgroundCompilation(true);
+
+    ParserContext ctx = new ParserContext();
+    ctx.addImport("Foo", Foo.class);
+    Serializable s = MVEL.compileExpression("def g(o) { o.bar.name }; g(foo) + foo.bar.age", ctx);
+    assertTrue(((CompiledExpression) s).isImportInjectionRequired());
+
+    Map<String, Object> vars = createVars();
+    for (int i = 0; i < 50; i++) {
+      assertEquals("dog14", MVEL.executeExpression(s, new HashMap<String, Object>(vars)));
+    }
+
+    assertNotNull(awaitBackgroundCompilation("o.bar.name"));
+    assertNotNull(awaitBackgroundCompilation("foo.bar.age"));
+    assertEquals(0, DynamicOptimizerMetrics.getCompilationFailures());
+    assertEquals("dog14", MVEL.executeExpression(s, new HashMap<String, Object>(vars)));
+  }
+
+  private static final String[] PROPERTIES = {"foo.bar.name", "foo.bar.age", "foo.bar.woof", "foo.bar.assignTest",
+      "foo.number", "foo.name", "foo.countTest", "foo.boolTest"};
+
+  public void testOldestShardIsRetired() {
+    DynamicOptimizer.maximumTenure = 4;
+    DynamicOptimizer.shardSize = 2;
+    OptimizerFactory.setDefaultOptimizer(OptimizerFactory.DYNAMIC);
+
+    Map<String, Object> vars = createVars();
+    Serializable[] compiled = new Serializable[PROPERTIES.length];
+    Object[] expected = new Object[PROPERTIES.length];
+    for (int i = 0; i < PROPERTIES.length; i++) {
+      compiled[i] = MVEL.compileExpression(PROPERTIES[i]);
+      expected[i] = MVEL.eval(PROPERTIES[i], vars);
+      for (int x = 0; x < 20; x++) {
+        assertEquals(expected[i], MVEL.executeExpression(compiled[i], vars));
+      }
+    }
+
+    assertTrue(DynamicOptimizerMetrics.getClassLoaderRecycles() > 0);
+    assertTrue(DynamicOptimizer.getLiveClasses() <= DynamicOptimizer.maximumTenure + DynamicOptimizer.shardSize);
+
+    AccessorProfile first = null;
+    for (AccessorProfile p : DynamicOptimizerMetrics.getAccessorProfiles()) {
+      if (PROPERTIES[0].equals(p.getExpression())) first = p;
+    }
+    assertFalse(first.isOptimized());
+
+    for (int i = 0; i < PROPERTIES.length; i++) {
+      assertEquals(expected[i], MVEL.executeExpression(compiled[i], vars));
+    }
+  }
+
+  public void testUnreachableShardsAreUnloaded() throws Exception {
+    DynamicOptimizer.shardSize = 1;
+    OptimizerFactory.setDefaultOptimizer(OptimizerFactory.DYNAMIC);
+
+    Map<String, Object> vars = createVars();
+    for (String property : PROPERTIES) {
+      Serializable s = MVEL.compileExpression(property);
+      for (int x = 0; x < 20; x++) {
+        MVEL.executeExpression(s, vars);
+      }
+    }
+
+    int shards = DynamicOptimizer.getShardCount();
+    assertTrue(shards > 1);
+
+    for (int i = 0; i < 20 && DynamicOptimizer.getShardCount() == shards; i++) {
+      System.gc();
+      Thread.sleep(10);
+    }
+
+    assertTrue(DynamicOptimizer.getShardCount() < shards);
+    assertTrue(DynamicOptimizerMetrics.getClassLoadersUnloaded() > 0);
+  }
+}
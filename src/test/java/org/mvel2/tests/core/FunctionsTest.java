@@ -1,14 +1,18 @@
 package org.mvel2.tests.core;
 
 import org.mvel2.MVEL;
+import org.mvel2.ParserConfiguration;
+import org.mvel2.ParserContext;
 
 import static org.mvel2.MVEL.executeExpression;
 
+import org.mvel2.ast.Fold;
 import org.mvel2.ast.Function;
 import org.mvel2.compiler.CompiledExpression;
 import org.mvel2.compiler.ExpressionCompiler;
 import org.mvel2.integration.impl.MapVariableResolverFactory;
 import org.mvel2.optimizers.OptimizerFactory;
+import org.mvel2.tests.core.res.Foo;
 import org.mvel2.util.CompilerTools;
 
 import static org.mvel2.util.CompilerTools.extractAllDeclaredFunctions;
@@ -185,5 +189,148 @@ public class FunctionsTest extends AbstractTest {
             "&& x__0 == 'boob';"));
   }
 
+  public void testFunctionFramesAreReused() {
+    Serializable s = MVEL.compileExpression("def add(a, b) { c = a + b; c }; r = 0; " +
+        "for (i = 0; i < 100; i++) { r += add(i, 1) + add(r, 0) - r; }; r");
+    assertEquals(5050, MVEL.executeExpression(s, new HashMap<String, Object>()));
+    assertEquals(5050, MVEL.executeExpression(s, new HashMap<String, Object>()));
+  }
+
+  public void testFunctionFramesResolveGlobalsPerCall() {
+    Serializable s = MVEL.compileExpression("def scale(x) { x * factor }; scale(2) + scale(3)");
+    for (int i = 1; i < 5; i++) {
+      Map<String, Object> vars = new HashMap<String, Object>();
+      vars.put("factor", i);
+      assertEquals(5 * i, MVEL.executeExpression(s, vars));
+    }
+  }
+
+  public void testRecursiveFunctionFrames() {
+    assertEquals(610, MVEL.eval("def fib(n) { n < 2 ? n : fib(n - 1) + fib(n - 2) }; fib(15)",
+        new HashMap<String, Object>()));
+  }
+
+  public void testLoopFramesAreReused() {
+    Serializable s = MVEL.compileExpression("def total(l) { t = 0; foreach (x : l) { " +
+        "if (x == 1 && isdef y) { leak = true }; y = x; t += y }; t }; " +
+        "leak = false; total([1, 2, 3]) + total([1, 4]) + (($ * 2 in [1, 2]).size()) + (($ in [3]).size()) + ' ' + leak");
+    assertEquals("14 false", MVEL.executeExpression(s, new HashMap<String, Object>()));
+    assertEquals("14 false", MVEL.executeExpression(s, new HashMap<String, Object>()));
+  }
+
+  public void testNestedLoopFrames() {
+    assertEquals(15, MVEL.eval("def total(l) { t = 0; foreach (x : l) { " +
+        "if (x is java.util.List) { t = t + total(x) } else { t = t + x } }; t }; total([1, [2, [3, 4]], 5])",
+        new HashMap<String, Object>()));
+  }
+
+  public void testReturnFromRecycledLoopFrame() {
+    Serializable s = MVEL.compileExpression("def find(l) { foreach (x : l) { if (x > 2) { return x; } }; -1 }; " +
+        "find([1, 5]) + find([1, 2]) + find([3])");
+    assertEquals(7, MVEL.executeExpression(s, new HashMap<String, Object>()));
+    assertEquals(7, MVEL.executeExpression(s, new HashMap<String, Object>()));
+  }
+
+  public void testConcurrentFunctionCalls() throws Exception {
+    final Serializable s = MVEL.compileExpression("def sq(x) { y = x * x; y }; " +
+        "r = 0; for (i = 0; i < n; i++) { r += sq(i) }; r");
+    final List<Throwable> errors = Collections.synchronizedList(new ArrayList<Throwable>());
+
+    Thread[] threads = new Thread[4];
+    for (int t = 0; t < threads.length; t++) {
+      final int n = 50 + t;
+      threads[t] = new Thread() {
+        public void run() {
+          try {
+            int expected = 0;
+            for (int i = 0; i < n; i++) expected += i * i;
+
+            for (int i = 0; i < 200; i++) {
+              Map<String, Object> vars = new HashMap<String, Object>();
+              vars.put("n", n);
+              assertEquals(expected, MVEL.executeExpression(s, vars));
+            }
+          }
+          catch (Throwable e) {
+            errors.add(e);
+          }
+        }
+      };
+      threads[t].start();
+    }
+    for (Thread t : threads) {
+      t.join();
+    }
+    assertEquals(Collections.emptyList(), errors);
+  }
+
+  public void testRetainedFunctionFrame() {
+    Fold.setLazyProjection(true);
+    try {
+      assertEquals("[2, 4, 6][3, 6, 9]", MVEL.eval("def times(m) { ($ * m in [1, 2, 3]) }; " +
+          "a = times(2); b = times(3); a.toString() + b.toString()", new HashMap<String, Object>()));
+    }
+    finally {
+      Fold.setLazyProjection(false);
+    }
+  }
+
+  public void testMemoizedFunction() {
+    ParserConfiguration conf = new ParserConfiguration();
+    conf.setFunctionCacheSize(100);
+    ParserContext ctx = new ParserContext(conf);
+
+    CompiledExpression compiled = new ExpressionCompiler("def rate(income) { if (income < 10000) { 0 } " +
+        "else if (income < 50000) { r = income * 2 / 100; r } else { null } }; " +
+        "rate(5000) + ' ' + rate(20000) + ' ' + rate(20000) + ' ' + rate(90000) + ' ' + rate(90000)").compile(ctx);
+
+    assertEquals("0 400.0 400.0 null null", executeExpression(compiled, new HashMap<String, Object>()));
+    assertTrue(ctx.getErrorList().isEmpty());
+
+    Function rate = extractAllDeclaredFunctions(compiled).get("rate");
+    assertTrue(rate.isMemoized());
+    assertEquals(3, rate.getResultCache().size());
+    assertEquals(2, rate.getResultCache().getHits());
+
+    assertEquals("0 400.0 400.0 null null", executeExpression(compiled, new HashMap<String, Object>()));
+    assertEquals(7, rate.getResultCache().getHits());
+  }
 
+  public void testImpureFunctionIsNotMemoized() {
+    ParserConfiguration conf = new ParserConfiguration();
+    conf.setFunctionCacheSize(100);
+    ParserContext ctx = new ParserContext(conf);
+
+    CompiledExpression compiled = new ExpressionCompiler("def scale(x) { x * factor }; scale(2) + scale(2)")
+        .compile(ctx);
+    assertFalse(extractAllDeclaredFunctions(compiled).get("scale").isMemoized());
+    assertEquals(1, ctx.getErrorList().size());
+    assertFalse(ctx.getErrorList().get(0).isCritical());
+
+    for (int factor = 3; factor < 5; factor++) {
+      Map<String, Object> vars = new HashMap<String, Object>();
+      vars.put("factor", factor);
+      assertEquals(4 * factor, executeExpression(compiled, vars));
+    }
+
+    assertFalse(extractAllDeclaredFunctions(new ExpressionCompiler("def f(x) { x }").compile())
+        .get("f").isMemoized());
+  }
+
+  public void testMutableArgumentsAreNotMemoized() {
+    ParserConfiguration conf = new ParserConfiguration();
+    conf.setFunctionCacheSize(16);
+    ParserContext ctx = new ParserContext(conf);
+
+    CompiledExpression compiled = new ExpressionCompiler("def f(x) { x.name }; r1 = f(b); b.name = 'zz'; r2 = f(b); " +
+        "r1 + r2").compile(ctx);
+
+    Map<String, Object> vars = new HashMap<String, Object>();
+    vars.put("b", new Foo());
+    assertEquals("dogzz", executeExpression(compiled, vars));
+
+    Function f = extractAllDeclaredFunctions(compiled).get("f");
+    assertTrue(f.isMemoized());
+    assertEquals(0, f.getResultCache().size());
+  }
 }
@@ -1,12 +1,24 @@
 package org.mvel2.tests.core;
 
 import org.mvel2.MVEL;
+import org.mvel2.ast.Fold;
+import org.mvel2.compiler.ExecutableAccessor;
+import org.mvel2.integration.VariableResolver;
+import org.mvel2.integration.VariableResolverFactory;
+import org.mvel2.integration.impl.MapVariableResolverFactory;
 import org.mvel2.tests.core.res.Base;
 import org.mvel2.util.Make;
 
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 public class ProjectionsTests extends AbstractTest {
   public void testProjectionSupport() {
@@ -49,4 +61,139 @@ public class ProjectionsTests extends AbstractTest {
     assertEquals("ZEN", iter.next());
   }
 
+  public void testProjectionPurity() {
+    assertTrue(fold("($ * 2 in list)").isPure());
+    assertTrue(fold("(name in things if name != 'Bob')").isPure());
+    assertTrue(fold("($ * 2 in ($ + 1 in list))").isPure());
+    assertFalse(fold("(toUpperCase() in list)").isPure());
+    assertFalse(fold("(x = $ in list)").isPure());
+
+    assertTrue(fold("($ * 2 in list if $ % 3 != 0)").isParallelizable());
+    assertTrue(fold("($.name in things)").isParallelizable());
+    assertFalse(fold("($ * m in list)").isParallelizable());
+    assertFalse(fold("(name in things)").isParallelizable());
+  }
+
+  public void testParallelProjection() {
+    List<Integer> list = new ArrayList<Integer>();
+    for (int i = 0; i < 10000; i++) {
+      list.add(i);
+    }
+    Map<String, Object> vars = new HashMap<String, Object>();
+    vars.put("list", list);
+
+    Serializable s = MVEL.compileExpression("($ * 2 in list if $ % 3 != 0)");
+    Object sequential = MVEL.executeExpression(s, vars);
+
+    Fold.setParallelThreshold(100);
+    try {
+      for (int i = 0; i < 5; i++) {
+        assertEquals(sequential, MVEL.executeExpression(s, vars));
+      }
+      assertEquals(sequential, MVEL.eval("($ * 2 in list if $ % 3 != 0)", vars));
+
+      List result = (List) MVEL.executeExpression(MVEL.compileExpression("($ in ($ + 1 in list))"), vars);
+      assertEquals(10000, result.size());
+      for (int i = 0; i < 10000; i++) {
+        assertEquals(i + 1, result.get(i));
+      }
+    }
+    finally {
+      Fold.setParallelThreshold(0);
+      Fold.shutdown();
+    }
+  }
+
+  public void testImpureProjectionIsSequential() {
+    List<Integer> list = new ArrayList<Integer>();
+    for (int i = 0; i < 1000; i++) {
+      list.add(i);
+    }
+    ThreadRecorder recorder = new ThreadRecorder();
+    Map<String, Object> vars = new HashMap<String, Object>();
+    vars.put("list", list);
+    vars.put("recorder", recorder);
+
+    Fold.setParallelThreshold(10);
+    try {
+      List result = (List) MVEL.executeExpression(MVEL.compileExpression("(recorder.record($) in list)"), vars);
+      assertEquals(list, result);
+      assertEquals(1, recorder.threads.size());
+      assertTrue(recorder.threads.contains(Thread.currentThread()));
+    }
+    finally {
+      Fold.setParallelThreshold(0);
+      Fold.shutdown();
+    }
+  }
+
+  public void testProjectionReadingVariablesIsSequential() {
+    List<Integer> list = new ArrayList<Integer>();
+    for (int i = 0; i < 1000; i++) {
+      list.add(i);
+    }
+    Map<String, Object> vars = new HashMap<String, Object>();
+    vars.put("list", list);
+    vars.put("m", 3);
+
+    final ThreadRecorder recorder = new ThreadRecorder();
+    VariableResolverFactory factory = new MapVariableResolverFactory(vars) {
+      public VariableResolver getVariableResolver(String name) {
+        recorder.record(name);
+        return super.getVariableResolver(name);
+      }
+    };
+
+    Fold.setParallelThreshold(10);
+    try {
+      List result = (List) MVEL.executeExpression(MVEL.compileExpression("($ * m in list if $ > m)"), factory);
+      assertEquals(996, result.size());
+      assertEquals(12, result.get(0));
+      assertEquals(1, recorder.threads.size());
+      assertTrue(recorder.threads.contains(Thread.currentThread()));
+    }
+    finally {
+      Fold.setParallelThreshold(0);
+      Fold.shutdown();
+    }
+  }
+
+  public void testLazyProjection() {
+    List<Integer> list = new ArrayList<Integer>();
+    for (int i = 0; i < 5; i++) {
+      list.add(i);
+    }
+    Map<String, Object> vars = new HashMap<String, Object>();
+    vars.put("list", list);
+    vars.put("m", 2);
+
+    Fold.setLazyProjection(true);
+    try {
+      Collection col = (Collection) MVEL.executeExpression(MVEL.compileExpression("($ * m in list if $ > 0)"), vars);
+      assertEquals(4, col.size());
+      assertEquals("[2, 4, 6, 8]", col.toString());
+
+      list.add(5);
+      assertEquals("[2, 4, 6, 8, 10]", col.toString());
+    }
+    finally {
+      Fold.setLazyProjection(false);
+    }
+
+    assertEquals(Arrays.asList(2, 4, 6, 8, 10, 12),
+        MVEL.executeExpression(MVEL.compileExpression("($ * 2 in ($ + 1 in list))"), vars));
+  }
+
+  private static Fold fold(String expr) {
+    return (Fold) ((ExecutableAccessor) MVEL.compileExpression(expr)).getNode();
+  }
+
+  public static class ThreadRecorder {
+    private final Set<Thread> threads = new HashSet<Thread>();
+
+    public synchronized Object record(Object o) {
+      threads.add(Thread.currentThread());
+      return o;
+    }
+  }
 }
@@ -0,0 +1,394 @@
+package org.mvel2.tests.core;
+
+import junit.framework.TestCase;
+import org.mvel2.MVEL;
+import org.mvel2.ParserConfiguration;
+import org.mvel2.ParserContext;
+import org.mvel2.asm.ClassWriter;
+import org.mvel2.asm.MethodVisitor;
+import org.mvel2.asm.Opcodes;
+import org.mvel2.compiler.AheadOfTimeCompiler;
+import org.mvel2.compiler.CompiledExpression;
+import org.mvel2.compiler.CompiledSnapshot;
+import org.mvel2.compiler.ExecutableStatement;
+import org.mvel2.optimizers.impl.asm.ASMStatement;
+import org.mvel2.optimizers.impl.asm.ASMStatementCompiler;
+import org.mvel2.templates.CompiledTemplate;
+import org.mvel2.templates.TemplateRuntime;
+import org.mvel2.tests.core.res.Foo;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.lang.ref.WeakReference;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class StatementCompilerTests extends TestCase {
+  private ParserContext context() {
+    ParserContext ctx = new ParserContext();
+    ctx.setStrongTyping(true);
+    ctx.addInput("a", int.class);
+    ctx.addInput("b", int.class);
+    ctx.addInput("l", long.class);
+    ctx.addInput("d", double.class);
+    ctx.addInput("x", boolean.class);
+    ctx.addInput("y", boolean.class);
+    ctx.addInput("s", String.class);
+    ctx.addInput("foo", Foo.class);
+    return ctx;
+  }
+
+  private Map<String, Object> vars() {
+    Map<String, Object> vars = new HashMap<String, Object>();
+    vars.put("a", 7);
+    vars.put("b", -3);
+    vars.put("l", 10000000000L);
+    vars.put("d", 2.5d);
+    vars.put("x", true);
+    vars.put("y", false);
+    vars.put("s", "foo");
+    vars.put("foo", new Foo());
+    return vars;
+  }
+
+  public void testCompiledStatementsMatchInterpreter() {
+    String[] expressions = {
+        "a + b * 2", "(a + b) * (a - b)", "-a + 1", "a % 3 == 0", "a / b", "1 + 2 * a",
+        "l / 3", "l / l", "a / l", "a * l", "(l - 1) % a", "-(a * l)", "l == 10000000000",
+        "d * 2", "d % 2", "d / a", "a + d", "-d", "a == 7.0", "a < d", "d >= 2.5",
+        "x == y", "x != y", "!(a > b)", "true && x", "x || a < b", "a * d > 10 && !x", "a + 1 > 7 || y",
+        "a == 7 ? d : 2.0", "a > 1 ? 1 : a < 0 ? -1 : 0"
+    };
+
+    Map<String, Object> vars = vars();
+    for (String expr : expressions) {
+      Serializable s = MVEL.compileExpression(expr, context());
+      Serializable compiled = ASMStatementCompiler.compile(s);
+
+      assertTrue(expr, compiled instanceof ASMStatement);
+
+      Object expected = MVEL.executeExpression(s, vars);
+      Object actual = MVEL.executeExpression(compiled, vars);
+      assertEquals(expr, expected, actual);
+      assertEquals(expr, expected.getClass(), actual.getClass());
+    }
+  }
+
+  public void testCompiledStatementClassesAreUnloaded() throws Exception {
+    Serializable compiled = ASMStatementCompiler.compile(MVEL.compileExpression("a * b + l", context()));
+    assertEquals(9999999979L, MVEL.executeExpression(compiled, vars()));
+
+    WeakReference<ClassLoader> ref = new WeakReference<ClassLoader>(compiled.getClass().getClassLoader());
+    compiled = null;
+    for (int i = 0; i < 10 && ref.get() != null; i++) {
+      System.gc();
+      Thread.sleep(10);
+    }
+    assertNull("the generated class is still reachable", ref.get());
+  }
+
+  public void testMixedIntAndLongArithmeticMatchesInterpreter() {
+    ParserContext ctx = context();
+    ctx.addInput("big", long.class);
+    ctx.addInput("max", long.class);
+    ctx.addInput("zero", int.class);
+    Map<String, Object> vars = vars();
+    vars.put("big", (1L << 53) + 1);
+    vars.put("max", Long.MAX_VALUE);
+    vars.put("zero", 0);
+
+    // an int and a long are combined in floating point and narrowed to long: precision is lost beyond 2^53,
+    // overflow saturates, and a remainder of zero is zero rather than an ArithmeticException
+    String[] expressions = {"big + 1", "big % 3", "a + max", "max * b", "big % zero", "big + 1 > big"};
+    Object[] values = {9007199254740992L, 2L, Long.MAX_VALUE, Long.MIN_VALUE, 0L, false};
+
+    for (int i = 0; i < expressions.length; i++) {
+      Serializable s = MVEL.compileExpression(expressions[i], ctx);
+      Serializable compiled = ASMStatementCompiler.compile(s);
+      assertTrue(expressions[i], compiled instanceof ASMStatement);
+
+      assertEquals(expressions[i], values[i], MVEL.executeExpression(s, vars));
+      assertEquals(expressions[i], values[i], MVEL.executeExpression(compiled, vars));
+    }
+  }
+
+  public void testUnsupportedStatementsAreNotCompiled() {
+    String[] expressions = {"s + a", "foo.bar.name", "a = 1", "a + 1; b + 1", "foo.countTest + 1",
+        "if (x) { a } else { b }"};
+
+    for (String expr : expressions) {
+      Serializable s = MVEL.compileExpression(expr, context());
+      assertFalse(expr, ASMStatementCompiler.isCompilable(s));
+      assertSame(expr, s, ASMStatementCompiler.compile(s));
+    }
+
+    Serializable untyped = MVEL.compileExpression("c + 1");
+    assertSame(untyped, ASMStatementCompiler.compile(untyped));
+  }
+
+  public void testShortCircuit() {
+    Serializable s = ASMStatementCompiler.compile(MVEL.compileExpression("y && a % 0 == 0", context()));
+    assertTrue(s instanceof ASMStatement);
+    assertEquals(Boolean.FALSE, MVEL.executeExpression(s, vars()));
+
+    s = ASMStatementCompiler.compile(MVEL.compileExpression("x || a % 0 == 0", context()));
+    assertEquals(Boolean.TRUE, MVEL.executeExpression(s, vars()));
+  }
+
+  public void testVariablesAreReadOnEachExecution() {
+    Serializable s = ASMStatementCompiler.compile(MVEL.compileExpression("a * b", context()));
+    Map<String, Object> vars = vars();
+    assertEquals(-21, MVEL.executeExpression(s, vars));
+
+    vars.put("b", 6);
+    assertEquals(42, MVEL.executeExpression(s, vars));
+  }
+
+  public void testSerializesAsSource() throws Exception {
+    Serializable s = ASMStatementCompiler.compile(MVEL.compileExpression("a * b + 1 > 10", context()));
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    ObjectOutputStream out = new ObjectOutputStream(bytes);
+    out.writeObject(s);
+    out.close();
+
+    Object read = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+    assertFalse(read instanceof ASMStatement);
+    assertEquals(Boolean.FALSE, MVEL.executeExpression(read, vars()));
+  }
+
+  public void testSnapshot() throws Exception {
+    ParserContext ctx = context();
+    ctx.addImport("Foo", Foo.class);
+
+    Map<String, Serializable> entries = new LinkedHashMap<String, Serializable>();
+    entries.put("statement", ASMStatementCompiler.compile(MVEL.compileExpression("a * b + 1 > 10", context())));
+    entries.put("arithmetic", MVEL.compileExpression("(a + b) * d", context()));
+    entries.put("imports", MVEL.compileExpression("new Foo().bar.name + s", ctx));
+    entries.put("function", MVEL.compileExpression("def twice(x) { x * 2 }; twice(a) + twice(b)"));
+
+    File file = File.createTempFile("mvel_snapshot", ".tmp");
+    file.deleteOnExit();
+    try {
+      CompiledSnapshot.write(file, entries, true);
+
+      CompiledSnapshot snapshot = CompiledSnapshot.open(file);
+      assertEquals(4, snapshot.size());
+      assertEquals(entries.keySet(), snapshot.getNames());
+      assertTrue(snapshot.contains("imports"));
+      assertNull(snapshot.get("missing"));
+
+      Serializable statement = snapshot.get("statement");
+      assertTrue(statement instanceof ASMStatement);
+      assertNotSame(entries.get("statement").getClass(), statement.getClass());
+      assertSame(statement.getClass(), snapshot.get("statement").getClass());
+
+      for (Map.Entry<String, Serializable> entry : snapshot.getAll().entrySet()) {
+        assertEquals(entry.getKey(), MVEL.executeExpression(entries.get(entry.getKey()), vars()),
+            MVEL.executeExpression(entry.getValue(), vars()));
+      }
+    }
+    finally {
+      file.delete();
+    }
+  }
+
+  public void testSnapshotSharesConfiguration() throws Exception {
+    ParserConfiguration conf = new ParserConfiguration();
+    conf.addImport("Foo", Foo.class);
+    conf.addImport("HashMap", HashMap.class);
+    conf.addPackageImport("java.util");
+
+    Map<String, Serializable> entries = new LinkedHashMap<String, Serializable>();
+    for (int i = 0; i < 200; i++) {
+      entries.put("e" + i, MVEL.compileExpression("m = new HashMap(); m.put('k', " + i + "); m.k * a + b",
+          new ParserContext(conf)));
+    }
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    CompiledSnapshot.write(bytes, entries, false);
+
+    ByteArrayOutputStream serialized = new ByteArrayOutputStream();
+    ObjectOutputStream out = new ObjectOutputStream(serialized);
+    out.writeObject(entries);
+    out.close();
+
+    int separately = 0;
+    for (Serializable s : entries.values()) {
+      ByteArrayOutputStream entry = new ByteArrayOutputStream();
+      out = new ObjectOutputStream(entry);
+      out.writeObject(s);
+      out.close();
+      separately += entry.size();
+    }
+
+    // no larger than serializing the whole map, and the configuration and class descriptors are written once
+    // rather than with every entry
+    assertTrue(bytes.size() + " bytes, against " + serialized.size() + " serialized",
+        bytes.size() <= serialized.size());
+    assertTrue(bytes.size() + " bytes, against " + separately + " serialized separately",
+        bytes.size() * 2 < separately);
+
+    CompiledSnapshot snapshot = CompiledSnapshot.open(ByteBuffer.wrap(bytes.toByteArray()), getClass().getClassLoader());
+    CompiledExpression first = (CompiledExpression) snapshot.get("e0");
+    CompiledExpression last = (CompiledExpression) snapshot.get("e199");
+    assertSame(first.getParserContext().getParserConfiguration(), last.getParserContext().getParserConfiguration());
+    assertEquals(-3, MVEL.executeExpression(first, vars()));
+    assertEquals(1390, MVEL.executeExpression(last, vars()));
+  }
+
+  public void testSnapshotWithoutBytecode() throws Exception {
+    Map<String, Serializable> entries = new LinkedHashMap<String, Serializable>();
+    entries.put("statement", ASMStatementCompiler.compile(MVEL.compileExpression("a * b + 1 > 10", context())));
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    CompiledSnapshot.write(bytes, entries, false);
+
+    CompiledSnapshot snapshot = CompiledSnapshot.open(ByteBuffer.wrap(bytes.toByteArray()), getClass().getClassLoader());
+    Serializable s = snapshot.get("statement");
+    assertFalse(s instanceof ASMStatement);
+    assertEquals(Boolean.FALSE, MVEL.executeExpression(s, vars()));
+
+    ByteArrayOutputStream serialized = new ByteArrayOutputStream();
+    ObjectOutputStream out = new ObjectOutputStream(serialized);
+    out.writeObject(entries.get("statement"));
+    out.close();
+    assertTrue(bytes.size() < serialized.size());
+
+    try {
+      CompiledSnapshot.open(ByteBuffer.wrap(new byte[]{1, 2, 3, 4, 0, 1}), getClass().getClassLoader());
+      fail("should have rejected the snapshot");
+    }
+    catch (java.io.IOException e) {
+      // expected
+    }
+  }
+
+  public void testSnapshotRejectsChangedClasses() throws Exception {
+    Class<?> original = new ValueLoader().define(1L, "count");
+    Map<String, Serializable> entries = new LinkedHashMap<String, Serializable>();
+    entries.put("value", (Serializable) original.newInstance());
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    CompiledSnapshot.write(bytes, entries, false);
+
+    ValueLoader same = new ValueLoader();
+    same.define(1L, "count");
+    assertNotNull(CompiledSnapshot.open(ByteBuffer.wrap(bytes.toByteArray()), same).get("value"));
+
+    ValueLoader[] changed = {new ValueLoader(), new ValueLoader()};
+    changed[0].define(2L, "count");
+    changed[1].define(1L, "total");
+    for (ValueLoader loader : changed) {
+      try {
+        CompiledSnapshot.open(ByteBuffer.wrap(bytes.toByteArray()), loader).get("value");
+        fail("should have rejected the changed class");
+      }
+      catch (RuntimeException e) {
+        assertTrue(String.valueOf(e.getCause()), e.getCause() instanceof InvalidClassException);
+      }
+    }
+  }
+
+  /**
+   * Defines versions of a serializable class, with a serialVersionUID and a single int field.
+   */
+  private static class ValueLoader extends ClassLoader {
+    private ValueLoader() {
+      super(StatementCompilerTests.class.getClassLoader());
+    }
+
+    private Class<?> define(long serialVersionUID, String field) {
+      ClassWriter cw = new ClassWriter(0);
+      cw.visit(Opcodes.V1_5, Opcodes.ACC_PUBLIC + Opcodes.ACC_SUPER, "SnapshotValue", null, "java/lang/Object",
+          new String[]{"java/io/Serializable"});
+      cw.visitField(Opcodes.ACC_PRIVATE + Opcodes.ACC_STATIC + Opcodes.ACC_FINAL, "serialVersionUID", "J", null,
+          serialVersionUID).visitEnd();
+      cw.visitField(Opcodes.ACC_PUBLIC, field, "I", null, null).visitEnd();
+
+      MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+      mv.visitCode();
+      mv.visitVarInsn(Opcodes.ALOAD, 0);
+      mv.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V");
+      mv.visitInsn(Opcodes.RETURN);
+      mv.visitMaxs(1, 1);
+      mv.visitEnd();
+      cw.visitEnd();
+
+      byte[] b = cw.toByteArray();
+      return defineClass("SnapshotValue", b, 0, b.length);
+    }
+  }
+
+  public void testAheadOfTimeCompiler() throws Exception {
+    File src = File.createTempFile("mvel_aot_src", "");
+    File out = File.createTempFile("mvel_aot_out", "");
+    src.delete();
+    out.delete();
+    try {
+      new File(src, "rules").mkdirs();
+      write(new File(src, "rules/order-total.mvel"), "// @input int a\n// @input int b\na * b + 1 > 10\n");
+      write(new File(src, "rules/greeting.mvel"), "s + ', ' + foo.bar.name");
+      write(new File(src, "people.mv"), "@comment{ @input java.util.List people }"
+          + "@foreach{p : people}[@{p}]@end{', '}@if{a > 5}:big@end{}");
+
+      AheadOfTimeCompiler compiler = new AheadOfTimeCompiler();
+      compiler.setOutputDirectory(out);
+      compiler.setPackageName("aot");
+      compiler.addInput("s", String.class);
+      assertEquals(Arrays.asList("aot.People", "aot.rules.Greeting", "aot.rules.OrderTotal"), compiler.compile(src));
+      assertTrue(new File(out, "aot/rules/OrderTotal.snapshot").exists());
+      assertTrue(new File(out, "aot/People$Node1.class").exists());
+
+      ClassLoader loader = new URLClassLoader(new URL[]{out.toURI().toURL()}, getClass().getClassLoader());
+
+      ExecutableStatement orderTotal = (ExecutableStatement) loader.loadClass("aot.rules.OrderTotal").newInstance();
+      assertTrue(orderTotal instanceof ASMStatement);
+      assertEquals(Boolean.FALSE, MVEL.executeExpression(orderTotal, vars()));
+
+      Serializable greeting = (Serializable) loader.loadClass("aot.rules.Greeting").newInstance();
+      assertEquals("foo, dog", MVEL.executeExpression(greeting, vars()));
+      assertEquals("foo, dog", MVEL.executeExpression(greeting, vars()));
+
+      Map<String, Object> vars = vars();
+      vars.put("people", Arrays.asList("Jane", "John"));
+      CompiledTemplate people = (CompiledTemplate) loader.loadClass("aot.People").newInstance();
+      assertEquals("[Jane], [John]:big", TemplateRuntime.execute(people, vars));
+    }
+    finally {
+      delete(src);
+      delete(out);
+    }
+  }
+
+  private static void write(File file, String text) throws Exception {
+    FileWriter writer = new FileWriter(file);
+    try {
+      writer.write(text);
+    }
+    finally {
+      writer.close();
+    }
+  }
+
+  private static void delete(File file) {
+    File[] files = file.listFiles();
+    if (files != null) {
+      for (File f : files) {
+        delete(f);
+      }
+    }
+    file.delete();
+  }
+}
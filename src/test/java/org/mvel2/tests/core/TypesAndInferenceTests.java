@@ -5,6 +5,7 @@ import org.mvel2.*;
 import org.mvel2.compiler.CompiledExpression;
 import org.mvel2.compiler.ExecutableStatement;
 import org.mvel2.compiler.ExpressionCompiler;
+import org.mvel2.conversion.Converter;
 import org.mvel2.integration.impl.DefaultLocalVariableResolverFactory;
 import org.mvel2.integration.impl.StaticMethodImportResolverFactory;
 import org.mvel2.optimizers.OptimizerFactory;
@@ -963,6 +964,36 @@ public class TypesAndInferenceTests extends AbstractTest {
     }
   }
 
+  public void testConverterDispatch() {
+    assertEquals(10, DataConversion.getConverter(String.class, Integer.class).convert("10"));
+    assertEquals(10L, DataConversion.getConverter(Integer.class, long.class).convert(10));
+    assertEquals(new Integer(10), DataConversion.convert(10L, int.class));
+
+    Integer i = 10;
+    assertSame(i, DataConversion.getConverter(Integer.class, Number.class).convert(i));
+    assertNull(DataConversion.getConverter(Foo.class, Integer.class));
+
+    Converter c = DataConversion.getConverter(int.class);
+    assertEquals(10, c.convert("10"));
+    assertEquals(10, c.convert("10"));
+    assertEquals(10, c.convert(10L));
+    assertEquals(10, c.convert(10));
+    assertNull(c.convert(null));
+
+    c = DataConversion.getConverter(String[].class);
+    assertTrue(Arrays.equals(new String[]{"1", "2"}, (String[]) c.convert(new Object[]{1, 2})));
+    assertTrue(Arrays.equals(new int[]{1, 2}, DataConversion.convert(Arrays.asList("1", "2"), int[].class)));
+
+    Map<String, Object> vars = new HashMap<String, Object>();
+    vars.put("foo", new Foo());
+    Serializable s = compileExpression("foo.countTest = x");
+    for (Object x : new Object[]{"5", 6L, 7.0d, "8"}) {
+      vars.put("x", x);
+      executeExpression(s, vars);
+    }
+    assertEquals(8, ((Foo) vars.get("foo")).getCountTest());
+  }
+
   public void testDataConverterStrictMode() throws Exception {
     OptimizerFactory.setDefaultOptimizer("ASM");
 
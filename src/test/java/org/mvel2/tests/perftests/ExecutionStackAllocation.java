@@ -0,0 +1,102 @@
+package org.mvel2.tests.perftests;
+
+import org.mvel2.MVEL;
+import org.mvel2.integration.impl.MapVariableResolverFactory;
+import org.mvel2.util.ExecutionStack;
+import org.mvel2.util.StackElement;
+
+import java.io.Serializable;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.mvel2.Operator.ADD;
+import static org.mvel2.Operator.MULT;
+import static org.mvel2.math.MathProcessor.doOperations;
+
+/**
+ * Measures the number of bytes allocated per evaluation by the operand stack, comparing the array-backed
+ * {@link ExecutionStack} against the linked {@link StackElement} representation it replaced.  Requires a JVM which
+ * exposes per-thread allocation counters (<tt>com.sun.management.ThreadMXBean</tt>).
+ */
+public class ExecutionStackAllocation {
+  private static final int ITERATIONS = 1000000;
+
+  public static void main(String[] args) throws Exception {
+    ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    Method allocated;
+    try {
+      allocated = bean.getClass().getMethod("getThreadAllocatedBytes", long.class);
+      allocated.setAccessible(true);
+    }
+    catch (NoSuchMethodException e) {
+      System.out.println("this JVM does not expose per-thread allocation counters.");
+      return;
+    }
+
+    long tid = Thread.currentThread().getId();
+
+    for (int run = 0; run < 5; run++) {
+      System.out.println("run " + run + ":");
+
+      long before = (Long) allocated.invoke(bean, tid);
+      linkedStack();
+      report("  linked stack (a + b * c)   ", (Long) allocated.invoke(bean, tid) - before);
+
+      before = (Long) allocated.invoke(bean, tid);
+      arrayStack(new ExecutionStack());
+      report("  array stack (a + b * c)    ", (Long) allocated.invoke(bean, tid) - before);
+
+      Map<String, Object> vars = new HashMap<String, Object>();
+      vars.put("a", 1);
+      vars.put("b", 2);
+      vars.put("c", 3);
+      MapVariableResolverFactory factory = new MapVariableResolverFactory(vars);
+      Serializable s = MVEL.compileExpression("a + b * c");
+
+      before = (Long) allocated.invoke(bean, tid);
+      for (int i = 0; i < ITERATIONS; i++) {
+        MVEL.executeExpression(s, factory);
+      }
+      report("  MVEL.executeExpression     ", (Long) allocated.invoke(bean, tid) - before);
+    }
+  }
+
+  private static void report(String label, long bytes) {
+    System.out.println(label + ": " + ((double) bytes / ITERATIONS) + " bytes/op");
+  }
+
+  /**
+   * The push/reduce sequence the runtime performs for a two-operator expression, using linked stack elements.
+   */
+  private static Object linkedStack() {
+    Object result = null;
+    for (int i = 0; i < ITERATIONS; i++) {
+      StackElement element = new StackElement(null, 1);
+      element = new StackElement(new StackElement(element, 2), ADD);
+      element = new StackElement(element.next.next.next,
+          doOperations(element.next.next.value, (Integer) element.value, element.next.value));
+      element = new StackElement(new StackElement(element, 3), MULT);
+      element = new StackElement(element.next.next.next,
+          doOperations(element.next.next.value, (Integer) element.value, element.next.value));
+      result = element.value;
+    }
+    return result;
+  }
+
+  private static Object arrayStack(ExecutionStack stk) {
+    Object result = null;
+    for (int i = 0; i < ITERATIONS; i++) {
+      stk.push(1);
+      stk.push(2, ADD);
+      stk.op();
+      stk.push(3, MULT);
+      stk.op();
+      result = stk.pop();
+      stk.clear();
+    }
+    return result;
+  }
+}
@@ -4,13 +4,23 @@ import junit.framework.TestCase;
 import org.mvel2.CompileException;
 import org.mvel2.MVEL;
 import org.mvel2.ParserContext;
+import org.mvel2.compiler.CompiledSnapshot;
 import org.mvel2.integration.VariableResolverFactory;
 import org.mvel2.integration.impl.MapVariableResolverFactory;
+import org.mvel2.templates.ASMTemplateCompiler;
+import org.mvel2.templates.ASMTemplateNode;
 import org.mvel2.templates.CompiledTemplate;
+import org.mvel2.templates.CompiledTemplateCache;
+import org.mvel2.templates.ResourceTemplateRegistry;
 import org.mvel2.templates.SimpleTemplateRegistry;
 import org.mvel2.templates.TemplateCompiler;
+import org.mvel2.templates.TemplateError;
 import org.mvel2.templates.TemplateRuntime;
 import org.mvel2.templates.res.Node;
+import org.mvel2.templates.util.EncodedText;
+import org.mvel2.templates.util.io.BufferPool;
+import org.mvel2.templates.util.io.ByteBufferStream;
+import org.mvel2.templates.util.io.WriterStream;
 import org.mvel2.tests.core.CoreConfidenceTests;
 import org.mvel2.tests.core.res.Bar;
 import org.mvel2.tests.core.res.Base;
@@ -18,11 +28,19 @@ import org.mvel2.tests.core.res.Foo;
 import org.mvel2.tests.core.res.TestMVEL197;
 import org.mvel2.tests.templates.tests.res.TestPluginNode;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileWriter;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.StringWriter;
+import java.net.URL;
+import java.net.URLClassLoader;
 import java.io.Serializable;
+import java.lang.ref.WeakReference;
 import java.math.BigDecimal;
+import java.nio.channels.Channels;
+import java.nio.charset.Charset;
 import java.util.*;
 
 import static org.mvel2.templates.TemplateCompiler.compileTemplate;
@@ -78,7 +96,9 @@ public class TemplateTests extends TestCase {
 
   public Object test(String template) {
     CompiledTemplate compiled = compileTemplate(template);
-    return TemplateRuntime.execute(compiled, base, vrf);
+    Object result = TemplateRuntime.execute(compiled, base, vrf);
+    assertEquals(result, TemplateRuntime.execute(ASMTemplateCompiler.compile(compiled), base, vrf));
+    return result;
   }
 
   public void testPassThru() {
@@ -191,6 +211,276 @@ public class TemplateTests extends TestCase {
 
   }
 
+  public void testTemplateCache() {
+    CompiledTemplateCache cache = new CompiledTemplateCache(10);
+    TemplateRuntime.setTemplateCache(cache);
+    try {
+      for (int i = 0; i < 5; i++) {
+        assertEquals("Foo::Bar", TemplateRuntime.eval("@{_foo_}::@{_bar_}", map));
+      }
+      assertEquals("Bar", TemplateRuntime.eval("@{_bar_}", null, vrf));
+
+      assertEquals(2, cache.size());
+      assertEquals(4, cache.getHits());
+      assertEquals(2, cache.getMisses());
+
+      for (int i = 0; i < 20; i++) {
+        assertEquals(String.valueOf(i), String.valueOf(TemplateRuntime.eval("@{" + i + "}", map)));
+      }
+      assertTrue(cache.size() <= 10);
+      assertTrue(cache.getEvictions() > 0);
+    }
+    finally {
+      TemplateRuntime.setTemplateCache(null);
+    }
+  }
+
+  public void testTemplateCacheRereadsModifiedFiles() throws IOException {
+    File file = File.createTempFile("mvel", ".mv");
+    file.deleteOnExit();
+
+    CompiledTemplateCache cache = new CompiledTemplateCache(10);
+    TemplateRuntime.setTemplateCache(cache);
+    try {
+      write(file, "@{_foo_}");
+      assertEquals("Foo", TemplateRuntime.eval(file, null, vrf, null));
+      assertEquals("Foo", TemplateRuntime.eval(file, null, vrf, null));
+      assertEquals(1, cache.getHits());
+
+      write(file, "@{_bar_}::@{_foo_}");
+      file.setLastModified(file.lastModified() + 2000);
+      assertEquals("Bar::Foo", TemplateRuntime.eval(file, null, vrf, null));
+      assertEquals(2, cache.getMisses());
+    }
+    finally {
+      TemplateRuntime.setTemplateCache(null);
+      file.delete();
+    }
+  }
+
+  public void testBytecodeCompiledTemplate() {
+    CompiledTemplate compiled = ASMTemplateCompiler.compile(compileTemplate(
+        "@foreach{item : arrayList}@if{item[0] == 'J'}[@{item}]@else{}(@{item})@end{}@end{', '}"
+            + "@code{x = 10}@comment{ignored}:@{x * 2}@if{_foo_ == 'Foo'}!@end{}"));
+
+    assertTrue(compiled.getRoot() instanceof ASMTemplateNode);
+    assertSame(compiled, ASMTemplateCompiler.compile(compiled));
+
+    for (int i = 0; i < 3; i++) {
+      assertEquals("[Jane], [John], (Foo):20!", TemplateRuntime.execute(compiled, base, new MapVariableResolverFactory(map)));
+    }
+
+    compiled = ASMTemplateCompiler.compile(compileTemplate("@{_foo_.length()}"));
+    assertEquals(3, TemplateRuntime.execute(compiled, base, vrf));
+  }
+
+  public void testTemplateSnapshot() throws IOException {
+    String template = "@foreach{item : arrayList}@if{item[0] == 'J'}[@{item}]@else{}(@{item})@end{}@end{', '}"
+        + "@code{x = 10}:@{x * 2}";
+
+    Map<String, Serializable> entries = new LinkedHashMap<String, Serializable>();
+    entries.put("interpreted", compileTemplate(template));
+    entries.put("bytecode", ASMTemplateCompiler.compile(compileTemplate(template)));
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    CompiledSnapshot.write(bytes, entries, true);
+    CompiledSnapshot snapshot = CompiledSnapshot.open(java.nio.ByteBuffer.wrap(bytes.toByteArray()),
+        getClass().getClassLoader());
+
+    CompiledTemplate interpreted = (CompiledTemplate) snapshot.get("interpreted");
+    CompiledTemplate bytecode = (CompiledTemplate) snapshot.get("bytecode");
+    assertFalse(interpreted.getRoot() instanceof ASMTemplateNode);
+    assertTrue(bytecode.getRoot() instanceof ASMTemplateNode);
+
+    for (CompiledTemplate t : new CompiledTemplate[]{interpreted, bytecode}) {
+      assertEquals("[Jane], [John], (Foo):20", TemplateRuntime.execute(t, base, new MapVariableResolverFactory(map)));
+    }
+  }
+
+  public void testByteOutput() throws IOException {
+    String template = "Pr\u00e9face @{_foo_}: @foreach{item : arrayList}\u20ac@{item + '\u00e9'}@end{', '} -- fin";
+    String expected = "Pr\u00e9face Foo: \u20acJane\u00e9, \u20acJohn\u00e9, \u20acFoo\u00e9 -- fin";
+
+    BufferPool pool = new BufferPool(16, 4);
+    CompiledTemplate compiled = compileTemplate(template);
+    CompiledTemplate bytecode = ASMTemplateCompiler.compile(compileTemplate(template));
+
+    for (String name : new String[]{"UTF-8", "ISO-8859-15", "UTF-16LE"}) {
+      Charset charset = Charset.forName(name);
+      for (CompiledTemplate t : new CompiledTemplate[]{compiled, bytecode}) {
+        for (int i = 0; i < 2; i++) {
+          ByteBufferStream out = new ByteBufferStream(charset, pool);
+          try {
+            TemplateRuntime.execute(t, base, new MapVariableResolverFactory(map), null, out);
+            assertEquals(expected, out.decode());
+            assertEquals(charset.encode(expected).remaining(), out.size());
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            out.writeTo(Channels.newChannel(bytes));
+            assertTrue(Arrays.equals(out.toByteArray(), bytes.toByteArray()));
+          }
+          finally {
+            out.release();
+          }
+        }
+      }
+    }
+    assertEquals(4, pool.size());
+  }
+
+  public void testEncodedTextKeepsEachCharset() {
+    EncodedText text = new EncodedText("Pr\u00e9face");
+    Charset utf8 = Charset.forName("UTF-8");
+    Charset latin = Charset.forName("ISO-8859-15");
+
+    byte[] encoded = text.getBytes(utf8);
+    assertEquals(8, encoded.length);
+    assertEquals(7, text.getBytes(latin).length);
+
+    // alternating between character sets does not encode the text again
+    assertSame(encoded, text.getBytes(utf8));
+    assertSame(text.getBytes(latin), text.getBytes(Charset.forName("ISO-8859-15")));
+  }
+
+  public void testBytecodeCompiledTemplateClassesAreUnloaded() throws Exception {
+    CompiledTemplate compiled = ASMTemplateCompiler.compile(compileTemplate("@foreach{item : arrayList}@{item}@end{}"));
+    assertEquals("JaneJohnFoo", TemplateRuntime.execute(compiled, base, new MapVariableResolverFactory(map)));
+
+    WeakReference<ClassLoader> ref = new WeakReference<ClassLoader>(compiled.getRoot().getClass().getClassLoader());
+    compiled = null;
+    for (int i = 0; i < 10 && ref.get() != null; i++) {
+      System.gc();
+      Thread.sleep(10);
+    }
+    assertNull("the generated class is still reachable", ref.get());
+  }
+
+  public void testStreamingOutput() throws IOException {
+    SimpleTemplateRegistry registry = new SimpleTemplateRegistry();
+    registry.addNamedTemplate("row", compileTemplate("<tr><td>@{i}</td><td>@{_foo_}</td></tr>\n"));
+
+    CompiledTemplate compiled = compileTemplate("<table>\n@foreach{i : 200}@includeNamed{'row'}@end{}"
+        + "@include{'src/test/java/org/mvel2/tests/templates/templateTest.mv'}</table>");
+    String expected = (String) TemplateRuntime.execute(compiled, base, new MapVariableResolverFactory(map), registry);
+    assertTrue(expected.endsWith("<tr><td>199</td><td>Foo</td></tr>\nFoo::Bar</table>"));
+
+    final List<Integer> flushes = new ArrayList<Integer>();
+    StringWriter writer = new StringWriter() {
+      public void flush() {
+        flushes.add(getBuffer().length());
+      }
+    };
+    WriterStream stream = new WriterStream(writer, 256);
+    assertNull(TemplateRuntime.execute(compiled, base, new MapVariableResolverFactory(map), registry, stream));
+    stream.flush();
+
+    assertEquals(expected, writer.toString());
+    assertTrue(flushes.size() > expected.length() / 256);
+    for (int i = 1; i < flushes.size(); i++) {
+      assertTrue(flushes.get(i) - flushes.get(i - 1) <= 256);
+    }
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    ByteBufferStream out = new ByteBufferStream(Charset.forName("UTF-8"), new BufferPool(64, 4), bytes, 128);
+    TemplateRuntime.execute(ASMTemplateCompiler.compile(compiled), base, new MapVariableResolverFactory(map), registry, out);
+    assertTrue(out.size() < 192);
+    out.flush();
+    out.release();
+
+    assertEquals(expected, new String(bytes.toByteArray(), "UTF-8"));
+  }
+
+  public void testIncludedTemplateValues() throws IOException {
+    SimpleTemplateRegistry registry = new SimpleTemplateRegistry();
+    registry.addNamedTemplate("value", compileTemplate("@{_foo_.length()}"));
+    registry.addNamedTemplate("text", compileTemplate("<@{_bar_}>"));
+    registry.addNamedTemplate("nothing", compileTemplate("@foreach{i : new int[0]}@{i}@end{}"));
+
+    // a single expression returns its value, which is written for it; other templates write their own output
+    CompiledTemplate compiled =
+        compileTemplate("[@includeNamed{'value'}|@includeNamed{'text'}|@includeNamed{'nothing'}]");
+    assertEquals("[3|<Bar>|]", TemplateRuntime.execute(compiled, base, new MapVariableResolverFactory(map), registry));
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    ByteBufferStream out = new ByteBufferStream(Charset.forName("UTF-8"), new BufferPool(64, 4), bytes, 128);
+    TemplateRuntime.execute(compiled, base, new MapVariableResolverFactory(map), registry, out);
+    out.flush();
+    out.release();
+    assertEquals("[3|<Bar>|]", new String(bytes.toByteArray(), "UTF-8"));
+  }
+
+  public void testResourceTemplateRegistry() throws IOException {
+    File dir = File.createTempFile("mvel", "templates");
+    dir.delete();
+    File sub = new File(dir, "parts");
+    sub.mkdirs();
+
+    File row = new File(sub, "row.mv");
+    write(row, "[@{_foo_}]");
+    write(new File(dir, "page.mv"), "@foreach{i : 3}@includeNamed{'parts/row'}@end{}");
+
+    try {
+      final List<String> failed = new ArrayList<String>();
+      ResourceTemplateRegistry registry = new ResourceTemplateRegistry(dir, ".mv") {
+        protected void reloadFailed(String name, RuntimeException error) {
+          failed.add(name);
+        }
+      };
+      assertEquals(new TreeSet<String>(Arrays.asList("page", "parts/row")), registry.getNames());
+      assertTrue(registry.contains("page"));
+      assertFalse(registry.contains("nope"));
+      assertFalse(registry.contains("../" + dir.getName() + "/page"));
+
+      CompiledTemplate page = registry.getNamedTemplate("page");
+      assertSame(page, registry.getNamedTemplate("page"));
+      assertEquals("[Foo][Foo][Foo]", TemplateRuntime.execute(page, null, vrf, registry));
+
+      assertEquals(0, registry.reload());
+      write(row, "<@{_bar_}>");
+      row.setLastModified(row.lastModified() + 2000);
+      assertEquals(1, registry.reload());
+      assertEquals("<Bar><Bar><Bar>", TemplateRuntime.execute(page, null, vrf, registry));
+
+      // a template which no longer compiles keeps its previous version, and is reported once
+      write(row, "<@{_bar_>");
+      row.setLastModified(row.lastModified() + 4000);
+      assertEquals(0, registry.reload());
+      assertEquals(Arrays.asList("parts/row"), failed);
+      assertEquals("<Bar><Bar><Bar>", TemplateRuntime.execute(page, null, vrf, registry));
+      assertEquals(0, registry.reload());
+      assertEquals(1, failed.size());
+      write(row, "<@{_bar_}>");
+
+      registry = new ResourceTemplateRegistry(new URLClassLoader(new URL[]{dir.toURI().toURL()}, null), "parts", ".mv");
+      registry.preload(Arrays.asList("row"), 2);
+      assertEquals("<Bar>", TemplateRuntime.execute(registry.getNamedTemplate("row"), null, vrf));
+
+      try {
+        registry.preload(Arrays.asList("row", "missing"), 2);
+        fail("should have failed");
+      }
+      catch (TemplateError e) {
+        // expected
+      }
+    }
+    finally {
+      row.delete();
+      sub.delete();
+      new File(dir, "page.mv").delete();
+      dir.delete();
+    }
+  }
+
+  private static void write(File file, String content) throws IOException {
+    FileWriter writer = new FileWriter(file);
+    try {
+      writer.write(content);
+    }
+    finally {
+      writer.close();
+    }
+  }
+
 //    public void testTemplateFile2() {
 //        String s = (String) TemplateRuntime.eval(new File("src/test/java/org/mvel2/tests/templates/templateDeclareTest.mv"),
 //                base, new MapVariableResolverFactory(map), null);